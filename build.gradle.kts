@@ -17,6 +17,7 @@ val jtsVersion: String by project
 val sliceVersion: String by project
 val junitVersion: String by project
 val assertjVersion: String by project
+val jmhVersion: String by project
 val googleJavaFormatVersion: String by project
 
 group = project.property("group") as String
@@ -61,6 +62,10 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter-api:$junitVersion")
     testImplementation("org.assertj:assertj-core:$assertjVersion")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    // Benchmarks live in the test source set and run through the jmh task
+    testImplementation("org.openjdk.jmh:jmh-core:$jmhVersion")
+    testAnnotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
 }
 
 // Force upgrade vulnerable transitive dependencies
@@ -84,6 +89,8 @@ configurations.all {
 
 tasks.test {
     useJUnitPlatform()
+    // Output cap tests build sets of more than 10M cells (h3.max-output-cells) and run concurrently
+    maxHeapSize = "2g"
     testLogging {
         events("passed", "skipped", "failed")
         exceptionFormat = org.gradle.api.tasks.testing.logging.TestExceptionFormat.FULL
@@ -92,6 +99,14 @@ tasks.test {
     finalizedBy(tasks.jacocoTestReport)
 }
 
+// Run JMH benchmarks, e.g. ./gradlew jmh -Pbenchmark=BenchmarkInvalidInput
+tasks.register<JavaExec>("jmh") {
+    dependsOn(tasks.testClasses)
+    classpath = sourceSets.test.get().runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args(project.findProperty("benchmark")?.toString() ?: "Benchmark")
+}
+
 tasks.jacocoTestReport {
     dependsOn(tasks.test)
     reports {
@@ -0,0 +1,74 @@
+package com.uber.h3core;
+
+import java.util.Objects;
+
+/**
+ * Exposes the array-filling native entry points behind {@link H3Core}, which copy their results
+ * into boxed lists. Lives in the H3 package because {@link NativeMethods} is package-private, and
+ * is relocated together with it when the plugin jar is shaded.
+ *
+ * <p>Callers size result arrays with the matching size method. H3 leaves unused slots as 0.
+ */
+public final class H3NativeArrays {
+  private final NativeMethods h3Api = new NativeMethods();
+
+  /** Takes an {@link H3Core} only to guarantee the native library has been loaded. */
+  public H3NativeArrays(H3Core loaded) {
+    Objects.requireNonNull(loaded, "loaded is null");
+  }
+
+  public long maxGridDiskSize(int k) {
+    return h3Api.maxGridDiskSize(k);
+  }
+
+  public void gridDisk(long h3, int k, long[] results) {
+    h3Api.gridDisk(h3, k, results);
+  }
+
+  /** Fills cells in order of increasing distance; throws if a pentagon is encountered. */
+  public void gridDiskUnsafe(long h3, int k, long[] results) {
+    h3Api.gridDiskUnsafe(h3, k, results);
+  }
+
+  /** Throws if a pentagon is encountered. Results must hold 1 cell for k = 0, else 6 * k. */
+  public void gridRingUnsafe(long h3, int k, long[] results) {
+    h3Api.gridRingUnsafe(h3, k, results);
+  }
+
+  public long cellToChildrenSize(long h3, int childRes) {
+    return h3Api.cellToChildrenSize(h3, childRes);
+  }
+
+  public void cellToChildren(long h3, int childRes, long[] results) {
+    h3Api.cellToChildren(h3, childRes, results);
+  }
+
+  /**
+   * Vertices are packed as lat, lng pairs in radians. Hole vertices are concatenated, with the
+   * number of doubles of each hole, twice its number of vertices, in {@code holeSizes}.
+   */
+  public long maxPolygonToCellsSize(
+      double[] verts, int[] holeSizes, double[] holeVerts, int res, int flags) {
+    return h3Api.maxPolygonToCellsSize(verts, holeSizes, holeVerts, res, flags);
+  }
+
+  public void polygonToCells(
+      double[] verts, int[] holeSizes, double[] holeVerts, int res, int flags, long[] results) {
+    h3Api.polygonToCells(verts, holeSizes, holeVerts, res, flags, results);
+  }
+
+  /** Like {@link #maxPolygonToCellsSize}, for the containment modes of the experimental call. */
+  public long maxPolygonToCellsSizeExperimental(
+      double[] verts, int[] holeSizes, double[] holeVerts, int res, int flags) {
+    return h3Api.maxPolygonToCellsSizeExperimental(verts, holeSizes, holeVerts, res, flags);
+  }
+
+  /**
+   * Supports every containment mode, where {@link #polygonToCells} only applies center containment
+   * correctly.
+   */
+  public void polygonToCellsExperimental(
+      double[] verts, int[] holeSizes, double[] holeVerts, int res, int flags, long[] results) {
+    h3Api.polygonToCellsExperimental(verts, holeSizes, holeVerts, res, flags, results);
+  }
+}
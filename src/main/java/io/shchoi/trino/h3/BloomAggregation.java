@@ -0,0 +1,81 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
+
+import io.airlift.slice.Slice;
+import io.trino.spi.TrinoException;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AggregationFunction;
+import io.trino.spi.function.AggregationState;
+import io.trino.spi.function.CombineFunction;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.InputFunction;
+import io.trino.spi.function.OutputFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+
+/**
+ * Builds a {@link CellBloomFilter} over the cells of a group at a resolution, small enough to
+ * broadcast and probe with {@code h3_bloom_might_contain} before joining a large table against
+ * the group's cells. Cells coarser than the resolution stand for their descendants at it. Returns
+ * null if any cell or resolution is invalid, if the resolution changes within the group, or if the
+ * group has no cells.
+ */
+@AggregationFunction("h3_bloom_agg")
+@Description("Build a Bloom filter over the cells of a group at a resolution")
+public final class BloomAggregation {
+  private BloomAggregation() {}
+
+  @InputFunction
+  public static void input(
+      @AggregationState ResolutionCellsState state,
+      @SqlType(StandardTypes.BIGINT) long cell,
+      @SqlType(StandardTypes.INTEGER) long res) {
+    ResolutionCells cells = state.get();
+    if (cells == null) {
+      cells = new ResolutionCells();
+      state.set(cells);
+    }
+    long sizeBefore = cells.getEstimatedSize();
+    cells.add(cell, res);
+    state.addMemoryUsage(cells.getEstimatedSize() - sizeBefore);
+  }
+
+  @CombineFunction
+  public static void combine(
+      @AggregationState ResolutionCellsState state,
+      @AggregationState ResolutionCellsState otherState) {
+    ResolutionCells other = otherState.get();
+    if (other == null) {
+      return;
+    }
+    ResolutionCells cells = state.get();
+    if (cells == null) {
+      state.set(other);
+      return;
+    }
+    long sizeBefore = cells.getEstimatedSize();
+    cells.addAll(other);
+    state.addMemoryUsage(cells.getEstimatedSize() - sizeBefore);
+  }
+
+  @OutputFunction(StandardTypes.VARBINARY)
+  public static void output(@AggregationState ResolutionCellsState state, BlockBuilder out) {
+    ResolutionCells cells = state.get();
+    Slice filter = null;
+    if (cells != null) {
+      try {
+        filter = CellBloomFilter.build(cells);
+      } catch (TrinoException e) {
+        throw e;
+      } catch (Exception e) {
+        filter = null;
+      }
+    }
+    if (filter == null) {
+      out.appendNull();
+      return;
+    }
+    VARBINARY.writeSlice(out, filter);
+  }
+}
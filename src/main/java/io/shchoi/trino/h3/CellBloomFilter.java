@@ -0,0 +1,148 @@
+package io.shchoi.trino.h3;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+/**
+ * Split block Bloom filter over cells at one resolution, for prefiltering rows before a join with
+ * a set of target cells. Each cell sets eight bits within one 256-bit block, one in each of its
+ * 32-bit words, so a probe reads a single cache line. At {@value #BITS_PER_CELL} bits per cell,
+ * about 0.5% of cells outside the set pass.
+ *
+ * <p>The filter is a VARBINARY value: a version byte, the resolution as a byte, the number of
+ * blocks as an int, then the blocks. Probes read the value in place and allocate nothing, so they
+ * can run on every row of a large table.
+ */
+final class CellBloomFilter {
+  private static final int MAX_RES = H3Indexer.MAX_RES;
+  private static final int RES_OFFSET = 52;
+  private static final long RES_MASK = 0xFL << RES_OFFSET;
+
+  private static final byte VERSION = 1;
+  private static final int HEADER_BYTES = 6;
+  private static final int BLOCK_WORDS = 8;
+  private static final int BLOCK_BYTES = BLOCK_WORDS * Integer.BYTES;
+  static final int BITS_PER_CELL = 12;
+
+  // Odd multipliers choosing the bit set in each word of a block
+  private static final int[] SALTS = {
+    0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d, 0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31
+  };
+
+  private CellBloomFilter() {}
+
+  /** Builds a filter over the cells of a group, or returns null if they are invalid or empty. */
+  static Slice build(ResolutionCells cells) {
+    long[] compacted = cells.toCells();
+    return compacted == null ? null : build(compacted, cells.resolution());
+  }
+
+  /**
+   * Builds a filter over the cells, which must be compacted and no finer than the resolution.
+   * Cells coarser than it are added as their descendants at the resolution. Throws if those would
+   * be over {@link OutputLimits#MAX_CELLS}.
+   */
+  static Slice build(long[] cells, int res) {
+    long count = 0;
+    for (long cell : cells) {
+      count += PolygonCoverage.ChildCells.count(cell, res);
+    }
+    OutputLimits.checkCellCount(count, "h3_bloom_agg");
+    long blockCount = Math.max(1, (count * BITS_PER_CELL + 255) / 256);
+    if (blockCount > (Integer.MAX_VALUE - HEADER_BYTES) / BLOCK_BYTES) {
+      throw new IllegalArgumentException("Too many cells: " + count);
+    }
+    int[] words = new int[(int) blockCount * BLOCK_WORDS];
+    long[] buffer = new long[(int) Math.min(count, OutputLimits.CHUNK_CELLS)];
+    for (long cell : cells) {
+      if (H3Validation.getResolution(cell) == res) {
+        insert(words, (int) blockCount, cell);
+        continue;
+      }
+      PolygonCoverage.ChildCells children = new PolygonCoverage.ChildCells(cell, res);
+      while (!children.isDone()) {
+        OutputLimits.checkInterrupted();
+        int end = children.fill(buffer, 0, buffer.length);
+        for (int i = 0; i < end; i++) {
+          insert(words, (int) blockCount, buffer[i]);
+        }
+      }
+    }
+
+    Slice filter = Slices.allocate(HEADER_BYTES + words.length * Integer.BYTES);
+    filter.setByte(0, VERSION);
+    filter.setByte(1, res);
+    filter.setInt(2, (int) blockCount);
+    for (int i = 0; i < words.length; i++) {
+      filter.setInt(HEADER_BYTES + i * Integer.BYTES, words[i]);
+    }
+    return filter;
+  }
+
+  /**
+   * Whether the cell may be in the filter, or inside a cell of it when the cell is finer than its
+   * resolution. Cells coarser than the resolution may always be. The cell must be valid. Throws if
+   * the value is not a filter.
+   */
+  static boolean mightContain(Slice filter, long cell) {
+    if (filter.length() < HEADER_BYTES || filter.getByte(0) != VERSION) {
+      throw invalid();
+    }
+    int res = filter.getByte(1);
+    int blockCount = filter.getInt(2);
+    if (res < 0
+        || res > MAX_RES
+        || blockCount <= 0
+        || (long) blockCount * BLOCK_BYTES != filter.length() - HEADER_BYTES) {
+      throw invalid();
+    }
+    if (H3Validation.getResolution(cell) < res) {
+      return true;
+    }
+    long hash = hash(toParent(cell, res));
+    int offset = HEADER_BYTES + block(hash, blockCount) * BLOCK_BYTES;
+    int key = (int) hash;
+    for (int i = 0; i < BLOCK_WORDS; i++) {
+      int bit = 1 << ((key * SALTS[i]) >>> 27);
+      if ((filter.getInt(offset + i * Integer.BYTES) & bit) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** The ancestor of a cell at a resolution no finer than its own, by clearing digits. */
+  static long toParent(long cell, int res) {
+    long unusedDigits = (1L << ((MAX_RES - res) * 3)) - 1;
+    return (cell & ~RES_MASK) | ((long) res << RES_OFFSET) | unusedDigits;
+  }
+
+  private static void insert(int[] words, int blockCount, long cell) {
+    long hash = hash(cell);
+    int offset = block(hash, blockCount) * BLOCK_WORDS;
+    int key = (int) hash;
+    for (int i = 0; i < BLOCK_WORDS; i++) {
+      words[offset + i] |= 1 << ((key * SALTS[i]) >>> 27);
+    }
+  }
+
+  /** Maps the high half of the hash onto the blocks without a division. */
+  private static int block(long hash, int blockCount) {
+    return (int) (((hash >>> 32) * blockCount) >>> 32);
+  }
+
+  private static long hash(long cell) {
+    // Murmur3 finalizer, since H3 indexes differ mostly in their middle bits
+    long hash = cell;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static IllegalArgumentException invalid() {
+    return new IllegalArgumentException("Invalid cell filter");
+  }
+}
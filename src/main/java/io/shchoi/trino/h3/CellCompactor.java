@@ -0,0 +1,456 @@
+package io.shchoi.trino.h3;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.airlift.slice.SizeOf.sizeOf;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Accumulates cells and keeps them compacted: sorted, without duplicates or cells covered by
+ * another cell in the set, and with every complete group of siblings replaced by its parent. New
+ * cells are buffered and folded in once the buffer is as large as the compacted set, so memory
+ * stays within a small multiple of the compacted output however many cells are added.
+ *
+ * <p>Cells are held as keys with the resolution bits cleared. Unused digits are 7, so in key order
+ * every cell sorts directly after its descendants, and the children of a cell, once their own
+ * descendants are gone, sit next to each other directly before it. That makes each step a linear
+ * scan over the sorted keys.
+ */
+final class CellCompactor {
+  private static final int INSTANCE_SIZE = instanceSize(CellCompactor.class);
+
+  private static final int MAX_RES = H3Indexer.MAX_RES;
+  private static final int RES_OFFSET = 52;
+  private static final long RES_MASK = 0xFL << RES_OFFSET;
+  private static final int BASE_CELL_OFFSET = 45;
+  private static final long DIGITS_MASK = (1L << BASE_CELL_OFFSET) - 1;
+  private static final int MIN_BUFFER = 1024;
+  private static final int NUM_BASE_CELLS = 122;
+
+  /** Arrays with at least this many cells are compacted or uncompacted on the polyfill pool. */
+  static final int PARALLEL_CELLS = 1 << 20;
+
+  // The 45 digit bits are sorted in three passes; shorter ranges use Arrays.sort
+  private static final int RADIX_BITS = 15;
+  private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+  private static final int MIN_RADIX_SORT = 1 << 12;
+
+  private long[] keys = new long[16];
+  private int size;
+  // Keys before this index are compacted; the rest are buffered
+  private int compactedSize;
+  private boolean invalid;
+
+  /** Adds a cell. An invalid cell poisons the set, which then has no cells. */
+  void add(long cell) {
+    if (invalid) {
+      return;
+    }
+    if (!H3Validation.isValidCell(cell)) {
+      markInvalid();
+      return;
+    }
+    if (size == keys.length) {
+      if (size - compactedSize >= Math.max(compactedSize, MIN_BUFFER)) {
+        compact();
+      }
+      if (size * 2 > keys.length) {
+        keys = Arrays.copyOf(keys, keys.length * 2);
+      }
+    }
+    keys[size++] = cellToKey(cell);
+  }
+
+  /** Adds every cell of another compactor. */
+  void addAll(CellCompactor other) {
+    if (invalid) {
+      return;
+    }
+    if (other.invalid) {
+      markInvalid();
+      return;
+    }
+    if (keys.length - size < other.size) {
+      keys = Arrays.copyOf(keys, Math.max(keys.length * 2, size + other.size));
+    }
+    System.arraycopy(other.keys, 0, keys, size, other.size);
+    size += other.size;
+    compact();
+  }
+
+  boolean isInvalid() {
+    return invalid;
+  }
+
+  /** Returns the compacted cells in key order, or null if an invalid cell was added. */
+  long[] toCells() {
+    if (invalid) {
+      return null;
+    }
+    compact();
+    long[] cells = new long[size];
+    for (int i = 0; i < size; i++) {
+      cells[i] = keyToCell(keys[i]);
+    }
+    return cells;
+  }
+
+  long getEstimatedSize() {
+    return INSTANCE_SIZE + sizeOf(keys);
+  }
+
+  /** Serializes the compacted keys, with a count of -1 for an invalid set. */
+  Slice serialize() {
+    if (invalid) {
+      Slice slice = Slices.allocate(Integer.BYTES);
+      slice.setInt(0, -1);
+      return slice;
+    }
+    compact();
+    Slice slice = Slices.allocate(Integer.BYTES + size * Long.BYTES);
+    slice.setInt(0, size);
+    for (int i = 0; i < size; i++) {
+      slice.setLong(Integer.BYTES + i * Long.BYTES, keys[i]);
+    }
+    return slice;
+  }
+
+  static CellCompactor deserialize(Slice slice) {
+    CellCompactor compactor = new CellCompactor();
+    int count = slice.getInt(0);
+    if (count < 0) {
+      compactor.markInvalid();
+      return compactor;
+    }
+    compactor.keys = new long[Math.max(count, 16)];
+    for (int i = 0; i < count; i++) {
+      compactor.keys[i] = slice.getLong(Integer.BYTES + i * Long.BYTES);
+    }
+    compactor.size = count;
+    compactor.compactedSize = count;
+    return compactor;
+  }
+
+  /**
+   * Compacts an array of cells in one go, allowing duplicates and cells inside other cells of the
+   * array, and returns the compacted cells in key order. Keys are bucketed by base cell, which no
+   * compaction crosses, then each bucket is radix sorted on its digits and compacted in place. With
+   * {@link ParallelPolyfill#PARALLELISM} above 1, buckets of large arrays are compacted on its
+   * pool. Throws if a cell is invalid.
+   */
+  static long[] compactCells(long[] cells) {
+    long[] compacted = compactKeys(cells);
+    for (int i = 0; i < compacted.length; i++) {
+      compacted[i] = keyToCell(compacted[i]);
+    }
+    return compacted;
+  }
+
+  /** Like {@link #compactCells}, but returns the sorted keys of the compacted cells. */
+  static long[] compactKeys(long[] cells) {
+    int[] bucketStarts = new int[NUM_BASE_CELLS + 1];
+    for (long cell : cells) {
+      if (!H3Validation.isValidCell(cell)) {
+        throw new IllegalArgumentException("Invalid cell: " + cell);
+      }
+      bucketStarts[H3Validation.getBaseCell(cell) + 1]++;
+    }
+    for (int i = 0; i < NUM_BASE_CELLS; i++) {
+      bucketStarts[i + 1] += bucketStarts[i];
+    }
+    long[] keys = new long[cells.length];
+    int[] next = Arrays.copyOf(bucketStarts, NUM_BASE_CELLS);
+    for (long cell : cells) {
+      keys[next[H3Validation.getBaseCell(cell)]++] = cellToKey(cell);
+    }
+
+    long[] buffer = new long[cells.length];
+    int[] bucketEnds = new int[NUM_BASE_CELLS];
+    if (ParallelPolyfill.PARALLELISM > 1 && cells.length >= PARALLEL_CELLS) {
+      List<ForkJoinTask<Integer>> tasks = new ArrayList<>(NUM_BASE_CELLS);
+      for (int i = 0; i < NUM_BASE_CELLS; i++) {
+        int from = bucketStarts[i];
+        int to = bucketStarts[i + 1];
+        tasks.add(ParallelPolyfill.pool().submit(() -> compactBucket(keys, buffer, from, to)));
+      }
+      for (int i = 0; i < NUM_BASE_CELLS; i++) {
+        bucketEnds[i] = join(tasks, i);
+      }
+    } else {
+      for (int i = 0; i < NUM_BASE_CELLS; i++) {
+        bucketEnds[i] = compactBucket(keys, buffer, bucketStarts[i], bucketStarts[i + 1]);
+      }
+    }
+
+    int size = 0;
+    for (int i = 0; i < NUM_BASE_CELLS; i++) {
+      size += bucketEnds[i] - bucketStarts[i];
+    }
+    long[] compacted = new long[size];
+    int offset = 0;
+    for (int i = 0; i < NUM_BASE_CELLS; i++) {
+      for (int j = bucketStarts[i]; j < bucketEnds[i]; j++) {
+        compacted[offset++] = keys[j];
+      }
+    }
+    return compacted;
+  }
+
+  /**
+   * Every descendant of the cells at the resolution, cell by cell in the order given. With {@link
+   * ParallelPolyfill#PARALLELISM} above 1, large outputs are filled on its pool. Throws if a cell
+   * is invalid or finer than the resolution, or if the output is over {@link
+   * OutputLimits#MAX_CELLS}.
+   */
+  static long[] uncompactCells(long[] cells, int res) {
+    long[] offsets = new long[cells.length + 1];
+    for (int i = 0; i < cells.length; i++) {
+      long cell = cells[i];
+      if (!H3Validation.isValidCell(cell) || H3Validation.getResolution(cell) > res) {
+        throw new IllegalArgumentException("Invalid cell for resolution " + res + ": " + cell);
+      }
+      offsets[i + 1] = offsets[i] + PolygonCoverage.ChildCells.count(cell, res);
+    }
+    long total = offsets[cells.length];
+    OutputLimits.checkCellCount(total, "h3_uncompact_cells");
+    if (total > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Too many cells: " + total);
+    }
+
+    long[] uncompacted = new long[(int) total];
+    if (ParallelPolyfill.PARALLELISM > 1 && total >= PARALLEL_CELLS) {
+      // Runs of cells with about the same number of descendants each
+      long perTask = Math.max(OutputLimits.CHUNK_CELLS, total / (ParallelPolyfill.PARALLELISM * 4));
+      List<ForkJoinTask<Integer>> tasks = new ArrayList<>();
+      int from = 0;
+      while (from < cells.length) {
+        int to = from + 1;
+        while (to < cells.length && offsets[to + 1] - offsets[from] <= perTask) {
+          to++;
+        }
+        int first = from;
+        int last = to;
+        tasks.add(
+            ParallelPolyfill.pool()
+                .submit(() -> fillDescendants(cells, first, last, res, uncompacted, offsets)));
+        from = to;
+      }
+      for (int i = 0; i < tasks.size(); i++) {
+        join(tasks, i);
+      }
+    } else {
+      fillDescendants(cells, 0, cells.length, res, uncompacted, offsets);
+    }
+    return uncompacted;
+  }
+
+  private static int fillDescendants(
+      long[] cells, int from, int to, int res, long[] uncompacted, long[] offsets) {
+    for (int i = from; i < to; i++) {
+      PolygonCoverage.ChildCells children = new PolygonCoverage.ChildCells(cells[i], res);
+      int offset = (int) offsets[i];
+      int end = (int) offsets[i + 1];
+      while (!children.isDone()) {
+        OutputLimits.checkInterrupted();
+        offset =
+            children.fill(uncompacted, offset, Math.min(end, offset + OutputLimits.CHUNK_CELLS));
+      }
+    }
+    return to - from;
+  }
+
+  /**
+   * Waits for one of the tasks. If the calling thread is interrupted, the tasks not yet started
+   * are canceled and the call throws.
+   */
+  private static int join(List<ForkJoinTask<Integer>> tasks, int index) {
+    try {
+      return tasks.get(index).get();
+    } catch (InterruptedException e) {
+      for (ForkJoinTask<Integer> task : tasks) {
+        task.cancel(true);
+      }
+      Thread.currentThread().interrupt();
+      throw OutputLimits.interrupted();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /** Sorts and compacts the keys of one base cell in place; returns the new end of the range. */
+  private static int compactBucket(long[] keys, long[] buffer, int from, int to) {
+    OutputLimits.checkInterrupted();
+    sortDigits(keys, buffer, from, to);
+    return compactSorted(keys, from, to);
+  }
+
+  /** Compacts sorted keys in place, bottom-up one resolution at a time. */
+  private static int compactSorted(long[] keys, int from, int to) {
+    int end = removeCovered(keys, from, to);
+    for (int res = MAX_RES; res > 0; res--) {
+      end = collapseSiblings(keys, from, end, res);
+    }
+    return end;
+  }
+
+  /**
+   * Sorts keys sharing a base cell by least significant digit radix sort over their 45 digit bits,
+   * skipping passes where every key has the same digit. Small ranges use a comparison sort.
+   */
+  private static void sortDigits(long[] keys, long[] buffer, int from, int to) {
+    if (to - from < MIN_RADIX_SORT) {
+      Arrays.sort(keys, from, to);
+      return;
+    }
+    int[] counts = new int[1 << RADIX_BITS];
+    long[] source = keys;
+    long[] target = buffer;
+    for (int shift = 0; shift < BASE_CELL_OFFSET; shift += RADIX_BITS) {
+      Arrays.fill(counts, 0);
+      for (int i = from; i < to; i++) {
+        counts[(int) (source[i] >>> shift) & RADIX_MASK]++;
+      }
+      if (counts[(int) (source[from] >>> shift) & RADIX_MASK] == to - from) {
+        continue;
+      }
+      int offset = from;
+      for (int digit = 0; digit < counts.length; digit++) {
+        int count = counts[digit];
+        counts[digit] = offset;
+        offset += count;
+      }
+      for (int i = from; i < to; i++) {
+        long key = source[i];
+        target[counts[(int) (key >>> shift) & RADIX_MASK]++] = key;
+      }
+      long[] swap = source;
+      source = target;
+      target = swap;
+    }
+    if (source != keys) {
+      System.arraycopy(source, from, keys, from, to - from);
+    }
+  }
+
+  /** The cell with its resolution bits cleared, the order every set of keys here is sorted in. */
+  static long cellToKey(long cell) {
+    return cell & ~RES_MASK;
+  }
+
+  /**
+   * The lowest key of any descendant of the key's cell. The keys of the cell and its descendants
+   * are exactly those from this one up to the cell's own key.
+   */
+  static long descendantsStart(long key) {
+    return key & ~unusedDigitsMask(keyResolution(key));
+  }
+
+  private void markInvalid() {
+    invalid = true;
+    keys = new long[0];
+    size = 0;
+    compactedSize = 0;
+  }
+
+  private void compact() {
+    if (compactedSize == size) {
+      return;
+    }
+    Arrays.sort(keys, 0, size);
+    size = compactSorted(keys, 0, size);
+    compactedSize = size;
+    if (keys.length > 4 * Math.max(size, MIN_BUFFER)) {
+      keys = Arrays.copyOf(keys, 2 * Math.max(size, MIN_BUFFER));
+    }
+  }
+
+  /**
+   * Drops duplicates and keys covered by another key. Scanning down from the largest key, each
+   * kept key covers the range down to its lowest possible descendant, and ranges either nest or do
+   * not overlap, so only the last kept key needs checking.
+   */
+  private static int removeCovered(long[] keys, int from, int to) {
+    int write = to;
+    long coveredFrom = Long.MAX_VALUE;
+    for (int read = to - 1; read >= from; read--) {
+      long key = keys[read];
+      if (key >= coveredFrom) {
+        continue;
+      }
+      keys[--write] = key;
+      coveredFrom = descendantsStart(key);
+    }
+    System.arraycopy(keys, write, keys, from, to - write);
+    return from + to - write;
+  }
+
+  /**
+   * Replaces each complete run of siblings at the resolution with their parent, in the range from
+   * the first index up to the second; returns the new end of the range.
+   */
+  private static int collapseSiblings(long[] keys, int from, int to, int res) {
+    int shift = (MAX_RES - res) * 3;
+    int write = from;
+    int read = from;
+    while (read < to) {
+      long key = keys[read];
+      if (keyResolution(key) == res && ((key >>> shift) & 0x7) == 0) {
+        long parent = key | (0x7L << shift);
+        boolean pentagon = isPentagonKey(parent);
+        int childCount = pentagon ? 6 : 7;
+        if (read + childCount <= to && hasAllChildren(keys, read, parent, shift, pentagon)) {
+          keys[write++] = parent;
+          read += childCount;
+          continue;
+        }
+      }
+      keys[write++] = key;
+      read++;
+    }
+    return write;
+  }
+
+  private static boolean hasAllChildren(
+      long[] keys, int start, long parent, int shift, boolean pentagon) {
+    long base = parent & ~(0x7L << shift);
+    int index = start;
+    for (long digit = 0; digit < 7; digit++) {
+      if (pentagon && digit == 1) {
+        // Pentagons have no child in the deleted K axes subsequence
+        continue;
+      }
+      if (keys[index++] != (base | (digit << shift))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** A key is a pentagon if its base cell is one and every used digit is 0. */
+  static boolean isPentagonKey(long key) {
+    return H3Validation.isPentagonBaseCell(H3Validation.getBaseCell(key))
+        && (key & DIGITS_MASK) == unusedDigitsMask(keyResolution(key));
+  }
+
+  /** Counts the trailing unused digits, which are all 7, to recover the resolution. */
+  static int keyResolution(long key) {
+    return MAX_RES - Long.numberOfTrailingZeros(~(key & DIGITS_MASK)) / 3;
+  }
+
+  private static long unusedDigitsMask(int res) {
+    return (1L << ((MAX_RES - res) * 3)) - 1;
+  }
+
+  static long keyToCell(long key) {
+    return key | ((long) keyResolution(key) << RES_OFFSET);
+  }
+}
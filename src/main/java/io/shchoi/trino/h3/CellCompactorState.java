@@ -0,0 +1,17 @@
+package io.shchoi.trino.h3;
+
+import io.trino.spi.function.AccumulatorState;
+import io.trino.spi.function.AccumulatorStateMetadata;
+
+/** Aggregation state holding a {@link CellCompactor}, or null before the first cell. */
+@AccumulatorStateMetadata(
+    stateFactoryClass = CellCompactorStateFactory.class,
+    stateSerializerClass = CellCompactorStateSerializer.class)
+public interface CellCompactorState extends AccumulatorState {
+  CellCompactor get();
+
+  void set(CellCompactor value);
+
+  /** Reports a change in the size of the held compactor made after it was set. */
+  void addMemoryUsage(long delta);
+}
@@ -0,0 +1,29 @@
+package io.shchoi.trino.h3;
+
+import io.trino.spi.function.AccumulatorStateFactory;
+
+public class CellCompactorStateFactory implements AccumulatorStateFactory<CellCompactorState> {
+  @Override
+  public CellCompactorState createSingleState() {
+    return new SingleState();
+  }
+
+  @Override
+  public CellCompactorState createGroupedState() {
+    return new GroupedState();
+  }
+
+  static final class SingleState extends HolderStates.Single<CellCompactor>
+      implements CellCompactorState {
+    SingleState() {
+      super(CellCompactor::getEstimatedSize);
+    }
+  }
+
+  static final class GroupedState extends HolderStates.Grouped<CellCompactor>
+      implements CellCompactorState {
+    GroupedState() {
+      super(CellCompactor::getEstimatedSize);
+    }
+  }
+}
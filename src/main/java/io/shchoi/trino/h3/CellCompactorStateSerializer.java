@@ -0,0 +1,34 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
+
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AccumulatorStateSerializer;
+import io.trino.spi.type.Type;
+
+/** Ships a compactor between partial and final aggregation as its compacted keys. */
+public class CellCompactorStateSerializer
+    implements AccumulatorStateSerializer<CellCompactorState> {
+  @Override
+  public Type getSerializedType() {
+    return VARBINARY;
+  }
+
+  @Override
+  public void serialize(CellCompactorState state, BlockBuilder out) {
+    CellCompactor compactor = state.get();
+    if (compactor == null) {
+      out.appendNull();
+    } else {
+      VARBINARY.writeSlice(out, compactor.serialize());
+    }
+  }
+
+  @Override
+  public void deserialize(Block block, int index, CellCompactorState state) {
+    if (!block.isNull(index)) {
+      state.set(CellCompactor.deserialize(VARBINARY.getSlice(block, index)));
+    }
+  }
+}
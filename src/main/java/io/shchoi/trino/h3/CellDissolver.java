@@ -0,0 +1,525 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.geospatial.serde.JtsGeometrySerde.serialize;
+
+import com.uber.h3core.util.LatLng;
+import io.airlift.slice.Slice;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+
+/**
+ * Outline of a set of cells, dissolved here rather than by H3's cellsToMultiPolygon. An edge of a
+ * cell is on the outline unless the neighbor across it is in the set too, so shared edges cancel
+ * with a lookup in a {@link LongHashSet}. The remaining edges are stitched end to start into
+ * rings, and since cell boundaries run counter-clockwise, shells come out counter-clockwise and
+ * holes clockwise.
+ *
+ * <p>Neighbors compute the vertex they share separately, and may disagree in the last bits, so
+ * edge ends are matched on a grid of {@link #STEPS_PER_DEGREE} steps per degree, far finer than
+ * the shortest H3 edge.
+ */
+final class CellDissolver {
+  private static final int RES_OFFSET = 52;
+
+  private static final double STEPS_PER_DEGREE = 1e7;
+
+  /** Steps around a parallel; the 180th meridian is stored as -180. */
+  private static final long LNG_TURN = 3_600_000_000L;
+
+  /** Offsets making snapped latitudes and longitudes non-negative before packing them. */
+  private static final long LAT_BIAS = 1L << 30;
+
+  private static final long LNG_BIAS = 1L << 31;
+
+  /** Cells per task when looking for outline edges on the polyfill pool. */
+  private static final int CHUNK_CELLS = 1 << 14;
+
+  private CellDissolver() {}
+
+  /**
+   * Serialized multipolygon of the cells, which must be valid and all of one resolution. Repeated
+   * cells are ignored.
+   */
+  static Slice cellsToMultiPolygon(long[] cells) {
+    LongHashSet set = new LongHashSet(cells.length);
+    int res = -1;
+    for (long cell : cells) {
+      if (!H3Validation.isValidCell(cell)) {
+        throw new IllegalArgumentException("Invalid cell: " + cell);
+      }
+      int cellRes = (int) (cell >>> RES_OFFSET) & 0xF;
+      if (res >= 0 && cellRes != res) {
+        throw new IllegalArgumentException("Cells must all have the same resolution");
+      }
+      res = cellRes;
+      set.add(cell);
+    }
+
+    return toMultiPolygon(stitch(outlineEdges(set)));
+  }
+
+  /** Serialized multipolygon of counter-clockwise shells and clockwise holes. */
+  static Slice toMultiPolygon(List<double[]> rings) {
+    List<List<double[]>> polygons = assemble(rings);
+    if (polygons.isEmpty()) {
+      return serialize(new GeometryFactory().createMultiPolygon());
+    }
+    return GeometrySlices.multiPolygon(polygons);
+  }
+
+  /**
+   * Edges of the cells whose neighbor across is not in the set. With {@link
+   * ParallelPolyfill#PARALLELISM} above 1, large sets are split in chunks looked at on its pool;
+   * every chunk reads the whole set, so edges shared across chunks cancel like any other.
+   */
+  static Edges outlineEdges(LongHashSet set) {
+    int size = set.size();
+    if (ParallelPolyfill.PARALLELISM <= 1 || size <= CHUNK_CELLS) {
+      return outlineEdges(set, 0, size);
+    }
+    List<ForkJoinTask<Edges>> tasks = new ArrayList<>();
+    for (int start = 0; start < size; start += CHUNK_CELLS) {
+      int from = start;
+      int to = Math.min(size, start + CHUNK_CELLS);
+      tasks.add(ParallelPolyfill.pool().submit(() -> outlineEdges(set, from, to)));
+    }
+    Edges edges = new Edges();
+    try {
+      for (ForkJoinTask<Edges> task : tasks) {
+        edges.addAll(task.get());
+      }
+    } catch (InterruptedException e) {
+      for (ForkJoinTask<Edges> task : tasks) {
+        task.cancel(true);
+      }
+      Thread.currentThread().interrupt();
+      throw OutputLimits.interrupted();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    return edges;
+  }
+
+  private static Edges outlineEdges(LongHashSet set, int from, int to) {
+    long[] cells = set.values();
+    long[] neighbors = new long[7];
+    Edges edges = new Edges();
+    for (int i = from; i < to; i++) {
+      if ((i & 0xFFF) == 0) {
+        OutputLimits.checkInterrupted();
+      }
+      long cell = cells[i];
+      // Most cells of a large set have all their neighbors in it, which one native call tells
+      NativeCells.neighbors(cell, neighbors);
+      boolean interior = true;
+      for (long neighbor : neighbors) {
+        if (neighbor != 0 && !set.contains(neighbor)) {
+          interior = false;
+          break;
+        }
+      }
+      if (interior) {
+        continue;
+      }
+      for (long edge : H3Plugin.H3.originToDirectedEdges(cell)) {
+        if (!set.contains(H3Plugin.H3.getDirectedEdgeDestination(edge))) {
+          edges.add(H3Plugin.H3.directedEdgeToBoundary(edge));
+        }
+      }
+    }
+    return edges;
+  }
+
+  /** Follows each edge to the one starting where it ends, until the ring closes. */
+  static List<double[]> stitch(Edges edges) {
+    EdgeIndex index = new EdgeIndex(edges.size);
+    for (int i = 0; i < edges.size; i++) {
+      index.put(edges.from[i], i);
+    }
+    boolean[] used = new boolean[edges.size];
+    List<double[]> rings = new ArrayList<>();
+    for (int first = 0; first < edges.size; first++) {
+      if (used[first]) {
+        continue;
+      }
+      OutputLimits.checkInterrupted();
+      RingBuilder ring = new RingBuilder();
+      int edge = first;
+      do {
+        if (used[edge]) {
+          throw new IllegalStateException("Outline edges do not form closed rings");
+        }
+        used[edge] = true;
+        ring.append(edges, edge, true);
+        int slot = index.find(edges.to[edge]);
+        if (slot < 0) {
+          throw new IllegalStateException("Outline edges do not form closed rings");
+        }
+        if (index.second(slot) >= 0) {
+          throw new IllegalStateException("Two outline edges start at one vertex");
+        }
+        edge = index.first(slot);
+      } while (edge != first);
+      rings.add(ring.close());
+    }
+    return rings;
+  }
+
+  /**
+   * Like {@link #stitch} for edges given in either direction, following each edge to the other one
+   * at its far end. The rings have no particular orientation until {@link #orient}ed.
+   */
+  static List<double[]> stitchUndirected(Edges edges) {
+    // Entries are an edge times two, plus one for its end rather than its start
+    EdgeIndex index = new EdgeIndex(edges.size);
+    for (int i = 0; i < edges.size; i++) {
+      index.put(edges.from[i], i * 2);
+      index.put(edges.to[i], i * 2 + 1);
+    }
+    boolean[] used = new boolean[edges.size];
+    List<double[]> rings = new ArrayList<>();
+    for (int first = 0; first < edges.size; first++) {
+      if (used[first]) {
+        continue;
+      }
+      OutputLimits.checkInterrupted();
+      RingBuilder ring = new RingBuilder();
+      int edge = first;
+      boolean forward = true;
+      while (true) {
+        used[edge] = true;
+        ring.append(edges, edge, forward);
+        int slot = index.find(forward ? edges.to[edge] : edges.from[edge]);
+        int arrived = forward ? edge * 2 + 1 : edge * 2;
+        int next = -1;
+        if (slot >= 0) {
+          next = index.first(slot) == arrived ? index.second(slot) : index.first(slot);
+        }
+        if (next < 0) {
+          throw new IllegalStateException("Outline edges do not form closed rings");
+        }
+        edge = next / 2;
+        forward = next % 2 == 0;
+        if (edge == first && forward) {
+          break;
+        }
+        if (used[edge]) {
+          throw new IllegalStateException("Outline edges do not form closed rings");
+        }
+      }
+      rings.add(ring.close());
+    }
+    return rings;
+  }
+
+  /**
+   * Reverses rings as needed so that those inside an even number of others, the shells, run
+   * counter-clockwise and the holes clockwise.
+   */
+  static void orient(List<double[]> rings) {
+    STRtree index = new STRtree();
+    for (int i = 0; i < rings.size(); i++) {
+      index.insert(envelope(rings.get(i)), i);
+    }
+    boolean[] shell = new boolean[rings.size()];
+    for (int i = 0; i < rings.size(); i++) {
+      // Outlines never touch, so any vertex of a ring is strictly inside or outside another
+      double[] ring = rings.get(i);
+      int depth = 0;
+      for (Object item : index.query(new Envelope(ring[0], ring[0], ring[1], ring[1]))) {
+        int other = (Integer) item;
+        if (other != i && contains(rings.get(other), ring[0], ring[1])) {
+          depth++;
+        }
+      }
+      shell[i] = depth % 2 == 0;
+    }
+    for (int i = 0; i < rings.size(); i++) {
+      double[] ring = rings.get(i);
+      if ((GeometrySlices.edgeSum(ring) < 0) != shell[i]) {
+        reverse(ring);
+      }
+    }
+  }
+
+  /**
+   * Groups rings into polygons: counter-clockwise rings are shells, and each clockwise ring is a
+   * hole of the smallest shell around it, since shells may sit in the holes of others.
+   */
+  static List<List<double[]>> assemble(List<double[]> rings) {
+    List<List<double[]>> polygons = new ArrayList<>();
+    List<double[]> holes = new ArrayList<>();
+    for (double[] ring : rings) {
+      if (GeometrySlices.edgeSum(ring) < 0) {
+        List<double[]> polygon = new ArrayList<>();
+        polygon.add(ring);
+        polygons.add(polygon);
+      } else {
+        holes.add(ring);
+      }
+    }
+    if (holes.isEmpty()) {
+      return polygons;
+    }
+    if (polygons.size() == 1) {
+      polygons.get(0).addAll(holes);
+      return polygons;
+    }
+
+    double[] areas = new double[polygons.size()];
+    STRtree shells = new STRtree();
+    for (int i = 0; i < polygons.size(); i++) {
+      double[] shell = polygons.get(i).get(0);
+      areas[i] = -GeometrySlices.edgeSum(shell);
+      shells.insert(envelope(shell), i);
+    }
+    for (double[] hole : holes) {
+      double x = hole[0];
+      double y = hole[1];
+      int owner = -1;
+      for (Object item : shells.query(new Envelope(x, x, y, y))) {
+        int i = (Integer) item;
+        if ((owner < 0 || areas[i] < areas[owner]) && contains(polygons.get(i).get(0), x, y)) {
+          owner = i;
+        }
+      }
+      if (owner < 0) {
+        throw new IllegalStateException("Hole outside of every shell");
+      }
+      polygons.get(owner).add(hole);
+    }
+    return polygons;
+  }
+
+  private static Envelope envelope(double[] ring) {
+    Envelope envelope = new Envelope();
+    for (int i = 0; i < ring.length; i += 2) {
+      envelope.expandToInclude(ring[i], ring[i + 1]);
+    }
+    return envelope;
+  }
+
+  /** Even-odd test of a point against a closed packed ring. */
+  private static boolean contains(double[] ring, double x, double y) {
+    boolean inside = false;
+    for (int i = 2; i < ring.length; i += 2) {
+      double x1 = ring[i - 2];
+      double y1 = ring[i - 1];
+      double x2 = ring[i];
+      double y2 = ring[i + 1];
+      if ((y1 > y) != (y2 > y) && x < x1 + (y - y1) * (x2 - x1) / (y2 - y1)) {
+        inside = !inside;
+      }
+    }
+    return inside;
+  }
+
+  private static void reverse(double[] ring) {
+    for (int i = 0, j = ring.length - 2; i < j; i += 2, j -= 2) {
+      double x = ring[i];
+      double y = ring[i + 1];
+      ring[i] = ring[j];
+      ring[i + 1] = ring[j + 1];
+      ring[j] = x;
+      ring[j + 1] = y;
+    }
+  }
+
+  /** A vertex snapped to the grid, packed as latitude steps over longitude steps. */
+  static long vertexKey(double lat, double lng) {
+    return pack(Math.round(lat * STEPS_PER_DEGREE), Math.round(lng * STEPS_PER_DEGREE));
+  }
+
+  private static long pack(long latSteps, long lngSteps) {
+    if (lngSteps >= LNG_TURN / 2) {
+      lngSteps -= LNG_TURN;
+    } else if (lngSteps < -LNG_TURN / 2) {
+      lngSteps += LNG_TURN;
+    }
+    return ((latSteps + LAT_BIAS) << 32) | (lngSteps + LNG_BIAS);
+  }
+
+  /** Outline edges, each with its points packed as x, y (longitude, latitude) pairs. */
+  static final class Edges {
+    private long[] from = new long[16];
+    private long[] to = new long[16];
+    // Offset just past the points of each edge
+    private int[] pointEnds = new int[16];
+    private double[] points = new double[64];
+    private int size;
+
+    void add(List<LatLng> boundary) {
+      int numPoints = boundary.size();
+      ensureCapacity(1, numPoints * 2);
+      int offset = size == 0 ? 0 : pointEnds[size - 1];
+      for (LatLng point : boundary) {
+        points[offset++] = point.lng;
+        points[offset++] = point.lat;
+      }
+      LatLng first = boundary.get(0);
+      LatLng last = boundary.get(numPoints - 1);
+      from[size] = vertexKey(first.lat, first.lng);
+      to[size] = vertexKey(last.lat, last.lng);
+      pointEnds[size] = offset;
+      size++;
+    }
+
+    void addAll(Edges other) {
+      int pointsLength = size == 0 ? 0 : pointEnds[size - 1];
+      int otherPointsLength = other.size == 0 ? 0 : other.pointEnds[other.size - 1];
+      ensureCapacity(other.size, otherPointsLength);
+      System.arraycopy(other.from, 0, from, size, other.size);
+      System.arraycopy(other.to, 0, to, size, other.size);
+      System.arraycopy(other.points, 0, points, pointsLength, otherPointsLength);
+      for (int i = 0; i < other.size; i++) {
+        pointEnds[size + i] = other.pointEnds[i] + pointsLength;
+      }
+      size += other.size;
+    }
+
+    int size() {
+      return size;
+    }
+
+    private void ensureCapacity(int moreEdges, int moreCoordinates) {
+      if (size + moreEdges > from.length) {
+        int capacity = Math.max(from.length * 2, size + moreEdges);
+        from = Arrays.copyOf(from, capacity);
+        to = Arrays.copyOf(to, capacity);
+        pointEnds = Arrays.copyOf(pointEnds, capacity);
+      }
+      int pointsLength = size == 0 ? 0 : pointEnds[size - 1];
+      if (pointsLength + moreCoordinates > points.length) {
+        points = Arrays.copyOf(points, Math.max(points.length * 2, pointsLength + moreCoordinates));
+      }
+    }
+  }
+
+  /** A ring being stitched, packed as x, y pairs. */
+  private static final class RingBuilder {
+    private double[] points = new double[64];
+    private int length;
+
+    /** Appends the points of an edge in the direction given, but the last one. */
+    void append(Edges edges, int edge, boolean forward) {
+      int start = edge == 0 ? 0 : edges.pointEnds[edge - 1];
+      int end = edges.pointEnds[edge];
+      int count = end - start - 2;
+      if (length + count + 2 > points.length) {
+        points = Arrays.copyOf(points, Math.max(points.length * 2, length + count + 2));
+      }
+      if (forward) {
+        System.arraycopy(edges.points, start, points, length, count);
+        length += count;
+      } else {
+        for (int i = end - 2; i > start; i -= 2) {
+          points[length++] = edges.points[i];
+          points[length++] = edges.points[i + 1];
+        }
+      }
+    }
+
+    /** The ring, closed by repeating its first point. */
+    double[] close() {
+      double[] ring = Arrays.copyOf(points, length + 2);
+      ring[length] = ring[0];
+      ring[length + 1] = ring[1];
+      return ring;
+    }
+  }
+
+  /**
+   * Edges at each snapped vertex, by open addressing; zero is never a packed vertex. An outline
+   * passes through a vertex at most once, so a vertex has at most two entries.
+   */
+  private static final class EdgeIndex {
+    private final long[] keys;
+    private final int[] firsts;
+    private final int[] seconds;
+    private final int mask;
+
+    EdgeIndex(int expectedSize) {
+      int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+      keys = new long[capacity];
+      firsts = new int[capacity];
+      seconds = new int[capacity];
+      mask = capacity - 1;
+    }
+
+    void put(long key, int entry) {
+      int slot = slot(key);
+      while (keys[slot] != 0) {
+        if (keys[slot] == key) {
+          if (seconds[slot] >= 0) {
+            throw new IllegalStateException("Outline passes through a vertex twice");
+          }
+          seconds[slot] = entry;
+          return;
+        }
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      firsts[slot] = entry;
+      seconds[slot] = -1;
+    }
+
+    /**
+     * The slot of the vertex, or -1. A vertex rounded differently by two cells lands one step
+     * away, so the steps around it are tried when the vertex itself is missing.
+     */
+    int find(long key) {
+      int slot = get(key);
+      if (slot >= 0) {
+        return slot;
+      }
+      long latSteps = (key >>> 32) - LAT_BIAS;
+      long lngSteps = (key & 0xFFFFFFFFL) - LNG_BIAS;
+      for (int dLat = -1; dLat <= 1; dLat++) {
+        for (int dLng = -1; dLng <= 1; dLng++) {
+          slot = get(pack(latSteps + dLat, lngSteps + dLng));
+          if (slot >= 0) {
+            return slot;
+          }
+        }
+      }
+      return -1;
+    }
+
+    int first(int slot) {
+      return firsts[slot];
+    }
+
+    /** The second entry of the slot, or -1. */
+    int second(int slot) {
+      return seconds[slot];
+    }
+
+    private int get(long key) {
+      int slot = slot(key);
+      while (keys[slot] != 0) {
+        if (keys[slot] == key) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+
+    private int slot(long key) {
+      long hash = key;
+      hash ^= hash >>> 33;
+      hash *= 0xff51afd7ed558ccdL;
+      hash ^= hash >>> 33;
+      return (int) hash & mask;
+    }
+  }
+}
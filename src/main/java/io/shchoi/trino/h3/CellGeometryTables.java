@@ -0,0 +1,369 @@
+package io.shchoi.trino.h3;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.uber.h3core.util.LatLng;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Precomputed centers, boundaries and vertex coordinates for every cell of the low resolutions,
+ * kept in one file per resolution and memory-mapped off-heap.
+ *
+ * <p>Each file holds a fixed-size record per sparse cell ordinal ({@code baseCell * 7^res} plus
+ * the digits read as a base 7 number), so a lookup is a bit check and an offset computation.
+ * Boundaries are stored already serialized, and every value is the one returned by the native
+ * library when the file was generated. Missing files are generated on a background thread, started
+ * by {@link #prepare} when the plugin loads or by the first lookup of a resolution. Lookups return
+ * null for anything the table does not hold, including invalid indexes and resolutions still being
+ * loaded, and callers fall back to the native library.
+ */
+final class CellGeometryTables {
+  static final int MAX_TABLE_RES = 7;
+
+  /** Tables configured through {@link H3Plugin#GEOMETRY_TABLES_DIR_PROPERTY}. */
+  static final CellGeometryTables SHARED = fromSystemProperties();
+
+  private static final long MAGIC = 0x48334745_4F4D5431L;
+  private static final int VERSION = 1;
+
+  // File header: magic, version, resolution, record size, record count
+  private static final int HEADER_SIZE = 32;
+
+  // Record layout. A zero boundary length marks an ordinal that is not a valid cell.
+  private static final int BOUNDARY_LENGTH_OFFSET = 0;
+  private static final int VERTEX_POSITIONS_OFFSET = 2;
+  private static final int CENTER_LAT_OFFSET = 8;
+  private static final int CENTER_LNG_OFFSET = 16;
+  private static final int BOUNDARY_OFFSET = 24;
+  private static final int RECORD_SIZE = 256;
+
+  private static final byte[] EMPTY_RECORD = new byte[RECORD_SIZE];
+
+  /** Vertex position marking a vertex the cell does not own, or that is not on its boundary. */
+  private static final int NO_POSITION = 0xFF;
+
+  private static final int NUM_HEX_VERTS = 6;
+  private static final int NUM_BASE_CELLS = 122;
+
+  /** Offsets within a serialized single-part polygon, see {@link GeometrySlices}. */
+  private static final int POLYGON_COORDINATES_OFFSET = 49;
+
+  private static final int POLYGON_NUM_POINTS_OFFSET = 41;
+
+  private static final int RES_OFFSET = 52;
+  private static final int BASE_CELL_OFFSET = 45;
+  private static final int MODE_OFFSET = 59;
+  private static final int RESERVED_OFFSET = 56;
+  private static final int CELL_MODE = 1;
+  private static final int VERTEX_MODE = 4;
+
+  /** Loads one table at a time, so generation never competes with queries for more than a core. */
+  private static final ExecutorService LOADER =
+      Executors.newSingleThreadExecutor(
+          Thread.ofPlatform().name("h3-geometry-tables").daemon().factory());
+
+  private static final ValueLayout.OfShort SHORT =
+      ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+  private static final ValueLayout.OfInt INT =
+      ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+  private static final ValueLayout.OfLong LONG =
+      ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+  private static final ValueLayout.OfDouble DOUBLE =
+      ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+  private final Path directory;
+  private final int maxRes;
+
+  /**
+   * Load of the table per resolution, completed with {@link MemorySegment#NULL} if it could not be
+   * loaded. Null until the load is started.
+   */
+  private final AtomicReferenceArray<CompletableFuture<MemorySegment>> tables =
+      new AtomicReferenceArray<>(MAX_TABLE_RES + 1);
+
+  /**
+   * @param directory where table files are read from and generated into
+   * @param maxRes highest resolution to serve from tables, or -1 to disable them
+   */
+  CellGeometryTables(Path directory, int maxRes) {
+    if (maxRes < -1 || maxRes > MAX_TABLE_RES) {
+      throw new IllegalArgumentException(
+          "Geometry tables support resolutions up to " + MAX_TABLE_RES + ", got " + maxRes);
+    }
+    this.directory = directory;
+    this.maxRes = maxRes;
+  }
+
+  private static CellGeometryTables fromSystemProperties() {
+    String directory = System.getProperty(H3Plugin.GEOMETRY_TABLES_DIR_PROPERTY);
+    if (directory == null || directory.isEmpty()) {
+      return new CellGeometryTables(null, -1);
+    }
+    return new CellGeometryTables(
+        Path.of(directory), Integer.getInteger(H3Plugin.GEOMETRY_TABLES_MAX_RES_PROPERTY, 5));
+  }
+
+  /** Starts loading every configured resolution in the background. */
+  CompletableFuture<Void> prepare() {
+    CompletableFuture<?>[] loads = new CompletableFuture<?>[maxRes + 1];
+    for (int res = 0; res <= maxRes; res++) {
+      loads[res] = load(res);
+    }
+    return CompletableFuture.allOf(loads);
+  }
+
+  /** Serialized center point of the cell, or null if the tables do not hold it. */
+  Slice cellToLatLng(long cell) {
+    long record = recordOffset(cell, CELL_MODE);
+    MemorySegment table = record < 0 ? null : table(cell);
+    if (table == null || table.get(SHORT, record + BOUNDARY_LENGTH_OFFSET) == 0) {
+      return null;
+    }
+    return GeometrySlices.point(
+        table.get(DOUBLE, record + CENTER_LAT_OFFSET),
+        table.get(DOUBLE, record + CENTER_LNG_OFFSET));
+  }
+
+  /** Serialized boundary polygon of the cell, or null if the tables do not hold it. */
+  Slice cellToBoundary(long cell) {
+    long record = recordOffset(cell, CELL_MODE);
+    MemorySegment table = record < 0 ? null : table(cell);
+    if (table == null) {
+      return null;
+    }
+    int length = table.get(SHORT, record + BOUNDARY_LENGTH_OFFSET);
+    if (length == 0) {
+      return null;
+    }
+    byte[] boundary = new byte[length];
+    MemorySegment.copy(table, JAVA_BYTE, record + BOUNDARY_OFFSET, boundary, 0, length);
+    return Slices.wrappedBuffer(boundary);
+  }
+
+  /** Serialized point of a vertex index, or null if the tables do not hold it. */
+  Slice vertexToLatLng(long vertex) {
+    long record = recordOffset(vertex, VERTEX_MODE);
+    MemorySegment table = record < 0 ? null : table(vertex);
+    int vertexNum = (int) (vertex >>> RESERVED_OFFSET) & 0x7;
+    if (table == null || vertexNum >= NUM_HEX_VERTS) {
+      return null;
+    }
+    int position = table.get(JAVA_BYTE, record + VERTEX_POSITIONS_OFFSET + vertexNum) & 0xFF;
+    if (position == NO_POSITION) {
+      return null;
+    }
+    long coordinate = record + BOUNDARY_OFFSET + POLYGON_COORDINATES_OFFSET + position * 16L;
+    return GeometrySlices.point(
+        table.get(DOUBLE, coordinate + Double.BYTES), table.get(DOUBLE, coordinate));
+  }
+
+  /**
+   * Offset of the record for a cell, or for the owner of a vertex, or -1 if the index cannot have
+   * one: wrong mode, resolution above the tables, base cell out of range, or digits that no valid
+   * index has. Whether the record holds a valid cell is stored in the record itself.
+   */
+  private long recordOffset(long index, int mode) {
+    int res = (int) (index >>> RES_OFFSET) & 0xF;
+    long baseCell = (index >>> BASE_CELL_OFFSET) & 0x7F;
+    if (res > maxRes
+        || index >>> MODE_OFFSET != mode
+        || (mode == CELL_MODE && ((index >>> RESERVED_OFFSET) & 0x7) != 0)
+        || baseCell >= NUM_BASE_CELLS) {
+      return -1;
+    }
+    // Digits past the resolution must all be 7, digits within it never are
+    long unusedDigitsMask = (1L << ((H3Indexer.MAX_RES - res) * 3)) - 1;
+    if ((index & unusedDigitsMask) != unusedDigitsMask) {
+      return -1;
+    }
+    long ordinal = baseCell;
+    for (int r = 1; r <= res; r++) {
+      int digit = (int) (index >>> ((H3Indexer.MAX_RES - r) * 3)) & 0x7;
+      if (digit == 7) {
+        return -1;
+      }
+      ordinal = ordinal * 7 + digit;
+    }
+    return HEADER_SIZE + ordinal * RECORD_SIZE;
+  }
+
+  /**
+   * Mapped table for the resolution of an index accepted by recordOffset, or null if it is not
+   * loaded yet or could not be.
+   */
+  private MemorySegment table(long index) {
+    int res = (int) (index >>> RES_OFFSET) & 0xF;
+    CompletableFuture<MemorySegment> load = tables.get(res);
+    MemorySegment table = (load == null ? load(res) : load).getNow(null);
+    return table == MemorySegment.NULL ? null : table;
+  }
+
+  /** Starts loading the table for a resolution unless it was already started. */
+  private CompletableFuture<MemorySegment> load(int res) {
+    CompletableFuture<MemorySegment> load = new CompletableFuture<>();
+    if (!tables.compareAndSet(res, null, load)) {
+      return tables.get(res);
+    }
+    LOADER.execute(() -> load.complete(loadNow(res)));
+    return load;
+  }
+
+  private static long recordCount(int res) {
+    long count = NUM_BASE_CELLS;
+    for (int r = 1; r <= res; r++) {
+      count *= 7;
+    }
+    return count;
+  }
+
+  /** Maps the table for a resolution, generating its file first if needed. */
+  private MemorySegment loadNow(int res) {
+    Path file = directory.resolve("h3-cell-geometry-r" + res + ".bin");
+    try {
+      MemorySegment table = map(file, res);
+      if (table == null) {
+        Files.createDirectories(directory);
+        generate(file, res);
+        table = map(file, res);
+      }
+      return table == null ? MemorySegment.NULL : table;
+    } catch (IOException | RuntimeException e) {
+      // Serve this resolution from the native library instead
+      return MemorySegment.NULL;
+    }
+  }
+
+  /** Returns null if the file is missing or was not written for this layout and resolution. */
+  private static MemorySegment map(Path file, int res) throws IOException {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(file, READ)) {
+      long count = recordCount(res);
+      if (channel.size() != HEADER_SIZE + count * RECORD_SIZE) {
+        return null;
+      }
+      // The mapping stays valid after the channel is closed
+      MemorySegment table =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.global());
+      if (table.get(LONG, 0) != MAGIC
+          || table.get(INT, 8) != VERSION
+          || table.get(INT, 12) != res
+          || table.get(INT, 16) != RECORD_SIZE
+          || table.get(LONG, 24) != count) {
+        return null;
+      }
+      return table;
+    }
+  }
+
+  /** Writes the table to a temporary file and moves it in place, so readers never see half. */
+  private static void generate(Path file, int res) throws IOException {
+    Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, WRITE)) {
+        long count = recordCount(res);
+        ByteBuffer buffer =
+            ByteBuffer.allocate(RECORD_SIZE * 4096).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(MAGIC).putInt(VERSION).putInt(res).putInt(RECORD_SIZE).putInt(0);
+        buffer.putLong(count);
+        for (long ordinal = 0; ordinal < count; ordinal++) {
+          if (buffer.remaining() < RECORD_SIZE) {
+            writeFully(channel, buffer);
+          }
+          writeRecord(buffer, cellAt(ordinal, res));
+        }
+        writeFully(channel, buffer);
+      }
+      Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static long cellAt(long ordinal, int res) {
+    long cell = ((long) CELL_MODE << MODE_OFFSET) | ((long) res << RES_OFFSET);
+    cell |= (1L << ((H3Indexer.MAX_RES - res) * 3)) - 1;
+    for (int r = res; r >= 1; r--) {
+      cell |= (ordinal % 7) << ((H3Indexer.MAX_RES - r) * 3);
+      ordinal /= 7;
+    }
+    return cell | (ordinal << BASE_CELL_OFFSET);
+  }
+
+  private static void writeRecord(ByteBuffer buffer, long cell) {
+    int record = buffer.position();
+    buffer.put(EMPTY_RECORD);
+    if (!H3Plugin.H3.isValidCell(cell)) {
+      return;
+    }
+
+    List<LatLng> ring = H3Plugin.H3.cellToBoundary(cell);
+    ring.add(ring.get(0));
+    Slice boundary = GeometrySlices.polygon(ring);
+    if (BOUNDARY_OFFSET + boundary.length() > RECORD_SIZE) {
+      throw new IllegalStateException("Boundary does not fit a record: " + Long.toHexString(cell));
+    }
+    buffer.putShort(record + BOUNDARY_LENGTH_OFFSET, (short) boundary.length());
+    buffer.put(record + BOUNDARY_OFFSET, boundary.getBytes());
+
+    LatLng center = H3Plugin.H3.cellToLatLng(cell);
+    buffer.putDouble(record + CENTER_LAT_OFFSET, center.lat);
+    buffer.putDouble(record + CENTER_LNG_OFFSET, center.lng);
+
+    // Only vertexes owned by this cell are addressed through it, so only those are stored
+    for (int vertexNum = 0; vertexNum < NUM_HEX_VERTS; vertexNum++) {
+      buffer.put(record + VERTEX_POSITIONS_OFFSET + vertexNum, (byte) NO_POSITION);
+    }
+    for (long vertex : H3Plugin.H3.cellToVertexes(cell)) {
+      long owner = vertex & ~(0xFL << MODE_OFFSET) & ~(0x7L << RESERVED_OFFSET);
+      owner |= (long) CELL_MODE << MODE_OFFSET;
+      if (vertex == 0 || owner != cell) {
+        continue;
+      }
+      int vertexNum = (int) (vertex >>> RESERVED_OFFSET) & 0x7;
+      int position = boundaryPosition(boundary, H3Plugin.H3.vertexToLatLng(vertex));
+      buffer.put(record + VERTEX_POSITIONS_OFFSET + vertexNum, (byte) position);
+    }
+  }
+
+  /** Index of the boundary coordinate exactly equal to the vertex, or NO_POSITION. */
+  private static int boundaryPosition(Slice boundary, LatLng vertex) {
+    int numPoints = boundary.getInt(POLYGON_NUM_POINTS_OFFSET);
+    for (int i = 0; i < numPoints; i++) {
+      int offset = POLYGON_COORDINATES_OFFSET + i * 16;
+      if (boundary.getDouble(offset) == vertex.lng
+          && boundary.getDouble(offset + Double.BYTES) == vertex.lat) {
+        return i;
+      }
+    }
+    return NO_POSITION;
+  }
+}
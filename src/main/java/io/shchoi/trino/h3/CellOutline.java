@@ -0,0 +1,127 @@
+package io.shchoi.trino.h3;
+
+import io.airlift.slice.Slice;
+import java.util.List;
+
+/**
+ * Dissolves the cells of an aggregation group into their outline. The outline is only traced on
+ * output: the cells at the group's resolution are streamed from the compacted ones into a table of
+ * the cell edges between a cell of the group and one outside it. Adding a cell toggles each of its
+ * edges, so an edge shared with a cell added before cancels. Edges are held undirected, as the
+ * directed edge leaving the lower of their two cells, and which side of an edge is inside is worked
+ * out from how the rings nest once they are built.
+ */
+final class CellOutline {
+  private CellOutline() {}
+
+  /** Serialized multipolygon of the cells, or null if they are invalid or there are none. */
+  static Slice toMultiPolygon(ResolutionCells cells) {
+    long[] compacted = cells.toCells();
+    if (compacted == null) {
+      return null;
+    }
+    Edges outline = new Edges();
+    long[] buffer = new long[1024];
+    for (long cell : compacted) {
+      PolygonCoverage.ChildCells children =
+          new PolygonCoverage.ChildCells(cell, cells.resolution());
+      while (!children.isDone()) {
+        OutputLimits.checkInterrupted();
+        int end = children.fill(buffer, 0);
+        for (int i = 0; i < end; i++) {
+          outline.addCell(buffer[i]);
+        }
+      }
+    }
+    CellDissolver.Edges edges = new CellDissolver.Edges();
+    for (long edge : outline.slots) {
+      if (edge != 0) {
+        edges.add(H3Plugin.H3.directedEdgeToBoundary(edge));
+      }
+    }
+    List<double[]> rings = CellDissolver.stitchUndirected(edges);
+    CellDissolver.orient(rings);
+    return CellDissolver.toMultiPolygon(rings);
+  }
+
+  /**
+   * Undirected edges between a cell added and one not added, in a hash set where adding an edge
+   * already held removes it. The cells added must be distinct.
+   */
+  private static final class Edges {
+    private static final int MIN_CAPACITY = 16;
+
+    // Open addressing with linear probing; zero marks an empty slot, which no directed edge is
+    private long[] slots = new long[MIN_CAPACITY];
+    private int mask = MIN_CAPACITY - 1;
+    private int size;
+
+    void addCell(long cell) {
+      for (long edge : H3Plugin.H3.originToDirectedEdges(cell)) {
+        long neighbor = H3Plugin.H3.getDirectedEdgeDestination(edge);
+        toggle(cell < neighbor ? edge : H3Plugin.H3.cellsToDirectedEdge(neighbor, cell));
+      }
+    }
+
+    private void toggle(long edge) {
+      int slot = slot(edge);
+      while (slots[slot] != 0) {
+        if (slots[slot] == edge) {
+          remove(slot);
+          return;
+        }
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = edge;
+      size++;
+      if (size * 2 > slots.length) {
+        resize(slots.length * 2);
+      }
+    }
+
+    /** Empties the slot, moving later entries of the probe sequence back so they stay reachable. */
+    private void remove(int slot) {
+      int hole = slot;
+      int next = (hole + 1) & mask;
+      while (slots[next] != 0) {
+        int home = slot(slots[next]);
+        // The entry may fill the hole unless its home lies between the hole and itself
+        if (((next - home) & mask) >= ((next - hole) & mask)) {
+          slots[hole] = slots[next];
+          hole = next;
+        }
+        next = (next + 1) & mask;
+      }
+      slots[hole] = 0;
+      size--;
+      // Shrink as edges cancel, so the table follows the outline
+      if (slots.length > MIN_CAPACITY && size * 8 < slots.length) {
+        resize(slots.length / 2);
+      }
+    }
+
+    private void resize(int capacity) {
+      long[] previous = slots;
+      slots = new long[capacity];
+      mask = capacity - 1;
+      for (long edge : previous) {
+        if (edge != 0) {
+          int slot = slot(edge);
+          while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          slots[slot] = edge;
+        }
+      }
+    }
+
+    private int slot(long edge) {
+      // Murmur3 finalizer, since H3 indexes differ mostly in their middle bits
+      long hash = edge;
+      hash ^= hash >>> 33;
+      hash *= 0xff51afd7ed558ccdL;
+      hash ^= hash >>> 33;
+      return (int) hash & mask;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
+
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AggregationFunction;
+import io.trino.spi.function.AggregationState;
+import io.trino.spi.function.CombineFunction;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.InputFunction;
+import io.trino.spi.function.OutputFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+
+/**
+ * Builds a cell set from the cells of a group, compacting them as they arrive like {@link
+ * CompactAggregation}, so coverages of millions of cells never pass through an array. Returns null
+ * if any cell is invalid, or if the group has no cells.
+ */
+@AggregationFunction("h3_cellset_agg")
+@Description("Encode the cells of a group as a compacted cell set")
+public final class CellSetAggregation {
+  private CellSetAggregation() {}
+
+  @InputFunction
+  public static void input(
+      @AggregationState CellCompactorState state, @SqlType(StandardTypes.BIGINT) long cell) {
+    CompactAggregation.input(state, cell);
+  }
+
+  @CombineFunction
+  public static void combine(
+      @AggregationState CellCompactorState state,
+      @AggregationState CellCompactorState otherState) {
+    CompactAggregation.combine(state, otherState);
+  }
+
+  @OutputFunction(StandardTypes.VARBINARY)
+  public static void output(@AggregationState CellCompactorState state, BlockBuilder out) {
+    CellCompactor compactor = state.get();
+    long[] cells = compactor == null ? null : compactor.toCells();
+    if (cells == null) {
+      out.appendNull();
+      return;
+    }
+    VARBINARY.writeSlice(out, EncodedCellSet.fromCells(cells));
+  }
+}
@@ -0,0 +1,109 @@
+package io.shchoi.trino.h3;
+
+import io.airlift.slice.Slice;
+import io.trino.spi.TrinoException;
+import io.trino.spi.block.Block;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.ScalarFunction;
+import io.trino.spi.function.SqlNullable;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+
+/**
+ * Functions on cell sets, compacted cells encoded as VARBINARY by {@link EncodedCellSet}, and on
+ * the approximate sets of {@link CellBloomFilter}.
+ */
+public final class CellSetFunctions {
+  private CellSetFunctions() {}
+
+  @ScalarFunction(value = "h3_cellset")
+  @Description("Encode an array of cells as a compacted cell set")
+  @SqlNullable
+  @SqlType(StandardTypes.VARBINARY)
+  public static Slice cellset(@SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block cellsBlock) {
+    try {
+      return EncodedCellSet.fromCells(H3Plugin.longBlockToArray(cellsBlock));
+    } catch (TrinoException e) {
+      throw e;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  @ScalarFunction(value = "h3_cellset_union")
+  @Description("Cell set covering the area of either cell set")
+  @SqlNullable
+  @SqlType(StandardTypes.VARBINARY)
+  public static Slice cellsetUnion(
+      @SqlType(StandardTypes.VARBINARY) Slice first,
+      @SqlType(StandardTypes.VARBINARY) Slice second) {
+    try {
+      return EncodedCellSet.fromCells(
+          CellSets.union(EncodedCellSet.toCells(first), EncodedCellSet.toCells(second)));
+    } catch (TrinoException e) {
+      throw e;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  @ScalarFunction(value = "h3_cellset_to_cells")
+  @Description("Compacted cells of a cell set")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block cellsetToCells(@SqlType(StandardTypes.VARBINARY) Slice set) {
+    try {
+      long size = EncodedCellSet.size(set);
+      OutputLimits.checkCellCount(size, "h3_cellset_to_cells");
+      return H3Plugin.longArrayToBlock(EncodedCellSet.toCells(set));
+    } catch (TrinoException e) {
+      throw e;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  @ScalarFunction(value = "h3_cellset_size")
+  @Description("Number of compacted cells in a cell set")
+  @SqlNullable
+  @SqlType(StandardTypes.BIGINT)
+  public static Long cellsetSize(@SqlType(StandardTypes.VARBINARY) Slice set) {
+    try {
+      return EncodedCellSet.size(set);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  @ScalarFunction(value = "h3_cellset_contains")
+  @Description("Whether a cell lies inside a cell of a cell set")
+  @SqlNullable
+  @SqlType(StandardTypes.BOOLEAN)
+  public static Boolean cellsetContains(
+      @SqlType(StandardTypes.VARBINARY) Slice set, @SqlType(StandardTypes.BIGINT) long cell) {
+    if (!H3Validation.isValidCell(cell)) {
+      return null;
+    }
+    try {
+      return EncodedCellSet.contains(set, cell);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  @ScalarFunction(value = "h3_bloom_might_contain")
+  @Description("Whether a cell may be in a filter built by h3_bloom_agg")
+  @SqlNullable
+  @SqlType(StandardTypes.BOOLEAN)
+  public static Boolean bloomMightContain(
+      @SqlType(StandardTypes.VARBINARY) Slice filter, @SqlType(StandardTypes.BIGINT) long cell) {
+    if (!H3Validation.isValidCell(cell)) {
+      return null;
+    }
+    try {
+      return CellBloomFilter.mightContain(filter, cell);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package io.shchoi.trino.h3;
+
+import java.util.Arrays;
+
+/**
+ * Set operations on arrays of cells of any resolutions, taken as the areas they cover. Both sides
+ * are compacted first, then walked together in key order: the key range of a compacted cell either
+ * holds the range of a cell of the other side, lies inside it, or does not meet it, so each step
+ * only compares the current key of each side. Work follows the compacted sizes, and only the cells
+ * of one side that hold cells of the other are ever split, one resolution at a time. Results are
+ * compacted and in key order. Methods throw if a cell is invalid.
+ */
+final class CellSets {
+  private static final int MAX_RES = H3Indexer.MAX_RES;
+
+  private CellSets() {}
+
+  /** Cells covering the area of either array. */
+  static long[] union(long[] first, long[] second) {
+    long[] cells = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, cells, first.length, second.length);
+    return CellCompactor.compactCells(cells);
+  }
+
+  /** Cells covering the area of both arrays. */
+  static long[] intersect(long[] first, long[] second) {
+    long[] a = CellCompactor.compactKeys(first);
+    long[] b = CellCompactor.compactKeys(second);
+    KeyList result = new KeyList(Math.min(a.length, b.length));
+    int i = 0;
+    int j = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < CellCompactor.descendantsStart(b[j])) {
+        i++;
+      } else if (b[j] < CellCompactor.descendantsStart(a[i])) {
+        j++;
+      } else if (a[i] <= b[j]) {
+        // The ranges meet, so the lower key is the cell inside the other
+        result.add(a[i++]);
+      } else {
+        result.add(b[j++]);
+      }
+    }
+    return result.toCells();
+  }
+
+  /** Cells covering the area of the first array outside the second. */
+  static long[] except(long[] first, long[] second) {
+    long[] a = CellCompactor.compactKeys(first);
+    long[] b = CellCompactor.compactKeys(second);
+    KeyList result = new KeyList(a.length);
+    int j = 0;
+    for (long key : a) {
+      long start = CellCompactor.descendantsStart(key);
+      while (j < b.length && b[j] < start) {
+        j++;
+      }
+      if (j == b.length || CellCompactor.descendantsStart(b[j]) > key) {
+        result.add(key);
+      } else if (b[j] < key) {
+        int end = j;
+        while (end < b.length && b[end] <= key) {
+          end++;
+        }
+        subtract(key, b, j, end, result);
+        j = end;
+      }
+      // Otherwise the cell lies inside a cell of the second array
+    }
+    return result.toCells();
+  }
+
+  /** Whether every cell of the second array lies inside the area of the first. */
+  static boolean contains(long[] first, long[] second) {
+    long[] a = CellCompactor.compactKeys(first);
+    long[] b = CellCompactor.compactKeys(second);
+    int i = 0;
+    for (long key : b) {
+      while (i < a.length && a[i] < key) {
+        i++;
+      }
+      if (i == a.length || CellCompactor.descendantsStart(a[i]) > key) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds the children of the key's cell outside the cells of the range of keys, all of which lie
+   * strictly inside it, splitting again the children that hold some of them.
+   */
+  private static void subtract(long key, long[] b, int from, int to, KeyList result) {
+    OutputLimits.checkInterrupted();
+    int shift = (MAX_RES - CellCompactor.keyResolution(key) - 1) * 3;
+    boolean pentagon = CellCompactor.isPentagonKey(key);
+    int next = from;
+    for (long digit = 0; digit < 7; digit++) {
+      if (pentagon && digit == 1) {
+        // Pentagons have no child in the deleted K axes subsequence
+        continue;
+      }
+      long child = key & ~(0x7L << shift) | (digit << shift);
+      int end = next;
+      while (end < to && b[end] <= child) {
+        end++;
+      }
+      if (end == next) {
+        result.add(child);
+      } else if (b[end - 1] != child) {
+        subtract(child, b, next, end, result);
+      }
+      next = end;
+    }
+  }
+
+  /** Growable array of keys, turned into cells once complete. */
+  private static final class KeyList {
+    private long[] keys;
+    private int size;
+
+    KeyList(int capacity) {
+      keys = new long[Math.max(capacity, 16)];
+    }
+
+    void add(long key) {
+      if (size == keys.length) {
+        keys = Arrays.copyOf(keys, size * 2);
+      }
+      keys[size++] = key;
+    }
+
+    long[] toCells() {
+      long[] cells = new long[size];
+      for (int i = 0; i < size; i++) {
+        cells[i] = CellCompactor.keyToCell(keys[i]);
+      }
+      return cells;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.spi.type.BigintType.BIGINT;
+
+import io.trino.spi.block.ArrayBlockBuilder;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AggregationFunction;
+import io.trino.spi.function.AggregationState;
+import io.trino.spi.function.CombineFunction;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.InputFunction;
+import io.trino.spi.function.OutputFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+
+/**
+ * Compacts the cells of a group as they arrive, so a group never holds more than a small multiple
+ * of its compacted cells. Unlike {@code h3_compact_cells(array_agg(cell))}, duplicates and cells
+ * inside another cell of the group are allowed. Returns null if any cell is invalid, or if the
+ * group has no cells.
+ */
+@AggregationFunction("h3_compact_agg")
+@Description("Compact the cells of a group to coarser resolutions")
+public final class CompactAggregation {
+  private CompactAggregation() {}
+
+  @InputFunction
+  public static void input(
+      @AggregationState CellCompactorState state, @SqlType(StandardTypes.BIGINT) long cell) {
+    CellCompactor compactor = state.get();
+    if (compactor == null) {
+      compactor = new CellCompactor();
+      state.set(compactor);
+    }
+    long sizeBefore = compactor.getEstimatedSize();
+    compactor.add(cell);
+    state.addMemoryUsage(compactor.getEstimatedSize() - sizeBefore);
+  }
+
+  @CombineFunction
+  public static void combine(
+      @AggregationState CellCompactorState state,
+      @AggregationState CellCompactorState otherState) {
+    CellCompactor other = otherState.get();
+    if (other == null) {
+      return;
+    }
+    CellCompactor compactor = state.get();
+    if (compactor == null) {
+      state.set(other);
+      return;
+    }
+    long sizeBefore = compactor.getEstimatedSize();
+    compactor.addAll(other);
+    state.addMemoryUsage(compactor.getEstimatedSize() - sizeBefore);
+  }
+
+  @OutputFunction(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static void output(@AggregationState CellCompactorState state, BlockBuilder out) {
+    CellCompactor compactor = state.get();
+    long[] cells = compactor == null ? null : compactor.toCells();
+    if (cells == null) {
+      out.appendNull();
+      return;
+    }
+    ((ArrayBlockBuilder) out)
+        .buildEntry(
+            elementBuilder -> {
+              for (long cell : cells) {
+                BIGINT.writeLong(elementBuilder, cell);
+              }
+            });
+  }
+}
@@ -33,6 +33,9 @@ public final class DirectedEdgeFunctions {
   @SqlType(StandardTypes.BOOLEAN)
   public static Boolean areNeighborCells(
       @SqlType(StandardTypes.BIGINT) long a, @SqlType(StandardTypes.BIGINT) long b) {
+    if (!H3Validation.isValidCell(a) || !H3Validation.isValidCell(b)) {
+      return null;
+    }
     try {
       return H3Plugin.H3.areNeighborCells(a, b);
     } catch (Exception e) {
@@ -58,6 +61,9 @@ public final class DirectedEdgeFunctions {
   @SqlType(StandardTypes.BIGINT)
   public static Long cellsToDirectedEdge(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.BIGINT) long destination) {
+    if (!H3Validation.isValidCell(origin) || !H3Validation.isValidCell(destination)) {
+      return null;
+    }
     try {
       return H3Plugin.H3.cellsToDirectedEdge(origin, destination);
     } catch (Exception e) {
@@ -70,6 +76,9 @@ public final class DirectedEdgeFunctions {
   @SqlNullable
   @SqlType(StandardTypes.BIGINT)
   public static Long getDirectedEdgeOrigin(@SqlType(StandardTypes.BIGINT) long h3) {
+    if (!H3Validation.isValidDirectedEdge(h3)) {
+      return null;
+    }
     try {
       return H3Plugin.H3.getDirectedEdgeOrigin(h3);
     } catch (Exception e) {
@@ -82,6 +91,9 @@ public final class DirectedEdgeFunctions {
   @SqlNullable
   @SqlType(StandardTypes.BIGINT)
   public static Long getDirectedEdgeDestination(@SqlType(StandardTypes.BIGINT) long h3) {
+    if (!H3Validation.isValidDirectedEdge(h3)) {
+      return null;
+    }
     try {
       return H3Plugin.H3.getDirectedEdgeDestination(h3);
     } catch (Exception e) {
@@ -94,6 +106,9 @@ public final class DirectedEdgeFunctions {
   @SqlNullable
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block directedEdgeToCells(@SqlType(StandardTypes.BIGINT) long h3) {
+    if (!H3Validation.isValidDirectedEdge(h3)) {
+      return null;
+    }
     try {
       return H3Plugin.longListToBlock(H3Plugin.H3.directedEdgeToCells(h3));
     } catch (Exception e) {
@@ -118,6 +133,9 @@ public final class DirectedEdgeFunctions {
   @SqlNullable
   @SqlType(StandardTypes.GEOMETRY)
   public static Slice directedEdgeToBoundary(@SqlType(StandardTypes.BIGINT) long h3) {
+    if (!H3Validation.isValidDirectedEdge(h3)) {
+      return null;
+    }
     try {
       return H3Plugin.latLngListToGeometry(H3Plugin.H3.directedEdgeToBoundary(h3), LINE_STRING);
     } catch (Exception e) {
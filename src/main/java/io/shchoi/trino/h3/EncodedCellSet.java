@@ -0,0 +1,407 @@
+package io.shchoi.trino.h3;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Compacted cells packed into a VARBINARY value, taking a few bytes per cell where an array takes
+ * eight. Cells are held as {@link CellCompactor} keys, sorted, in one block per base cell:
+ *
+ * <ul>
+ *   <li>a version byte, then the number of cells as a varint;
+ *   <li>for each base cell present, in order: the base cell as a byte, then its number of cells
+ *       and the byte length of the rest of its block as varints;
+ *   <li>a skip index: for each run of {@value #RUN_CELLS} keys after the first run, the offset of
+ *       its first key from the start of the deltas, as an int;
+ *   <li>then the 45 digit bits of each key, unused digits being 7, as a varint delta from the
+ *       previous key of its run, the first key of each run from zero.
+ * </ul>
+ *
+ * <p>Membership probes decode a set once per driver thread and binary search it while rows keep
+ * probing the same set, as in a join against a broadcast coverage. Sets with more than {@link
+ * #MAX_CACHED_CELLS} cells are probed in place instead: the probe skips to the block of the cell's
+ * base cell, binary searches the first keys of its runs, and decodes a single run.
+ */
+final class EncodedCellSet {
+  /**
+   * Largest set kept decoded. Each thread keeps at most one set, holding 8 bytes per key and a
+   * copy of the encoded value, at most 7 bytes per key: under 1 MB per driver thread.
+   */
+  static final int MAX_CACHED_CELLS = 1 << 16;
+
+  /** Keys per run of a block, each run starting from an absolute key listed in the skip index. */
+  static final int RUN_CELLS = 64;
+
+  private static final byte VERSION = 1;
+  private static final int NUM_BASE_CELLS = 122;
+  private static final int BASE_CELL_OFFSET = 45;
+  private static final long DIGITS_MASK = (1L << BASE_CELL_OFFSET) - 1;
+  // Mode bits of a cell, which every key keeps
+  private static final long KEY_MODE = 1L << 59;
+
+  private static final ThreadLocal<Decoded> LAST_DECODED = new ThreadLocal<>();
+
+  private EncodedCellSet() {}
+
+  /** Compacts the cells and encodes them. Throws if a cell is invalid. */
+  static Slice fromCells(long[] cells) {
+    return encode(CellCompactor.compactKeys(cells));
+  }
+
+  /** Encodes sorted keys of compacted cells. */
+  static Slice encode(long[] keys) {
+    Writer writer = new Writer(16 + keys.length * 3);
+    writer.writeByte(VERSION);
+    writer.writeVarint(keys.length);
+    int from = 0;
+    while (from < keys.length) {
+      int baseCell = H3Validation.getBaseCell(keys[from]);
+      int to = from;
+      while (to < keys.length && H3Validation.getBaseCell(keys[to]) == baseCell) {
+        to++;
+      }
+      int[] runOffsets = new int[runCount(to - from) - 1];
+      long length = 0;
+      long previous = 0;
+      for (int i = from; i < to; i++) {
+        if ((i - from) % RUN_CELLS == 0) {
+          if (i > from) {
+            runOffsets[(i - from) / RUN_CELLS - 1] = Math.toIntExact(length);
+          }
+          previous = 0;
+        }
+        long digits = keys[i] & DIGITS_MASK;
+        length += varintSize(digits - previous);
+        previous = digits;
+      }
+      writer.writeByte(baseCell);
+      writer.writeVarint(to - from);
+      writer.writeVarint((long) runOffsets.length * Integer.BYTES + length);
+      for (int offset : runOffsets) {
+        writer.writeInt(offset);
+      }
+      for (int i = from; i < to; i++) {
+        if ((i - from) % RUN_CELLS == 0) {
+          previous = 0;
+        }
+        long digits = keys[i] & DIGITS_MASK;
+        writer.writeVarint(digits - previous);
+        previous = digits;
+      }
+      from = to;
+    }
+    return writer.toSlice();
+  }
+
+  /** Cells of an encoded set, in key order. */
+  static long[] toCells(Slice set) {
+    long[] keys = decodeKeys(set);
+    long[] cells = new long[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      cells[i] = CellCompactor.keyToCell(keys[i]);
+    }
+    return cells;
+  }
+
+  /** Number of cells of an encoded set. */
+  static long size(Slice set) {
+    Reader reader = new Reader(set);
+    reader.readHeader();
+    return reader.readVarint();
+  }
+
+  /** Sorted keys of an encoded set. Throws if the value is not an encoded set. */
+  static long[] decodeKeys(Slice set) {
+    Reader reader = new Reader(set);
+    reader.readHeader();
+    long count = reader.readVarint();
+    if (count > set.length()) {
+      throw invalid();
+    }
+    long[] keys = new long[(int) count];
+    int size = 0;
+    int previousBaseCell = -1;
+    while (reader.hasMore()) {
+      int baseCell = reader.readBaseCell(previousBaseCell);
+      long blockCount = reader.readVarint();
+      long length = reader.readVarint();
+      long end = reader.position + length;
+      if (blockCount == 0 || blockCount > count - size || length > set.length()) {
+        throw invalid();
+      }
+      long prefix = KEY_MODE | ((long) baseCell << BASE_CELL_OFFSET);
+      int runsStart = reader.position;
+      int deltasStart = runsStart + (runCount(blockCount) - 1) * Integer.BYTES;
+      reader.skip(deltasStart - runsStart);
+      long digits = 0;
+      for (long i = 0; i < blockCount; i++) {
+        long runStart = digits;
+        if (i % RUN_CELLS == 0 && i > 0) {
+          int runOffset = set.getInt(runsStart + (int) (i / RUN_CELLS - 1) * Integer.BYTES);
+          if (runOffset != reader.position - deltasStart) {
+            throw invalid();
+          }
+          runStart = 0;
+        }
+        long delta = reader.readVarint();
+        if (delta < 0 || delta > DIGITS_MASK - runStart || (i > 0 && runStart + delta <= digits)) {
+          throw invalid();
+        }
+        digits = runStart + delta;
+        long key = prefix | digits;
+        if (!H3Validation.isValidCell(CellCompactor.keyToCell(key))) {
+          throw invalid();
+        }
+        keys[size++] = key;
+      }
+      if (reader.position != end) {
+        throw invalid();
+      }
+      previousBaseCell = baseCell;
+    }
+    if (size != count) {
+      throw invalid();
+    }
+    return keys;
+  }
+
+  /**
+   * Whether the cell lies inside a cell of the encoded set. Throws if the value is not an encoded
+   * set.
+   */
+  static boolean contains(Slice set, long cell) {
+    long key = CellCompactor.cellToKey(cell);
+    long[] keys = cachedKeys(set);
+    if (keys == null) {
+      return containsEncoded(set, key);
+    }
+    int index = Arrays.binarySearch(keys, key);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    // The first key from the cell's own is the only one whose range may hold it
+    return index < keys.length && CellCompactor.descendantsStart(keys[index]) <= key;
+  }
+
+  /** Decoded keys of the set, from the thread's last probe if it was the same set. */
+  private static long[] cachedKeys(Slice set) {
+    Decoded last = LAST_DECODED.get();
+    if (last != null && last.matches(set)) {
+      return last.keys;
+    }
+    if (size(set) > MAX_CACHED_CELLS) {
+      return null;
+    }
+    long[] keys = decodeKeys(set);
+    LAST_DECODED.set(new Decoded(set, keys));
+    return keys;
+  }
+
+  private static boolean containsEncoded(Slice set, long key) {
+    int target = H3Validation.getBaseCell(key);
+    Reader reader = new Reader(set);
+    reader.readHeader();
+    reader.readVarint();
+    int previousBaseCell = -1;
+    while (reader.hasMore()) {
+      int baseCell = reader.readBaseCell(previousBaseCell);
+      long blockCount = reader.readVarint();
+      long length = reader.readVarint();
+      if (baseCell > target) {
+        return false;
+      }
+      if (baseCell < target) {
+        reader.skip(length);
+        previousBaseCell = baseCell;
+        continue;
+      }
+      return containsInBlock(reader, baseCell, blockCount, key);
+    }
+    return false;
+  }
+
+  /**
+   * Whether the key lies inside a key of the block the reader is at: binary searches the first
+   * keys of the runs for the last one not above the key, then decodes that run and the first key
+   * of the next.
+   */
+  private static boolean containsInBlock(Reader reader, int baseCell, long blockCount, long key) {
+    long prefix = KEY_MODE | ((long) baseCell << BASE_CELL_OFFSET);
+    long target = key & DIGITS_MASK;
+    int runs = runCount(blockCount);
+    int runsStart = reader.position;
+    int deltasStart = runsStart + (runs - 1) * Integer.BYTES;
+    int low = 0;
+    int high = runs - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      reader.seek(deltasStart, reader.runOffset(runsStart, mid));
+      if (reader.readVarint() <= target) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    reader.seek(deltasStart, reader.runOffset(runsStart, low));
+    long digits = 0;
+    for (long i = (long) low * RUN_CELLS; i < blockCount; i++) {
+      if (i % RUN_CELLS == 0) {
+        digits = 0;
+        reader.seek(deltasStart, reader.runOffset(runsStart, (int) (i / RUN_CELLS)));
+      }
+      digits += reader.readVarint();
+      long candidate = prefix | digits;
+      if (candidate >= key) {
+        return CellCompactor.descendantsStart(candidate) <= key;
+      }
+    }
+    return false;
+  }
+
+  /** Number of runs of a block, at least one. */
+  private static int runCount(long blockCount) {
+    return (int) Math.max(1, (blockCount + RUN_CELLS - 1) / RUN_CELLS);
+  }
+
+  private static int varintSize(long value) {
+    return Math.max(1, (70 - Long.numberOfLeadingZeros(value)) / 7);
+  }
+
+  private static IllegalArgumentException invalid() {
+    return new IllegalArgumentException("Invalid cell set");
+  }
+
+  /**
+   * A set decoded by this thread. Values read from the same block share its byte array, so a
+   * repeat is usually recognized without comparing bytes; the array is only weakly held so the
+   * entry does not pin the page it came from.
+   */
+  private static final class Decoded {
+    private final WeakReference<byte[]> array;
+    private final int offset;
+    private final Slice bytes;
+    private final long[] keys;
+
+    Decoded(Slice set, long[] keys) {
+      this.array = new WeakReference<>(set.byteArray());
+      this.offset = set.byteArrayOffset();
+      this.bytes = set.copy();
+      this.keys = keys;
+    }
+
+    boolean matches(Slice set) {
+      if (set.length() != bytes.length()) {
+        return false;
+      }
+      return (array.get() == set.byteArray() && offset == set.byteArrayOffset())
+          || bytes.equals(set);
+    }
+  }
+
+  private static final class Reader {
+    private final Slice slice;
+    private int position;
+
+    Reader(Slice slice) {
+      this.slice = slice;
+    }
+
+    void readHeader() {
+      if (slice.length() == 0 || slice.getByte(0) != VERSION) {
+        throw invalid();
+      }
+      position = 1;
+    }
+
+    boolean hasMore() {
+      return position < slice.length();
+    }
+
+    /** Reads a base cell, which must come after the previous one. */
+    int readBaseCell(int previous) {
+      int baseCell = slice.getByte(position++) & 0xFF;
+      if (baseCell <= previous || baseCell >= NUM_BASE_CELLS) {
+        throw invalid();
+      }
+      return baseCell;
+    }
+
+    long readVarint() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        if (position >= slice.length()) {
+          throw invalid();
+        }
+        byte next = slice.getByte(position++);
+        value |= (long) (next & 0x7F) << shift;
+        if (next >= 0) {
+          return value;
+        }
+      }
+      throw invalid();
+    }
+
+    /** Byte offset of a run from the start of the deltas, the first run being at zero. */
+    int runOffset(int runsStart, int run) {
+      if (run == 0) {
+        return 0;
+      }
+      int offsetPosition = runsStart + (run - 1) * Integer.BYTES;
+      if (offsetPosition > slice.length() - Integer.BYTES) {
+        throw invalid();
+      }
+      return slice.getInt(offsetPosition);
+    }
+
+    void seek(int deltasStart, int offset) {
+      if (offset < 0 || offset >= slice.length() - deltasStart) {
+        throw invalid();
+      }
+      position = deltasStart + offset;
+    }
+
+    void skip(long length) {
+      if (length > slice.length() - position) {
+        throw invalid();
+      }
+      position += (int) length;
+    }
+  }
+
+  private static final class Writer {
+    private byte[] bytes;
+    private int size;
+
+    Writer(int capacity) {
+      bytes = new byte[capacity];
+    }
+
+    void writeByte(int value) {
+      if (size == bytes.length) {
+        bytes = Arrays.copyOf(bytes, size * 2);
+      }
+      bytes[size++] = (byte) value;
+    }
+
+    /** Writes an int in the byte order {@link Slice#getInt} reads. */
+    void writeInt(int value) {
+      for (int i = 0; i < Integer.BYTES; i++) {
+        writeByte(value >>> (i * 8));
+      }
+    }
+
+    void writeVarint(long value) {
+      while ((value & ~0x7FL) != 0) {
+        writeByte((int) (value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      writeByte((int) value);
+    }
+
+    Slice toSlice() {
+      return Slices.wrappedBuffer(bytes, 0, size);
+    }
+  }
+}
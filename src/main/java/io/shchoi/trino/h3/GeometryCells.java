@@ -0,0 +1,199 @@
+package io.shchoi.trino.h3;
+
+import com.uber.h3core.LengthUnit;
+import com.uber.h3core.util.LatLng;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Cells of any geometry: points are indexed, lines are traced cell by cell and polygons are
+ * polyfilled by center, part by part for multi-part geometries and collections. Cells come back
+ * once each, in the order their parts were given.
+ */
+final class GeometryCells {
+  private static final double KM_PER_DEGREE = 111.195;
+
+  // Segments longer than this many cell edges are split even when both ends are in one cell
+  private static final double MAX_SEGMENT_EDGES = 16;
+
+  // A crossing this close to either end of the shared edge, as a fraction of the edge, may clip a
+  // third cell at the corner, so the segment is split instead
+  private static final double CORNER_MARGIN = 0.05;
+
+  // Below this many degrees, a segment is not split any further
+  private static final double MIN_STEP = 1e-9;
+
+  private GeometryCells() {}
+
+  /**
+   * Cells of the geometry at the resolution. With {@link ParallelPolyfill#PARALLELISM} above 1,
+   * the parts of a multi-part geometry are converted on its pool; if the calling thread is
+   * interrupted while waiting, parts not yet started are skipped and the call throws. Throws as
+   * soon as the distinct cells of the parts added so far pass the output cap.
+   */
+  static long[] geometryToCells(Geometry geometry, int res) {
+    List<Geometry> parts = new ArrayList<>();
+    flatten(geometry, parts);
+    LongHashSet distinct = null;
+    if (ParallelPolyfill.PARALLELISM > 1 && parts.size() > 1) {
+      List<ForkJoinTask<long[]>> tasks = new ArrayList<>(parts.size());
+      for (Geometry part : parts) {
+        tasks.add(ParallelPolyfill.pool().submit(() -> partToCells(part, res)));
+      }
+      try {
+        for (ForkJoinTask<long[]> task : tasks) {
+          distinct = addPart(distinct, task.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw OutputLimits.interrupted();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException cause) {
+          throw cause;
+        }
+        throw new RuntimeException(e.getCause());
+      } finally {
+        // Leaves finished parts alone and skips the rest once the call fails
+        for (ForkJoinTask<long[]> task : tasks) {
+          task.cancel(true);
+        }
+      }
+    } else {
+      for (Geometry part : parts) {
+        distinct = addPart(distinct, partToCells(part, res));
+      }
+    }
+    if (distinct == null) {
+      return new long[0];
+    }
+    long[] result = new long[distinct.size()];
+    System.arraycopy(distinct.values(), 0, result, 0, result.length);
+    return result;
+  }
+
+  /**
+   * Adds the cells of a part to those of the parts before, throwing as soon as they pass the cap
+   * rather than after the whole part is in.
+   */
+  private static LongHashSet addPart(LongHashSet distinct, long[] cells) {
+    if (distinct == null) {
+      distinct = new LongHashSet(cells.length);
+    }
+    for (long cell : cells) {
+      if (cell != 0 && distinct.add(cell)) {
+        OutputLimits.checkCellCount(distinct.size(), "h3_geometry_to_cells");
+      }
+    }
+    return distinct;
+  }
+
+  private static void flatten(Geometry geometry, List<Geometry> parts) {
+    if (geometry instanceof Point
+        || geometry instanceof LineString
+        || geometry instanceof Polygon) {
+      if (!geometry.isEmpty()) {
+        parts.add(geometry);
+      }
+      return;
+    }
+    for (int i = 0; i < geometry.getNumGeometries(); i++) {
+      flatten(geometry.getGeometryN(i), parts);
+    }
+  }
+
+  /** Cells of a point, line or polygon, possibly with zero slots and repeats. */
+  private static long[] partToCells(Geometry part, int res) {
+    if (part instanceof Point point) {
+      return new long[] {H3Plugin.latLngToCell(point.getY(), point.getX(), res)};
+    }
+    if (part instanceof LineString line) {
+      return lineToCells(line, res);
+    }
+    return PolygonCoverage.polyfill((Polygon) part, res, "h3_geometry_to_cells");
+  }
+
+  /**
+   * Cells crossed by the line, found by indexing its vertexes and splitting each segment, as drawn
+   * in longitude and latitude, until its ends are in one cell or cross straight from one cell into
+   * its neighbor.
+   */
+  static long[] lineToCells(LineString line, int res) {
+    double maxStep =
+        MAX_SEGMENT_EDGES * H3Plugin.H3.getHexagonEdgeLengthAvg(res, LengthUnit.km) / KM_PER_DEGREE;
+    CoordinateSequence coordinates = line.getCoordinateSequence();
+    LongHashSet cells = new LongHashSet(coordinates.size() * 4);
+    Coordinate previous = coordinates.getCoordinate(0);
+    long previousCell = H3Plugin.latLngToCell(previous.y, previous.x, res);
+    cells.add(previousCell);
+    for (int i = 1; i < coordinates.size(); i++) {
+      Coordinate next = coordinates.getCoordinate(i);
+      long nextCell = H3Plugin.latLngToCell(next.y, next.x, res);
+      addSegment(cells, previous, previousCell, next, nextCell, res, maxStep);
+      previous = next;
+      previousCell = nextCell;
+    }
+    long[] result = new long[cells.size()];
+    System.arraycopy(cells.values(), 0, result, 0, result.length);
+    return result;
+  }
+
+  private static void addSegment(
+      LongHashSet cells,
+      Coordinate from,
+      long fromCell,
+      Coordinate to,
+      long toCell,
+      int res,
+      double maxStep) {
+    double length = Math.hypot(to.x - from.x, to.y - from.y);
+    if (fromCell == toCell && length <= maxStep) {
+      return;
+    }
+    if (length < MIN_STEP) {
+      cells.add(toCell);
+      return;
+    }
+    if (length <= maxStep
+        && H3Plugin.H3.areNeighborCells(fromCell, toCell)
+        && crossesSharedEdge(from, to, fromCell, toCell)) {
+      cells.add(toCell);
+      return;
+    }
+    Coordinate middle = new Coordinate((from.x + to.x) / 2, (from.y + to.y) / 2);
+    long middleCell = H3Plugin.latLngToCell(middle.y, middle.x, res);
+    addSegment(cells, from, fromCell, middle, middleCell, res, maxStep);
+    addSegment(cells, middle, middleCell, to, toCell, res, maxStep);
+  }
+
+  /**
+   * Whether the segment crosses the edge the two neighbors share away from its ends, so it goes
+   * from one cell into the other without clipping a third cell at a corner.
+   */
+  private static boolean crossesSharedEdge(
+      Coordinate from, Coordinate to, long fromCell, long toCell) {
+    List<LatLng> edge =
+        H3Plugin.H3.directedEdgeToBoundary(H3Plugin.H3.cellsToDirectedEdge(fromCell, toCell));
+    double ex = edge.get(1).lng - edge.get(0).lng;
+    double ey = edge.get(1).lat - edge.get(0).lat;
+    double dx = to.x - from.x;
+    double dy = to.y - from.y;
+    double denominator = ex * dy - ey * dx;
+    if (denominator == 0) {
+      return false;
+    }
+    double px = from.x - edge.get(0).lng;
+    double py = from.y - edge.get(0).lat;
+    // Positions of the crossing along the edge and along the segment
+    double s = (px * dy - py * dx) / denominator;
+    double t = (px * ey - py * ex) / denominator;
+    return s >= CORNER_MARGIN && s <= 1 - CORNER_MARGIN && t >= 0 && t <= 1;
+  }
+}
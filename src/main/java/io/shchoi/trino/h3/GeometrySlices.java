@@ -0,0 +1,241 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.geospatial.serde.GeometrySerializationType.LINE_STRING;
+import static io.trino.geospatial.serde.GeometrySerializationType.MULTI_POLYGON;
+import static io.trino.geospatial.serde.GeometrySerializationType.POINT;
+import static io.trino.geospatial.serde.GeometrySerializationType.POLYGON;
+
+import com.uber.h3core.util.LatLng;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.geospatial.serde.GeometrySerializationType;
+import java.util.List;
+
+/**
+ * Reads and writes Trino's serialized GEOMETRY format (see {@link
+ * io.trino.geospatial.serde.JtsGeometrySerde}) directly, for shapes simple enough that building a
+ * JTS geometry would dominate the cost of a call. Anything not recognized here should go through
+ * {@code JtsGeometrySerde}.
+ */
+final class GeometrySlices {
+  /** Type byte followed by the x and y doubles. Empty points store NaN for both. */
+  private static final int POINT_SIZE = Byte.BYTES + 2 * Double.BYTES;
+
+  private static final int POINT_X_OFFSET = Byte.BYTES;
+  private static final int POINT_Y_OFFSET = POINT_X_OFFSET + Double.BYTES;
+
+  /** ESRI shape type codes stored after the type byte of multi-vertex geometries. */
+  private static final int ESRI_POLYLINE = 3;
+
+  private static final int ESRI_POLYGON = 5;
+
+  /** Type byte, ESRI shape type, envelope, part count and point count. */
+  private static final int SHAPE_HEADER_SIZE =
+      Byte.BYTES + Integer.BYTES + 4 * Double.BYTES + 2 * Integer.BYTES;
+
+  private static final int COORDINATE_SIZE = 2 * Double.BYTES;
+
+  private GeometrySlices() {}
+
+  /** Returns true if the slice holds exactly one serialized point, which may be empty. */
+  static boolean isPoint(Slice slice) {
+    return slice.length() == POINT_SIZE && slice.getByte(0) == POINT.code();
+  }
+
+  /** X (longitude) of a slice accepted by {@link #isPoint(Slice)}. NaN if the point is empty. */
+  static double pointX(Slice slice) {
+    return slice.getDouble(POINT_X_OFFSET);
+  }
+
+  /** Y (latitude) of a slice accepted by {@link #isPoint(Slice)}. NaN if the point is empty. */
+  static double pointY(Slice slice) {
+    return slice.getDouble(POINT_Y_OFFSET);
+  }
+
+  /** Serializes the point at (lng, lat). */
+  static Slice point(LatLng latLng) {
+    return point(latLng.lat, latLng.lng);
+  }
+
+  /** Serializes the point at (lng, lat). */
+  static Slice point(double lat, double lng) {
+    Slice slice = Slices.allocate(POINT_SIZE);
+    slice.setByte(0, POINT.code());
+    slice.setDouble(POINT_X_OFFSET, lng);
+    slice.setDouble(POINT_Y_OFFSET, lat);
+    return slice;
+  }
+
+  /** Serializes a line string through the given vertices. */
+  static Slice lineString(List<LatLng> vertices) {
+    int numPoints = vertices.size();
+    if (numPoints < 2) {
+      throw new IllegalArgumentException("Line string must have at least 2 points");
+    }
+    Slice slice = allocateShape(LINE_STRING, ESRI_POLYLINE, vertices);
+    writeCoordinates(slice, SHAPE_HEADER_SIZE + Integer.BYTES, vertices, false);
+    return slice;
+  }
+
+  /**
+   * Serializes a polygon without holes. The ring must be closed (first vertex repeated at the end)
+   * and may have either orientation.
+   */
+  static Slice polygon(List<LatLng> ring) {
+    int numPoints = ring.size();
+    if (numPoints < 4 || !sameVertex(ring.get(0), ring.get(numPoints - 1))) {
+      throw new IllegalArgumentException("Polygon ring must be closed and have at least 4 points");
+    }
+    // Shells are stored clockwise; this is the edge-sum test JtsGeometrySerde canonicalizes with
+    double edgeSum = 0;
+    for (int i = 1; i < numPoints; i++) {
+      LatLng previous = ring.get(i - 1);
+      LatLng current = ring.get(i);
+      edgeSum += (current.lng - previous.lng) * (current.lat + previous.lat);
+    }
+    Slice slice = allocateShape(POLYGON, ESRI_POLYGON, ring);
+    writeCoordinates(slice, SHAPE_HEADER_SIZE + Integer.BYTES, ring, edgeSum <= 0);
+    return slice;
+  }
+
+  /**
+   * Serializes a non-empty multipolygon. Each polygon is a list of closed rings, its shell first,
+   * and each ring is packed as x, y (longitude, latitude) pairs. Rings may have either orientation;
+   * shells are stored clockwise and holes counter-clockwise, which is how the reader tells them
+   * apart.
+   */
+  static Slice multiPolygon(List<List<double[]>> polygons) {
+    int numParts = 0;
+    int numPoints = 0;
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    for (List<double[]> polygon : polygons) {
+      for (double[] ring : polygon) {
+        int ringPoints = ring.length / 2;
+        if (ringPoints < 4
+            || ring[0] != ring[ring.length - 2]
+            || ring[1] != ring[ring.length - 1]) {
+          throw new IllegalArgumentException(
+              "Polygon ring must be closed and have at least 4 points");
+        }
+        numParts++;
+        numPoints += ringPoints;
+      }
+      // Holes lie inside their shell, so the shells alone bound the envelope
+      double[] shell = polygon.get(0);
+      for (int i = 0; i < shell.length; i += 2) {
+        minX = Math.min(minX, shell[i]);
+        minY = Math.min(minY, shell[i + 1]);
+        maxX = Math.max(maxX, shell[i]);
+        maxY = Math.max(maxY, shell[i + 1]);
+      }
+    }
+    if (numParts == 0) {
+      throw new IllegalArgumentException("Multipolygon must not be empty");
+    }
+
+    Slice slice =
+        Slices.allocate(SHAPE_HEADER_SIZE + numParts * Integer.BYTES + numPoints * COORDINATE_SIZE);
+    int offset = 0;
+    slice.setByte(offset, MULTI_POLYGON.code());
+    offset += Byte.BYTES;
+    slice.setInt(offset, ESRI_POLYGON);
+    offset += Integer.BYTES;
+    slice.setDouble(offset, minX);
+    slice.setDouble(offset + Double.BYTES, minY);
+    slice.setDouble(offset + 2 * Double.BYTES, maxX);
+    slice.setDouble(offset + 3 * Double.BYTES, maxY);
+    offset += 4 * Double.BYTES;
+    slice.setInt(offset, numParts);
+    offset += Integer.BYTES;
+    slice.setInt(offset, numPoints);
+    offset += Integer.BYTES;
+
+    int partIndex = offset;
+    int coordinateOffset = offset + numParts * Integer.BYTES;
+    int firstPoint = 0;
+    for (List<double[]> polygon : polygons) {
+      for (int i = 0; i < polygon.size(); i++) {
+        double[] ring = polygon.get(i);
+        slice.setInt(partIndex, firstPoint);
+        partIndex += Integer.BYTES;
+        firstPoint += ring.length / 2;
+        // Clockwise shells have a positive edge sum, counter-clockwise holes a negative one
+        boolean clockwise = edgeSum(ring) > 0;
+        boolean reverse = i == 0 ? !clockwise : clockwise;
+        for (int j = 0; j < ring.length; j += 2) {
+          int point = reverse ? ring.length - 2 - j : j;
+          slice.setDouble(coordinateOffset, ring[point]);
+          slice.setDouble(coordinateOffset + Double.BYTES, ring[point + 1]);
+          coordinateOffset += COORDINATE_SIZE;
+        }
+      }
+    }
+    return slice;
+  }
+
+  /** Sum of (x2 - x1) * (y2 + y1) over the edges of a packed ring, positive when clockwise. */
+  static double edgeSum(double[] ring) {
+    double sum = 0;
+    for (int i = 2; i < ring.length; i += 2) {
+      sum += (ring[i] - ring[i - 2]) * (ring[i + 1] + ring[i - 1]);
+    }
+    return sum;
+  }
+
+  /**
+   * Allocates a single-part shape and fills in everything but its coordinates, which start after
+   * the part index at {@code SHAPE_HEADER_SIZE + Integer.BYTES}.
+   */
+  private static Slice allocateShape(
+      GeometrySerializationType type, int esriType, List<LatLng> vertices) {
+    int numPoints = vertices.size();
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < numPoints; i++) {
+      LatLng vertex = vertices.get(i);
+      minX = Math.min(minX, vertex.lng);
+      minY = Math.min(minY, vertex.lat);
+      maxX = Math.max(maxX, vertex.lng);
+      maxY = Math.max(maxY, vertex.lat);
+    }
+
+    Slice slice = Slices.allocate(SHAPE_HEADER_SIZE + Integer.BYTES + numPoints * COORDINATE_SIZE);
+    int offset = 0;
+    slice.setByte(offset, type.code());
+    offset += Byte.BYTES;
+    slice.setInt(offset, esriType);
+    offset += Integer.BYTES;
+    slice.setDouble(offset, minX);
+    slice.setDouble(offset + Double.BYTES, minY);
+    slice.setDouble(offset + 2 * Double.BYTES, maxX);
+    slice.setDouble(offset + 3 * Double.BYTES, maxY);
+    offset += 4 * Double.BYTES;
+    // One part, starting at the first point
+    slice.setInt(offset, 1);
+    offset += Integer.BYTES;
+    slice.setInt(offset, numPoints);
+    offset += Integer.BYTES;
+    slice.setInt(offset, 0);
+    return slice;
+  }
+
+  private static void writeCoordinates(
+      Slice slice, int offset, List<LatLng> vertices, boolean reverse) {
+    int numPoints = vertices.size();
+    for (int i = 0; i < numPoints; i++) {
+      LatLng vertex = vertices.get(reverse ? numPoints - 1 - i : i);
+      slice.setDouble(offset, vertex.lng);
+      slice.setDouble(offset + Double.BYTES, vertex.lat);
+      offset += COORDINATE_SIZE;
+    }
+  }
+
+  private static boolean sameVertex(LatLng a, LatLng b) {
+    return a.lat == b.lat && a.lng == b.lng;
+  }
+}
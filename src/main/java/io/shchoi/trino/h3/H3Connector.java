@@ -0,0 +1,79 @@
+package io.shchoi.trino.h3;
+
+import io.trino.spi.connector.Connector;
+import io.trino.spi.connector.ConnectorMetadata;
+import io.trino.spi.connector.ConnectorSession;
+import io.trino.spi.connector.ConnectorSplitManager;
+import io.trino.spi.connector.ConnectorSplitSource;
+import io.trino.spi.connector.ConnectorTransactionHandle;
+import io.trino.spi.connector.FixedSplitSource;
+import io.trino.spi.function.FunctionProvider;
+import io.trino.spi.function.table.ConnectorTableFunction;
+import io.trino.spi.function.table.ConnectorTableFunctionHandle;
+import io.trino.spi.function.table.TableFunctionProcessorProvider;
+import io.trino.spi.transaction.IsolationLevel;
+import io.trino.spi.type.Type;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/** Connector with no tables, serving the plugin's table functions. */
+final class H3Connector implements Connector {
+  private final Set<ConnectorTableFunction> tableFunctions;
+
+  H3Connector(Type geometryType) {
+    this.tableFunctions = Set.of(new PolyfillTableFunction(geometryType));
+  }
+
+  @Override
+  public ConnectorTransactionHandle beginTransaction(
+      IsolationLevel isolationLevel, boolean readOnly, boolean autoCommit) {
+    return H3TransactionHandle.INSTANCE;
+  }
+
+  @Override
+  public ConnectorMetadata getMetadata(
+      ConnectorSession session, ConnectorTransactionHandle transactionHandle) {
+    return new ConnectorMetadata() {};
+  }
+
+  @Override
+  public Set<ConnectorTableFunction> getTableFunctions() {
+    return tableFunctions;
+  }
+
+  @Override
+  public Optional<FunctionProvider> getFunctionProvider() {
+    return Optional.of(
+        new FunctionProvider() {
+          @Override
+          public TableFunctionProcessorProvider getTableFunctionProcessorProvider(
+              ConnectorTableFunctionHandle functionHandle) {
+            if (functionHandle instanceof PolyfillTableFunction.Handle) {
+              return PolyfillTableFunction.PROCESSOR_PROVIDER;
+            }
+            throw new IllegalArgumentException("Unknown function handle: " + functionHandle);
+          }
+        });
+  }
+
+  @Override
+  public ConnectorSplitManager getSplitManager() {
+    return new ConnectorSplitManager() {
+      @Override
+      public ConnectorSplitSource getSplits(
+          ConnectorTransactionHandle transaction,
+          ConnectorSession session,
+          ConnectorTableFunctionHandle function) {
+        if (function instanceof PolyfillTableFunction.Handle) {
+          return new FixedSplitSource(List.of(PolyfillTableFunction.Split.INSTANCE));
+        }
+        throw new IllegalArgumentException("Unknown function handle: " + function);
+      }
+    };
+  }
+
+  enum H3TransactionHandle implements ConnectorTransactionHandle {
+    INSTANCE
+  }
+}
@@ -0,0 +1,29 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.spi.type.StandardTypes.GEOMETRY;
+
+import io.trino.spi.connector.Connector;
+import io.trino.spi.connector.ConnectorContext;
+import io.trino.spi.connector.ConnectorFactory;
+import io.trino.spi.type.TypeSignature;
+import java.util.Map;
+
+/**
+ * Creates the connector behind a catalog with {@code connector.name=h3}, which holds no tables and
+ * only serves table functions such as {@link PolyfillTableFunction}.
+ */
+public class H3ConnectorFactory implements ConnectorFactory {
+  @Override
+  public String getName() {
+    return "h3";
+  }
+
+  @Override
+  public Connector create(
+      String catalogName, Map<String, String> config, ConnectorContext context) {
+    if (!config.isEmpty()) {
+      throw new IllegalArgumentException("Unknown properties: " + config.keySet());
+    }
+    return new H3Connector(context.getTypeManager().getType(new TypeSignature(GEOMETRY)));
+  }
+}
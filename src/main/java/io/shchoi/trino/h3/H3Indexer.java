@@ -0,0 +1,619 @@
+package io.shchoi.trino.h3;
+
+import com.uber.h3core.H3Core;
+
+/**
+ * Pure-Java port of the H3 {@code latLngToCell} pipeline: geo to closest icosahedron face, gnomonic
+ * projection to hex2d, hex2d to IJK, IJK to index digits, then the base cell lookup and rotations.
+ *
+ * <p>Everything on the hot path runs on primitives and static tables, so {@link #latLngToCell}
+ * never allocates. The projection constants and the (face, res 0 IJK) to (base cell, rotation)
+ * table are the ones from the C library, so the result is the same as {@link
+ * H3Core#latLngToCell(double, double, int)}, except for points exactly on a cell edge or vertex:
+ * there the JVM and C trigonometry can round the last bit differently, and either cell sharing the
+ * edge may come back. Points whose res 0 coordinates fall outside of the table, which the C
+ * library rejects, are delegated to the native library.
+ */
+final class H3Indexer {
+  static final int MAX_RES = 15;
+
+  private static final int NUM_ICOSA_FACES = 20;
+  private static final int MAX_FACE_COORD = 2;
+
+  private static final int RES_OFFSET = 52;
+  private static final int BASE_CELL_OFFSET = 45;
+  private static final int FACE_OFFSET = 56;
+  private static final long CELL_MODE_BITS = 1L << 59;
+  private static final long DIGITS_MASK = (1L << BASE_CELL_OFFSET) - 1;
+  private static final long H3_INIT = DIGITS_MASK;
+
+  private static final int CENTER_DIGIT = 0;
+  private static final int K_AXES_DIGIT = 1;
+  private static final int INVALID_DIGIT = 7;
+
+  private static final double EPSILON = 0.0000000000000001;
+  private static final double M_2PI = 6.28318530717958647692528676655900576839433;
+  private static final double M_RSIN60 = 1.1547005383792515290182975610039149112952035025402537520;
+  private static final double M_SQRT7 = 2.6457513110645905905016157536392604257102;
+  private static final double M_AP7_ROT_RADS = 0.333473172251832115336090755351601070065900389;
+  private static final double INV_RES0_U_GNOMONIC = 2.61803398874989484820;
+
+  /** Icosahedron face centers in lat/lng radians. */
+  private static final double[] FACE_CENTER_LAT = {
+    0.803582649718989942, 1.307747883455638156, 1.054751253523952054, 0.600191595538186799,
+    0.491715428198773866, 0.172745327415618701, 0.605929321571350690, 0.427370518328979641,
+    -0.079066118549212831, -0.230961644455383637, 0.079066118549212831, 0.230961644455383637,
+    -0.172745327415618701, -0.605929321571350690, -0.427370518328979641, -0.600191595538186799,
+    -0.491715428198773866, -0.803582649718989942, -1.307747883455638156, -1.054751253523952054
+  };
+
+  private static final double[] FACE_CENTER_LNG = {
+    1.248397419617396099, 2.536945009877921159, -1.347517358900396623, -0.450603909469755746,
+    0.401988202911306943, 1.678146885280433686, 2.953923329812411617, -1.888876200336285401,
+    -0.733429513380867741, 0.506495587332349035, 2.408163140208925497, -2.635097066257444203,
+    -1.463445768309359553, -0.187669323777381622, 1.252716453253507838, 2.690988744120037492,
+    -2.739604450678486295, -1.893195233972397139, -0.604647643711872080, 1.794075294689396615
+  };
+
+  /** Icosahedron face centers as unit vectors, x/y/z interleaved. */
+  private static final double[] FACE_CENTER_POINT = {
+    0.2199307791404606, 0.6583691780274996, 0.7198475378926182,
+    -0.2139234834501421, 0.1478171829550703, 0.9656017935214205,
+    0.1092625278784797, -0.4811951572873210, 0.8697775121287253,
+    0.7428567301586791, -0.3593941678278028, 0.5648005936517033,
+    0.8112534709140969, 0.3448953237639384, 0.4721387736413930,
+    -0.1055498149613921, 0.9794457296411413, 0.1718874610009365,
+    -0.8075407579970092, 0.1533552485898818, 0.5695261994882688,
+    -0.2846148069787907, -0.8644080972654206, 0.4144792552473539,
+    0.7405621473854482, -0.6673299564565524, -0.0789837646326737,
+    0.8512303986474293, 0.4722343788582681, -0.2289137388687808,
+    -0.7405621473854481, 0.6673299564565524, 0.0789837646326737,
+    -0.8512303986474292, -0.4722343788582682, 0.2289137388687808,
+    0.1055498149613919, -0.9794457296411413, -0.1718874610009365,
+    0.8075407579970092, -0.1533552485898819, -0.5695261994882688,
+    0.2846148069787908, 0.8644080972654204, -0.4144792552473539,
+    -0.7428567301586791, 0.3593941678278027, -0.5648005936517033,
+    -0.8112534709140971, -0.3448953237639382, -0.4721387736413930,
+    -0.2199307791404607, -0.6583691780274996, -0.7198475378926182,
+    0.2139234834501420, -0.1478171829550704, -0.9656017935214205,
+    -0.1092625278784796, 0.4811951572873210, -0.8697775121287253
+  };
+
+  /** Azimuth in radians from each face center to the Class II i-axis. */
+  private static final double[] FACE_AXES_AZ_RADS_CII = {
+    5.619958268523939882, 5.760339081714187279, 0.780213654393430055, 0.430469363979999913,
+    6.130269123335111400, 2.692877706530642877, 2.982963003477243874, 3.532912002790141181,
+    3.494305004259568154, 3.003214169499538391, 5.930472956509811562, 0.138378484090254847,
+    0.448714947059150361, 0.158629650112549365, 5.891865957979238535, 2.711123289609793325,
+    3.294508837434268316, 3.804819692245439833, 3.664438879055192436, 2.361378999196363184
+  };
+
+  /** Digits rotated 60 degrees counter-clockwise and clockwise, indexed by digit. */
+  private static final int[] ROTATE_60_CCW = {0, 5, 3, 1, 6, 4, 2, 7};
+
+  private static final int[] ROTATE_60_CW = {0, 3, 6, 2, 5, 1, 4, 7};
+
+  /**
+   * Base cell at each res 0 IJK position of each face ({@code faceIjkBaseCells} in the C library),
+   * indexed by {@code face * 27 + i * 9 + j * 3 + k}.
+   */
+  private static final int[] FACE_IJK_BASE_CELLS = {
+    // face 0
+    16, 18, 24, 33, 30, 32, 49, 48, 50,
+    8, 5, 10, 22, 16, 18, 41, 33, 30,
+    4, 0, 2, 15, 8, 5, 31, 22, 16,
+    // face 1
+    2, 6, 14, 10, 11, 17, 24, 23, 25,
+    0, 1, 9, 5, 2, 6, 18, 10, 11,
+    4, 3, 7, 8, 0, 1, 16, 5, 2,
+    // face 2
+    7, 21, 38, 9, 19, 34, 14, 20, 36,
+    3, 13, 29, 1, 7, 21, 6, 9, 19,
+    4, 12, 26, 0, 3, 13, 2, 1, 7,
+    // face 3
+    26, 42, 58, 29, 43, 62, 38, 47, 64,
+    12, 28, 44, 13, 26, 42, 21, 29, 43,
+    4, 15, 31, 3, 12, 28, 7, 13, 26,
+    // face 4
+    31, 41, 49, 44, 53, 61, 58, 65, 75,
+    15, 22, 33, 28, 31, 41, 42, 44, 53,
+    4, 8, 16, 12, 15, 22, 26, 28, 31,
+    // face 5
+    50, 48, 49, 32, 30, 33, 24, 18, 16,
+    70, 67, 66, 52, 50, 48, 37, 32, 30,
+    83, 87, 85, 74, 70, 67, 57, 52, 50,
+    // face 6
+    25, 23, 24, 17, 11, 10, 14, 6, 2,
+    45, 39, 37, 35, 25, 23, 27, 17, 11,
+    63, 59, 57, 56, 45, 39, 46, 35, 25,
+    // face 7
+    36, 20, 14, 34, 19, 9, 38, 21, 7,
+    55, 40, 27, 54, 36, 20, 51, 34, 19,
+    72, 60, 46, 73, 55, 40, 71, 54, 36,
+    // face 8
+    64, 47, 38, 62, 43, 29, 58, 42, 26,
+    84, 69, 51, 82, 64, 47, 76, 62, 43,
+    97, 89, 71, 98, 84, 69, 96, 82, 64,
+    // face 9
+    75, 65, 58, 61, 53, 44, 49, 41, 31,
+    94, 86, 76, 81, 75, 65, 66, 61, 53,
+    107, 104, 96, 101, 94, 86, 85, 81, 75,
+    // face 10
+    57, 59, 63, 74, 78, 79, 83, 92, 95,
+    37, 39, 45, 52, 57, 59, 70, 74, 78,
+    24, 23, 25, 32, 37, 39, 50, 52, 57,
+    // face 11
+    46, 60, 72, 56, 68, 80, 63, 77, 90,
+    27, 40, 55, 35, 46, 60, 45, 56, 68,
+    14, 20, 36, 17, 27, 40, 25, 35, 46,
+    // face 12
+    71, 89, 97, 73, 91, 103, 72, 88, 105,
+    51, 69, 84, 54, 71, 89, 55, 73, 91,
+    38, 47, 64, 34, 51, 69, 36, 54, 71,
+    // face 13
+    96, 104, 107, 98, 110, 115, 97, 111, 119,
+    76, 86, 94, 82, 96, 104, 84, 98, 110,
+    58, 65, 75, 62, 76, 86, 64, 82, 96,
+    // face 14
+    85, 87, 83, 101, 102, 100, 107, 112, 114,
+    66, 67, 70, 81, 85, 87, 94, 101, 102,
+    49, 48, 50, 61, 66, 67, 75, 81, 85,
+    // face 15
+    95, 92, 83, 79, 78, 74, 63, 59, 57,
+    109, 108, 100, 93, 95, 92, 77, 79, 78,
+    117, 118, 114, 106, 109, 108, 90, 93, 95,
+    // face 16
+    90, 77, 63, 80, 68, 56, 72, 60, 46,
+    106, 93, 79, 99, 90, 77, 88, 80, 68,
+    117, 109, 95, 113, 106, 93, 105, 99, 90,
+    // face 17
+    105, 88, 72, 103, 91, 73, 97, 89, 71,
+    113, 99, 80, 116, 105, 88, 111, 103, 91,
+    117, 106, 90, 121, 113, 99, 119, 116, 105,
+    // face 18
+    119, 111, 97, 115, 110, 98, 107, 104, 96,
+    121, 116, 103, 120, 119, 111, 112, 115, 110,
+    117, 113, 105, 118, 121, 116, 114, 120, 119,
+    // face 19
+    114, 112, 107, 100, 102, 101, 83, 87, 85,
+    118, 120, 115, 108, 114, 112, 92, 100, 102,
+    117, 121, 119, 109, 118, 120, 95, 108, 114
+  };
+
+  /**
+   * Counter-clockwise 60 degree rotations from the face to the home face of the base cell, indexed
+   * like {@link #FACE_IJK_BASE_CELLS}.
+   */
+  private static final int[] FACE_IJK_CCW_ROT60 = {
+    // face 0
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 5, 5, 0, 0, 0, 1, 0, 0,
+    0, 5, 5, 1, 0, 5, 1, 0, 0,
+    // face 1
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 5, 5, 0, 0, 0, 1, 0, 0,
+    1, 5, 5, 1, 0, 5, 1, 0, 0,
+    // face 2
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 5, 5, 0, 0, 0, 1, 0, 0,
+    2, 5, 5, 1, 0, 5, 1, 0, 0,
+    // face 3
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 5, 5, 0, 0, 0, 1, 0, 0,
+    3, 5, 5, 1, 0, 5, 1, 0, 0,
+    // face 4
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 5, 5, 0, 0, 0, 1, 0, 0,
+    4, 5, 5, 1, 0, 5, 1, 0, 0,
+    // face 5
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 0, 3, 3, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 0, 3, 3, 0,
+    // face 6
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 0, 3, 3, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 0, 3, 3, 0,
+    // face 7
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 0, 3, 3, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 0, 3, 3, 0,
+    // face 8
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 0, 3, 3, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 0, 3, 3, 0,
+    // face 9
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 0, 3, 3, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 0, 3, 3, 0,
+    // face 10
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 3, 3, 0, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 3, 3, 0, 0,
+    // face 11
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 3, 3, 0, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 3, 3, 0, 0,
+    // face 12
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 3, 3, 0, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 3, 3, 0, 0,
+    // face 13
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 3, 3, 0, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 3, 3, 0, 0,
+    // face 14
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 3, 3, 0, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 3, 3, 0, 0,
+    // face 15
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 0, 5, 1, 0, 0, 1, 0, 0,
+    4, 5, 5, 1, 0, 0, 1, 1, 0,
+    // face 16
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 0, 5, 1, 0, 0, 1, 0, 0,
+    3, 5, 5, 1, 0, 0, 1, 1, 0,
+    // face 17
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 0, 5, 1, 0, 0, 1, 0, 0,
+    2, 5, 5, 1, 0, 0, 1, 1, 0,
+    // face 18
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 0, 5, 1, 0, 0, 1, 0, 0,
+    1, 5, 5, 1, 0, 0, 1, 1, 0,
+    // face 19
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 0, 5, 1, 0, 0, 1, 0, 0,
+    0, 5, 5, 1, 0, 0, 1, 1, 0
+  };
+
+  /**
+   * Pentagon base cells, each followed by the two faces on which the deleted K axes subsequence is
+   * left by a clockwise rather than a counter-clockwise rotation (-1 for the polar pentagons).
+   */
+  private static final int[] PENTAGON_CW_OFFSET_FACES = {
+    4, -1, -1, 14, 2, 6, 24, 1, 5, 38, 3, 7, 49, 0, 9, 58, 4, 8,
+    63, 11, 15, 72, 12, 16, 83, 10, 19, 97, 13, 17, 107, 14, 18, 117, -1, -1
+  };
+
+  // Layout of a BASE_CELL_TABLE entry
+  private static final int ENTRY_CW_OFFSET = 1 << 14;
+  private static final int ENTRY_PENTAGON = 1 << 12;
+  private static final int ENTRY_ROT_SHIFT = 8;
+
+  /**
+   * Base cell, rotations and pentagon handling packed per entry of {@link #FACE_IJK_BASE_CELLS},
+   * so the lookup reads a single int.
+   */
+  private static final int[] BASE_CELL_TABLE = baseCellTable();
+
+  private H3Indexer() {}
+
+  /**
+   * Indexes a point given in degrees. Returns 0 (H3_NULL) when the resolution is out of range or a
+   * coordinate is not finite; the native library rejects the same inputs with an exception.
+   */
+  static long latLngToCell(double lat, double lng, int res) {
+    if (res < 0 || res > MAX_RES || !Double.isFinite(lat) || !Double.isFinite(lng)) {
+      return 0;
+    }
+    long prefix = indexPrefix(Math.toRadians(lat), Math.toRadians(lng), res);
+    if (prefix < 0) {
+      return H3Plugin.H3.latLngToCell(lat, lng, res);
+    }
+    int entry = BASE_CELL_TABLE[(int) (prefix >>> FACE_OFFSET) * 27 + basePosition(prefix)];
+    return finish(prefix, entry);
+  }
+
+  /**
+   * Runs everything up to the base cell lookup. Returns a packed value holding the index digits
+   * (bits 0-44), the res 0 IJK position on the face (bits 45-51), the resolution (bits 52-55) and
+   * the face (bits 56-60), or -1 when the res 0 coordinates fall outside of the lookup table.
+   */
+  private static long indexPrefix(double lat, double lng, int res) {
+    // _geoToClosestFace
+    double r = Math.cos(lat);
+    double z = Math.sin(lat);
+    double x = Math.cos(lng) * r;
+    double y = Math.sin(lng) * r;
+    int face = 0;
+    double sqd = 5.0;
+    for (int f = 0; f < NUM_ICOSA_FACES; f++) {
+      double dx = FACE_CENTER_POINT[f * 3] - x;
+      double dy = FACE_CENTER_POINT[f * 3 + 1] - y;
+      double dz = FACE_CENTER_POINT[f * 3 + 2] - z;
+      double sqdT = dx * dx + dy * dy + dz * dz;
+      if (sqdT < sqd) {
+        face = f;
+        sqd = sqdT;
+      }
+    }
+
+    // _geoToHex2d
+    double hx;
+    double hy;
+    double dist = Math.acos(1 - sqd * 0.5);
+    if (dist < EPSILON) {
+      hx = 0.0;
+      hy = 0.0;
+    } else {
+      double azimuth = azimuthRads(FACE_CENTER_LAT[face], FACE_CENTER_LNG[face], lat, lng);
+      double theta = posAngleRads(FACE_AXES_AZ_RADS_CII[face] - posAngleRads(azimuth));
+      if (isResolutionClassIII(res)) {
+        theta = posAngleRads(theta - M_AP7_ROT_RADS);
+      }
+      dist = Math.tan(dist);
+      dist *= INV_RES0_U_GNOMONIC;
+      for (int i = 0; i < res; i++) {
+        dist *= M_SQRT7;
+      }
+      hx = dist * Math.cos(theta);
+      hy = dist * Math.sin(theta);
+    }
+
+    // _hex2dToCoordIJK
+    double a1 = Math.abs(hx);
+    double a2 = Math.abs(hy);
+    double x2 = a2 * M_RSIN60;
+    double x1 = a1 + x2 / 2.0;
+    int m1 = (int) x1;
+    int m2 = (int) x2;
+    double r1 = x1 - m1;
+    double r2 = x2 - m2;
+    int i;
+    int j;
+    if (r1 < 0.5) {
+      if (r1 < 1.0 / 3.0) {
+        i = m1;
+        j = r2 < (1.0 + r1) / 2.0 ? m2 : m2 + 1;
+      } else {
+        j = r2 < (1.0 - r1) ? m2 : m2 + 1;
+        i = (1.0 - r1) <= r2 && r2 < (2.0 * r1) ? m1 + 1 : m1;
+      }
+    } else {
+      if (r1 < 2.0 / 3.0) {
+        j = r2 < (1.0 - r1) ? m2 : m2 + 1;
+        i = (2.0 * r1 - 1.0) < r2 && r2 < (1.0 - r1) ? m1 : m1 + 1;
+      } else {
+        i = m1 + 1;
+        j = r2 < (r1 / 2.0) ? m2 : m2 + 1;
+      }
+    }
+    if (hx < 0.0) {
+      if ((j % 2) == 0) {
+        long axisi = j / 2;
+        long diff = i - axisi;
+        i = (int) (i - 2.0 * diff);
+      } else {
+        long axisi = (j + 1) / 2;
+        long diff = i - axisi;
+        i = (int) (i - (2.0 * diff + 1));
+      }
+    }
+    if (hy < 0.0) {
+      i = i - (2 * j + 1) / 2;
+      j = -j;
+    }
+    int k = 0;
+
+    // _faceIjkToH3 up to the base cell lookup, with every CoordIJK helper inlined
+    long h = H3_INIT;
+    for (int level = res - 1; level >= 0; level--) {
+      // _ijkNormalize
+      if (i < 0) {
+        j -= i;
+        k -= i;
+        i = 0;
+      }
+      if (j < 0) {
+        i -= j;
+        k -= j;
+        j = 0;
+      }
+      if (k < 0) {
+        i -= k;
+        j -= k;
+        k = 0;
+      }
+      int min = Math.min(i, Math.min(j, k));
+      i -= min;
+      j -= min;
+      k -= min;
+
+      int lastI = i;
+      int lastJ = j;
+      int lastK = k;
+      int ci;
+      int cj;
+      int ck;
+      int pi = i - k;
+      int pj = j - k;
+      if (isResolutionClassIII(level + 1)) {
+        // _upAp7 followed by _downAp7
+        i = (int) Math.round((3 * pi - pj) / 7.0);
+        j = (int) Math.round((pi + 2 * pj) / 7.0);
+        k = 0;
+        ci = 3 * i + j;
+        cj = 3 * j;
+        ck = i;
+      } else {
+        // _upAp7r followed by _downAp7r
+        i = (int) Math.round((2 * pi + pj) / 7.0);
+        j = (int) Math.round((3 * pj - pi) / 7.0);
+        k = 0;
+        ci = 3 * i;
+        cj = i + 3 * j;
+        ck = j;
+      }
+      // The parent coordinates are normalized at the top of the next iteration (or after the
+      // loop); differences of un-normalized coordinates normalize to the same unit vector.
+      int di = lastI - ci;
+      int dj = lastJ - cj;
+      int dk = lastK - ck;
+      if (di < 0) {
+        dj -= di;
+        dk -= di;
+        di = 0;
+      }
+      if (dj < 0) {
+        di -= dj;
+        dk -= dj;
+        dj = 0;
+      }
+      if (dk < 0) {
+        di -= dk;
+        dj -= dk;
+        dk = 0;
+      }
+      min = Math.min(di, Math.min(dj, dk));
+      di -= min;
+      dj -= min;
+      dk -= min;
+      int digit = di <= 1 && dj <= 1 && dk <= 1 ? (di << 2) | (dj << 1) | dk : INVALID_DIGIT;
+      h = setDigit(h, level + 1, digit);
+    }
+
+    if (i < 0) {
+      j -= i;
+      k -= i;
+      i = 0;
+    }
+    if (j < 0) {
+      i -= j;
+      k -= j;
+      j = 0;
+    }
+    if (k < 0) {
+      i -= k;
+      j -= k;
+      k = 0;
+    }
+    int min = Math.min(i, Math.min(j, k));
+    i -= min;
+    j -= min;
+    k -= min;
+    if (i > MAX_FACE_COORD || j > MAX_FACE_COORD || k > MAX_FACE_COORD) {
+      return -1;
+    }
+    return h
+        | ((long) (i * 9 + j * 3 + k) << BASE_CELL_OFFSET)
+        | ((long) res << RES_OFFSET)
+        | ((long) face << FACE_OFFSET);
+  }
+
+  /** Applies a table entry to an index prefix. */
+  private static long finish(long prefix, int entry) {
+    int res = (int) (prefix >>> RES_OFFSET) & 0xF;
+    long h =
+        CELL_MODE_BITS
+            | ((long) res << RES_OFFSET)
+            | ((long) (entry & 0xFF) << BASE_CELL_OFFSET)
+            | (prefix & DIGITS_MASK);
+    int rotations = (entry >>> ENTRY_ROT_SHIFT) & 0x7;
+    if ((entry & ENTRY_PENTAGON) != 0) {
+      // Force the index out of the deleted K axes subsequence
+      if (leadingNonZeroDigit(h, res) == K_AXES_DIGIT) {
+        h = (entry & ENTRY_CW_OFFSET) != 0 ? rotate60cw(h, res) : rotate60ccw(h, res);
+      }
+      for (int r = 0; r < rotations; r++) {
+        h = rotatePent60ccw(h, res);
+      }
+    } else {
+      for (int r = 0; r < rotations; r++) {
+        h = rotate60ccw(h, res);
+      }
+    }
+    return h;
+  }
+
+  private static int basePosition(long prefix) {
+    return (int) (prefix >>> BASE_CELL_OFFSET) & 0x7F;
+  }
+
+  private static boolean isResolutionClassIII(int res) {
+    return (res & 1) == 1;
+  }
+
+  private static int getDigit(long h, int res) {
+    return (int) (h >>> ((MAX_RES - res) * 3)) & 0x7;
+  }
+
+  private static long setDigit(long h, int res, int digit) {
+    int shift = (MAX_RES - res) * 3;
+    return (h & ~(0x7L << shift)) | ((long) digit << shift);
+  }
+
+  private static int leadingNonZeroDigit(long h, int res) {
+    for (int r = 1; r <= res; r++) {
+      int digit = getDigit(h, r);
+      if (digit != CENTER_DIGIT) {
+        return digit;
+      }
+    }
+    return CENTER_DIGIT;
+  }
+
+  private static long rotate60ccw(long h, int res) {
+    for (int r = 1; r <= res; r++) {
+      h = setDigit(h, r, ROTATE_60_CCW[getDigit(h, r)]);
+    }
+    return h;
+  }
+
+  private static long rotate60cw(long h, int res) {
+    for (int r = 1; r <= res; r++) {
+      h = setDigit(h, r, ROTATE_60_CW[getDigit(h, r)]);
+    }
+    return h;
+  }
+
+  private static long rotatePent60ccw(long h, int res) {
+    boolean foundFirstNonZeroDigit = false;
+    for (int r = 1; r <= res; r++) {
+      h = setDigit(h, r, ROTATE_60_CCW[getDigit(h, r)]);
+      if (!foundFirstNonZeroDigit && getDigit(h, r) != CENTER_DIGIT) {
+        foundFirstNonZeroDigit = true;
+        if (leadingNonZeroDigit(h, res) == K_AXES_DIGIT) {
+          h = rotate60ccw(h, res);
+        }
+      }
+    }
+    return h;
+  }
+
+  private static double posAngleRads(double rads) {
+    double tmp = rads < 0 ? rads + M_2PI : rads;
+    if (rads >= M_2PI) {
+      tmp -= M_2PI;
+    }
+    return tmp;
+  }
+
+  private static double azimuthRads(double lat1, double lng1, double lat2, double lng2) {
+    return Math.atan2(
+        Math.cos(lat2) * Math.sin(lng2 - lng1),
+        Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1) * Math.cos(lat2) * Math.cos(lng2 - lng1));
+  }
+
+  /** Packs {@link #BASE_CELL_TABLE} from the tables ported from the C library. */
+  private static int[] baseCellTable() {
+    int[] table = new int[FACE_IJK_BASE_CELLS.length];
+    for (int index = 0; index < table.length; index++) {
+      table[index] = (FACE_IJK_CCW_ROT60[index] << ENTRY_ROT_SHIFT) | FACE_IJK_BASE_CELLS[index];
+    }
+    for (int p = 0; p < PENTAGON_CW_OFFSET_FACES.length; p += 3) {
+      int baseCell = PENTAGON_CW_OFFSET_FACES[p];
+      for (int index = 0; index < table.length; index++) {
+        if (FACE_IJK_BASE_CELLS[index] != baseCell) {
+          continue;
+        }
+        int face = index / 27;
+        table[index] |= ENTRY_PENTAGON;
+        if (face == PENTAGON_CW_OFFSET_FACES[p + 1] || face == PENTAGON_CW_OFFSET_FACES[p + 2]) {
+          table[index] |= ENTRY_CW_OFFSET;
+        }
+      }
+    }
+    return table;
+  }
+}
@@ -17,8 +17,8 @@ package io.shchoi.trino.h3;
 
 import static io.trino.geospatial.GeometryType.LINE_STRING;
 import static io.trino.geospatial.GeometryType.POLYGON;
-import static io.trino.geospatial.serde.JtsGeometrySerde.serialize;
 import static io.trino.spi.type.BigintType.BIGINT;
+import static io.trino.spi.type.DoubleType.DOUBLE;
 
 import com.uber.h3core.H3Core;
 import com.uber.h3core.util.LatLng;
@@ -26,18 +26,78 @@ import io.airlift.slice.Slice;
 import io.trino.geospatial.GeometryType;
 import io.trino.spi.Plugin;
 import io.trino.spi.block.Block;
-import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.block.LongArrayBlock;
+import io.trino.spi.block.RowValueBuilder;
+import io.trino.spi.block.SqlRow;
+import io.trino.spi.connector.ConnectorFactory;
+import io.trino.spi.type.RowType;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
 import java.util.Set;
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.Point;
 
 public class H3Plugin implements Plugin {
   static final String TYPE_ARRAY_BIGINT = "ARRAY(BIGINT)";
   static final String TYPE_ARRAY_INTEGER = "ARRAY(INTEGER)";
+  static final String TYPE_ROW_LAT_LNG = "ROW(lat DOUBLE, lng DOUBLE)";
+  static final String TYPE_ARRAY_CLASSIFIED_CELL = "ARRAY(ROW(cell BIGINT, interior BOOLEAN))";
+
+  static final RowType LAT_LNG_ROW_TYPE =
+      RowType.from(
+          List.of(
+              new RowType.Field(Optional.of("lat"), DOUBLE),
+              new RowType.Field(Optional.of("lng"), DOUBLE)));
+
+  /**
+   * JVM system property selecting the engine behind {@code h3_latlng_to_cell}: {@code native}
+   * (default) calls into the H3 C library, {@code java} uses the pure-Java {@link H3Indexer}.
+   */
+  static final String INDEXING_ENGINE_PROPERTY = "h3.indexing-engine";
+
+  static final boolean JAVA_INDEXING =
+      "java".equalsIgnoreCase(System.getProperty(INDEXING_ENGINE_PROPERTY, "native"));
+
+  /**
+   * JVM system property naming a directory for {@link CellGeometryTables}. When set, centers,
+   * boundaries and vertexes of low resolution cells are served from memory-mapped tables that are
+   * generated there in the background when the plugin loads.
+   */
+  static final String GEOMETRY_TABLES_DIR_PROPERTY = "h3.geometry-tables.dir";
+
+  /** JVM system property for the highest resolution served from geometry tables (default 5). */
+  static final String GEOMETRY_TABLES_MAX_RES_PROPERTY = "h3.geometry-tables.max-resolution";
+
+  /**
+   * JVM system property for the number of threads {@code h3_polygon_to_cells} may use to polyfill
+   * one large polygon (default 1, which keeps the single-threaded native call). See {@link
+   * ParallelPolyfill}.
+   */
+  static final String POLYFILL_PARALLELISM_PROPERTY = "h3.polyfill.parallelism";
+
+  /**
+   * JVM system property for the bytes {@code h3_polygon_to_cells} may retain caching the cells of
+   * recent polygons (default 0, which disables the cache). See {@link PolygonCellsCache}.
+   */
+  static final String POLYFILL_CACHE_BYTES_PROPERTY = "h3.polyfill.cache-bytes";
+
+  /**
+   * JVM system property naming a directory of region datasets for {@code h3_lookup}, one {@code
+   * <name>.wkt} file each. See {@link RegionDatasets}.
+   */
+  static final String DATASETS_DIR_PROPERTY = "h3.datasets.dir";
+
+  /** JVM system property for the resolution region datasets are indexed at (default 8). */
+  static final String DATASETS_RESOLUTION_PROPERTY = "h3.datasets.resolution";
+
+  /**
+   * JVM system property capping the cells one call to a function like {@code h3_cell_to_children}
+   * or {@code h3_polygon_to_cells} may return (default 10,000,000; 0 disables the cap). See {@link
+   * OutputLimits}.
+   */
+  static final String MAX_OUTPUT_CELLS_PROPERTY = "h3.max-output-cells";
 
   static final H3Core H3;
 
@@ -61,49 +121,132 @@ public class H3Plugin implements Plugin {
     }
   }
 
-  static List<Long> longBlockToList(Block block) {
-    List<Long> list = new ArrayList<>(block.getPositionCount());
-    for (int i = 0; i < block.getPositionCount(); i++) {
-      list.add(BIGINT.getLong(block, i));
+  /**
+   * Indexes a point (in degrees) with the engine selected by {@link #INDEXING_ENGINE_PROPERTY}.
+   * Throws or returns 0 for input H3 rejects, depending on the engine.
+   */
+  static long latLngToCell(double lat, double lng, int res) {
+    if (JAVA_INDEXING) {
+      return H3Indexer.latLngToCell(lat, lng, res);
     }
-    return list;
+    return H3.latLngToCell(lat, lng, res);
   }
 
-  static Block longListToBlock(List<Long> list) {
-    BlockBuilder blockBuilder = BIGINT.createFixedSizeBlockBuilder(list.size());
-    for (Long cell : list) {
-      BIGINT.writeLong(blockBuilder, cell);
+  /**
+   * Reads a BIGINT block as primitive longs. A {@link LongArrayBlock} (the common case for a whole
+   * ARRAY(BIGINT) value) is read directly rather than through the type. Null elements read as
+   * their stored value.
+   */
+  static long[] longBlockToArray(Block block) {
+    int positionCount = block.getPositionCount();
+    long[] values = new long[positionCount];
+    if (block instanceof LongArrayBlock longArrayBlock) {
+      for (int i = 0; i < positionCount; i++) {
+        values[i] = longArrayBlock.getLong(i);
+      }
+      return values;
+    }
+    for (int i = 0; i < positionCount; i++) {
+      values[i] = BIGINT.getLong(block, i);
     }
-    return blockBuilder.build();
+    return values;
   }
 
+  /** Wraps longs as a BIGINT block without copying them. */
+  static Block longArrayToBlock(long[] values) {
+    return longArrayToBlock(values, values.length);
+  }
+
+  /** Wraps the first {@code length} longs as a BIGINT block without copying them. */
+  static Block longArrayToBlock(long[] values, int length) {
+    return new LongArrayBlock(length, Optional.empty(), values);
+  }
+
+  /**
+   * Read-only {@code List<Long>} view of longs, for passing cells to H3 calls that take a
+   * collection. Elements are boxed one at a time as H3 copies them out, rather than all up front.
+   */
+  static List<Long> longArrayAsList(long[] values) {
+    return new LongArrayList(values);
+  }
+
+  static Block longListToBlock(Collection<Long> list) {
+    long[] values = new long[list.size()];
+    int i = 0;
+    for (long cell : list) {
+      values[i++] = cell;
+    }
+    return longArrayToBlock(values);
+  }
+
+  private static final class LongArrayList extends AbstractList<Long> implements RandomAccess {
+    private final long[] values;
+
+    LongArrayList(long[] values) {
+      this.values = values;
+    }
+
+    @Override
+    public Long get(int index) {
+      return values[index];
+    }
+
+    @Override
+    public int size() {
+      return values.length;
+    }
+  }
+
+  /**
+   * Serializes lat/lng vertices as a GEOMETRY of the given type. Polygon rings must already be
+   * closed. Writes Trino's serialized format directly rather than through JTS.
+   */
   static Slice latLngListToGeometry(List<LatLng> list, GeometryType geometryType) {
-    Coordinate[] coordinates =
-        list.stream().map(ll -> new Coordinate(ll.lng, ll.lat)).toArray(Coordinate[]::new);
-    GeometryFactory geomFactory = new GeometryFactory();
     if (LINE_STRING.equals(geometryType)) {
-      return serialize(geomFactory.createLineString(coordinates));
+      return GeometrySlices.lineString(list);
     } else if (POLYGON.equals(geometryType)) {
-      return serialize(geomFactory.createPolygon(coordinates));
+      return GeometrySlices.polygon(list);
     } else {
       throw new IllegalArgumentException("Cannot serialize with GeometryType " + geometryType);
     }
   }
 
   static Slice latLngToGeometry(LatLng latLng) {
-    GeometryFactory geomFactory = new GeometryFactory();
-    Point point = geomFactory.createPoint(new Coordinate(latLng.lng, latLng.lat));
-    return serialize(point);
+    return GeometrySlices.point(latLng);
+  }
+
+  /** Builds a {@link #TYPE_ROW_LAT_LNG} value, in degrees. */
+  static SqlRow latLngToRow(LatLng latLng) {
+    return RowValueBuilder.buildRowValue(
+        LAT_LNG_ROW_TYPE,
+        fieldBuilders -> {
+          DOUBLE.writeDouble(fieldBuilders.get(0), latLng.lat);
+          DOUBLE.writeDouble(fieldBuilders.get(1), latLng.lng);
+        });
+  }
+
+  @Override
+  public Iterable<ConnectorFactory> getConnectorFactories() {
+    return List.of(new H3ConnectorFactory());
   }
 
   @Override
   public Set<Class<?>> getFunctions() {
+    // Generate missing geometry tables and index region datasets while the server starts rather
+    // than in the first query
+    CellGeometryTables.SHARED.prepare();
+    RegionDatasets.SHARED.prepare();
     return Set.of(
         IndexingFunctions.class,
         InspectionFunctions.class,
         HierarchyFunctions.class,
+        CompactAggregation.class,
+        CellSetFunctions.class,
+        CellSetAggregation.class,
+        BloomAggregation.class,
         TraversalFunctions.class,
         RegionFunctions.class,
+        MultiPolygonAggregation.class,
         DirectedEdgeFunctions.class,
         VertexFunctions.class,
         MiscellaneousFunctions.class);
@@ -0,0 +1,214 @@
+package io.shchoi.trino.h3;
+
+import com.uber.h3core.AreaUnit;
+import com.uber.h3core.LengthUnit;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+/**
+ * Cheap up-front checks for invalid input, so functions can return null for it without crossing
+ * into native code and paying for the exception H3 throws back. Coordinate, resolution and unit
+ * checks reject exactly what H3 rejects. Cell, directed edge and vertex checks are applied by
+ * functions that return null for invalid indexes, since H3 itself does not validate them on every
+ * call.
+ */
+final class H3Validation {
+  private static final int MAX_RES = H3Indexer.MAX_RES;
+  private static final int NUM_BASE_CELLS = 122;
+  private static final int NUM_HEX_VERTS = 6;
+
+  private static final int RES_OFFSET = 52;
+  private static final int BASE_CELL_OFFSET = 45;
+  private static final int RESERVED_OFFSET = 56;
+  private static final int MODE_OFFSET = 59;
+  private static final long CELL_MODE = 1;
+  private static final long DIRECTED_EDGE_MODE = 2;
+  private static final long VERTEX_MODE = 4;
+  private static final int NUM_PENT_VERTS = 5;
+
+  private static final int CENTER_DIGIT = 0;
+  private static final int K_AXES_DIGIT = 1;
+  private static final int INVALID_DIGIT = 7;
+
+  private static final boolean[] PENTAGON_BASE_CELLS = new boolean[NUM_BASE_CELLS];
+
+  static {
+    for (int baseCell : new int[] {4, 14, 24, 38, 49, 58, 63, 72, 83, 97, 107, 117}) {
+      PENTAGON_BASE_CELLS[baseCell] = true;
+    }
+  }
+
+  private static final AreaUnit[] AREA_UNITS = AreaUnit.values();
+  private static final Slice[] AREA_UNIT_NAMES = new Slice[AREA_UNITS.length];
+  private static final LengthUnit[] LENGTH_UNITS = LengthUnit.values();
+  private static final Slice[] LENGTH_UNIT_NAMES = new Slice[LENGTH_UNITS.length];
+
+  static {
+    for (int i = 0; i < AREA_UNITS.length; i++) {
+      AREA_UNIT_NAMES[i] = Slices.utf8Slice(AREA_UNITS[i].name());
+    }
+    for (int i = 0; i < LENGTH_UNITS.length; i++) {
+      LENGTH_UNIT_NAMES[i] = Slices.utf8Slice(LENGTH_UNITS[i].name());
+    }
+  }
+
+  private H3Validation() {}
+
+  /** Returns true for resolutions 0 through 15. */
+  static boolean isValidResolution(long res) {
+    return res >= 0 && res <= MAX_RES;
+  }
+
+  /** Returns true if both coordinates are finite, which is all H3 requires of them. */
+  static boolean isValidLatLng(double lat, double lng) {
+    return Double.isFinite(lat) && Double.isFinite(lng);
+  }
+
+  /** Returns true for vertex numbers a hexagon has (0 through 5). */
+  static boolean isValidVertexNum(long vertexNum) {
+    return vertexNum >= 0 && vertexNum < NUM_HEX_VERTS;
+  }
+
+  /** Bit-level port of the H3 {@code isValidCell}, without the JNI call. */
+  static boolean isValidCell(long h) {
+    if ((h >>> MODE_OFFSET) != CELL_MODE || ((h >>> RESERVED_OFFSET) & 0x7) != 0) {
+      // Also rejects a set high bit, which is above the mode
+      return false;
+    }
+    int baseCell = getBaseCell(h);
+    if (baseCell >= NUM_BASE_CELLS) {
+      return false;
+    }
+    int res = getResolution(h);
+    boolean foundFirstNonZeroDigit = false;
+    for (int r = 1; r <= res; r++) {
+      int digit = getDigit(h, r);
+      if (!foundFirstNonZeroDigit && digit != CENTER_DIGIT) {
+        foundFirstNonZeroDigit = true;
+        // Pentagons have no children in the deleted K axes subsequence
+        if (PENTAGON_BASE_CELLS[baseCell] && digit == K_AXES_DIGIT) {
+          return false;
+        }
+      }
+      if (digit == INVALID_DIGIT) {
+        return false;
+      }
+    }
+    long unusedDigitsMask = (1L << ((MAX_RES - res) * 3)) - 1;
+    return (h & unusedDigitsMask) == unusedDigitsMask;
+  }
+
+  /** Bit-level port of the H3 {@code isValidDirectedEdge}, without the JNI call. */
+  static boolean isValidDirectedEdge(long h) {
+    if ((h >>> MODE_OFFSET) != DIRECTED_EDGE_MODE) {
+      return false;
+    }
+    int direction = (int) (h >>> RESERVED_OFFSET) & 0x7;
+    if (direction == CENTER_DIGIT || direction == INVALID_DIGIT) {
+      return false;
+    }
+    long origin = ownerCell(h);
+    if (direction == K_AXES_DIGIT && isPentagon(origin)) {
+      return false;
+    }
+    return isValidCell(origin);
+  }
+
+  /**
+   * Bit-level checks of the H3 {@code isValidVertex}: the mode, a vertex number the owner has and
+   * a valid owner. Whether the owner is the canonical one of the vertex takes a look at its
+   * neighbors, which is left to H3.
+   */
+  static boolean isValidVertex(long h) {
+    if ((h >>> MODE_OFFSET) != VERTEX_MODE) {
+      return false;
+    }
+    int vertexNum = (int) (h >>> RESERVED_OFFSET) & 0x7;
+    long owner = ownerCell(h);
+    if (vertexNum >= (isPentagon(owner) ? NUM_PENT_VERTS : NUM_HEX_VERTS)) {
+      return false;
+    }
+    return isValidCell(owner);
+  }
+
+  /**
+   * Returns true for ASCII hexadecimal digits, optionally after a plus sign, that fit in 64 bits,
+   * which H3Core parses as an index without throwing.
+   */
+  static boolean isValidH3String(Slice h3) {
+    int length = h3.length();
+    int position = length > 0 && h3.getByte(0) == '+' ? 1 : 0;
+    if (position == length) {
+      return false;
+    }
+    int significantDigits = 0;
+    for (int i = position; i < length; i++) {
+      byte c = h3.getByte(i);
+      boolean digit =
+          (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+      if (!digit) {
+        return false;
+      }
+      if (significantDigits > 0 || c != '0') {
+        significantDigits++;
+      }
+    }
+    return significantDigits <= 16;
+  }
+
+  /** Resolution bits of an index. */
+  static int getResolution(long h) {
+    return (int) (h >>> RES_OFFSET) & 0xF;
+  }
+
+  /** Base cell bits of an index. */
+  static int getBaseCell(long h) {
+    return (int) (h >>> BASE_CELL_OFFSET) & 0x7F;
+  }
+
+  /** Returns true for the twelve base cells whose descendants along their center are pentagons. */
+  static boolean isPentagonBaseCell(int baseCell) {
+    return baseCell >= 0 && baseCell < NUM_BASE_CELLS && PENTAGON_BASE_CELLS[baseCell];
+  }
+
+  /** Parses an area unit name, returning null rather than throwing if it is not one. */
+  static AreaUnit areaUnit(Slice name) {
+    for (int i = 0; i < AREA_UNITS.length; i++) {
+      if (AREA_UNIT_NAMES[i].equals(name)) {
+        return AREA_UNITS[i];
+      }
+    }
+    return null;
+  }
+
+  /** Parses a length unit name, returning null rather than throwing if it is not one. */
+  static LengthUnit lengthUnit(Slice name) {
+    for (int i = 0; i < LENGTH_UNITS.length; i++) {
+      if (LENGTH_UNIT_NAMES[i].equals(name)) {
+        return LENGTH_UNITS[i];
+      }
+    }
+    return null;
+  }
+
+  /** The cell an edge or vertex index belongs to: the index in cell mode, reserved bits cleared. */
+  private static long ownerCell(long h) {
+    return (h & ~(0xFL << MODE_OFFSET) & ~(0x7L << RESERVED_OFFSET)) | (CELL_MODE << MODE_OFFSET);
+  }
+
+  private static boolean isPentagon(long h) {
+    if (!isPentagonBaseCell(getBaseCell(h))) {
+      return false;
+    }
+    for (int r = 1; r <= getResolution(h); r++) {
+      if (getDigit(h, r) != CENTER_DIGIT) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int getDigit(long h, int res) {
+    return (int) (h >>> ((MAX_RES - res) * 3)) & 0x7;
+  }
+}
@@ -15,13 +15,13 @@
  */
 package io.shchoi.trino.h3;
 
+import io.trino.spi.TrinoException;
 import io.trino.spi.block.Block;
 import io.trino.spi.function.Description;
 import io.trino.spi.function.ScalarFunction;
 import io.trino.spi.function.SqlNullable;
 import io.trino.spi.function.SqlType;
 import io.trino.spi.type.StandardTypes;
-import java.util.List;
 
 /** Function wrapping {@link com.uber.h3core.H3Core#cellToParent(long, int)} */
 public final class HierarchyFunctions {
@@ -31,8 +31,11 @@ public final class HierarchyFunctions {
   @SqlType(StandardTypes.BIGINT)
   public static Long cellToParent(
       @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidResolution(res) || res > H3Validation.getResolution(cell)) {
+      return null;
+    }
     try {
-      return H3Plugin.H3.cellToParent(cell, H3Plugin.longToInt(res));
+      return H3Plugin.H3.cellToParent(cell, (int) res);
     } catch (Exception e) {
       return null;
     }
@@ -44,9 +47,23 @@ public final class HierarchyFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block cellToChildren(
       @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidResolution(res) || res < H3Validation.getResolution(cell)) {
+      return null;
+    }
     try {
-      List<Long> children = H3Plugin.H3.cellToChildren(cell, H3Plugin.longToInt(res));
-      return H3Plugin.longListToBlock(children);
+      long size = H3Plugin.H3.cellToChildrenSize(cell, (int) res);
+      OutputLimits.checkCellCount(size, "h3_cell_to_children");
+      if (size <= OutputLimits.CHUNK_CELLS) {
+        return NativeCells.cellToChildren(cell, (int) res);
+      }
+      // Large sets of children are written in chunks, so the call can be interrupted
+      if (!H3Validation.isValidCell(cell)) {
+        return null;
+      }
+      return H3Plugin.longArrayToBlock(
+          PolygonCoverage.ChildCells.toArray(cell, (int) res, Math.toIntExact(size)));
+    } catch (TrinoException e) {
+      throw e;
     } catch (Exception e) {
       return null;
     }
@@ -58,8 +75,11 @@ public final class HierarchyFunctions {
   @SqlType(StandardTypes.BIGINT)
   public static Long cellToCenterChild(
       @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidResolution(res) || res < H3Validation.getResolution(cell)) {
+      return null;
+    }
     try {
-      return H3Plugin.H3.cellToCenterChild(cell, H3Plugin.longToInt(res));
+      return H3Plugin.H3.cellToCenterChild(cell, (int) res);
     } catch (Exception e) {
       return null;
     }
@@ -71,8 +91,12 @@ public final class HierarchyFunctions {
   @SqlType(StandardTypes.BIGINT)
   public static Long cellToChildrenSize(
       @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.INTEGER) long childRes) {
+    if (!H3Validation.isValidResolution(childRes)
+        || childRes < H3Validation.getResolution(cell)) {
+      return null;
+    }
     try {
-      return H3Plugin.H3.cellToChildrenSize(cell, H3Plugin.longToInt(childRes));
+      return H3Plugin.H3.cellToChildrenSize(cell, (int) childRes);
     } catch (Exception e) {
       return null;
     }
@@ -84,8 +108,11 @@ public final class HierarchyFunctions {
   @SqlType(StandardTypes.BIGINT)
   public static Long cellToChildPos(
       @SqlType(StandardTypes.BIGINT) long child, @SqlType(StandardTypes.INTEGER) long parentRes) {
+    if (!H3Validation.isValidResolution(parentRes)) {
+      return null;
+    }
     try {
-      return H3Plugin.H3.cellToChildPos(child, H3Plugin.longToInt(parentRes));
+      return H3Plugin.H3.cellToChildPos(child, (int) parentRes);
     } catch (Exception e) {
       return null;
     }
@@ -99,8 +126,11 @@ public final class HierarchyFunctions {
       @SqlType(StandardTypes.BIGINT) long childPos,
       @SqlType(StandardTypes.BIGINT) long parent,
       @SqlType(StandardTypes.INTEGER) long childRes) {
+    if (childPos < 0 || !H3Validation.isValidResolution(childRes)) {
+      return null;
+    }
     try {
-      return H3Plugin.H3.childPosToCell(childPos, parent, H3Plugin.longToInt(childRes));
+      return H3Plugin.H3.childPosToCell(childPos, parent, (int) childRes);
     } catch (Exception e) {
       return null;
     }
@@ -112,9 +142,10 @@ public final class HierarchyFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block compactCells(@SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block cellsBlock) {
     try {
-      List<Long> cells = H3Plugin.longBlockToList(cellsBlock);
-      List<Long> compacted = H3Plugin.H3.compactCells(cells);
-      return H3Plugin.longListToBlock(compacted);
+      return H3Plugin.longArrayToBlock(
+          CellCompactor.compactCells(H3Plugin.longBlockToArray(cellsBlock)));
+    } catch (TrinoException e) {
+      throw e;
     } catch (Exception e) {
       return null;
     }
@@ -127,10 +158,81 @@ public final class HierarchyFunctions {
   public static Block uncompactCells(
       @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block cellsBlock,
       @SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidResolution(res)) {
+      return null;
+    }
+    try {
+      return H3Plugin.longArrayToBlock(
+          CellCompactor.uncompactCells(H3Plugin.longBlockToArray(cellsBlock), (int) res));
+    } catch (TrinoException e) {
+      throw e;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  @ScalarFunction(value = "h3_cells_union")
+  @Description("Compacted cells covering the area of either array of cells")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block cellsUnion(
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block first,
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block second) {
+    try {
+      return H3Plugin.longArrayToBlock(
+          CellSets.union(H3Plugin.longBlockToArray(first), H3Plugin.longBlockToArray(second)));
+    } catch (TrinoException e) {
+      throw e;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  @ScalarFunction(value = "h3_cells_intersect")
+  @Description("Compacted cells covering the area of both arrays of cells")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block cellsIntersect(
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block first,
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block second) {
+    try {
+      return H3Plugin.longArrayToBlock(
+          CellSets.intersect(H3Plugin.longBlockToArray(first), H3Plugin.longBlockToArray(second)));
+    } catch (TrinoException e) {
+      throw e;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  @ScalarFunction(value = "h3_cells_except")
+  @Description("Compacted cells covering the area of the first array of cells outside the second")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block cellsExcept(
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block first,
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block second) {
+    try {
+      return H3Plugin.longArrayToBlock(
+          CellSets.except(H3Plugin.longBlockToArray(first), H3Plugin.longBlockToArray(second)));
+    } catch (TrinoException e) {
+      throw e;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  @ScalarFunction(value = "h3_cells_contains")
+  @Description("Whether the first array of cells covers every cell of the second")
+  @SqlNullable
+  @SqlType(StandardTypes.BOOLEAN)
+  public static Boolean cellsContains(
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block first,
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block second) {
     try {
-      List<Long> cells = H3Plugin.longBlockToList(cellsBlock);
-      List<Long> uncompacted = H3Plugin.H3.uncompactCells(cells, H3Plugin.longToInt(res));
-      return H3Plugin.longListToBlock(uncompacted);
+      return CellSets.contains(H3Plugin.longBlockToArray(first), H3Plugin.longBlockToArray(second));
+    } catch (TrinoException e) {
+      throw e;
     } catch (Exception e) {
       return null;
     }
@@ -0,0 +1,97 @@
+package io.shchoi.trino.h3;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.airlift.slice.SizeOf.sizeOf;
+
+import io.trino.spi.function.AccumulatorState;
+import io.trino.spi.function.GroupedAccumulatorState;
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+/**
+ * Single and grouped aggregation states holding one value per group, or null before the group's
+ * first input, for state interfaces with {@code get}, {@code set} and {@code addMemoryUsage}. A
+ * value's size is read when it is set, and changes to it made after that are reported through
+ * {@code addMemoryUsage}.
+ */
+final class HolderStates {
+  private HolderStates() {}
+
+  abstract static class Single<T> implements AccumulatorState {
+    private static final int INSTANCE_SIZE = instanceSize(Single.class);
+
+    private final ToLongFunction<T> sizeOf;
+    private T value;
+
+    Single(ToLongFunction<T> sizeOf) {
+      this.sizeOf = sizeOf;
+    }
+
+    public T get() {
+      return value;
+    }
+
+    public void set(T value) {
+      this.value = value;
+    }
+
+    public void addMemoryUsage(long delta) {
+      // The size is read from the value itself
+    }
+
+    @Override
+    public long getEstimatedSize() {
+      return INSTANCE_SIZE + (value == null ? 0 : sizeOf.applyAsLong(value));
+    }
+  }
+
+  abstract static class Grouped<T> implements GroupedAccumulatorState {
+    private static final int INSTANCE_SIZE = instanceSize(Grouped.class);
+
+    private final ToLongFunction<T> sizeOf;
+    private Object[] values = new Object[0];
+    private int groupId;
+    private long valuesSize;
+
+    Grouped(ToLongFunction<T> sizeOf) {
+      this.sizeOf = sizeOf;
+    }
+
+    @Override
+    public void setGroupId(int groupId) {
+      this.groupId = groupId;
+    }
+
+    @Override
+    public void ensureCapacity(int size) {
+      if (values.length < size) {
+        values = Arrays.copyOf(values, Math.max(size, values.length * 2));
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get() {
+      return (T) values[groupId];
+    }
+
+    public void set(T value) {
+      T previous = get();
+      if (previous != null) {
+        valuesSize -= sizeOf.applyAsLong(previous);
+      }
+      if (value != null) {
+        valuesSize += sizeOf.applyAsLong(value);
+      }
+      values[groupId] = value;
+    }
+
+    public void addMemoryUsage(long delta) {
+      valuesSize += delta;
+    }
+
+    @Override
+    public long getEstimatedSize() {
+      return INSTANCE_SIZE + sizeOf(values) + valuesSize;
+    }
+  }
+}
@@ -2,22 +2,30 @@ package io.shchoi.trino.h3;
 
 import static io.trino.geospatial.GeometryType.POLYGON;
 import static io.trino.geospatial.serde.JtsGeometrySerde.deserialize;
+import static io.trino.spi.type.DoubleType.DOUBLE;
 import static org.locationtech.jts.geom.Geometry.TYPENAME_POINT;
 
 import com.uber.h3core.util.LatLng;
 import io.airlift.slice.Slice;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.LongArrayBlock;
+import io.trino.spi.block.SqlRow;
 import io.trino.spi.function.Description;
 import io.trino.spi.function.ScalarFunction;
 import io.trino.spi.function.SqlNullable;
 import io.trino.spi.function.SqlType;
 import io.trino.spi.type.StandardTypes;
 import java.util.List;
+import java.util.Optional;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Point;
 
 /** Wraps https://h3geo.org/docs/api/indexing */
 public final class IndexingFunctions {
-  /** Function wrapping {@link com.uber.h3core.H3Core#latLngToCell(double, double, int)} */
+  /**
+   * Function wrapping {@link com.uber.h3core.H3Core#latLngToCell(double, double, int)}, or {@link
+   * H3Indexer} when selected through {@link H3Plugin#INDEXING_ENGINE_PROPERTY}.
+   */
   @ScalarFunction(value = "h3_latlng_to_cell")
   @Description("Convert degrees lat/lng to H3 index")
   @SqlNullable
@@ -26,43 +34,152 @@ public final class IndexingFunctions {
       @SqlType(StandardTypes.DOUBLE) double lat,
       @SqlType(StandardTypes.DOUBLE) double lng,
       @SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidLatLng(lat, lng) || !H3Validation.isValidResolution(res)) {
+      return null;
+    }
     try {
-      return H3Plugin.H3.latLngToCell(lat, lng, H3Plugin.longToInt(res));
+      long cell = H3Plugin.latLngToCell(lat, lng, (int) res);
+      return cell == 0 ? null : cell;
     } catch (Exception e) {
       return null;
     }
   }
 
-  /** Function wrapping {@link com.uber.h3core.H3Core#latLngToCell(double, double, int)} */
+  /**
+   * Function wrapping {@link com.uber.h3core.H3Core#latLngToCell(double, double, int)}, or {@link
+   * H3Indexer} when selected through {@link H3Plugin#INDEXING_ENGINE_PROPERTY}. Points are read
+   * directly from the serialized geometry; other encodings are deserialized with JTS.
+   */
   @ScalarFunction(value = "h3_latlng_to_cell")
   @Description("Convert degrees lat/lng to H3 index")
   @SqlNullable
   @SqlType(StandardTypes.BIGINT)
   public static Long latLngToCell(
       @SqlType(StandardTypes.GEOMETRY) Slice pointSlice, @SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidResolution(res)) {
+      return null;
+    }
+    try {
+      double lat;
+      double lng;
+      if (GeometrySlices.isPoint(pointSlice)) {
+        // Read the coordinates straight from the serialized bytes
+        lat = GeometrySlices.pointY(pointSlice);
+        lng = GeometrySlices.pointX(pointSlice);
+      } else {
+        Geometry pointGeomUntyped = deserialize(pointSlice);
+        if (!TYPENAME_POINT.equals(pointGeomUntyped.getGeometryType())) {
+          throw new IllegalArgumentException("Invalid point geometry");
+        }
+        Point pointGeom = (Point) pointGeomUntyped;
+        lat = pointGeom.getY();
+        lng = pointGeom.getX();
+      }
+      if (!H3Validation.isValidLatLng(lat, lng)) {
+        // Empty points read as NaN
+        return null;
+      }
+
+      long cell = H3Plugin.latLngToCell(lat, lng, (int) res);
+      return cell == 0 ? null : cell;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Indexes parallel arrays of latitudes and longitudes in one call, writing the cells straight
+   * into a {@link LongArrayBlock}. Elements that cannot be indexed are null. Returns null if the
+   * arrays differ in length or the resolution is invalid.
+   */
+  @ScalarFunction(value = "h3_latlngs_to_cells")
+  @Description("Convert arrays of degrees lat/lng to H3 indexes")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block latLngsToCells(
+      @SqlType("ARRAY(DOUBLE)") Block lats,
+      @SqlType("ARRAY(DOUBLE)") Block lngs,
+      @SqlType(StandardTypes.INTEGER) long res) {
+    return latLngsToCells(lats, lngs, res, false);
+  }
+
+  /**
+   * Like {@link #latLngsToCells(Block, Block, long)}, optionally dropping each element equal to the
+   * one before it, so a trajectory becomes the sequence of cells it passes through.
+   */
+  @ScalarFunction(value = "h3_latlngs_to_cells")
+  @Description("Convert arrays of degrees lat/lng to H3 indexes, optionally collapsing repeats")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block latLngsToCells(
+      @SqlType("ARRAY(DOUBLE)") Block lats,
+      @SqlType("ARRAY(DOUBLE)") Block lngs,
+      @SqlType(StandardTypes.INTEGER) long res,
+      @SqlType(StandardTypes.BOOLEAN) boolean collapseDuplicates) {
     try {
-      Geometry pointGeomUntyped = deserialize(pointSlice);
-      if (!TYPENAME_POINT.equals(pointGeomUntyped.getGeometryType())) {
-        throw new IllegalArgumentException("Invalid polygon geometry");
+      int positionCount = lats.getPositionCount();
+      if (positionCount != lngs.getPositionCount() || !H3Validation.isValidResolution(res)) {
+        return null;
       }
-      Point pointGeom = (Point) pointGeomUntyped;
 
-      return H3Plugin.H3.latLngToCell(pointGeom.getY(), pointGeom.getX(), H3Plugin.longToInt(res));
+      // 0 is never a valid cell, so it stands for null until the block is built
+      long[] cells = new long[positionCount];
+      int count = 0;
+      for (int i = 0; i < positionCount; i++) {
+        long cell = 0;
+        if (!lats.isNull(i) && !lngs.isNull(i)) {
+          double lat = DOUBLE.getDouble(lats, i);
+          double lng = DOUBLE.getDouble(lngs, i);
+          if (H3Validation.isValidLatLng(lat, lng)) {
+            cell = latLngToCellOrZero(lat, lng, (int) res);
+          }
+        }
+        if (collapseDuplicates && count > 0 && cells[count - 1] == cell) {
+          continue;
+        }
+        cells[count++] = cell;
+      }
+
+      boolean[] isNull = null;
+      for (int i = 0; i < count; i++) {
+        if (cells[i] == 0) {
+          if (isNull == null) {
+            isNull = new boolean[count];
+          }
+          isNull[i] = true;
+        }
+      }
+      return new LongArrayBlock(count, Optional.ofNullable(isNull), cells);
     } catch (Exception e) {
       return null;
     }
   }
 
+  private static long latLngToCellOrZero(double lat, double lng, int res) {
+    try {
+      return H3Plugin.latLngToCell(lat, lng, res);
+    } catch (Exception e) {
+      return 0;
+    }
+  }
+
   /**
    * Wraps {@link com.uber.h3core.H3Core#cellToLatLng(long)}. Produces a row of latitude, longitude
-   * degrees.
+   * degrees. Served from {@link CellGeometryTables} when configured for the cell's resolution.
    */
   @ScalarFunction(value = "h3_cell_to_latlng")
   @Description("Convert H3 index to degrees lat/lng")
   @SqlNullable
   @SqlType(StandardTypes.GEOMETRY)
   public static Slice cellToLatLng(@SqlType(StandardTypes.BIGINT) long h3) {
+    if (!H3Validation.isValidCell(h3)) {
+      return null;
+    }
     try {
+      Slice tabled = CellGeometryTables.SHARED.cellToLatLng(h3);
+      if (tabled != null) {
+        return tabled;
+      }
       LatLng latLng = H3Plugin.H3.cellToLatLng(h3);
       return H3Plugin.latLngToGeometry(latLng);
     } catch (Exception e) {
@@ -70,16 +187,43 @@ public final class IndexingFunctions {
     }
   }
 
+  /**
+   * Wraps {@link com.uber.h3core.H3Core#cellToLatLng(long)}. Produces a row of latitude, longitude
+   * degrees without building a geometry.
+   */
+  @ScalarFunction(value = "h3_cell_to_latlng_row")
+  @Description("Convert H3 index to degrees lat/lng, returns ROW(lat DOUBLE, lng DOUBLE)")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ROW_LAT_LNG)
+  public static SqlRow cellToLatLngRow(@SqlType(StandardTypes.BIGINT) long h3) {
+    if (!H3Validation.isValidCell(h3)) {
+      return null;
+    }
+    try {
+      return H3Plugin.latLngToRow(H3Plugin.H3.cellToLatLng(h3));
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
   /**
    * Wraps {@link com.uber.h3core.H3Core#cellToBoundary(long)}. Produces a row of latitude,
-   * longitude degrees interleaved as (lat0, lng0, lat1, lng1, ..., latN, lngN).
+   * longitude degrees interleaved as (lat0, lng0, lat1, lng1, ..., latN, lngN). Served from {@link
+   * CellGeometryTables} when configured for the cell's resolution.
    */
   @ScalarFunction(value = "h3_cell_to_boundary")
   @Description("Convert H3 index to boundary degrees lat/lng, interleaved")
   @SqlNullable
   @SqlType(StandardTypes.GEOMETRY)
   public static Slice cellToBoundary(@SqlType(StandardTypes.BIGINT) long h3) {
+    if (!H3Validation.isValidCell(h3)) {
+      return null;
+    }
     try {
+      Slice tabled = CellGeometryTables.SHARED.cellToBoundary(h3);
+      if (tabled != null) {
+        return tabled;
+      }
       List<LatLng> boundary = H3Plugin.H3.cellToBoundary(h3);
       // Duplicate the first point at the end to form a closed ring
       boundary.add(boundary.get(0));
@@ -44,6 +44,9 @@ public final class InspectionFunctions {
   @SqlNullable
   @SqlType(StandardTypes.BIGINT)
   public static Long stringToH3(@SqlType(StandardTypes.VARCHAR) Slice h3) {
+    if (!H3Validation.isValidH3String(h3)) {
+      return null;
+    }
     try {
       return H3Plugin.H3.stringToH3(h3.toStringUtf8());
     } catch (Exception e) {
@@ -104,6 +107,9 @@ public final class InspectionFunctions {
   @SqlNullable
   @SqlType(H3Plugin.TYPE_ARRAY_INTEGER)
   public static Block getIcosahedronFaces(@SqlType(StandardTypes.BIGINT) long h3) {
+    if (!H3Validation.isValidCell(h3)) {
+      return null;
+    }
     try {
       Collection<Integer> faces = H3Plugin.H3.getIcosahedronFaces(h3);
       BlockBuilder blockBuilder = INTEGER.createFixedSizeBlockBuilder(faces.size());
@@ -0,0 +1,91 @@
+package io.shchoi.trino.h3;
+
+import java.util.Arrays;
+
+/**
+ * Set of non-zero longs by open addressing with linear probing, remembering the order values were
+ * first added in. Zero marks an empty slot, which no valid H3 index is.
+ */
+final class LongHashSet {
+  private long[] slots;
+  private int mask;
+  private long[] values;
+  private int size;
+
+  LongHashSet(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+    slots = new long[capacity];
+    mask = capacity - 1;
+    values = new long[Math.max(16, expectedSize)];
+  }
+
+  /** Adds a non-zero value, returning false if it was already present. */
+  boolean add(long value) {
+    int slot = slot(value);
+    while (slots[slot] != 0) {
+      if (slots[slot] == value) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = value;
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    values[size++] = value;
+    if (size * 2 > slots.length) {
+      rehash();
+    }
+    return true;
+  }
+
+  /** Adds the non-zero values of the array, skipping zero slots. */
+  void addAll(long[] cells) {
+    for (long cell : cells) {
+      if (cell != 0) {
+        add(cell);
+      }
+    }
+  }
+
+  boolean contains(long value) {
+    int slot = slot(value);
+    while (slots[slot] != 0) {
+      if (slots[slot] == value) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** The values in the order they were first added, valid up to {@link #size}. */
+  long[] values() {
+    return values;
+  }
+
+  private int slot(long value) {
+    // Murmur3 finalizer, since H3 indexes differ mostly in their middle bits
+    long hash = value;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return (int) hash & mask;
+  }
+
+  private void rehash() {
+    slots = new long[slots.length * 2];
+    mask = slots.length - 1;
+    for (int i = 0; i < size; i++) {
+      int slot = slot(values[i]);
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = values[i];
+    }
+  }
+}
@@ -10,7 +10,6 @@ import io.trino.spi.function.ScalarFunction;
 import io.trino.spi.function.SqlNullable;
 import io.trino.spi.function.SqlType;
 import io.trino.spi.type.StandardTypes;
-import java.util.ArrayList;
 
 /** Wraps https://h3geo.org/docs/api/misc */
 public final class MiscellaneousFunctions {
@@ -20,9 +19,12 @@ public final class MiscellaneousFunctions {
   @SqlType(StandardTypes.DOUBLE)
   public static Double getHexagonAreaAvg(
       @SqlType(StandardTypes.INTEGER) long res, @SqlType(StandardTypes.VARCHAR) Slice unit) {
+    AreaUnit areaUnit = H3Validation.areaUnit(unit);
+    if (!H3Validation.isValidResolution(res) || areaUnit == null) {
+      return null;
+    }
     try {
-      return H3Plugin.H3.getHexagonAreaAvg(
-          H3Plugin.longToInt(res), AreaUnit.valueOf(unit.toStringUtf8()));
+      return H3Plugin.H3.getHexagonAreaAvg((int) res, areaUnit);
     } catch (Exception e) {
       return null;
     }
@@ -34,8 +36,12 @@ public final class MiscellaneousFunctions {
   @SqlType(StandardTypes.DOUBLE)
   public static Double cellArea(
       @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.VARCHAR) Slice unit) {
+    AreaUnit areaUnit = H3Validation.areaUnit(unit);
+    if (!H3Validation.isValidCell(cell) || areaUnit == null) {
+      return null;
+    }
     try {
-      return H3Plugin.H3.cellArea(cell, AreaUnit.valueOf(unit.toStringUtf8()));
+      return H3Plugin.H3.cellArea(cell, areaUnit);
     } catch (Exception e) {
       return null;
     }
@@ -47,9 +53,12 @@ public final class MiscellaneousFunctions {
   @SqlType(StandardTypes.DOUBLE)
   public static Double getHexagonEdgeLengthAvg(
       @SqlType(StandardTypes.INTEGER) long res, @SqlType(StandardTypes.VARCHAR) Slice unit) {
+    LengthUnit lengthUnit = H3Validation.lengthUnit(unit);
+    if (!H3Validation.isValidResolution(res) || lengthUnit == null) {
+      return null;
+    }
     try {
-      return H3Plugin.H3.getHexagonEdgeLengthAvg(
-          H3Plugin.longToInt(res), LengthUnit.valueOf(unit.toStringUtf8()));
+      return H3Plugin.H3.getHexagonEdgeLengthAvg((int) res, lengthUnit);
     } catch (Exception e) {
       return null;
     }
@@ -61,8 +70,12 @@ public final class MiscellaneousFunctions {
   @SqlType(StandardTypes.DOUBLE)
   public static Double edgeLength(
       @SqlType(StandardTypes.BIGINT) long edge, @SqlType(StandardTypes.VARCHAR) Slice unit) {
+    LengthUnit lengthUnit = H3Validation.lengthUnit(unit);
+    if (lengthUnit == null) {
+      return null;
+    }
     try {
-      return H3Plugin.H3.edgeLength(edge, LengthUnit.valueOf(unit.toStringUtf8()));
+      return H3Plugin.H3.edgeLength(edge, lengthUnit);
     } catch (Exception e) {
       return null;
     }
@@ -79,9 +92,13 @@ public final class MiscellaneousFunctions {
       @SqlType(StandardTypes.DOUBLE) double lat2,
       @SqlType(StandardTypes.DOUBLE) double lng2,
       @SqlType(StandardTypes.VARCHAR) Slice unit) {
+    LengthUnit lengthUnit = H3Validation.lengthUnit(unit);
+    if (lengthUnit == null) {
+      return null;
+    }
     try {
       return H3Plugin.H3.greatCircleDistance(
-          new LatLng(lat1, lng1), new LatLng(lat2, lng2), LengthUnit.valueOf(unit.toStringUtf8()));
+          new LatLng(lat1, lng1), new LatLng(lat2, lng2), lengthUnit);
     } catch (Exception e) {
       return null;
     }
@@ -92,8 +109,11 @@ public final class MiscellaneousFunctions {
   @SqlNullable
   @SqlType(StandardTypes.BIGINT)
   public static Long getNumCells(@SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidResolution(res)) {
+      return null;
+    }
     try {
-      return H3Plugin.H3.getNumCells(H3Plugin.longToInt(res));
+      return H3Plugin.H3.getNumCells((int) res);
     } catch (Exception e) {
       return null;
     }
@@ -105,7 +125,7 @@ public final class MiscellaneousFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block getRes0Cells() {
     try {
-      return H3Plugin.longListToBlock(new ArrayList<>(H3Plugin.H3.getRes0Cells()));
+      return H3Plugin.longListToBlock(H3Plugin.H3.getRes0Cells());
     } catch (Exception e) {
       return null;
     }
@@ -116,9 +136,11 @@ public final class MiscellaneousFunctions {
   @SqlNullable
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block getPentagons(@SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidResolution(res)) {
+      return null;
+    }
     try {
-      return H3Plugin.longListToBlock(
-          new ArrayList<>(H3Plugin.H3.getPentagons(H3Plugin.longToInt(res))));
+      return H3Plugin.longListToBlock(H3Plugin.H3.getPentagons((int) res));
     } catch (Exception e) {
       return null;
     }
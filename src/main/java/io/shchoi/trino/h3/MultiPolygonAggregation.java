@@ -0,0 +1,81 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
+
+import io.airlift.slice.Slice;
+import io.trino.spi.TrinoException;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AggregationFunction;
+import io.trino.spi.function.AggregationState;
+import io.trino.spi.function.CombineFunction;
+import io.trino.spi.function.Description;
+import io.trino.spi.function.InputFunction;
+import io.trino.spi.function.OutputFunction;
+import io.trino.spi.function.SqlType;
+import io.trino.spi.type.StandardTypes;
+
+/**
+ * Dissolves the cells of a group into their outline, keeping them compacted as they arrive, so a
+ * contiguous group holds memory in proportion to its perimeter. Unlike {@code
+ * h3_cells_to_multi_polygon(array_agg(cell))}, partial groups are compacted in parallel and
+ * merged, and the outline is only traced by the output function. A cell given more than once
+ * counts once, as in {@code h3_cells_to_multi_polygon}. Returns null if any cell is invalid, if
+ * cells of different resolutions are mixed, or if the group has no cells.
+ */
+@AggregationFunction("h3_cells_to_multi_polygon_agg")
+@Description("Dissolve the cells of a group into a multipolygon")
+public final class MultiPolygonAggregation {
+  private MultiPolygonAggregation() {}
+
+  @InputFunction
+  public static void input(
+      @AggregationState ResolutionCellsState state, @SqlType(StandardTypes.BIGINT) long cell) {
+    ResolutionCells cells = state.get();
+    if (cells == null) {
+      cells = new ResolutionCells();
+      state.set(cells);
+    }
+    long sizeBefore = cells.getEstimatedSize();
+    cells.add(cell);
+    state.addMemoryUsage(cells.getEstimatedSize() - sizeBefore);
+  }
+
+  @CombineFunction
+  public static void combine(
+      @AggregationState ResolutionCellsState state,
+      @AggregationState ResolutionCellsState otherState) {
+    ResolutionCells other = otherState.get();
+    if (other == null) {
+      return;
+    }
+    ResolutionCells cells = state.get();
+    if (cells == null) {
+      state.set(other);
+      return;
+    }
+    long sizeBefore = cells.getEstimatedSize();
+    cells.addAll(other);
+    state.addMemoryUsage(cells.getEstimatedSize() - sizeBefore);
+  }
+
+  @OutputFunction(StandardTypes.GEOMETRY)
+  public static void output(@AggregationState ResolutionCellsState state, BlockBuilder out) {
+    ResolutionCells cells = state.get();
+    Slice multiPolygon = null;
+    if (cells != null) {
+      try {
+        multiPolygon = CellOutline.toMultiPolygon(cells);
+      } catch (TrinoException e) {
+        throw e;
+      } catch (Exception e) {
+        multiPolygon = null;
+      }
+    }
+    if (multiPolygon == null) {
+      out.appendNull();
+      return;
+    }
+    // GEOMETRY values are written like any other variable width slice
+    VARBINARY.writeSlice(out, multiPolygon);
+  }
+}
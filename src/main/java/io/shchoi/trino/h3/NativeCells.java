@@ -0,0 +1,145 @@
+package io.shchoi.trino.h3;
+
+import com.uber.h3core.H3NativeArrays;
+import io.trino.spi.block.Block;
+import java.util.Arrays;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Cell-set producing H3 calls that go from the native result array straight into a block, without
+ * the boxed {@code List<Long>} that {@link com.uber.h3core.H3Core} returns. Throws where H3Core
+ * would.
+ */
+final class NativeCells {
+  private static final H3NativeArrays NATIVE = new H3NativeArrays(H3Plugin.H3);
+
+  /** Containment mode flag for polygonToCells: cells whose center is inside the polygon. */
+  static final int CONTAINMENT_CENTER = 0;
+
+  /**
+   * Containment mode flag for polygonToCells: cells overlapping the polygon at all. Only the
+   * experimental native call implements it.
+   */
+  static final int CONTAINMENT_OVERLAPPING = 2;
+
+  private NativeCells() {}
+
+  static Block gridDisk(long origin, int k) {
+    long[] cells = new long[resultSize(NATIVE.maxGridDiskSize(k))];
+    NATIVE.gridDisk(origin, k, cells);
+    return nonZeroToBlock(cells);
+  }
+
+  /**
+   * Fills the results with the cell and its neighbors, leaving a zero slot around pentagons. The
+   * results must hold 7 cells and are cleared first, since H3 only writes the slots it fills.
+   */
+  static void neighbors(long origin, long[] results) {
+    Arrays.fill(results, 0);
+    NATIVE.gridDisk(origin, 1, results);
+  }
+
+  /** Cells come back ring by ring, as H3Core.gridDiskUnsafe lists them once flattened. */
+  static Block gridDiskUnsafe(long origin, int k) {
+    long[] cells = new long[resultSize(NATIVE.maxGridDiskSize(k))];
+    NATIVE.gridDiskUnsafe(origin, k, cells);
+    return nonZeroToBlock(cells);
+  }
+
+  static Block gridRingUnsafe(long origin, int k) {
+    long[] cells = new long[k == 0 ? 1 : resultSize(6L * k)];
+    NATIVE.gridRingUnsafe(origin, k, cells);
+    return nonZeroToBlock(cells);
+  }
+
+  static Block cellToChildren(long cell, int childRes) {
+    return nonZeroToBlock(cellToChildrenArray(cell, childRes));
+  }
+
+  /** Like {@link #cellToChildren}, possibly with zero slots left in the array. */
+  static long[] cellToChildrenArray(long cell, int childRes) {
+    long[] cells = new long[resultSize(NATIVE.cellToChildrenSize(cell, childRes))];
+    NATIVE.cellToChildren(cell, childRes, cells);
+    return cells;
+  }
+
+  /** Cells whose centers are inside the polygon, from JTS coordinates in degrees. */
+  static Block polygonToCells(Polygon polygon, int res) {
+    return nonZeroToBlock(polygonToCellsArray(polygon, res));
+  }
+
+  /** Like {@link #polygonToCells}, possibly with zero slots left in the array. */
+  static long[] polygonToCellsArray(Polygon polygon, int res) {
+    return polygonToCellsArray(polygon, res, CONTAINMENT_CENTER);
+  }
+
+  /**
+   * Cells of the polygon under a containment mode, possibly with zero slots left in the array.
+   * Modes other than center containment go through the experimental native call, as H3Core does.
+   */
+  static long[] polygonToCellsArray(Polygon polygon, int res, int containment) {
+    double[] verts = packRing(polygon.getExteriorRing());
+    // Hole sizes count packed doubles, two per vertex, as H3Core passes them
+    int[] holeSizes = new int[polygon.getNumInteriorRing()];
+    int holeDoubles = 0;
+    for (int i = 0; i < holeSizes.length; i++) {
+      holeSizes[i] = polygon.getInteriorRingN(i).getNumPoints() * 2;
+      holeDoubles += holeSizes[i];
+    }
+    double[] holeVerts = new double[holeDoubles];
+    int offset = 0;
+    for (int i = 0; i < holeSizes.length; i++) {
+      double[] hole = packRing(polygon.getInteriorRingN(i));
+      System.arraycopy(hole, 0, holeVerts, offset, hole.length);
+      offset += hole.length;
+    }
+
+    if (containment == CONTAINMENT_CENTER) {
+      long size = NATIVE.maxPolygonToCellsSize(verts, holeSizes, holeVerts, res, containment);
+      long[] cells = new long[resultSize(size)];
+      NATIVE.polygonToCells(verts, holeSizes, holeVerts, res, containment, cells);
+      return cells;
+    }
+    long size =
+        NATIVE.maxPolygonToCellsSizeExperimental(verts, holeSizes, holeVerts, res, containment);
+    long[] cells = new long[resultSize(size)];
+    NATIVE.polygonToCellsExperimental(verts, holeSizes, holeVerts, res, containment, cells);
+    return cells;
+  }
+
+  /** Packs a ring as lat, lng pairs in radians, the layout the native polygon calls read. */
+  private static double[] packRing(LineString ring) {
+    CoordinateSequence coordinates = ring.getCoordinateSequence();
+    double[] packed = new double[coordinates.size() * 2];
+    for (int i = 0; i < coordinates.size(); i++) {
+      packed[i * 2] = Math.toRadians(coordinates.getY(i));
+      packed[i * 2 + 1] = Math.toRadians(coordinates.getX(i));
+    }
+    return packed;
+  }
+
+  /** Squeezes out zero slots and wraps the remaining cells without copying. */
+  private static Block nonZeroToBlock(long[] cells) {
+    return H3Plugin.longArrayToBlock(cells, moveNonZeroToFront(cells));
+  }
+
+  /** Moves non-zero cells to the front, keeping their order, and returns how many there are. */
+  static int moveNonZeroToFront(long[] cells) {
+    int count = 0;
+    for (long cell : cells) {
+      if (cell != 0) {
+        cells[count++] = cell;
+      }
+    }
+    return count;
+  }
+
+  private static int resultSize(long size) {
+    if (size < 0 || size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("result size out of range: " + size);
+    }
+    return (int) size;
+  }
+}
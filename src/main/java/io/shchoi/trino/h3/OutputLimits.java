@@ -0,0 +1,65 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.spi.StandardErrorCode.EXCEEDED_FUNCTION_MEMORY_LIMIT;
+import static io.trino.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+
+import com.uber.h3core.AreaUnit;
+import io.trino.spi.TrinoException;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * Guards for functions whose output grows geometrically with their arguments. Their output is
+ * refused over {@link #MAX_CELLS}, since it is allocated outside Trino's memory accounting: before
+ * any work where the count is known exactly, and otherwise on the cells actually found. Large
+ * outputs are produced a chunk at a time with a check for interruption in between, so a canceled
+ * query does not keep its driver busy.
+ *
+ * <p>Both checks throw {@link TrinoException}s, which functions let through rather than turning
+ * them into null like other failures.
+ */
+final class OutputLimits {
+  /** Cap set by {@link H3Plugin#MAX_OUTPUT_CELLS_PROPERTY}; 0 or less disables it. */
+  static final long MAX_CELLS = Long.getLong(H3Plugin.MAX_OUTPUT_CELLS_PROPERTY, 10_000_000);
+
+  /** Outputs expected to be larger than this are produced in chunks of this many cells. */
+  static final int CHUNK_CELLS = 1 << 16;
+
+  private static final double KM_PER_DEGREE = 111.195;
+
+  private OutputLimits() {}
+
+  /** Throws if a function would return more cells than the cap. */
+  static void checkCellCount(long cells, String function) {
+    if (MAX_CELLS > 0 && cells > MAX_CELLS) {
+      throw new TrinoException(
+          EXCEEDED_FUNCTION_MEMORY_LIMIT,
+          String.format(
+              "%s would return at least %,d cells, over the limit of %,d set by %s. Use the"
+                  + " h3.system.polyfill table function to stream large polygons",
+              function, cells, MAX_CELLS, H3Plugin.MAX_OUTPUT_CELLS_PROPERTY));
+    }
+  }
+
+  /** Throws if the thread was interrupted, leaving the interrupt flag set for the caller. */
+  static void checkInterrupted() {
+    if (Thread.currentThread().isInterrupted()) {
+      throw interrupted();
+    }
+  }
+
+  static TrinoException interrupted() {
+    return new TrinoException(GENERIC_INTERNAL_ERROR, "Interrupted while computing H3 cells");
+  }
+
+  /**
+   * Cells at the resolution expected in a polygon, from its area in square degrees scaled to
+   * square kilometers at its middle latitude. Only good enough to choose how to find the cells.
+   */
+  static long estimatePolygonCells(Geometry geometry, int res) {
+    Envelope envelope = geometry.getEnvelopeInternal();
+    double midLat = Math.toRadians((envelope.getMinY() + envelope.getMaxY()) / 2);
+    double areaKm2 = geometry.getArea() * KM_PER_DEGREE * KM_PER_DEGREE * Math.cos(midLat);
+    return (long) Math.ceil(areaKm2 / H3Plugin.H3.getHexagonAreaAvg(res, AreaUnit.km2));
+  }
+}
@@ -0,0 +1,210 @@
+package io.shchoi.trino.h3;
+
+import com.uber.h3core.AreaUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * Polyfills one large polygon on a bounded fork-join pool, using the tiles of {@link
+ * PolygonCoverage}: each coarse tile is a task, interior tiles expand straight to their
+ * descendants, and boundary tiles fork a task per child until they are small enough to polyfill.
+ * Returns the same cells as the native polyfill, in ascending order.
+ */
+final class ParallelPolyfill {
+  /** Threads set by {@link H3Plugin#POLYFILL_PARALLELISM_PROPERTY}; 1 disables the mode. */
+  static final int PARALLELISM =
+      Math.max(1, Integer.getInteger(H3Plugin.POLYFILL_PARALLELISM_PROPERTY, 1));
+
+  /** Below this many cells, estimated from the envelope, the serial native call is faster. */
+  private static final double MIN_ESTIMATED_CELLS = 100_000;
+
+  private static final double KM_PER_DEGREE = 111.195;
+
+  private static volatile ForkJoinPool pool;
+
+  private ParallelPolyfill() {}
+
+  /**
+   * Whether the mode is enabled and the polygon is large enough at the resolution to be worth
+   * splitting into tiles.
+   */
+  static boolean isWorthwhile(Geometry geometry, int res) {
+    if (PARALLELISM <= 1 || !PolygonCoverage.isTiled(geometry, res)) {
+      return false;
+    }
+    Envelope envelope = geometry.getEnvelopeInternal();
+    double midLat = Math.toRadians((envelope.getMinY() + envelope.getMaxY()) / 2);
+    double areaKm2 =
+        envelope.getWidth()
+            * envelope.getHeight()
+            * KM_PER_DEGREE
+            * KM_PER_DEGREE
+            * Math.cos(midLat);
+    return areaKm2 / H3Plugin.H3.getHexagonAreaAvg(res, AreaUnit.km2) >= MIN_ESTIMATED_CELLS;
+  }
+
+  /** Polyfills on the shared pool. The geometry must pass {@link PolygonCoverage#isTiled}. */
+  static long[] polygonToCells(Geometry geometry, int res, String function) {
+    return polygonToCells(geometry, res, function, pool());
+  }
+
+  /**
+   * Polyfills on the pool. If the calling thread is interrupted while waiting, tasks not yet
+   * started are skipped and the call throws. The tasks count the cells they find between them
+   * and fail once those pass the output cap of the named function.
+   */
+  static long[] polygonToCells(Geometry geometry, int res, String function, ForkJoinPool pool) {
+    Walk walk = new Walk(PolygonCoverage.classifier(geometry, res), res, function);
+    long[] tiles = PolygonCoverage.coarseTiles(geometry);
+    ForkJoinTask<long[]> root =
+        pool.submit(
+            new RecursiveTask<long[]>() {
+              @Override
+              protected long[] compute() {
+                return forkAll(walk, tiles, false);
+              }
+            });
+    long[] cells;
+    try {
+      cells = root.get();
+    } catch (InterruptedException e) {
+      walk.canceled = true;
+      root.cancel(true);
+      Thread.currentThread().interrupt();
+      throw OutputLimits.interrupted();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    Arrays.sort(cells);
+    return cells;
+  }
+
+  private static long[] forkAll(Walk walk, long[] tiles, boolean inside) {
+    List<TileTask> tasks = new ArrayList<>(tiles.length);
+    for (long tile : tiles) {
+      tasks.add(new TileTask(walk, tile, inside));
+    }
+    long[][] results = new long[tasks.size()][];
+    long total = 0;
+    int index = 0;
+    for (TileTask task : RecursiveTask.invokeAll(tasks)) {
+      results[index] = task.join();
+      total += results[index].length;
+      index++;
+    }
+    long[] cells = new long[Math.toIntExact(total)];
+    int offset = 0;
+    for (long[] result : results) {
+      System.arraycopy(result, 0, cells, offset, result.length);
+      offset += result.length;
+    }
+    return cells;
+  }
+
+  /** State shared by the tasks of one polyfill. */
+  private static final class Walk {
+    private final PolygonCoverage coverage;
+    private final int res;
+    private final String function;
+    private final AtomicLong cellCount = new AtomicLong();
+    private volatile boolean canceled;
+
+    Walk(PolygonCoverage coverage, int res, String function) {
+      this.coverage = coverage;
+      this.res = res;
+      this.function = function;
+    }
+
+    /**
+     * Counts cells about to be produced, canceling the walk and throwing if the cells of every
+     * task together pass the cap.
+     */
+    void addCells(long count) {
+      long total = cellCount.addAndGet(count);
+      if (OutputLimits.MAX_CELLS > 0 && total > OutputLimits.MAX_CELLS) {
+        canceled = true;
+        OutputLimits.checkCellCount(total, function);
+      }
+    }
+  }
+
+  private static final class TileTask extends RecursiveTask<long[]> {
+    private final Walk walk;
+    private final long tile;
+    // Whether the tile is already known to be inside the polygon
+    private final boolean inside;
+
+    TileTask(Walk walk, long tile, boolean inside) {
+      this.walk = walk;
+      this.tile = tile;
+      this.inside = inside;
+    }
+
+    @Override
+    protected long[] compute() {
+      if (walk.canceled) {
+        return new long[0];
+      }
+      int res = walk.res;
+      int tileRes = H3Validation.getResolution(tile);
+      boolean split = res - tileRes > PolygonCoverage.MAX_POLYFILL_DELTA;
+      if (inside) {
+        // Large interior tiles are split too, so their expansion is spread over the pool
+        return split ? forkAll(walk, children(tileRes + 1), true) : descendants();
+      }
+      Geometry hull = PolygonCoverage.neighborhoodHull(tile);
+      return switch (walk.coverage.classify(hull)) {
+        case OUTSIDE -> new long[0];
+        case INSIDE -> split ? forkAll(walk, children(tileRes + 1), true) : descendants();
+        case BOUNDARY -> {
+          if (split) {
+            yield forkAll(walk, children(tileRes + 1), false);
+          }
+          long[] cells = nonZero(walk.coverage.boundaryCells(tile, hull));
+          walk.addCells(cells.length);
+          yield cells;
+        }
+      };
+    }
+
+    /** The descendants at the target resolution, counted before they are produced. */
+    private long[] descendants() {
+      walk.addCells(H3Plugin.H3.cellToChildrenSize(tile, walk.res));
+      return children(walk.res);
+    }
+
+    private long[] children(int childRes) {
+      return nonZero(NativeCells.cellToChildrenArray(tile, childRes));
+    }
+  }
+
+  private static long[] nonZero(long[] cells) {
+    return Arrays.copyOf(cells, NativeCells.moveNonZeroToFront(cells));
+  }
+
+  /** The pool shared by every polyfill, created on first use. */
+  static ForkJoinPool pool() {
+    ForkJoinPool result = pool;
+    if (result == null) {
+      synchronized (ParallelPolyfill.class) {
+        result = pool;
+        if (result == null) {
+          result = new ForkJoinPool(PARALLELISM);
+          pool = result;
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,128 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.geospatial.serde.JtsGeometrySerde.deserialize;
+import static io.trino.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+import static io.trino.spi.function.table.TableFunctionProcessorState.Finished.FINISHED;
+import static io.trino.spi.function.table.TableFunctionProcessorState.Processed.produced;
+import static io.trino.spi.type.BigintType.BIGINT;
+import static io.trino.spi.type.IntegerType.INTEGER;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.Page;
+import io.trino.spi.TrinoException;
+import io.trino.spi.connector.ConnectorAccessControl;
+import io.trino.spi.connector.ConnectorSession;
+import io.trino.spi.connector.ConnectorSplit;
+import io.trino.spi.connector.ConnectorTransactionHandle;
+import io.trino.spi.function.table.AbstractConnectorTableFunction;
+import io.trino.spi.function.table.Argument;
+import io.trino.spi.function.table.ConnectorTableFunctionHandle;
+import io.trino.spi.function.table.Descriptor;
+import io.trino.spi.function.table.ReturnTypeSpecification.DescribedTable;
+import io.trino.spi.function.table.ScalarArgument;
+import io.trino.spi.function.table.ScalarArgumentSpecification;
+import io.trino.spi.function.table.TableFunctionAnalysis;
+import io.trino.spi.function.table.TableFunctionProcessorProvider;
+import io.trino.spi.function.table.TableFunctionProcessorState;
+import io.trino.spi.function.table.TableFunctionSplitProcessor;
+import io.trino.spi.type.Type;
+import java.util.List;
+import java.util.Map;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * {@code h3.system.polyfill(geometry, resolution)}: the cells of {@code h3_polygon_to_cells} for a
+ * polygon or multipolygon, as rows of a {@code cell} column. Cells are produced a page at a time
+ * by {@link PolygonCoverage}, so the coverage is never held whole. A null geometry yields no rows.
+ * Arguments are read at analysis, so the geometry must be a constant rather than a column.
+ */
+final class PolyfillTableFunction extends AbstractConnectorTableFunction {
+  static final String SCHEMA_NAME = "system";
+  static final String FUNCTION_NAME = "polyfill";
+
+  static final int PAGE_CELLS = 8192;
+
+  static final TableFunctionProcessorProvider PROCESSOR_PROVIDER =
+      new TableFunctionProcessorProvider() {
+        @Override
+        public TableFunctionSplitProcessor getSplitProcessor(
+            ConnectorSession session, ConnectorTableFunctionHandle handle, ConnectorSplit split) {
+          return new Processor((Handle) handle);
+        }
+      };
+
+  PolyfillTableFunction(Type geometryType) {
+    super(
+        SCHEMA_NAME,
+        FUNCTION_NAME,
+        List.of(
+            ScalarArgumentSpecification.builder().name("GEOMETRY").type(geometryType).build(),
+            ScalarArgumentSpecification.builder().name("RESOLUTION").type(INTEGER).build()),
+        new DescribedTable(Descriptor.descriptor(List.of("cell"), List.of(BIGINT))));
+  }
+
+  @Override
+  public TableFunctionAnalysis analyze(
+      ConnectorSession session,
+      ConnectorTransactionHandle transaction,
+      Map<String, Argument> arguments,
+      ConnectorAccessControl accessControl) {
+    Slice geometry = (Slice) ((ScalarArgument) arguments.get("GEOMETRY")).getValue();
+    Long res = (Long) ((ScalarArgument) arguments.get("RESOLUTION")).getValue();
+    if (res == null || !H3Validation.isValidResolution(res)) {
+      throw new TrinoException(INVALID_FUNCTION_ARGUMENT, "Invalid resolution: " + res);
+    }
+    if (geometry != null) {
+      // Fail at analysis rather than on a worker
+      String type = deserialize(geometry).getGeometryType();
+      if (!Geometry.TYPENAME_POLYGON.equals(type)
+          && !Geometry.TYPENAME_MULTIPOLYGON.equals(type)) {
+        throw new TrinoException(INVALID_FUNCTION_ARGUMENT, "Invalid polygon geometry: " + type);
+      }
+    }
+    byte[] geometryBytes = geometry == null ? null : geometry.getBytes();
+    return TableFunctionAnalysis.builder()
+        .handle(new Handle(geometryBytes, res.intValue()))
+        .build();
+  }
+
+  /** The serialized geometry, or null for no rows, and the resolution. */
+  public record Handle(byte[] geometry, int resolution) implements ConnectorTableFunctionHandle {}
+
+  /** Each call is one split, streamed by one processor. */
+  public enum Split implements ConnectorSplit {
+    INSTANCE;
+
+    @Override
+    public long getRetainedSizeInBytes() {
+      return 0;
+    }
+  }
+
+  static final class Processor implements TableFunctionSplitProcessor {
+    private final Handle handle;
+    private PolygonCoverage coverage;
+
+    Processor(Handle handle) {
+      this.handle = handle;
+    }
+
+    @Override
+    public TableFunctionProcessorState process() {
+      if (handle.geometry() == null) {
+        return FINISHED;
+      }
+      if (coverage == null) {
+        Geometry geometry = deserialize(Slices.wrappedBuffer(handle.geometry()));
+        coverage = PolygonCoverage.create(geometry, handle.resolution());
+      }
+      long[] cells = new long[PAGE_CELLS];
+      int count = coverage.next(cells);
+      if (count == 0) {
+        return FINISHED;
+      }
+      return produced(new Page(count, H3Plugin.longArrayToBlock(cells, count)));
+    }
+  }
+}
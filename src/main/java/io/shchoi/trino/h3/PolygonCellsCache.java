@@ -0,0 +1,197 @@
+package io.shchoi.trino.h3;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+import static io.airlift.slice.SizeOf.sizeOf;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.XxHash64;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Cells of recently polyfilled polygons, so geofence joins that polyfill the same polygons on
+ * every row do not deserialize and polyfill them again. Entries are keyed by a hash of the
+ * serialized geometry and the resolution, hold the geometry bytes to rule out hash collisions, and
+ * are evicted least recently used first once their retained bytes exceed the budget. The map is
+ * split into segments, each with its own lock and share of the budget, so concurrent drivers
+ * rarely contend.
+ *
+ * <p>Statistics are registered with the platform MBean server as {@value #OBJECT_NAME}, where the
+ * Trino JMX connector can read them for every worker.
+ */
+final class PolygonCellsCache implements PolygonCellsCacheMBean {
+  static final String OBJECT_NAME = "io.shchoi.trino.h3:name=PolygonCellsCache";
+
+  private static final int SEGMENTS = 16;
+
+  // Map entry, key and value objects, on top of the arrays they hold
+  private static final long ENTRY_OVERHEAD =
+      64 + instanceSize(Key.class) + instanceSize(Entry.class);
+
+  /** Cache sized by {@link H3Plugin#POLYFILL_CACHE_BYTES_PROPERTY}, or null if disabled. */
+  static final PolygonCellsCache SHARED = fromSystemProperties();
+
+  private final long maxBytes;
+  private final Segment[] segments = new Segment[SEGMENTS];
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  PolygonCellsCache(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Cache size must be positive, got " + maxBytes);
+    }
+    this.maxBytes = maxBytes;
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(Math.max(1, maxBytes / SEGMENTS));
+    }
+  }
+
+  private static PolygonCellsCache fromSystemProperties() {
+    long maxBytes = Long.getLong(H3Plugin.POLYFILL_CACHE_BYTES_PROPERTY, 0);
+    if (maxBytes <= 0) {
+      return null;
+    }
+    PolygonCellsCache cache = new PolygonCellsCache(maxBytes);
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(cache, new ObjectName(OBJECT_NAME));
+    } catch (JMException e) {
+      // Statistics are best effort, for example when the plugin is loaded twice
+    }
+    return cache;
+  }
+
+  /**
+   * Cells cached for the serialized geometry at the resolution, or null. The array is shared and
+   * must not be modified.
+   */
+  long[] get(Slice geometry, int res) {
+    Key key = new Key(XxHash64.hash(geometry), res);
+    long[] cells = segment(key).get(key, geometry);
+    if (cells == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return cells;
+  }
+
+  /** Caches cells for the geometry, which the cache then owns. Entries over budget are skipped. */
+  void put(Slice geometry, int res, long[] cells) {
+    Key key = new Key(XxHash64.hash(geometry), res);
+    // Copy so the entry does not pin a larger buffer the geometry may be a view into
+    Slice bytes = geometry.copy();
+    long retained = ENTRY_OVERHEAD + bytes.getRetainedSize() + sizeOf(cells);
+    segment(key).put(key, new Entry(bytes, cells, retained));
+  }
+
+  void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  private Segment segment(Key key) {
+    return segments[(int) ((key.hash() ^ (key.hash() >>> 32)) & (SEGMENTS - 1))];
+  }
+
+  @Override
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  @Override
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  @Override
+  public double getHitRate() {
+    long hitCount = hits.sum();
+    long requests = hitCount + misses.sum();
+    return requests == 0 ? 0 : (double) hitCount / requests;
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  @Override
+  public long getEntryCount() {
+    long count = 0;
+    for (Segment segment : segments) {
+      count += segment.entryCount();
+    }
+    return count;
+  }
+
+  @Override
+  public long getRetainedBytes() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      bytes += segment.retainedBytes();
+    }
+    return bytes;
+  }
+
+  @Override
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  private record Key(long hash, int res) {}
+
+  private record Entry(Slice geometry, long[] cells, long retainedBytes) {}
+
+  /** One lock's worth of entries, in access order. */
+  private final class Segment {
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long retainedBytes;
+
+    Segment(long maxBytes) {
+      this.maxBytes = maxBytes;
+    }
+
+    synchronized long[] get(Key key, Slice geometry) {
+      Entry entry = entries.get(key);
+      return entry != null && entry.geometry().equals(geometry) ? entry.cells() : null;
+    }
+
+    synchronized void put(Key key, Entry entry) {
+      if (entry.retainedBytes() > maxBytes) {
+        return;
+      }
+      Entry previous = entries.put(key, entry);
+      if (previous != null) {
+        retainedBytes -= previous.retainedBytes();
+      }
+      retainedBytes += entry.retainedBytes();
+      Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+      while (retainedBytes > maxBytes) {
+        retainedBytes -= eldest.next().getValue().retainedBytes();
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+
+    synchronized void clear() {
+      entries.clear();
+      retainedBytes = 0;
+    }
+
+    synchronized int entryCount() {
+      return entries.size();
+    }
+
+    synchronized long retainedBytes() {
+      return retainedBytes;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package io.shchoi.trino.h3;
+
+/** Statistics of {@link PolygonCellsCache}, as exposed over JMX. */
+public interface PolygonCellsCacheMBean {
+  long getHitCount();
+
+  long getMissCount();
+
+  double getHitRate();
+
+  long getEvictionCount();
+
+  long getEntryCount();
+
+  long getRetainedBytes();
+
+  long getMaxBytes();
+}
@@ -0,0 +1,763 @@
+package io.shchoi.trino.h3;
+
+import com.uber.h3core.PolygonToCellsFlags;
+import com.uber.h3core.util.LatLng;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.operation.overlayng.OverlayNG;
+import org.locationtech.jts.operation.overlayng.OverlayNGRobust;
+
+/**
+ * Streams the cells whose centers are inside a polygon or multipolygon (the same cells as {@code
+ * h3_polygon_to_cells}) a buffer at a time, holding only a bounded amount of them at once.
+ *
+ * <p>The polygon is covered with coarse tiles, each standing for its descendants at the target
+ * resolution. Every descendant center of a tile lies within the hull of the tile and its
+ * neighbors, so a tile whose hull misses the polygon is skipped, one whose hull is covered by the
+ * polygon yields all its descendants, and any other tile is split into its children until it is
+ * close enough to the target resolution to polyfill the polygon clipped to the tile, slightly
+ * enlarged to hold its descendants.
+ *
+ * <p>Polygons wider than 180 degrees of longitude, whose edges H3 may read as crossing the
+ * antimeridian, and target resolutions no finer than the tiles are polyfilled whole.
+ */
+final class PolygonCoverage {
+  /** Resolution of the first tiles. */
+  static final int COARSE_RES = 2;
+
+  /** Boundary tiles this close to the target resolution are polyfilled rather than split. */
+  static final int MAX_POLYFILL_DELTA = 4;
+
+  private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+  /**
+   * Factor a tile's vertices are moved away from its center by to hold all of its descendants. In
+   * the plane, descendants reach past a hexagon's edges by under 0.15 of its edge length; the
+   * factor adds over 0.25 of it.
+   */
+  private static final double TILE_BUFFER_SCALE = 1.3;
+
+  /** Points per cell edge when following its great circle arc. */
+  private static final int EDGE_POINTS = 8;
+
+  private final Geometry geometry;
+  private final PreparedGeometry prepared;
+  private final int res;
+
+  // Tiles still to visit, depth first, and polygon parts still to polyfill whole
+  private final Deque<Long> tiles = new ArrayDeque<>();
+  private final Deque<Polygon> untiledParts = new ArrayDeque<>();
+
+  // Cells of the current tile or part, consumed from the position on
+  private long[] pending = new long[0];
+  private int pendingCount;
+  private int pendingPosition;
+  private ChildCells children;
+
+  private PolygonCoverage(Geometry geometry, int res) {
+    this.geometry = geometry;
+    this.prepared = PreparedGeometryFactory.prepare(geometry);
+    this.res = res;
+  }
+
+  /** Throws for geometries other than polygons and multipolygons. */
+  static PolygonCoverage create(Geometry geometry, int res) {
+    if (!(geometry instanceof Polygon) && !(geometry instanceof MultiPolygon)) {
+      throw new IllegalArgumentException("Invalid polygon geometry: " + geometry.getGeometryType());
+    }
+    PolygonCoverage coverage = new PolygonCoverage(geometry, res);
+    if (geometry.isEmpty()) {
+      return coverage;
+    }
+    if (!isTiled(geometry, res)) {
+      for (int i = 0; i < geometry.getNumGeometries(); i++) {
+        coverage.untiledParts.add((Polygon) geometry.getGeometryN(i));
+      }
+      return coverage;
+    }
+    for (long tile : coarseTiles(geometry)) {
+      coverage.tiles.push(tile);
+    }
+    return coverage;
+  }
+
+  /**
+   * A coverage with nothing queued, for callers that walk the tiles themselves with {@link
+   * #classify} and {@link #boundaryCells}. Both are safe to call from several threads.
+   */
+  static PolygonCoverage classifier(Geometry geometry, int res) {
+    return new PolygonCoverage(geometry, res);
+  }
+
+  /**
+   * The cells of the polygon compacted, as {@code h3_compact_cells} would return them, without
+   * producing the cells of interior tiles: those are taken whole, and only boundary tiles are
+   * refined. Throws for geometries other than polygons and multipolygons.
+   */
+  static long[] compactCells(Geometry geometry, int res) {
+    PolygonCoverage coverage = create(geometry, res);
+    CellCompactor compactor = new CellCompactor();
+    for (Polygon part : coverage.untiledParts) {
+      addNonZero(compactor, NativeCells.polygonToCellsArray(part, res));
+    }
+    Deque<Long> tiles = coverage.tiles;
+    while (!tiles.isEmpty()) {
+      OutputLimits.checkInterrupted();
+      long tile = tiles.pop();
+      Geometry hull = neighborhoodHull(tile);
+      switch (coverage.classify(hull)) {
+        case OUTSIDE -> {}
+        case INSIDE -> compactor.add(tile);
+        case BOUNDARY -> {
+          int tileRes = H3Validation.getResolution(tile);
+          if (res - tileRes > MAX_POLYFILL_DELTA) {
+            for (long child : H3Plugin.H3.cellToChildren(tile, tileRes + 1)) {
+              tiles.push(child);
+            }
+          } else {
+            addNonZero(compactor, coverage.boundaryCells(tile, hull));
+          }
+        }
+      }
+    }
+    return compactor.toCells();
+  }
+
+  /**
+   * The cells overlapping the polygon, in no particular order, each flagged if it lies strictly
+   * inside the polygon. Cells of interior tiles are flagged without testing them; only cells of
+   * boundary tiles are tested against the polygon. Throws for geometries other than polygons and
+   * multipolygons, and as soon as the cells found pass the output cap of the named function.
+   */
+  static ClassifiedCells classifiedCells(Geometry geometry, int res, String function) {
+    PolygonCoverage coverage = create(geometry, res);
+    ClassifiedCells result = new ClassifiedCells(function);
+    if (!coverage.untiledParts.isEmpty()) {
+      long[] cells = new long[0];
+      for (Polygon part : coverage.untiledParts) {
+        long[] partCells =
+            NativeCells.polygonToCellsArray(part, res, NativeCells.CONTAINMENT_OVERLAPPING);
+        int partCount = NativeCells.moveNonZeroToFront(partCells);
+        OutputLimits.checkCellCount((long) cells.length + partCount, function);
+        cells = Arrays.copyOf(cells, cells.length + partCount);
+        System.arraycopy(partCells, 0, cells, cells.length - partCount, partCount);
+      }
+      coverage.addTested(result, cells);
+    }
+    long[] buffer = new long[1024];
+    Deque<Long> tiles = coverage.tiles;
+    while (!tiles.isEmpty()) {
+      OutputLimits.checkInterrupted();
+      long tile = tiles.pop();
+      Geometry hull = neighborhoodHull(tile);
+      switch (coverage.classify(hull)) {
+        case OUTSIDE -> {}
+        case INSIDE -> {
+          result.reserve(H3Plugin.H3.cellToChildrenSize(tile, res));
+          ChildCells children = new ChildCells(tile, res);
+          while (!children.isDone()) {
+            OutputLimits.checkInterrupted();
+            int count = children.fill(buffer, 0);
+            for (int i = 0; i < count; i++) {
+              result.add(buffer[i], true);
+            }
+          }
+        }
+        case BOUNDARY -> {
+          int tileRes = H3Validation.getResolution(tile);
+          if (res - tileRes > MAX_POLYFILL_DELTA) {
+            for (long child : H3Plugin.H3.cellToChildren(tile, tileRes + 1)) {
+              tiles.push(child);
+            }
+          } else {
+            coverage.addTested(
+                result, coverage.clippedCells(tile, hull, NativeCells.CONTAINMENT_OVERLAPPING));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Cells at the resolution that any point of the geometry may fall in, in ascending order. Tiles
+   * are refined top down from the base cells: those whose neighborhood hull misses the geometry
+   * are dropped, those covered by it contribute all their descendants, and the rest are split.
+   * Cells at the resolution itself are kept if their boundary, densified along its great circle
+   * edges, intersects the geometry. Work grows with the boundary, not the area, of the geometry.
+   * Throws before expanding a tile that would take the cells over the output cap of the named
+   * function.
+   */
+  static long[] partitionCells(Geometry geometry, int res, String function) {
+    if (geometry.isEmpty()) {
+      return new long[0];
+    }
+    PolygonCoverage coverage = classifier(geometry, res);
+    long[] cells = new long[16];
+    int count = 0;
+    Deque<Long> tiles = new ArrayDeque<>(H3Plugin.H3.getRes0Cells());
+    while (!tiles.isEmpty()) {
+      OutputLimits.checkInterrupted();
+      long tile = tiles.pop();
+      int tileRes = H3Validation.getResolution(tile);
+      Geometry hull = neighborhoodHull(tile);
+      TileClass tileClass = coverage.classify(hull);
+      if (tileClass == TileClass.OUTSIDE) {
+        continue;
+      }
+      if (tileRes < res && tileClass == TileClass.BOUNDARY) {
+        for (long child : H3Plugin.H3.cellToChildren(tile, tileRes + 1)) {
+          tiles.push(child);
+        }
+        continue;
+      }
+      if (tileRes == res && tileClass == TileClass.BOUNDARY) {
+        Polygon cell = densifiedCell(tile);
+        // Cells wrapping the antimeridian or a pole are kept on the hull alone
+        if (cell != null && !coverage.prepared.intersects(cell)) {
+          continue;
+        }
+      }
+      long size = H3Plugin.H3.cellToChildrenSize(tile, res);
+      OutputLimits.checkCellCount(count + size, function);
+      if (count + size > cells.length) {
+        cells = Arrays.copyOf(cells, grownLength(cells.length, count + size));
+      }
+      count = new ChildCells(tile, res).fill(cells, count);
+    }
+    cells = Arrays.copyOf(cells, count);
+    Arrays.sort(cells);
+    return cells;
+  }
+
+  /**
+   * The cell boundary in degrees with points added along each edge, which in latitude and
+   * longitude is a great circle arc rather than a straight line. Null if the cell wraps around the
+   * antimeridian or a pole.
+   */
+  private static Polygon densifiedCell(long cell) {
+    return densifiedCell(cell, 1);
+  }
+
+  /**
+   * Like {@link #densifiedCell(long)}, with each vertex moved away from the cell center by the
+   * factor, along the chord through the sphere.
+   */
+  private static Polygon densifiedCell(long cell, double scale) {
+    List<LatLng> boundary = H3Plugin.H3.cellToBoundary(cell);
+    double[] center = toUnitVector(H3Plugin.H3.cellToLatLng(cell));
+    int vertexCount = boundary.size();
+    double[][] vertices = new double[vertexCount][];
+    for (int i = 0; i < vertexCount; i++) {
+      double[] vertex = toUnitVector(boundary.get(i));
+      for (int axis = 0; axis < 3; axis++) {
+        vertex[axis] = center[axis] + (vertex[axis] - center[axis]) * scale;
+      }
+      vertices[i] = vertex;
+    }
+    Coordinate[] coordinates = new Coordinate[vertexCount * EDGE_POINTS + 1];
+    for (int i = 0; i < vertexCount; i++) {
+      double[] a = vertices[i];
+      double[] b = vertices[(i + 1) % vertexCount];
+      for (int step = 0; step < EDGE_POINTS; step++) {
+        double t = (double) step / EDGE_POINTS;
+        // Normalizing the chord point projects it onto the great circle arc
+        double x = a[0] + (b[0] - a[0]) * t;
+        double y = a[1] + (b[1] - a[1]) * t;
+        double z = a[2] + (b[2] - a[2]) * t;
+        coordinates[i * EDGE_POINTS + step] =
+            new Coordinate(
+                Math.toDegrees(Math.atan2(y, x)),
+                Math.toDegrees(Math.atan2(z, Math.sqrt(x * x + y * y))));
+      }
+    }
+    coordinates[coordinates.length - 1] = coordinates[0];
+    Polygon polygon = GEOMETRY_FACTORY.createPolygon(coordinates);
+    return polygon.getEnvelopeInternal().getWidth() > 180 ? null : polygon;
+  }
+
+  private static double[] toUnitVector(LatLng latLng) {
+    double lat = Math.toRadians(latLng.lat);
+    double lng = Math.toRadians(latLng.lng);
+    return new double[] {
+      Math.cos(lat) * Math.cos(lng), Math.cos(lat) * Math.sin(lng), Math.sin(lat)
+    };
+  }
+
+  /** Adds each distinct non-zero cell, flagged by testing it against the polygon. */
+  private void addTested(ClassifiedCells result, long[] cells) {
+    int count = NativeCells.moveNonZeroToFront(cells);
+    Arrays.sort(cells, 0, count);
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      if (distinct == 0 || cells[distinct - 1] != cells[i]) {
+        cells[distinct++] = cells[i];
+      }
+    }
+    result.reserve(distinct);
+    for (int i = 0; i < distinct; i++) {
+      result.add(cells[i], containsProperly(cells[i]));
+    }
+  }
+
+  /**
+   * Whether the cell lies inside the polygon without touching its boundary. Tests the cell with its
+   * edges densified along great circles, so a cell bulging past a straight edge is not reported
+   * inside. Cells crossing the antimeridian or holding a pole are never reported inside.
+   */
+  private boolean containsProperly(long cell) {
+    Polygon polygon = densifiedCell(cell);
+    return polygon != null && prepared.containsProperly(polygon);
+  }
+
+  /**
+   * Cells with an interior flag each, grown as they are added. Room is reserved before each batch
+   * of cells, which throws if the batch would take them over the output cap of the function.
+   */
+  static final class ClassifiedCells {
+    private final String function;
+    private long[] cells = new long[16];
+    private byte[] interior = new byte[16];
+    private int size;
+
+    ClassifiedCells(String function) {
+      this.function = function;
+    }
+
+    /** Makes room for more cells. */
+    void reserve(long more) {
+      long needed = size + more;
+      OutputLimits.checkCellCount(needed, function);
+      if (needed > cells.length) {
+        int length = grownLength(cells.length, needed);
+        cells = Arrays.copyOf(cells, length);
+        interior = Arrays.copyOf(interior, length);
+      }
+    }
+
+    void add(long cell, boolean isInterior) {
+      if (size == cells.length) {
+        reserve(1);
+      }
+      cells[size] = cell;
+      interior[size] = (byte) (isInterior ? 1 : 0);
+      size++;
+    }
+
+    int size() {
+      return size;
+    }
+
+    /** The cells, valid up to {@link #size}. */
+    long[] cells() {
+      return cells;
+    }
+
+    /** 1 for each cell inside the polygon and 0 for the rest, valid up to {@link #size}. */
+    byte[] interior() {
+      return interior;
+    }
+  }
+
+  /**
+   * Length to grow an array to so it holds the needed elements, doubling it where possible. Throws
+   * if they cannot fit in an array, which only happens with the output cap disabled.
+   */
+  private static int grownLength(int length, long needed) {
+    long doubled = Math.min(length * 2L, Integer.MAX_VALUE - 8);
+    if (needed > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Too many cells: " + needed);
+    }
+    return (int) Math.max(doubled, needed);
+  }
+
+  /**
+   * Cells whose center is in the polygon, in ascending order, as {@code h3_polygon_to_cells}
+   * returns them: split over the pool when {@link ParallelPolyfill} finds it worthwhile, streamed
+   * by tile when the polygon is expected to be large so the call can be interrupted, and otherwise
+   * from one native call. The area estimate only picks the path; the output cap of the named
+   * function is checked on the cells actually found, while they are found on the tiled paths.
+   */
+  static long[] polyfill(Polygon polygon, int res, String function) {
+    if (ParallelPolyfill.isWorthwhile(polygon, res)) {
+      return ParallelPolyfill.polygonToCells(polygon, res, function);
+    }
+    if (OutputLimits.estimatePolygonCells(polygon, res) > OutputLimits.CHUNK_CELLS
+        && isTiled(polygon, res)) {
+      return toSortedArray(polygon, res, function);
+    }
+    long[] cells = NativeCells.polygonToCellsArray(polygon, res);
+    cells = Arrays.copyOf(cells, NativeCells.moveNonZeroToFront(cells));
+    OutputLimits.checkCellCount(cells.length, function);
+    Arrays.sort(cells);
+    return cells;
+  }
+
+  /**
+   * Every cell in ascending order, produced a chunk at a time with checks for interruption and
+   * for the output cap of the named function in between.
+   */
+  static long[] toSortedArray(Geometry geometry, int res, String function) {
+    PolygonCoverage coverage = create(geometry, res);
+    long[] buffer = new long[OutputLimits.CHUNK_CELLS];
+    long[] cells = new long[OutputLimits.CHUNK_CELLS];
+    int count = 0;
+    while (true) {
+      OutputLimits.checkInterrupted();
+      int filled = coverage.next(buffer);
+      if (filled == 0) {
+        break;
+      }
+      OutputLimits.checkCellCount((long) count + filled, function);
+      if (count + filled > cells.length) {
+        cells = Arrays.copyOf(cells, Math.max(cells.length * 2, count + filled));
+      }
+      System.arraycopy(buffer, 0, cells, count, filled);
+      count += filled;
+    }
+    cells = Arrays.copyOf(cells, count);
+    Arrays.sort(cells);
+    return cells;
+  }
+
+  private static void addNonZero(CellCompactor compactor, long[] cells) {
+    for (long cell : cells) {
+      if (cell != 0) {
+        compactor.add(cell);
+      }
+    }
+  }
+
+  /** Whether cells are found by tiles rather than by polyfilling each part whole. */
+  static boolean isTiled(Geometry geometry, int res) {
+    return res > COARSE_RES && geometry.getEnvelopeInternal().getWidth() <= 180;
+  }
+
+  /**
+   * Fills the buffer from the start with the next cells, returning how many were written. Returns
+   * 0 once every cell has been returned.
+   */
+  int next(long[] buffer) {
+    int count = 0;
+    while (count < buffer.length) {
+      if (children != null) {
+        count = children.fill(buffer, count);
+        if (children.isDone()) {
+          children = null;
+        }
+      } else if (pendingPosition < pendingCount) {
+        int length = Math.min(buffer.length - count, pendingCount - pendingPosition);
+        System.arraycopy(pending, pendingPosition, buffer, count, length);
+        pendingPosition += length;
+        count += length;
+      } else if (!advance()) {
+        break;
+      }
+    }
+    return count;
+  }
+
+  /** Loads the cells of the next tile or part that has any, returning false if none is left. */
+  private boolean advance() {
+    Polygon part = untiledParts.poll();
+    if (part != null) {
+      setPending(NativeCells.polygonToCellsArray(part, res));
+      return true;
+    }
+    while (!tiles.isEmpty()) {
+      OutputLimits.checkInterrupted();
+      long tile = tiles.pop();
+      Geometry hull = neighborhoodHull(tile);
+      switch (classify(hull)) {
+        case OUTSIDE -> {}
+        case INSIDE -> {
+          children = new ChildCells(tile, res);
+          return true;
+        }
+        case BOUNDARY -> {
+          int tileRes = H3Validation.getResolution(tile);
+          if (res - tileRes > MAX_POLYFILL_DELTA) {
+            for (long child : H3Plugin.H3.cellToChildren(tile, tileRes + 1)) {
+              tiles.push(child);
+            }
+          } else {
+            setPending(boundaryCells(tile, hull));
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private void setPending(long[] cells) {
+    pending = cells;
+    pendingCount = NativeCells.moveNonZeroToFront(cells);
+    pendingPosition = 0;
+  }
+
+  enum TileClass {
+    OUTSIDE,
+    INSIDE,
+    BOUNDARY
+  }
+
+  /**
+   * Whether none, all or some of the descendants of a tile have their center in the polygon, given
+   * the {@link #neighborhoodHull} of the tile.
+   */
+  TileClass classify(Geometry hull) {
+    if (!prepared.intersects(hull)) {
+      return TileClass.OUTSIDE;
+    }
+    if (prepared.covers(hull)) {
+      return TileClass.INSIDE;
+    }
+    return TileClass.BOUNDARY;
+  }
+
+  /** Descendants of a boundary tile with their center in the polygon, with zero slots to skip. */
+  long[] boundaryCells(long tile, Geometry hull) {
+    return clippedCells(tile, hull, NativeCells.CONTAINMENT_CENTER);
+  }
+
+  /**
+   * Descendants of a tile found by polyfilling the polygon clipped to the tile, buffered by {@link
+   * #TILE_BUFFER_SCALE} so that it holds every descendant. Pentagons and tiles wrapping the
+   * antimeridian or a pole are clipped to their hull instead. A cell overlapping several parts of
+   * the clipped polygon is listed once for each.
+   */
+  private long[] clippedCells(long tile, Geometry hull, int containment) {
+    Geometry region = H3Plugin.H3.isPentagon(tile) ? null : densifiedCell(tile, TILE_BUFFER_SCALE);
+    if (region == null) {
+      region = hull;
+    }
+    int tileRes = H3Validation.getResolution(tile);
+    Geometry clipped = OverlayNGRobust.overlay(geometry, region, OverlayNG.INTERSECTION);
+    // Each descendant has its center in at most one part, but may overlap any number of them
+    long slots = H3Plugin.H3.cellToChildrenSize(tile, res);
+    if (containment != NativeCells.CONTAINMENT_CENTER) {
+      slots *= clipped.getNumGeometries();
+    }
+    long[] cells = new long[Math.toIntExact(slots)];
+    int count = 0;
+    for (int i = 0; i < clipped.getNumGeometries(); i++) {
+      if (!(clipped.getGeometryN(i) instanceof Polygon polygon) || polygon.isEmpty()) {
+        continue;
+      }
+      for (long cell : NativeCells.polygonToCellsArray(polygon, res, containment)) {
+        if (cell != 0 && cellToParent(cell, tileRes) == tile) {
+          cells[count++] = cell;
+        }
+      }
+    }
+    return cells;
+  }
+
+  /**
+   * Tiles at {@link #COARSE_RES} that may have a descendant with its center in the geometry: those
+   * overlapping it and their neighbors, since descendants reach slightly past their ancestor.
+   */
+  static long[] coarseTiles(Geometry geometry) {
+    List<Long> overlapping = new ArrayList<>();
+    for (int i = 0; i < geometry.getNumGeometries(); i++) {
+      Polygon polygon = (Polygon) geometry.getGeometryN(i);
+      List<List<LatLng>> holes = new ArrayList<>();
+      for (int j = 0; j < polygon.getNumInteriorRing(); j++) {
+        holes.add(toLatLngs(polygon.getInteriorRingN(j).getCoordinates()));
+      }
+      overlapping.addAll(
+          H3Plugin.H3.polygonToCellsExperimental(
+              toLatLngs(polygon.getExteriorRing().getCoordinates()),
+              holes,
+              COARSE_RES,
+              PolygonToCellsFlags.containment_overlapping));
+    }
+    long[] tiles = new long[overlapping.size() * 7];
+    int count = 0;
+    for (long cell : overlapping) {
+      for (long neighbor : H3Plugin.H3.gridDisk(cell, 1)) {
+        tiles[count++] = neighbor;
+      }
+    }
+    Arrays.sort(tiles, 0, count);
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      if (distinct == 0 || tiles[distinct - 1] != tiles[i]) {
+        tiles[distinct++] = tiles[i];
+      }
+    }
+    return Arrays.copyOf(tiles, distinct);
+  }
+
+  /**
+   * A region holding every descendant center of a tile: the convex hull of the tile and its
+   * neighbors, or where that wraps around a pole or the antimeridian, latitude bands bounding it.
+   */
+  static Geometry neighborhoodHull(long tile) {
+    List<Long> disk = H3Plugin.H3.gridDisk(tile, 1);
+    List<Coordinate> coordinates = new ArrayList<>();
+    for (long cell : disk) {
+      for (LatLng vertex : H3Plugin.H3.cellToBoundary(cell)) {
+        coordinates.add(new Coordinate(vertex.lng, vertex.lat));
+      }
+    }
+    Envelope envelope = new Envelope();
+    coordinates.forEach(envelope::expandToInclude);
+    if (envelope.getWidth() <= 180) {
+      return GEOMETRY_FACTORY
+          .createMultiPointFromCoords(coordinates.toArray(new Coordinate[0]))
+          .convexHull();
+    }
+
+    int tileRes = H3Validation.getResolution(tile);
+    if (disk.contains(H3Plugin.H3.latLngToCell(90, 0, tileRes))) {
+      return rectangle(-180, 180, envelope.getMinY(), 90);
+    }
+    if (disk.contains(H3Plugin.H3.latLngToCell(-90, 0, tileRes))) {
+      return rectangle(-180, 180, -90, envelope.getMaxY());
+    }
+    double east = 180;
+    double west = -180;
+    for (Coordinate coordinate : coordinates) {
+      if (coordinate.x >= 0) {
+        east = Math.min(east, coordinate.x);
+      } else {
+        west = Math.max(west, coordinate.x);
+      }
+    }
+    return GEOMETRY_FACTORY.createMultiPolygon(
+        new Polygon[] {
+          rectangle(east, 180, envelope.getMinY(), envelope.getMaxY()),
+          rectangle(-180, west, envelope.getMinY(), envelope.getMaxY())
+        });
+  }
+
+  private static Polygon rectangle(double minLng, double maxLng, double minLat, double maxLat) {
+    return (Polygon) GEOMETRY_FACTORY.toGeometry(new Envelope(minLng, maxLng, minLat, maxLat));
+  }
+
+  private static List<LatLng> toLatLngs(Coordinate[] coordinates) {
+    List<LatLng> latLngs = new ArrayList<>(coordinates.length);
+    for (Coordinate coordinate : coordinates) {
+      latLngs.add(new LatLng(coordinate.y, coordinate.x));
+    }
+    return latLngs;
+  }
+
+  /** Ancestor of a valid cell at a coarser or equal resolution, by setting its bits. */
+  static long cellToParent(long cell, int parentRes) {
+    long unusedDigits = (1L << ((H3Indexer.MAX_RES - parentRes) * 3)) - 1;
+    return (cell & ~(0xFL << 52)) | ((long) parentRes << 52) | unusedDigits;
+  }
+
+  /**
+   * Walks the descendants of a cell at a finer resolution in index order, like {@code
+   * cellToChildren} without holding them. The digits below the parent count up as an odometer,
+   * skipping the deleted subsequence below a pentagon.
+   */
+  static final class ChildCells {
+    private final int parentRes;
+    private final int childRes;
+    private final boolean pentagon;
+    private long next;
+    private boolean done;
+
+    ChildCells(long parent, int childRes) {
+      this.parentRes = H3Validation.getResolution(parent);
+      this.childRes = childRes;
+      this.pentagon =
+          H3Validation.isPentagonBaseCell(H3Validation.getBaseCell(parent))
+              && digits(parent, 1, parentRes) == 0;
+      long unusedDigits = (1L << ((H3Indexer.MAX_RES - childRes) * 3)) - 1;
+      long childDigits = (1L << ((H3Indexer.MAX_RES - parentRes) * 3)) - 1;
+      this.next =
+          (parent & ~(0xFL << 52) & ~childDigits) | ((long) childRes << 52) | unusedDigits;
+    }
+
+    boolean isDone() {
+      return done;
+    }
+
+    /** Number of descendants of the parent at the resolution, which must not be coarser. */
+    static long count(long parent, int childRes) {
+      int parentRes = H3Validation.getResolution(parent);
+      long hexagonCount = 1;
+      for (int r = parentRes; r < childRes; r++) {
+        hexagonCount *= 7;
+      }
+      boolean pentagon =
+          H3Validation.isPentagonBaseCell(H3Validation.getBaseCell(parent))
+              && digits(parent, 1, parentRes) == 0;
+      // The children of a pentagon are one pentagon and five hexagons
+      return pentagon ? 1 + 5 * (hexagonCount - 1) / 6 : hexagonCount;
+    }
+
+    /**
+     * Every descendant in index order, written a chunk at a time with a check for interruption in
+     * between. The size must be the number of descendants.
+     */
+    static long[] toArray(long parent, int childRes, int size) {
+      long[] cells = new long[size];
+      ChildCells children = new ChildCells(parent, childRes);
+      int offset = 0;
+      while (!children.isDone()) {
+        OutputLimits.checkInterrupted();
+        offset = children.fill(cells, offset, Math.min(size, offset + OutputLimits.CHUNK_CELLS));
+      }
+      return cells;
+    }
+
+    /** Writes descendants from the offset on until the buffer is full; returns the new offset. */
+    int fill(long[] buffer, int offset) {
+      return fill(buffer, offset, buffer.length);
+    }
+
+    /** Writes descendants from the offset up to the end index; returns the new offset. */
+    int fill(long[] buffer, int offset, int end) {
+      while (offset < end && !done) {
+        buffer[offset++] = next;
+        advance();
+      }
+      return offset;
+    }
+
+    private void advance() {
+      for (int r = childRes; r > parentRes; r--) {
+        int shift = (H3Indexer.MAX_RES - r) * 3;
+        long digit = (next >>> shift) & 0x7;
+        if (digit < 6) {
+          digit++;
+          if (pentagon && digit == 1 && digits(next, parentRes + 1, r - 1) == 0) {
+            // Pentagons have no descendants in the deleted K axes subsequence
+            digit++;
+          }
+          next = (next & ~(0x7L << shift)) | (digit << shift);
+          return;
+        }
+        next &= ~(0x7L << shift);
+      }
+      done = true;
+    }
+
+    /** The digits for resolutions first to last as one number, 0 if the range is empty. */
+    private static long digits(long cell, int first, int last) {
+      if (first > last) {
+        return 0;
+      }
+      int shift = (H3Indexer.MAX_RES - last) * 3;
+      return (cell >>> shift) & ((1L << ((last - first + 1) * 3)) - 1);
+    }
+  }
+}
@@ -0,0 +1,401 @@
+package io.shchoi.trino.h3;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import com.uber.h3core.util.LatLng;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+/**
+ * Named regions indexed by their H3 coverage, answering which region holds the center of a cell
+ * without testing it against every polygon.
+ *
+ * <p>Each region is walked with the tiles of {@link PolygonCoverage} down to the dataset
+ * resolution. Tiles wholly inside a region are kept as interior cells, and tiles at the dataset
+ * resolution that straddle a boundary are kept with the regions they may belong to. Both are held
+ * off-heap as keys sorted in {@link CellCompactor} order, where a cell and its descendants form
+ * one range, so a single binary search finds the interior cell containing any finer cell. Only
+ * cells near a boundary have their center tested against the exact geometries.
+ *
+ * <p>Regions are expected not to overlap. Where they do, a cell inside several of them is
+ * attributed to one of them.
+ */
+final class RegionDataset {
+  private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+  private final int res;
+  private final Slice[] regionIds;
+  private final PreparedGeometry[] regions;
+
+  // Interior cells: sorted keys, none covering another, and the region of each
+  private final MemorySegment interiorKeys;
+  private final MemorySegment interiorRegions;
+  private final int interiorCount;
+
+  // Boundary cells at the dataset resolution: sorted keys, and for the key at index i the
+  // candidate regions from candidateOffsets[i] up to candidateOffsets[i + 1]
+  private final MemorySegment boundaryKeys;
+  private final MemorySegment candidateOffsets;
+  private final MemorySegment candidates;
+  private final int boundaryCount;
+
+  // Regions too wide to tile, tested whenever the coverage has no answer
+  private final int[] untiledRegions;
+
+  // Region envelopes, for cells coarser than the dataset resolution
+  private final STRtree envelopes = new STRtree();
+
+  private RegionDataset(int res, List<Slice> regionIds, List<Geometry> geometries) {
+    if (res <= PolygonCoverage.COARSE_RES || !H3Validation.isValidResolution(res)) {
+      throw new IllegalArgumentException(
+          "Dataset resolution must be from " + (PolygonCoverage.COARSE_RES + 1) + " to 15");
+    }
+    this.res = res;
+    this.regionIds = regionIds.toArray(new Slice[0]);
+    this.regions = new PreparedGeometry[geometries.size()];
+
+    KeyRegions interior = new KeyRegions();
+    KeyRegions boundary = new KeyRegions();
+    List<Integer> untiled = new ArrayList<>();
+    for (int region = 0; region < regions.length; region++) {
+      Geometry geometry = geometries.get(region);
+      if (!(geometry instanceof Polygon) && !(geometry instanceof MultiPolygon)) {
+        throw new IllegalArgumentException(
+            "Invalid region geometry: " + geometry.getGeometryType());
+      }
+      regions[region] = PreparedGeometryFactory.prepare(geometry);
+      if (geometry.isEmpty()) {
+        continue;
+      }
+      envelopes.insert(geometry.getEnvelopeInternal(), region);
+      if (PolygonCoverage.isTiled(geometry, res)) {
+        addTiles(geometry, region, interior, boundary);
+        continue;
+      }
+      boolean tiled = true;
+      for (int i = 0; i < geometry.getNumGeometries(); i++) {
+        tiled &= PolygonCoverage.isTiled(geometry.getGeometryN(i), res);
+      }
+      if (tiled) {
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+          addTiles(geometry.getGeometryN(i), region, interior, boundary);
+        }
+      } else {
+        untiled.add(region);
+      }
+    }
+    envelopes.build();
+    untiledRegions = untiled.stream().mapToInt(Integer::intValue).toArray();
+
+    Arena arena = Arena.ofAuto();
+    long[] interiorDistinct = interior.distinctKeys();
+    int[] interiorFirst = interior.firstRegions(interiorDistinct);
+    int[] kept = removeCovered(interiorDistinct);
+    interiorCount = kept.length;
+    interiorKeys = arena.allocate(JAVA_LONG, Math.max(1, interiorCount));
+    interiorRegions = arena.allocate(JAVA_INT, Math.max(1, interiorCount));
+    for (int i = 0; i < interiorCount; i++) {
+      interiorKeys.setAtIndex(JAVA_LONG, i, interiorDistinct[kept[i]]);
+      interiorRegions.setAtIndex(JAVA_INT, i, interiorFirst[kept[i]]);
+    }
+
+    long[] boundaryDistinct = boundary.distinctKeys();
+    int[] offsets = new int[boundaryDistinct.length + 1];
+    int[] regionsOfKeys = boundary.regionsByKey(boundaryDistinct, offsets);
+    boundaryCount = boundaryDistinct.length;
+    boundaryKeys = arena.allocate(JAVA_LONG, Math.max(1, boundaryCount));
+    candidateOffsets = arena.allocate(JAVA_INT, boundaryCount + 1);
+    candidates = arena.allocate(JAVA_INT, Math.max(1, offsets[boundaryCount]));
+    for (int i = 0; i < boundaryCount; i++) {
+      boundaryKeys.setAtIndex(JAVA_LONG, i, boundaryDistinct[i]);
+    }
+    for (int i = 0; i <= boundaryCount; i++) {
+      candidateOffsets.setAtIndex(JAVA_INT, i, offsets[i]);
+    }
+    for (int i = 0; i < offsets[boundaryCount]; i++) {
+      candidates.setAtIndex(JAVA_INT, i, regionsOfKeys[i]);
+    }
+  }
+
+  /** Indexes the regions at the resolution, which must be finer than the first tiles. */
+  static RegionDataset create(int res, List<Slice> regionIds, List<Geometry> geometries) {
+    if (regionIds.size() != geometries.size()) {
+      throw new IllegalArgumentException("Each region needs one id and one geometry");
+    }
+    return new RegionDataset(res, regionIds, geometries);
+  }
+
+  /**
+   * Reads regions from a file with one region per line: its id, a tab, and its polygon or
+   * multipolygon as WKT. Blank lines and lines starting with {@code #} are skipped. Errors in a
+   * line are reported with the file and line number.
+   */
+  static RegionDataset load(Path file, int res) throws IOException {
+    List<Slice> regionIds = new ArrayList<>();
+    List<Geometry> geometries = new ArrayList<>();
+    WKTReader reader = new WKTReader();
+    try (BufferedReader lines = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      int lineNumber = 0;
+      while ((line = lines.readLine()) != null) {
+        lineNumber++;
+        if (line.isBlank() || line.startsWith("#")) {
+          continue;
+        }
+        int tab = line.indexOf('\t');
+        if (tab < 0) {
+          throw new IOException(file + ":" + lineNumber + ": expected an id and a tab");
+        }
+        Geometry geometry;
+        try {
+          geometry = reader.read(line.substring(tab + 1));
+        } catch (ParseException e) {
+          throw new IOException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+        }
+        if (!(geometry instanceof Polygon) && !(geometry instanceof MultiPolygon)) {
+          String type = geometry.getGeometryType();
+          throw new IOException(file + ":" + lineNumber + ": expected a polygon, not " + type);
+        }
+        geometries.add(geometry);
+        regionIds.add(Slices.utf8Slice(line.substring(0, tab)));
+      }
+    }
+    return create(res, regionIds, geometries);
+  }
+
+  /** Id of the region holding the center of a valid cell, or null if none does. */
+  Slice lookup(long cell) {
+    long key = CellCompactor.cellToKey(cell);
+    int index = lowerBound(interiorKeys, interiorCount, key);
+    if (index < interiorCount) {
+      long interiorKey = interiorKeys.getAtIndex(JAVA_LONG, index);
+      if (CellCompactor.descendantsStart(interiorKey) <= key) {
+        return regionIds[interiorRegions.getAtIndex(JAVA_INT, index)];
+      }
+    }
+
+    Point center = null;
+    if (H3Validation.getResolution(cell) >= res) {
+      long boundaryKey = CellCompactor.cellToKey(PolygonCoverage.cellToParent(cell, res));
+      index = lowerBound(boundaryKeys, boundaryCount, boundaryKey);
+      if (index < boundaryCount && boundaryKeys.getAtIndex(JAVA_LONG, index) == boundaryKey) {
+        center = center(cell);
+        int end = candidateOffsets.getAtIndex(JAVA_INT, index + 1);
+        for (int i = candidateOffsets.getAtIndex(JAVA_INT, index); i < end; i++) {
+          int region = candidates.getAtIndex(JAVA_INT, i);
+          if (regions[region].covers(center)) {
+            return regionIds[region];
+          }
+        }
+      }
+    } else {
+      // Coarser than the coverage, so only the geometries can tell
+      center = center(cell);
+      for (Object region : envelopes.query(center.getEnvelopeInternal())) {
+        if (regions[(Integer) region].covers(center)) {
+          return regionIds[(Integer) region];
+        }
+      }
+      return null;
+    }
+
+    for (int region : untiledRegions) {
+      if (center == null) {
+        center = center(cell);
+      }
+      if (regions[region].covers(center)) {
+        return regionIds[region];
+      }
+    }
+    return null;
+  }
+
+  int getRegionCount() {
+    return regions.length;
+  }
+
+  int getInteriorCellCount() {
+    return interiorCount;
+  }
+
+  int getBoundaryCellCount() {
+    return boundaryCount;
+  }
+
+  /** Off-heap bytes held by the coverage. */
+  long getCoverageBytes() {
+    return interiorKeys.byteSize()
+        + interiorRegions.byteSize()
+        + boundaryKeys.byteSize()
+        + candidateOffsets.byteSize()
+        + candidates.byteSize();
+  }
+
+  private void addTiles(Geometry geometry, int region, KeyRegions interior, KeyRegions boundary) {
+    PolygonCoverage coverage = PolygonCoverage.classifier(geometry, res);
+    Deque<Long> tiles = new ArrayDeque<>();
+    for (long tile : PolygonCoverage.coarseTiles(geometry)) {
+      tiles.push(tile);
+    }
+    while (!tiles.isEmpty()) {
+      long tile = tiles.pop();
+      switch (coverage.classify(PolygonCoverage.neighborhoodHull(tile))) {
+        case OUTSIDE -> {}
+        case INSIDE -> interior.add(CellCompactor.cellToKey(tile), region);
+        case BOUNDARY -> {
+          int tileRes = H3Validation.getResolution(tile);
+          if (tileRes < res) {
+            for (long child : H3Plugin.H3.cellToChildren(tile, tileRes + 1)) {
+              tiles.push(child);
+            }
+          } else {
+            boundary.add(CellCompactor.cellToKey(tile), region);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Indexes of the sorted distinct keys not inside the range of a larger one, so that the first
+   * kept key at or above any cell's key is the only one that can contain it.
+   */
+  private static int[] removeCovered(long[] keys) {
+    int[] kept = new int[keys.length];
+    int write = kept.length;
+    long coveredFrom = Long.MAX_VALUE;
+    for (int i = keys.length - 1; i >= 0; i--) {
+      if (keys[i] >= coveredFrom) {
+        continue;
+      }
+      kept[--write] = i;
+      coveredFrom = CellCompactor.descendantsStart(keys[i]);
+    }
+    return Arrays.copyOfRange(kept, write, kept.length);
+  }
+
+  /** Index of the first key at or above the value, or the count if there is none. */
+  private static int lowerBound(MemorySegment keys, int count, long value) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (keys.getAtIndex(JAVA_LONG, mid) < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static Point center(long cell) {
+    LatLng center = H3Plugin.H3.cellToLatLng(cell);
+    return GEOMETRY_FACTORY.createPoint(new Coordinate(center.lng, center.lat));
+  }
+
+  /**
+   * Key and region pairs in the order they were added, grouped by key once complete. Kept in
+   * primitive arrays, since a dataset at a fine resolution has millions of boundary cells.
+   */
+  private static final class KeyRegions {
+    private long[] keys = new long[16];
+    private int[] regions = new int[16];
+    private int size;
+
+    void add(long key, int region) {
+      if (size == keys.length) {
+        keys = Arrays.copyOf(keys, size * 2);
+        regions = Arrays.copyOf(regions, size * 2);
+      }
+      keys[size] = key;
+      regions[size] = region;
+      size++;
+    }
+
+    long[] distinctKeys() {
+      long[] sorted = Arrays.copyOf(keys, size);
+      Arrays.sort(sorted);
+      int distinct = 0;
+      for (int i = 0; i < sorted.length; i++) {
+        if (distinct == 0 || sorted[distinct - 1] != sorted[i]) {
+          sorted[distinct++] = sorted[i];
+        }
+      }
+      return Arrays.copyOf(sorted, distinct);
+    }
+
+    /** The first region added with each of the distinct keys. */
+    int[] firstRegions(long[] distinct) {
+      int[] first = new int[distinct.length];
+      Arrays.fill(first, -1);
+      for (int i = 0; i < size; i++) {
+        int index = Arrays.binarySearch(distinct, keys[i]);
+        if (first[index] < 0) {
+          first[index] = regions[i];
+        }
+      }
+      return first;
+    }
+
+    /**
+     * The regions of each of the distinct keys, once each, in the order they were added: those of
+     * the key at index i run from {@code offsets[i]} up to {@code offsets[i + 1]}. Regions are
+     * added in increasing order, so a repeat is always the last region of its key.
+     */
+    int[] regionsByKey(long[] distinct, int[] offsets) {
+      int[] indexes = new int[size];
+      for (int i = 0; i < size; i++) {
+        indexes[i] = Arrays.binarySearch(distinct, keys[i]);
+        offsets[indexes[i] + 1]++;
+      }
+      for (int i = 0; i < distinct.length; i++) {
+        offsets[i + 1] += offsets[i];
+      }
+      int[] ends = Arrays.copyOf(offsets, distinct.length);
+      int[] grouped = new int[size];
+      for (int i = 0; i < size; i++) {
+        int index = indexes[i];
+        if (ends[index] > offsets[index] && grouped[ends[index] - 1] == regions[i]) {
+          continue;
+        }
+        grouped[ends[index]++] = regions[i];
+      }
+      // Close the gaps left by repeats
+      int write = 0;
+      for (int i = 0; i < distinct.length; i++) {
+        int start = offsets[i];
+        offsets[i] = write;
+        for (int j = start; j < ends[i]; j++) {
+          grouped[write++] = grouped[j];
+        }
+      }
+      offsets[distinct.length] = write;
+      return Arrays.copyOf(grouped, write);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.spi.StandardErrorCode.CONFIGURATION_INVALID;
+import static io.trino.spi.StandardErrorCode.SERVER_STARTING_UP;
+
+import io.trino.spi.TrinoException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * The {@link RegionDataset}s in a directory, each read from {@code <name>.wkt}. The directory is
+ * listed and its datasets read and indexed one at a time on a background thread, started by {@link
+ * #prepare} when the plugin loads or by the first lookup, then kept for the life of the worker, so
+ * no query waits on indexing. A lookup of a dataset still loading fails rather than waiting for it,
+ * and a dataset that fails to load fails every lookup of it with the file and line at fault, rather
+ * than returning no region.
+ */
+final class RegionDatasets {
+  /** Datasets configured through {@link H3Plugin#DATASETS_DIR_PROPERTY}. */
+  static final RegionDatasets SHARED = fromSystemProperties();
+
+  static final String FILE_SUFFIX = ".wkt";
+
+  // Keeps names from reaching outside the directory
+  private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_\\-]+");
+
+  /** Loads one dataset at a time, so indexing never competes with queries for more than a core. */
+  private static final ExecutorService LOADER =
+      Executors.newSingleThreadExecutor(
+          Thread.ofPlatform().name("h3-region-datasets").daemon().factory());
+
+  private final Path directory;
+  private final int res;
+
+  // Load of each dataset in the directory by name, null until the directory is listed
+  private volatile Map<String, CompletableFuture<Loaded>> datasets;
+
+  RegionDatasets(Path directory, int res) {
+    this.directory = directory;
+    this.res = res;
+  }
+
+  private static RegionDatasets fromSystemProperties() {
+    String directory = System.getProperty(H3Plugin.DATASETS_DIR_PROPERTY);
+    return new RegionDatasets(
+        directory == null || directory.isEmpty() ? null : Path.of(directory),
+        Integer.getInteger(H3Plugin.DATASETS_RESOLUTION_PROPERTY, 8));
+  }
+
+  /**
+   * Starts loading every dataset in the background, unless it was already started. The result
+   * completes once all have been loaded or failed to, or fails if the directory could not be
+   * listed, in which case the next lookup lists it again.
+   */
+  CompletableFuture<Void> prepare() {
+    if (directory == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    try {
+      return CompletableFuture.allOf(datasets().values().toArray(CompletableFuture<?>[]::new));
+    } catch (TrinoException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * The dataset with the name, or null if there is none. Throws if it is still loading or could not
+   * be loaded, or if the directory could not be listed.
+   */
+  RegionDataset get(String name) {
+    if (directory == null || !NAME.matcher(name).matches()) {
+      return null;
+    }
+    CompletableFuture<Loaded> load = datasets().get(name);
+    if (load == null) {
+      return null;
+    }
+    Loaded loaded = load.getNow(null);
+    if (loaded == null) {
+      throw new TrinoException(
+          SERVER_STARTING_UP,
+          "Region dataset " + name + " is still loading, retry once the worker has indexed it");
+    }
+    if (loaded.failure() != null) {
+      throw new TrinoException(
+          CONFIGURATION_INVALID,
+          "Region dataset " + name + " failed to load: " + loaded.failure().getMessage(),
+          loaded.failure());
+    }
+    return loaded.dataset();
+  }
+
+  private Map<String, CompletableFuture<Loaded>> datasets() {
+    Map<String, CompletableFuture<Loaded>> loads = datasets;
+    if (loads == null) {
+      synchronized (this) {
+        loads = datasets;
+        if (loads == null) {
+          loads = loadAll();
+          datasets = loads;
+        }
+      }
+    }
+    return loads;
+  }
+
+  /**
+   * Lists the directory and starts loading each of its datasets. Throws without starting anything
+   * if it can't be listed.
+   */
+  private Map<String, CompletableFuture<Loaded>> loadAll() {
+    Map<String, Path> files = new LinkedHashMap<>();
+    try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+      for (Path file : listing) {
+        String fileName = file.getFileName().toString();
+        String name = fileName.substring(0, fileName.length() - FILE_SUFFIX.length());
+        if (NAME.matcher(name).matches() && Files.isRegularFile(file)) {
+          files.put(name, file);
+        }
+      }
+    } catch (IOException e) {
+      throw new TrinoException(
+          CONFIGURATION_INVALID, "Cannot list region datasets in " + directory, e);
+    }
+    Map<String, CompletableFuture<Loaded>> loads = new HashMap<>();
+    files.forEach(
+        (name, file) -> {
+          CompletableFuture<Loaded> load = new CompletableFuture<>();
+          LOADER.execute(() -> load.complete(load(file)));
+          loads.put(name, load);
+        });
+    return Map.copyOf(loads);
+  }
+
+  private Loaded load(Path file) {
+    try {
+      return new Loaded(RegionDataset.load(file, res), null);
+    } catch (IOException e) {
+      // Messages of read errors already name the file and line
+      return new Loaded(null, e);
+    } catch (RuntimeException e) {
+      return new Loaded(null, new IOException(file + ": " + e.getMessage(), e));
+    }
+  }
+
+  private record Loaded(RegionDataset dataset, IOException failure) {}
+}
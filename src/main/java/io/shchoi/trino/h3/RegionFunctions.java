@@ -16,26 +16,21 @@
 package io.shchoi.trino.h3;
 
 import static io.trino.geospatial.serde.JtsGeometrySerde.deserialize;
-import static io.trino.geospatial.serde.JtsGeometrySerde.serialize;
 import static org.locationtech.jts.geom.Geometry.TYPENAME_POLYGON;
 
-import com.uber.h3core.util.LatLng;
 import io.airlift.slice.Slice;
+import io.trino.spi.TrinoException;
 import io.trino.spi.block.Block;
+import io.trino.spi.block.ByteArrayBlock;
+import io.trino.spi.block.LongArrayBlock;
+import io.trino.spi.block.RowBlock;
 import io.trino.spi.function.Description;
 import io.trino.spi.function.ScalarFunction;
 import io.trino.spi.function.SqlNullable;
 import io.trino.spi.function.SqlType;
 import io.trino.spi.type.StandardTypes;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import org.locationtech.jts.geom.Coordinate;
+import java.util.Optional;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.LinearRing;
-import org.locationtech.jts.geom.MultiPolygon;
 import org.locationtech.jts.geom.Polygon;
 
 /** Functions wrapping https://h3geo.org/docs/api/regions */
@@ -47,31 +42,91 @@ public final class RegionFunctions {
   public static Block polygonToCells(
       @SqlType(StandardTypes.GEOMETRY) Slice polygonSlice,
       @SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidResolution(res)) {
+      return null;
+    }
     try {
-      Geometry polygonGeomUntyped = deserialize(polygonSlice);
-      if (!TYPENAME_POLYGON.equals(polygonGeomUntyped.getGeometryType())) {
-        throw new IllegalArgumentException("Invalid polygon geometry");
+      PolygonCellsCache cache = PolygonCellsCache.SHARED;
+      if (cache == null) {
+        return H3Plugin.longArrayToBlock(polygonToCellsArray(polygonSlice, (int) res));
       }
-      Polygon polygonGeom = (Polygon) polygonGeomUntyped;
-      List<LatLng> polygon = linearRingTolatLngList(polygonGeom.getExteriorRing());
+      long[] cells = cache.get(polygonSlice, (int) res);
+      if (cells == null) {
+        cells = polygonToCellsArray(polygonSlice, (int) res);
+        cache.put(polygonSlice, (int) res, cells);
+      }
+      return H3Plugin.longArrayToBlock(cells);
+    } catch (TrinoException e) {
+      throw e;
+    } catch (Exception e) {
+      return null;
+    }
+  }
 
-      List<List<LatLng>> holes =
-          IntStream.range(0, polygonGeom.getNumInteriorRing())
-              .mapToObj(polygonGeom::getInteriorRingN)
-              .map(RegionFunctions::linearRingTolatLngList)
-              .collect(Collectors.toList());
+  private static long[] polygonToCellsArray(Slice polygonSlice, int res) {
+    Geometry polygonGeomUntyped = deserialize(polygonSlice);
+    if (!TYPENAME_POLYGON.equals(polygonGeomUntyped.getGeometryType())) {
+      throw new IllegalArgumentException("Invalid polygon geometry");
+    }
+    Polygon polygon = (Polygon) polygonGeomUntyped;
+    return PolygonCoverage.polyfill(polygon, res, "h3_polygon_to_cells");
+  }
 
-      List<Long> cells = H3Plugin.H3.polygonToCells(polygon, holes, H3Plugin.longToInt(res));
-      return H3Plugin.longListToBlock(cells);
+  /**
+   * Cells overlapping the polygon, so that every point inside it falls in one of them, each with a
+   * flag telling whether the cell lies strictly inside the polygon. Points in an interior cell are
+   * inside the polygon without testing them. Also accepts multipolygons.
+   */
+  @ScalarFunction(value = "h3_polygon_to_cells_classified")
+  @Description("Convert a polygon to the H3 cells overlapping it, flagging those inside it")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_CLASSIFIED_CELL)
+  public static Block polygonToCellsClassified(
+      @SqlType(StandardTypes.GEOMETRY) Slice polygonSlice,
+      @SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidResolution(res)) {
+      return null;
+    }
+    try {
+      Geometry geometry = deserialize(polygonSlice);
+      PolygonCoverage.ClassifiedCells cells =
+          PolygonCoverage.classifiedCells(geometry, (int) res, "h3_polygon_to_cells_classified");
+      return RowBlock.fromFieldBlocks(
+          cells.size(),
+          new Block[] {
+            new LongArrayBlock(cells.size(), Optional.empty(), cells.cells()),
+            new ByteArrayBlock(cells.size(), Optional.empty(), cells.interior())
+          });
+    } catch (TrinoException e) {
+      throw e;
     } catch (Exception e) {
       return null;
     }
   }
 
-  static List<LatLng> linearRingTolatLngList(LinearRing ring) {
-    return Arrays.stream(ring.getCoordinates())
-        .map(c -> new LatLng(c.getY(), c.getX()))
-        .collect(Collectors.toList());
+  /**
+   * Same cells as {@code h3_compact_cells(h3_polygon_to_cells(polygon, res))}, without producing
+   * the fine cells of the interior: cells fully inside are emitted whole and only the boundary is
+   * refined. Also accepts multipolygons.
+   */
+  @ScalarFunction(value = "h3_polygon_to_cells_compact")
+  @Description("Convert a polygon to compacted H3 cells")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block polygonToCellsCompact(
+      @SqlType(StandardTypes.GEOMETRY) Slice polygonSlice,
+      @SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidResolution(res)) {
+      return null;
+    }
+    try {
+      return H3Plugin.longArrayToBlock(
+          PolygonCoverage.compactCells(deserialize(polygonSlice), (int) res));
+    } catch (TrinoException e) {
+      throw e;
+    } catch (Exception e) {
+      return null;
+    }
   }
 
   @ScalarFunction(value = "h3_cells_to_multi_polygon")
@@ -84,36 +139,87 @@ public final class RegionFunctions {
       return null;
     }
     try {
-      List<Long> cells = H3Plugin.longBlockToList(h3Block);
-      List<List<List<LatLng>>> multiPolygon = H3Plugin.H3.cellsToMultiPolygon(cells, true);
-
-      GeometryFactory geomFactory = new GeometryFactory();
+      return CellDissolver.cellsToMultiPolygon(H3Plugin.longBlockToArray(h3Block));
+    } catch (TrinoException e) {
+      throw e;
+    } catch (Exception e) {
+      return null;
+    }
+  }
 
-      Polygon[] polygons =
-          multiPolygon.stream()
-              .map(
-                  polygon ->
-                      geomFactory.createPolygon(
-                          latLngListToLinearRing(geomFactory, polygon.get(0)),
-                          polygon.subList(1, polygon.size()).stream()
-                              .map(ring -> latLngListToLinearRing(geomFactory, ring))
-                              .collect(Collectors.toList())
-                              .toArray(new LinearRing[0])))
-              .collect(Collectors.toList())
-              .toArray(new Polygon[multiPolygon.size()]);
+  /**
+   * Cells of any geometry: points are indexed, lines traced through every cell they cross and
+   * polygons filled by center, with each part of a multi-part geometry or collection converted in
+   * turn. Every cell is returned once.
+   */
+  @ScalarFunction(value = "h3_geometry_to_cells")
+  @Description("Convert a geometry of any type to H3 cells")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block geometryToCells(
+      @SqlType(StandardTypes.GEOMETRY) Slice geometrySlice,
+      @SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidResolution(res)) {
+      return null;
+    }
+    try {
+      return H3Plugin.longArrayToBlock(
+          GeometryCells.geometryToCells(deserialize(geometrySlice), (int) res));
+    } catch (TrinoException e) {
+      throw e;
+    } catch (Exception e) {
+      return null;
+    }
+  }
 
-      MultiPolygon result = geomFactory.createMultiPolygon(polygons);
-      return serialize(result);
+  /**
+   * A superset of the cells at the resolution holding any point of the geometry, for pruning
+   * partitions keyed by a coarse cell. Found top down from the base cells, so the cost follows the
+   * boundary of the geometry at the partition resolution rather than its area at a fine one. Any
+   * geometry type is accepted.
+   */
+  @ScalarFunction(value = "h3_polygon_to_partition_cells")
+  @Description("Find the H3 cells at a partition resolution that the geometry may overlap")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block polygonToPartitionCells(
+      @SqlType(StandardTypes.GEOMETRY) Slice geometrySlice,
+      @SqlType(StandardTypes.INTEGER) long res) {
+    if (!H3Validation.isValidResolution(res)) {
+      return null;
+    }
+    try {
+      Geometry geometry = deserialize(geometrySlice);
+      return H3Plugin.longArrayToBlock(
+          PolygonCoverage.partitionCells(geometry, (int) res, "h3_polygon_to_partition_cells"));
+    } catch (TrinoException e) {
+      throw e;
     } catch (Exception e) {
       return null;
     }
   }
 
-  static LinearRing latLngListToLinearRing(GeometryFactory geomFactory, List<LatLng> latLngs) {
-    return geomFactory.createLinearRing(
-        latLngs.stream()
-            .map(latLng -> new Coordinate(latLng.lng, latLng.lat))
-            .collect(Collectors.toList())
-            .toArray(new Coordinate[latLngs.size()]));
+  /**
+   * Looks the cell up in a region dataset configured through {@link
+   * H3Plugin#DATASETS_DIR_PROPERTY}. Cells are attributed by their center, as in {@code
+   * h3_polygon_to_cells}. Fails if the dataset's file could not be loaded.
+   */
+  @ScalarFunction(value = "h3_lookup")
+  @Description("Find the region of a named dataset containing the center of the cell")
+  @SqlNullable
+  @SqlType(StandardTypes.VARCHAR)
+  public static Slice lookup(
+      @SqlType(StandardTypes.VARCHAR) Slice dataset, @SqlType(StandardTypes.BIGINT) long cell) {
+    if (!H3Validation.isValidCell(cell)) {
+      return null;
+    }
+    try {
+      RegionDataset regions = RegionDatasets.SHARED.get(dataset.toStringUtf8());
+      return regions == null ? null : regions.lookup(cell);
+    } catch (TrinoException e) {
+      throw e;
+    } catch (Exception e) {
+      return null;
+    }
   }
 }
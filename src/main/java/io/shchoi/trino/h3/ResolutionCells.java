@@ -0,0 +1,109 @@
+package io.shchoi.trino.h3;
+
+import static io.airlift.slice.SizeOf.instanceSize;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+/**
+ * Cells of an aggregation group at one resolution, kept compacted as they arrive, so a group holds
+ * memory in proportion to its compacted cells until the output function expands them. A cell added
+ * more than once counts once, and two groups merge by compacting their cells together.
+ */
+final class ResolutionCells {
+  private static final int INSTANCE_SIZE = instanceSize(ResolutionCells.class);
+
+  private CellCompactor compactor = new CellCompactor();
+  private int res = -1;
+  private boolean invalid;
+
+  /** Adds a cell at its own resolution. */
+  void add(long cell) {
+    add(cell, H3Validation.getResolution(cell));
+  }
+
+  /**
+   * Adds a cell at the resolution. A finer cell is replaced by its ancestor at it, and a coarser
+   * one stands for its descendants. An invalid cell or resolution, or one other than that of the
+   * cells added before, poisons the group.
+   */
+  void add(long cell, long res) {
+    if (invalid) {
+      return;
+    }
+    if (!H3Validation.isValidResolution(res)
+        || !matchResolution((int) res)
+        || !H3Validation.isValidCell(cell)) {
+      markInvalid();
+      return;
+    }
+    compactor.add(
+        H3Validation.getResolution(cell) > res
+            ? PolygonCoverage.cellToParent(cell, (int) res)
+            : cell);
+  }
+
+  /** Adds every cell of another group. */
+  void addAll(ResolutionCells other) {
+    if (invalid) {
+      return;
+    }
+    if (other.invalid || (other.res >= 0 && !matchResolution(other.res))) {
+      markInvalid();
+      return;
+    }
+    compactor.addAll(other.compactor);
+  }
+
+  boolean isInvalid() {
+    return invalid;
+  }
+
+  /** The resolution of the cells, or -1 before the first one. */
+  int resolution() {
+    return res;
+  }
+
+  /** The compacted cells, or null if the group is invalid or has no cells. */
+  long[] toCells() {
+    return invalid || res < 0 ? null : compactor.toCells();
+  }
+
+  long getEstimatedSize() {
+    return INSTANCE_SIZE + compactor.getEstimatedSize();
+  }
+
+  /** Serializes the resolution, -2 for an invalid group, followed by the compacted cells. */
+  Slice serialize() {
+    Slice cells = compactor.serialize();
+    Slice slice = Slices.allocate(Integer.BYTES + cells.length());
+    slice.setInt(0, invalid ? -2 : res);
+    slice.setBytes(Integer.BYTES, cells);
+    return slice;
+  }
+
+  static ResolutionCells deserialize(Slice slice) {
+    ResolutionCells cells = new ResolutionCells();
+    int res = slice.getInt(0);
+    if (res == -2) {
+      cells.markInvalid();
+      return cells;
+    }
+    cells.res = res;
+    cells.compactor =
+        CellCompactor.deserialize(slice.slice(Integer.BYTES, slice.length() - Integer.BYTES));
+    return cells;
+  }
+
+  private boolean matchResolution(int cellRes) {
+    if (res < 0) {
+      res = cellRes;
+    }
+    return res == cellRes;
+  }
+
+  private void markInvalid() {
+    invalid = true;
+    compactor = new CellCompactor();
+  }
+}
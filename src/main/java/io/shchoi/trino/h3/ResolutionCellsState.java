@@ -0,0 +1,17 @@
+package io.shchoi.trino.h3;
+
+import io.trino.spi.function.AccumulatorState;
+import io.trino.spi.function.AccumulatorStateMetadata;
+
+/** Aggregation state holding a {@link ResolutionCells}, or null before the first cell. */
+@AccumulatorStateMetadata(
+    stateFactoryClass = ResolutionCellsStateFactory.class,
+    stateSerializerClass = ResolutionCellsStateSerializer.class)
+public interface ResolutionCellsState extends AccumulatorState {
+  ResolutionCells get();
+
+  void set(ResolutionCells value);
+
+  /** Reports a change in the size of the held cells made after it was set. */
+  void addMemoryUsage(long delta);
+}
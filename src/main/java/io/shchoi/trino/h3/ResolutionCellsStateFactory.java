@@ -0,0 +1,29 @@
+package io.shchoi.trino.h3;
+
+import io.trino.spi.function.AccumulatorStateFactory;
+
+public class ResolutionCellsStateFactory implements AccumulatorStateFactory<ResolutionCellsState> {
+  @Override
+  public ResolutionCellsState createSingleState() {
+    return new SingleState();
+  }
+
+  @Override
+  public ResolutionCellsState createGroupedState() {
+    return new GroupedState();
+  }
+
+  static final class SingleState extends HolderStates.Single<ResolutionCells>
+      implements ResolutionCellsState {
+    SingleState() {
+      super(ResolutionCells::getEstimatedSize);
+    }
+  }
+
+  static final class GroupedState extends HolderStates.Grouped<ResolutionCells>
+      implements ResolutionCellsState {
+    GroupedState() {
+      super(ResolutionCells::getEstimatedSize);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.spi.type.VarbinaryType.VARBINARY;
+
+import io.trino.spi.block.Block;
+import io.trino.spi.block.BlockBuilder;
+import io.trino.spi.function.AccumulatorStateSerializer;
+import io.trino.spi.type.Type;
+
+/**
+ * Ships the cells of a group between partial and final aggregation as their resolution and
+ * compacted cells.
+ */
+public class ResolutionCellsStateSerializer
+    implements AccumulatorStateSerializer<ResolutionCellsState> {
+  @Override
+  public Type getSerializedType() {
+    return VARBINARY;
+  }
+
+  @Override
+  public void serialize(ResolutionCellsState state, BlockBuilder out) {
+    ResolutionCells cells = state.get();
+    if (cells == null) {
+      out.appendNull();
+    } else {
+      VARBINARY.writeSlice(out, cells.serialize());
+    }
+  }
+
+  @Override
+  public void deserialize(Block block, int index, ResolutionCellsState state) {
+    if (!block.isNull(index)) {
+      state.set(ResolutionCells.deserialize(VARBINARY.getSlice(block, index)));
+    }
+  }
+}
@@ -32,7 +32,6 @@ import io.trino.spi.type.RowType;
 import io.trino.spi.type.StandardTypes;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /** Wraps https://h3geo.org/docs/api/traversal */
 public final class TraversalFunctions {
@@ -42,9 +41,11 @@ public final class TraversalFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block gridDisk(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.INTEGER) long k) {
+    if (k < 0) {
+      return null;
+    }
     try {
-      List<Long> disk = H3Plugin.H3.gridDisk(origin, H3Plugin.longToInt(k));
-      return H3Plugin.longListToBlock(disk);
+      return NativeCells.gridDisk(origin, H3Plugin.longToInt(k));
     } catch (Exception e) {
       return null;
     }
@@ -56,6 +57,9 @@ public final class TraversalFunctions {
   @SqlType("ARRAY(ARRAY(BIGINT))")
   public static Block gridDiskDistances(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.INTEGER) long k) {
+    if (k < 0) {
+      return null;
+    }
     try {
       List<List<Long>> disksByDistance =
           H3Plugin.H3.gridDiskDistances(origin, H3Plugin.longToInt(k));
@@ -92,12 +96,11 @@ public final class TraversalFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block gridDiskUnsafe(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.INTEGER) long k) {
+    if (k < 0 || !H3Validation.isValidCell(origin)) {
+      return null;
+    }
     try {
-      List<Long> disk =
-          H3Plugin.H3.gridDiskUnsafe(origin, H3Plugin.longToInt(k)).stream()
-              .flatMap(List::stream)
-              .collect(Collectors.toList());
-      return H3Plugin.longListToBlock(disk);
+      return NativeCells.gridDiskUnsafe(origin, H3Plugin.longToInt(k));
     } catch (Exception e) {
       return null;
     }
@@ -110,9 +113,11 @@ public final class TraversalFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block gridRingUnsafe(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.INTEGER) long k) {
+    if (k < 0 || !H3Validation.isValidCell(origin)) {
+      return null;
+    }
     try {
-      List<Long> disk = H3Plugin.H3.gridRingUnsafe(origin, H3Plugin.longToInt(k));
-      return H3Plugin.longListToBlock(disk);
+      return NativeCells.gridRingUnsafe(origin, H3Plugin.longToInt(k));
     } catch (Exception e) {
       return null;
     }
@@ -124,6 +129,9 @@ public final class TraversalFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block gridRing(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.INTEGER) long k) {
+    if (k < 0) {
+      return null;
+    }
     try {
       List<Long> ring = H3Plugin.H3.gridRing(origin, H3Plugin.longToInt(k));
       return H3Plugin.longListToBlock(ring);
@@ -138,6 +146,9 @@ public final class TraversalFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block gridPathCells(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.BIGINT) long destination) {
+    if (!H3Validation.isValidCell(origin) || !H3Validation.isValidCell(destination)) {
+      return null;
+    }
     try {
       List<Long> path = H3Plugin.H3.gridPathCells(origin, destination);
       return H3Plugin.longListToBlock(path);
@@ -152,6 +163,9 @@ public final class TraversalFunctions {
   @SqlType(StandardTypes.BIGINT)
   public static Long gridDistance(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.BIGINT) long destination) {
+    if (!H3Validation.isValidCell(origin) || !H3Validation.isValidCell(destination)) {
+      return null;
+    }
     try {
       return H3Plugin.H3.gridDistance(origin, destination);
     } catch (Exception e) {
@@ -165,6 +179,9 @@ public final class TraversalFunctions {
   @SqlType("ROW(i INTEGER, j INTEGER)")
   public static SqlRow cellToLocalIj(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.BIGINT) long cell) {
+    if (!H3Validation.isValidCell(origin) || !H3Validation.isValidCell(cell)) {
+      return null;
+    }
     try {
       CoordIJ ij = H3Plugin.H3.cellToLocalIj(origin, cell);
       RowType rowType =
@@ -190,6 +207,9 @@ public final class TraversalFunctions {
   public static Long localIjToCell(
       @SqlType(StandardTypes.BIGINT) long origin,
       @SqlType("ROW(i INTEGER, j INTEGER)") SqlRow ijRow) {
+    if (!H3Validation.isValidCell(origin)) {
+      return null;
+    }
     try {
       int rawIndex = ijRow.getRawIndex();
       int i = INTEGER.getInt(ijRow.getRawFieldBlock(0), rawIndex);
@@ -18,6 +18,7 @@ package io.shchoi.trino.h3;
 import com.uber.h3core.util.LatLng;
 import io.airlift.slice.Slice;
 import io.trino.spi.block.Block;
+import io.trino.spi.block.SqlRow;
 import io.trino.spi.function.Description;
 import io.trino.spi.function.ScalarFunction;
 import io.trino.spi.function.SqlNullable;
@@ -33,8 +34,11 @@ public final class VertexFunctions {
   @SqlType(StandardTypes.BIGINT)
   public static Long cellToVertex(
       @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.INTEGER) long vertexNum) {
+    if (!H3Validation.isValidVertexNum(vertexNum)) {
+      return null;
+    }
     try {
-      return H3Plugin.H3.cellToVertex(cell, H3Plugin.longToInt(vertexNum));
+      return H3Plugin.H3.cellToVertex(cell, (int) vertexNum);
     } catch (Exception e) {
       return null;
     }
@@ -45,6 +49,9 @@ public final class VertexFunctions {
   @SqlNullable
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block cellToVertexes(@SqlType(StandardTypes.BIGINT) long cell) {
+    if (!H3Validation.isValidCell(cell)) {
+      return null;
+    }
     try {
       List<Long> vertexes = H3Plugin.H3.cellToVertexes(cell);
       return H3Plugin.longListToBlock(vertexes);
@@ -58,7 +65,14 @@ public final class VertexFunctions {
   @SqlNullable
   @SqlType(StandardTypes.GEOMETRY)
   public static Slice vertexToLatLng(@SqlType(StandardTypes.BIGINT) long vertex) {
+    if (!H3Validation.isValidVertex(vertex)) {
+      return null;
+    }
     try {
+      Slice tabled = CellGeometryTables.SHARED.vertexToLatLng(vertex);
+      if (tabled != null) {
+        return tabled;
+      }
       LatLng latLng = H3Plugin.H3.vertexToLatLng(vertex);
       return H3Plugin.latLngToGeometry(latLng);
     } catch (Exception e) {
@@ -66,6 +80,22 @@ public final class VertexFunctions {
     }
   }
 
+  @ScalarFunction(value = "h3_vertex_to_latlng_row")
+  @Description(
+      "Finds coordinates of a topological vertex index, returns ROW(lat DOUBLE, lng DOUBLE)")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ROW_LAT_LNG)
+  public static SqlRow vertexToLatLngRow(@SqlType(StandardTypes.BIGINT) long vertex) {
+    if (!H3Validation.isValidVertex(vertex)) {
+      return null;
+    }
+    try {
+      return H3Plugin.latLngToRow(H3Plugin.H3.vertexToLatLng(vertex));
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
   @ScalarFunction(value = "h3_is_valid_vertex")
   @Description("Returns true if this is a valid vertex index")
   @SqlNullable
@@ -0,0 +1,107 @@
+package io.shchoi.trino.h3;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Rows per second of functions over clean input and over input with a share of invalid rows (NaN
+ * coordinates, invalid cells and directed edges, out of range resolutions). Run with {@code
+ * ./gradlew jmh -Pbenchmark=BenchmarkInvalidInput}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BenchmarkInvalidInput {
+  private static final int ROWS = 10_000;
+
+  @Param({"0", "0.05", "0.15"})
+  public double invalidFraction;
+
+  private final double[] lats = new double[ROWS];
+  private final double[] lngs = new double[ROWS];
+  private final long[] cells = new long[ROWS];
+  private final long[] resolutions = new long[ROWS];
+  private final long[] edges = new long[ROWS];
+
+  @Setup
+  public void setup() {
+    Random random = new Random(20240919L);
+    for (int i = 0; i < ROWS; i++) {
+      lats[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      lngs[i] = 360 * random.nextDouble() - 180;
+      cells[i] = H3Plugin.H3.latLngToCell(lats[i], lngs[i], 9);
+      resolutions[i] = 5;
+      edges[i] = H3Plugin.H3.originToDirectedEdges(cells[i]).get(0);
+      if (random.nextDouble() < invalidFraction) {
+        lats[i] = Double.NaN;
+        cells[i] = random.nextLong();
+        resolutions[i] = 16;
+        edges[i] = random.nextLong();
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void latLngToCell(Blackhole blackhole) {
+    for (int i = 0; i < ROWS; i++) {
+      blackhole.consume(IndexingFunctions.latLngToCell(lats[i], lngs[i], resolutions[i]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void cellToLatLng(Blackhole blackhole) {
+    for (int i = 0; i < ROWS; i++) {
+      blackhole.consume(IndexingFunctions.cellToLatLngRow(cells[i]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void cellToParent(Blackhole blackhole) {
+    for (int i = 0; i < ROWS; i++) {
+      blackhole.consume(HierarchyFunctions.cellToParent(cells[i], resolutions[i]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void gridDistance(Blackhole blackhole) {
+    for (int i = 1; i < ROWS; i++) {
+      blackhole.consume(TraversalFunctions.gridDistance(cells[i - 1], cells[i]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void getDirectedEdgeOrigin(Blackhole blackhole) {
+    for (int i = 0; i < ROWS; i++) {
+      blackhole.consume(DirectedEdgeFunctions.getDirectedEdgeOrigin(edges[i]));
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(BenchmarkInvalidInput.class.getSimpleName()).build())
+        .run();
+  }
+}
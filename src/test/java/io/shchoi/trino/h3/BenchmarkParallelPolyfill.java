@@ -0,0 +1,75 @@
+package io.shchoi.trino.h3;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time to polyfill one large polygon with the native call and with the tiled fork-join mode at
+ * several pool sizes. Run with {@code ./gradlew jmh -Pbenchmark=BenchmarkParallelPolyfill}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BenchmarkParallelPolyfill {
+  @Param({"1", "2", "4", "8"})
+  public int threads;
+
+  @Param({"8"})
+  public int res;
+
+  private Polygon polygon;
+  private ForkJoinPool pool;
+
+  @Setup
+  public void setup() throws ParseException {
+    // Roughly the size of a large country, with a ragged edge
+    polygon =
+        (Polygon)
+            new WKTReader()
+                .read(
+                    "POLYGON ((0 40, 6 41, 12 40, 18 42, 20 48, 17 54, 10 56, 4 55, -2 50, -4 44, 0 40))");
+    pool = new ForkJoinPool(threads);
+  }
+
+  @TearDown
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Benchmark
+  public long[] serial() {
+    return NativeCells.polygonToCellsArray(polygon, res);
+  }
+
+  @Benchmark
+  public long[] parallel() {
+    return ParallelPolyfill.polygonToCells(polygon, res, "test", pool);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder().include(BenchmarkParallelPolyfill.class.getSimpleName()).build())
+        .run();
+  }
+}
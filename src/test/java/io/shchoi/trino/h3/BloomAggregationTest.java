@@ -0,0 +1,56 @@
+package io.shchoi.trino.h3;
+
+import static io.shchoi.trino.h3.H3PluginTest.assertQueryResults;
+import static io.shchoi.trino.h3.H3PluginTest.createQueryRunner;
+
+import io.trino.testing.QueryRunner;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class BloomAggregationTest {
+  @Test
+  public void testBloomAgg() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      // Every target cell and its descendants pass the filter
+      assertQueryResults(
+          queryRunner,
+          "SELECT count_if(h3_bloom_might_contain(f, cell)), count_if(h3_bloom_might_contain(f, h3_cell_to_center_child(cell, 11))) FROM (SELECT h3_bloom_agg(cell, 7) f FROM UNNEST(h3_grid_disk(from_base('872830828ffffff', 16), 10)) t(cell)) CROSS JOIN UNNEST(h3_grid_disk(from_base('872830828ffffff', 16), 10)) t(cell)",
+          List.of(List.of(331L, 331L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT count_if(h3_bloom_might_contain(f, cell)) < 20 FROM (SELECT h3_bloom_agg(cell, 7) f FROM UNNEST(h3_grid_disk(from_base('872830828ffffff', 16), 10)) t(cell)) CROSS JOIN UNNEST(h3_grid_ring(from_base('872830828ffffff', 16), 60)) t(cell)",
+          List.of(List.of(true)));
+      // A coarser target cell stands for its children at the filter's resolution
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_bloom_might_contain(h3_bloom_agg(cell, 7), from_base('872834700ffffff', 16)) FROM UNNEST(ARRAY [from_base('85283473fffffff', 16)]) t(cell)",
+          List.of(List.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_bloom_agg(cell, res) FROM UNNEST(ARRAY [from_base('85283473fffffff', 16), from_base('872834700ffffff', 16)], ARRAY [7, 8]) t(cell, res)",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_bloom_agg(cell, 7) FROM UNNEST(ARRAY [from_base('85283473fffffff', 16), 0]) t(cell)",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_bloom_might_contain(from_hex('00'), from_base('85283473fffffff', 16))",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testGrouped() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT parent, h3_bloom_might_contain(h3_bloom_agg(cell, 6), h3_cell_to_center_child(parent, 6)) FROM (SELECT h3_cell_to_parent(cell, 4) parent, cell FROM UNNEST(h3_cell_to_children(from_base('832834fffffffff', 16), 6)) t(cell)) GROUP BY parent ORDER BY parent LIMIT 2",
+          List.of(List.of(0x8428341ffffffffL, true), List.of(0x8428343ffffffffL, true)));
+    }
+  }
+}
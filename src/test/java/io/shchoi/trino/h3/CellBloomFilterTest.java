@@ -0,0 +1,94 @@
+package io.shchoi.trino.h3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CellBloomFilterTest {
+  private static final long ORIGIN = 0x872830828ffffffL;
+
+  @Test
+  public void testNoFalseNegatives() {
+    List<Long> disk = H3Plugin.H3.gridDisk(ORIGIN, 40);
+    ResolutionCells cells = new ResolutionCells();
+    disk.forEach(cell -> cells.add(cell, 7));
+    Slice filter = CellBloomFilter.build(cells);
+    // 4921 cells at 12 bits each, in 32 byte blocks
+    assertEquals(6 + 231 * 32, filter.length());
+    for (long cell : disk) {
+      assertTrue(CellBloomFilter.mightContain(filter, cell));
+      assertTrue(CellBloomFilter.mightContain(filter, H3Plugin.H3.cellToCenterChild(cell, 12)));
+    }
+    // Coarser cells cannot be ruled out
+    assertTrue(CellBloomFilter.mightContain(filter, 0x8009fffffffffffL));
+  }
+
+  @Test
+  public void testFalsePositiveRate() {
+    Set<Long> inside = new HashSet<>(H3Plugin.H3.gridDisk(ORIGIN, 40));
+    ResolutionCells cells = new ResolutionCells();
+    inside.forEach(cell -> cells.add(cell, 7));
+    Slice filter = CellBloomFilter.build(cells);
+    int outside = 0;
+    int passed = 0;
+    for (long cell : H3Plugin.H3.gridDisk(ORIGIN, 120)) {
+      if (!inside.contains(cell)) {
+        outside++;
+        passed += CellBloomFilter.mightContain(filter, cell) ? 1 : 0;
+      }
+    }
+    assertTrue(passed < outside * 0.02, passed + " of " + outside);
+  }
+
+  @Test
+  public void testCoarseCellsAndMerge() {
+    long parent = H3Plugin.H3.cellToParent(ORIGIN, 5);
+    long pentagonChild = H3Plugin.H3.cellToCenterChild(0x8009fffffffffffL, 9);
+    ResolutionCells first = new ResolutionCells();
+    first.add(parent, 7);
+    ResolutionCells second = new ResolutionCells();
+    second.add(pentagonChild, 7);
+    ResolutionCells merged = ResolutionCells.deserialize(first.serialize());
+    merged.addAll(ResolutionCells.deserialize(second.serialize()));
+
+    Slice filter = CellBloomFilter.build(merged);
+    for (long child : H3Plugin.H3.cellToChildren(parent, 7)) {
+      assertTrue(CellBloomFilter.mightContain(filter, child));
+    }
+    assertTrue(CellBloomFilter.mightContain(filter, pentagonChild));
+    assertEquals(H3Plugin.H3.cellToParent(ORIGIN, 5), CellBloomFilter.toParent(ORIGIN, 5));
+    assertEquals(
+        H3Plugin.H3.cellToParent(pentagonChild, 7), CellBloomFilter.toParent(pentagonChild, 7));
+  }
+
+  @Test
+  public void testInvalid() {
+    ResolutionCells mixed = new ResolutionCells();
+    mixed.add(ORIGIN, 7);
+    mixed.add(ORIGIN, 6);
+    assertTrue(mixed.isInvalid());
+    assertNull(CellBloomFilter.build(ResolutionCells.deserialize(mixed.serialize())));
+
+    ResolutionCells invalidCell = new ResolutionCells();
+    invalidCell.add(0, 7);
+    assertNull(CellBloomFilter.build(invalidCell));
+    assertNull(CellBloomFilter.build(new ResolutionCells()));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> CellBloomFilter.mightContain(Slices.utf8Slice("not a filter"), ORIGIN));
+    assertFalse(new ResolutionCells().isInvalid());
+  }
+}
@@ -0,0 +1,146 @@
+package io.shchoi.trino.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CellCompactorTest {
+  @Test
+  public void testMatchesNativeCompact() {
+    Random random = new Random(20241005L);
+    for (int n = 0; n < 100; n++) {
+      double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      double lng = 360 * random.nextDouble() - 180;
+      long origin = H3Plugin.H3.latLngToCell(lat, lng, 6);
+      List<Long> cells = new ArrayList<>(H3Plugin.H3.gridDisk(origin, 2 + random.nextInt(20)));
+      Collections.shuffle(cells, random);
+
+      CellCompactor compactor = new CellCompactor();
+      cells.forEach(compactor::add);
+      assertArrayEquals(sorted(H3Plugin.H3.compactCells(cells)), sorted(compactor.toCells()));
+    }
+  }
+
+  @Test
+  public void testPentagon() {
+    long pentagon = 0x8009fffffffffffL;
+    CellCompactor compactor = new CellCompactor();
+    H3Plugin.H3.cellToChildren(pentagon, 4).forEach(compactor::add);
+    assertArrayEquals(new long[] {pentagon}, compactor.toCells());
+  }
+
+  @Test
+  public void testIncompleteGroupStays() {
+    List<Long> children = H3Plugin.H3.cellToChildren(0x85283473fffffffL, 6);
+    CellCompactor compactor = new CellCompactor();
+    children.subList(1, children.size()).forEach(compactor::add);
+    assertArrayEquals(sorted(children.subList(1, children.size())), compactor.toCells());
+  }
+
+  @Test
+  public void testSerializeAndCombine() {
+    List<Long> children = H3Plugin.H3.cellToChildren(0x85283473fffffffL, 9);
+    CellCompactor first = new CellCompactor();
+    CellCompactor second = new CellCompactor();
+    for (int i = 0; i < children.size(); i++) {
+      (i % 2 == 0 ? first : second).add(children.get(i));
+    }
+    CellCompactor combined = CellCompactor.deserialize(first.serialize());
+    combined.addAll(CellCompactor.deserialize(second.serialize()));
+    assertArrayEquals(new long[] {0x85283473fffffffL}, combined.toCells());
+  }
+
+  @Test
+  public void testMemoryTracksCompactedSize() {
+    CellCompactor compactor = new CellCompactor();
+    long max = 0;
+    for (long child : H3Plugin.H3.cellToChildren(0x8428347ffffffffL, 11)) {
+      compactor.add(child);
+      max = Math.max(max, compactor.getEstimatedSize());
+    }
+    // 823543 children arrive in order, so the set keeps collapsing as they do
+    assertTrue(max < 64 * 1024, "max size " + max);
+    assertArrayEquals(new long[] {0x8428347ffffffffL}, compactor.toCells());
+  }
+
+  @Test
+  public void testInvalid() {
+    CellCompactor compactor = new CellCompactor();
+    compactor.add(0x85283473fffffffL);
+    compactor.add(0);
+    assertNull(compactor.toCells());
+    assertTrue(CellCompactor.deserialize(compactor.serialize()).isInvalid());
+  }
+
+  @Test
+  public void testCompactCellsMatchesNative() {
+    Random random = new Random(20241012L);
+    for (int n = 0; n < 50; n++) {
+      double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      double lng = 360 * random.nextDouble() - 180;
+      long origin = H3Plugin.H3.latLngToCell(lat, lng, 7);
+      // Large enough disks for the radix sort, and spilling over into neighboring base cells
+      List<Long> cells = new ArrayList<>(H3Plugin.H3.gridDisk(origin, 30 + random.nextInt(40)));
+      Collections.shuffle(cells, random);
+      long[] compacted = CellCompactor.compactCells(toArray(cells));
+      assertArrayEquals(sorted(H3Plugin.H3.compactCells(cells)), sorted(compacted));
+    }
+  }
+
+  @Test
+  public void testCompactCellsOverlapping() {
+    long parent = 0x85283473fffffffL;
+    List<Long> cells = new ArrayList<>(H3Plugin.H3.cellToChildren(parent, 8));
+    cells.addAll(H3Plugin.H3.cellToChildren(parent, 6).subList(0, 3));
+    cells.addAll(new ArrayList<>(cells.subList(0, 100)));
+    cells.add(0x8009fffffffffffL);
+    Collections.shuffle(cells, new Random(3));
+    assertArrayEquals(
+        new long[] {0x8009fffffffffffL, parent}, CellCompactor.compactCells(toArray(cells)));
+    assertThrows(
+        IllegalArgumentException.class, () -> CellCompactor.compactCells(new long[] {parent, 0}));
+  }
+
+  @Test
+  public void testUncompactCellsMatchesNative() {
+    List<Long> cells =
+        List.of(0x85283473fffffffL, 0x872834775ffffffL, 0x8009fffffffffffL, 0x81083ffffffffffL);
+    assertArrayEquals(
+        toArray(H3Plugin.H3.uncompactCells(cells, 7)),
+        CellCompactor.uncompactCells(toArray(cells), 7));
+    for (long cell : cells) {
+      assertEquals(
+          H3Plugin.H3.cellToChildrenSize(cell, 9),
+          PolygonCoverage.ChildCells.count(cell, 9));
+    }
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> CellCompactor.uncompactCells(new long[] {0x872834775ffffffL}, 5));
+  }
+
+  private static long[] toArray(List<Long> cells) {
+    return cells.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  private static long[] sorted(List<Long> cells) {
+    return cells.stream().mapToLong(Long::longValue).sorted().toArray();
+  }
+
+  private static long[] sorted(long[] cells) {
+    long[] copy = cells.clone();
+    Arrays.sort(copy);
+    return copy;
+  }
+}
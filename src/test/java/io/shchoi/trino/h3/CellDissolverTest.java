@@ -0,0 +1,173 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.geospatial.serde.JtsGeometrySerde.deserialize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.uber.h3core.util.LatLng;
+import io.airlift.slice.Slice;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CellDissolverTest {
+  private static final long ORIGIN = 0x89283082803ffffL;
+
+  private final GeometryFactory geometryFactory = new GeometryFactory();
+
+  @Test
+  public void testDisk() {
+    Geometry geometry = assertSameAsH3(disk(ORIGIN, 3));
+    assertEquals(1, geometry.getNumGeometries());
+    assertEquals(0, ((Polygon) geometry.getGeometryN(0)).getNumInteriorRing());
+  }
+
+  @Test
+  public void testHoles() {
+    Set<Long> cells = disk(ORIGIN, 6);
+    cells.removeAll(disk(ORIGIN, 4));
+    Geometry ring = assertSameAsH3(cells);
+    assertEquals(1, ring.getNumGeometries());
+    assertEquals(1, ((Polygon) ring.getGeometryN(0)).getNumInteriorRing());
+
+    // An island in the hole is a polygon of its own, and its hole goes to it, not the ring
+    Set<Long> island = disk(ORIGIN, 2);
+    island.remove(ORIGIN);
+    cells.addAll(island);
+    Geometry nested = assertSameAsH3(cells);
+    assertEquals(2, nested.getNumGeometries());
+    for (int i = 0; i < 2; i++) {
+      assertEquals(1, ((Polygon) nested.getGeometryN(i)).getNumInteriorRing());
+    }
+  }
+
+  @Test
+  public void testSeparateParts() {
+    Set<Long> cells = disk(ORIGIN, 2);
+    cells.addAll(disk(H3Plugin.H3.latLngToCell(37.5, -121.5, 9), 1));
+    assertEquals(2, assertSameAsH3(cells).getNumGeometries());
+  }
+
+  @Test
+  public void testPentagon() {
+    for (long pentagon : H3Plugin.H3.getPentagons(5)) {
+      // Neither implementation splits rings at the antimeridian
+      if (Math.abs(H3Plugin.H3.cellToLatLng(pentagon).lng) < 170) {
+        assertSameAsH3(disk(pentagon, 2));
+      }
+    }
+  }
+
+  @Test
+  public void testRepeatsIgnored() {
+    long[] cells = disk(ORIGIN, 1).stream().mapToLong(Long::longValue).toArray();
+    long[] repeated = new long[cells.length * 2];
+    System.arraycopy(cells, 0, repeated, 0, cells.length);
+    System.arraycopy(cells, 0, repeated, cells.length, cells.length);
+    assertEquals(
+        CellDissolver.cellsToMultiPolygon(cells), CellDissolver.cellsToMultiPolygon(repeated));
+  }
+
+  @Test
+  public void testInvalid() {
+    assertTrue(deserialize(CellDissolver.cellsToMultiPolygon(new long[0])).isEmpty());
+    assertThrows(
+        IllegalArgumentException.class, () -> CellDissolver.cellsToMultiPolygon(new long[] {-1}));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            CellDissolver.cellsToMultiPolygon(
+                new long[] {ORIGIN, H3Plugin.H3.cellToParent(ORIGIN, 8)}));
+  }
+
+  @Test
+  public void testVertexKey() {
+    // Both sides of a vertex rounding boundary are found from either
+    CellDissolver.Edges edges = new CellDissolver.Edges();
+    edges.add(List.of(new LatLng(0, 0), new LatLng(0, 1.00000005)));
+    edges.add(List.of(new LatLng(0, 1.0000000499999), new LatLng(1, 1)));
+    edges.add(List.of(new LatLng(1, 1), new LatLng(0, 0)));
+    assertEquals(1, CellDissolver.stitch(edges).size());
+    assertEquals(CellDissolver.vertexKey(10, 180), CellDissolver.vertexKey(10, -180));
+  }
+
+  /**
+   * The dissolved cells cover the same area as H3's cellsToMultiPolygon and have as many polygons
+   * and holes.
+   */
+  private Geometry assertSameAsH3(Set<Long> cells) {
+    Slice slice =
+        CellDissolver.cellsToMultiPolygon(cells.stream().mapToLong(Long::longValue).toArray());
+    Geometry actual = deserialize(slice);
+    assertRingOrientation(slice, actual);
+    List<Polygon> polygons = new ArrayList<>();
+    for (List<List<LatLng>> polygon :
+        H3Plugin.H3.cellsToMultiPolygon(new ArrayList<>(cells), true)) {
+      LinearRing[] holes = new LinearRing[polygon.size() - 1];
+      for (int i = 0; i < holes.length; i++) {
+        holes[i] = ring(polygon.get(i + 1));
+      }
+      polygons.add(geometryFactory.createPolygon(ring(polygon.get(0)), holes));
+    }
+    Geometry expected = geometryFactory.createMultiPolygon(polygons.toArray(Polygon[]::new));
+
+    assertTrue(actual.isValid());
+    assertEquals(expected.getNumGeometries(), actual.getNumGeometries());
+    assertEquals(expected.getArea(), actual.getArea(), expected.getArea() * 1e-9);
+    assertEquals(0, expected.symDifference(actual).getArea(), expected.getArea() * 1e-9);
+    return actual;
+  }
+
+  /**
+   * The serialized shells of the multipolygon run clockwise and its holes counter-clockwise, as
+   * {@code JtsGeometrySerde} writes them, in the order of the polygons and rings it reads back.
+   */
+  static void assertRingOrientation(Slice slice, Geometry geometry) {
+    int header = Byte.BYTES + Integer.BYTES + 4 * Double.BYTES;
+    int parts = slice.getInt(header);
+    int points = slice.getInt(header + Integer.BYTES);
+    int partIndexes = header + 2 * Integer.BYTES;
+    int coordinates = partIndexes + parts * Integer.BYTES;
+    int part = 0;
+    for (int i = 0; i < geometry.getNumGeometries(); i++) {
+      Polygon polygon = (Polygon) geometry.getGeometryN(i);
+      for (int ring = 0; ring <= polygon.getNumInteriorRing(); ring++, part++) {
+        int start = slice.getInt(partIndexes + part * Integer.BYTES);
+        int end =
+            part + 1 < parts ? slice.getInt(partIndexes + (part + 1) * Integer.BYTES) : points;
+        double edgeSum = 0;
+        for (int point = start + 1; point < end; point++) {
+          int offset = coordinates + point * 2 * Double.BYTES;
+          double x = slice.getDouble(offset);
+          double y = slice.getDouble(offset + Double.BYTES);
+          double previousX = slice.getDouble(offset - 2 * Double.BYTES);
+          double previousY = slice.getDouble(offset - Double.BYTES);
+          edgeSum += (x - previousX) * (y + previousY);
+        }
+        // A positive edge sum is clockwise
+        assertEquals(ring == 0, edgeSum > 0, "polygon " + i + " ring " + ring);
+      }
+    }
+    assertEquals(parts, part);
+  }
+
+  private LinearRing ring(List<LatLng> vertices) {
+    return geometryFactory.createLinearRing(
+        vertices.stream().map(ll -> new Coordinate(ll.lng, ll.lat)).toArray(Coordinate[]::new));
+  }
+
+  private static Set<Long> disk(long origin, int k) {
+    return new HashSet<>(H3Plugin.H3.gridDisk(origin, k));
+  }
+}
@@ -0,0 +1,103 @@
+package io.shchoi.trino.h3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.uber.h3core.util.LatLng;
+import io.airlift.slice.Slice;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.junit.jupiter.api.io.TempDir;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CellGeometryTablesTest {
+  private static final int MAX_RES = 2;
+
+  @TempDir Path directory;
+
+  @Test
+  public void testMatchesNative() {
+    CellGeometryTables tables = new CellGeometryTables(directory, MAX_RES);
+    tables.prepare().join();
+    int tabledVertexes = 0;
+    for (int res = 0; res <= MAX_RES; res++) {
+      for (long cell : H3Plugin.H3.getRes0Cells()) {
+        for (long child : H3Plugin.H3.cellToChildren(cell, res)) {
+          assertEquals(
+              H3Plugin.latLngToGeometry(H3Plugin.H3.cellToLatLng(child)),
+              tables.cellToLatLng(child));
+          List<LatLng> ring = H3Plugin.H3.cellToBoundary(child);
+          ring.add(ring.get(0));
+          assertEquals(GeometrySlices.polygon(ring), tables.cellToBoundary(child));
+
+          for (long vertex : H3Plugin.H3.cellToVertexes(child)) {
+            Slice tabled = tables.vertexToLatLng(vertex);
+            if (tabled != null) {
+              assertEquals(
+                  H3Plugin.latLngToGeometry(H3Plugin.H3.vertexToLatLng(vertex)), tabled);
+              tabledVertexes++;
+            }
+          }
+        }
+      }
+    }
+    assertTrue(tabledVertexes > 0);
+    assertTrue(Files.isRegularFile(directory.resolve("h3-cell-geometry-r" + MAX_RES + ".bin")));
+  }
+
+  @Test
+  public void testReusesGeneratedFiles() {
+    long cell = H3Plugin.H3.latLngToCell(37.775938728915946, -122.41795063018799, 1);
+    CellGeometryTables generating = new CellGeometryTables(directory, MAX_RES);
+    generating.prepare().join();
+    Slice generated = generating.cellToBoundary(cell);
+    CellGeometryTables mapping = new CellGeometryTables(directory, MAX_RES);
+    mapping.prepare().join();
+    assertEquals(generated, mapping.cellToBoundary(cell));
+  }
+
+  @Test
+  public void testFallsBackWhileLoading() {
+    // A lookup starts loading its resolution but does not wait for it
+    CellGeometryTables tables = new CellGeometryTables(directory.resolve("lazy"), MAX_RES);
+    long cell = H3Plugin.H3.latLngToCell(0, 0, 1);
+    Slice first = tables.cellToBoundary(cell);
+    tables.prepare().join();
+    List<LatLng> ring = H3Plugin.H3.cellToBoundary(cell);
+    ring.add(ring.get(0));
+    assertEquals(GeometrySlices.polygon(ring), tables.cellToBoundary(cell));
+    assertTrue(first == null || first.equals(tables.cellToBoundary(cell)));
+  }
+
+  @Test
+  public void testDoesNotHoldOtherIndexes() {
+    CellGeometryTables tables = new CellGeometryTables(directory, MAX_RES);
+    // Lookups would otherwise leave loads writing to the directory after the test
+    tables.prepare().join();
+    long cell = H3Plugin.H3.latLngToCell(0, 0, MAX_RES + 1);
+    assertNull(tables.cellToBoundary(cell));
+    assertNull(tables.cellToLatLng(cell));
+    assertNull(tables.vertexToLatLng(H3Plugin.H3.cellToVertex(cell, 0)));
+
+    // Invalid indexes, including a pentagon's deleted subsequence, and a directed edge
+    assertNull(tables.cellToBoundary(-1));
+    assertNull(tables.cellToBoundary(0));
+    assertNull(tables.cellToBoundary(0x81087ffffffffffL));
+    assertNull(tables.cellToLatLng(H3Plugin.H3.latLngToCell(0, 0, 1) | (1L << 56)));
+    long edge = H3Plugin.H3.originToDirectedEdges(H3Plugin.H3.latLngToCell(0, 0, 1)).get(0);
+    assertNull(tables.cellToBoundary(edge));
+    assertNull(tables.vertexToLatLng(edge));
+
+    CellGeometryTables disabled = new CellGeometryTables(null, -1);
+    assertNull(disabled.cellToBoundary(H3Plugin.H3.latLngToCell(0, 0, 0)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new CellGeometryTables(directory, CellGeometryTables.MAX_TABLE_RES + 1));
+  }
+}
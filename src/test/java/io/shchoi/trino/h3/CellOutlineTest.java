@@ -0,0 +1,116 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.geospatial.serde.JtsGeometrySerde.deserialize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.airlift.slice.Slice;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CellOutlineTest {
+  private static final long ORIGIN = 0x89283082803ffffL;
+
+  @Test
+  public void testKeepsCellsCompacted() {
+    ResolutionCells outline = new ResolutionCells();
+    long parent = H3Plugin.H3.cellToParent(ORIGIN, 6);
+    for (long cell : H3Plugin.H3.cellToChildren(parent, 9)) {
+      outline.add(cell);
+    }
+    // The children are held as their parent
+    assertEquals(outline(List.of(ORIGIN)).serialize().length(), outline.serialize().length());
+    assertSameAsDissolved(outline, H3Plugin.H3.cellToChildren(parent, 9));
+
+    List<Long> disk = H3Plugin.H3.gridDisk(ORIGIN, 10);
+    assertSameAsDissolved(outline(disk), disk);
+  }
+
+  @Test
+  public void testMergesInAnyOrder() {
+    List<Long> cells = new ArrayList<>(H3Plugin.H3.gridDisk(ORIGIN, 8));
+    cells.removeAll(H3Plugin.H3.gridDisk(ORIGIN, 2));
+    cells.addAll(H3Plugin.H3.gridDisk(ORIGIN, 0));
+    cells.addAll(H3Plugin.H3.gridDisk(H3Plugin.H3.latLngToCell(37.5, -121.5, 9), 3));
+    Collections.shuffle(cells, new Random(7));
+
+    // Three partial outlines, shipped like partial aggregation states
+    ResolutionCells[] parts = {new ResolutionCells(), new ResolutionCells(), new ResolutionCells()};
+    for (int i = 0; i < cells.size(); i++) {
+      parts[i % 3].add(cells.get(i));
+    }
+    ResolutionCells outline = ResolutionCells.deserialize(parts[0].serialize());
+    outline.addAll(ResolutionCells.deserialize(parts[1].serialize()));
+    outline.addAll(parts[2]);
+
+    Geometry geometry = assertSameAsDissolved(outline, cells);
+    // The ring with a hole, the cell in that hole and the separate disk
+    assertEquals(3, geometry.getNumGeometries());
+  }
+
+  @Test
+  public void testRepeatCountsOnce() {
+    List<Long> disk = H3Plugin.H3.gridDisk(ORIGIN, 2);
+    ResolutionCells outline = outline(disk);
+    outline.add(ORIGIN);
+    outline.addAll(outline(disk));
+    Geometry geometry = assertSameAsDissolved(outline, disk);
+    assertEquals(0, ((Polygon) geometry.getGeometryN(0)).getNumInteriorRing());
+
+    ResolutionCells single = new ResolutionCells();
+    single.add(ORIGIN);
+    single.add(ORIGIN);
+    assertSameAsDissolved(single, List.of(ORIGIN));
+  }
+
+  @Test
+  public void testInvalid() {
+    ResolutionCells outline = new ResolutionCells();
+    outline.add(ORIGIN);
+    outline.add(-1);
+    assertTrue(outline.isInvalid());
+    assertNull(CellOutline.toMultiPolygon(outline));
+    assertTrue(ResolutionCells.deserialize(outline.serialize()).isInvalid());
+
+    ResolutionCells mixed = new ResolutionCells();
+    mixed.add(ORIGIN);
+    mixed.add(H3Plugin.H3.cellToParent(ORIGIN, 8));
+    assertTrue(mixed.isInvalid());
+
+    ResolutionCells parent = new ResolutionCells();
+    parent.add(H3Plugin.H3.cellToParent(ORIGIN, 8));
+    ResolutionCells merged = new ResolutionCells();
+    merged.add(ORIGIN);
+    merged.addAll(ResolutionCells.deserialize(parent.serialize()));
+    assertTrue(merged.isInvalid());
+  }
+
+  private static ResolutionCells outline(List<Long> cells) {
+    ResolutionCells outline = new ResolutionCells();
+    cells.forEach(outline::add);
+    return outline;
+  }
+
+  private static Geometry assertSameAsDissolved(ResolutionCells outline, List<Long> cells) {
+    Slice slice = CellOutline.toMultiPolygon(outline);
+    Geometry actual = deserialize(slice);
+    CellDissolverTest.assertRingOrientation(slice, actual);
+    Geometry expected =
+        deserialize(
+            CellDissolver.cellsToMultiPolygon(cells.stream().mapToLong(Long::longValue).toArray()));
+    assertTrue(actual.isValid());
+    assertEquals(expected.getNumGeometries(), actual.getNumGeometries());
+    assertEquals(expected.getArea(), actual.getArea(), expected.getArea() * 1e-9);
+    assertEquals(0, expected.symDifference(actual).getArea(), expected.getArea() * 1e-9);
+    return actual;
+  }
+}
@@ -0,0 +1,72 @@
+package io.shchoi.trino.h3;
+
+import static io.shchoi.trino.h3.H3PluginTest.assertQueryResults;
+import static io.shchoi.trino.h3.H3PluginTest.createQueryRunner;
+
+import io.trino.testing.QueryRunner;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CellSetFunctionsTest {
+  @Test
+  public void testCellset() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cellset_to_cells(h3_cellset(h3_cell_to_children(from_base('85283473fffffff', 16), 7) || ARRAY [from_base('8009fffffffffff', 16)])) hex",
+          List.of(List.of(List.of(0x8009fffffffffffL, 0x85283473fffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cellset_size(h3_cellset(cells)) = cardinality(h3_compact_cells(cells)), h3_cellset_size(h3_cellset(ARRAY [])) FROM (VALUES h3_grid_disk(from_base('872830828ffffff', 16), 20)) t(cells)",
+          List.of(List.of(true, 0L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cellset(ARRAY [from_base('85283473fffffff', 16), 0])",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cellset_to_cells(from_hex('00'))",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testCellsetContains() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT count_if(h3_cellset_contains(s, cell)) FROM (SELECT h3_cellset(h3_grid_disk(from_base('872830828ffffff', 16), 5)) s) CROSS JOIN UNNEST(h3_grid_disk(from_base('872830828ffffff', 16), 8)) t(cell)",
+          List.of(List.of(91L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cellset_contains(h3_cellset(ARRAY [from_base('85283473fffffff', 16)]), from_base('872834700ffffff', 16)), h3_cellset_contains(h3_cellset(ARRAY [from_base('872834700ffffff', 16)]), from_base('85283473fffffff', 16))",
+          List.of(List.of(true, false)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cellset_contains(h3_cellset(ARRAY [from_base('85283473fffffff', 16)]), 0)",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testCellsetUnionAndAgg() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cellset_to_cells(h3_cellset_union(h3_cellset(slice(h3_cell_to_children(from_base('85283473fffffff', 16), 6), 1, 3)), h3_cellset(slice(h3_cell_to_children(from_base('85283473fffffff', 16), 6), 4, 4)))) hex",
+          List.of(List.of(List.of(0x85283473fffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cellset_agg(cell) = h3_cellset(array_agg(cell)) FROM UNNEST(h3_grid_disk(from_base('872830828ffffff', 16), 20)) t(cell)",
+          List.of(List.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cellset_agg(cell) FROM UNNEST(CAST(ARRAY [] AS ARRAY(BIGINT))) t(cell)",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+}
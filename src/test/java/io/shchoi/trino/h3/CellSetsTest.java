@@ -0,0 +1,87 @@
+package io.shchoi.trino.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CellSetsTest {
+  private static final int FINE_RES = 9;
+
+  @Test
+  public void testMatchesUncompactedSets() {
+    Random random = new Random(20241019L);
+    for (int n = 0; n < 50; n++) {
+      long origin =
+          H3Plugin.H3.latLngToCell(37 + random.nextDouble(), -122 + random.nextDouble(), 6);
+      long[] first = compactedDisk(origin, 1 + random.nextInt(4));
+      long[] second = compactedDisk(H3Plugin.H3.gridDisk(origin, 3).get(random.nextInt(37)), 2);
+
+      Set<Long> firstCells = uncompact(first);
+      Set<Long> secondCells = uncompact(second);
+      Set<Long> union = new HashSet<>(firstCells);
+      union.addAll(secondCells);
+      Set<Long> intersection = new HashSet<>(firstCells);
+      intersection.retainAll(secondCells);
+      Set<Long> difference = new HashSet<>(firstCells);
+      difference.removeAll(secondCells);
+
+      assertCompacted(union, CellSets.union(first, second));
+      assertCompacted(intersection, CellSets.intersect(first, second));
+      assertCompacted(difference, CellSets.except(first, second));
+      assertEquals(firstCells.containsAll(secondCells), CellSets.contains(first, second));
+      assertTrue(CellSets.contains(first, CellSets.intersect(first, second)));
+    }
+  }
+
+  @Test
+  public void testPentagon() {
+    long pentagon = 0x8009fffffffffffL;
+    long[] hole = {H3Plugin.H3.cellToCenterChild(pentagon, 5)};
+    long[] difference = CellSets.except(new long[] {pentagon}, hole);
+    // Five hexagons at each resolution down to the hole, which sits in the pentagon
+    assertEquals(5 * 5, difference.length);
+    assertArrayEquals(new long[] {pentagon}, CellSets.union(difference, hole));
+    assertArrayEquals(new long[0], CellSets.intersect(difference, hole));
+    assertFalse(CellSets.contains(difference, hole));
+  }
+
+  @Test
+  public void testInvalid() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> CellSets.intersect(new long[] {0x85283473fffffffL}, new long[] {0}));
+  }
+
+  private static long[] compactedDisk(long origin, int k) {
+    return CellCompactor.compactCells(toArray(H3Plugin.H3.gridDisk(origin, k)));
+  }
+
+  private static Set<Long> uncompact(long[] cells) {
+    return new HashSet<>(H3Plugin.H3.uncompactCells(toList(cells), FINE_RES));
+  }
+
+  private static void assertCompacted(Set<Long> expected, long[] actual) {
+    assertEquals(expected, uncompact(actual));
+    assertArrayEquals(CellCompactor.compactCells(actual), actual);
+  }
+
+  private static long[] toArray(List<Long> cells) {
+    return cells.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  private static List<Long> toList(long[] cells) {
+    return Arrays.stream(cells).boxed().toList();
+  }
+}
@@ -0,0 +1,68 @@
+package io.shchoi.trino.h3;
+
+import static io.shchoi.trino.h3.H3PluginTest.assertQueryResults;
+import static io.shchoi.trino.h3.H3PluginTest.createQueryRunner;
+
+import io.trino.testing.QueryRunner;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CompactAggregationTest {
+  @Test
+  public void testCompactAgg() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_compact_agg(cell) FROM UNNEST(h3_cell_to_children(from_base('85283473fffffff', 16), 8)) t(cell)",
+          List.of(List.of(List.of(0x85283473fffffffL))));
+      // Duplicates and cells inside other cells of the group are absorbed
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_compact_agg(cell) FROM UNNEST(h3_cell_to_children(from_base('85283473fffffff', 16), 7) || h3_cell_to_children(from_base('85283473fffffff', 16), 6) || from_base('862834717ffffff', 16)) t(cell)",
+          List.of(List.of(List.of(0x85283473fffffffL))));
+      // Pentagons have six children
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_compact_agg(cell) FROM UNNEST(h3_cell_to_children(from_base('8009fffffffffff', 16), 3)) t(cell)",
+          List.of(List.of(List.of(0x8009fffffffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_compact_agg(cell) FROM UNNEST(ARRAY [from_base('85283473fffffff', 16), null]) t(cell)",
+          List.of(List.of(List.of(0x85283473fffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_compact_agg(cell) FROM UNNEST(ARRAY [from_base('85283473fffffff', 16), 0]) t(cell)",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_compact_agg(cell) FROM UNNEST(CAST(ARRAY [] AS ARRAY(BIGINT))) t(cell)",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testMatchesCompactCells() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(h3_compact_agg(cell)) = array_sort(h3_compact_cells(array_agg(cell))) FROM UNNEST(h3_grid_disk(from_base('872830828ffffff', 16), 30)) t(cell)",
+          List.of(List.of(true)));
+    }
+  }
+
+  @Test
+  public void testGrouped() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT parent, h3_compact_agg(cell) FROM (SELECT h3_cell_to_parent(cell, 4) parent, cell FROM UNNEST(h3_cell_to_children(from_base('832834fffffffff', 16), 7)) t(cell)) GROUP BY parent ORDER BY parent LIMIT 2",
+          List.of(
+              List.of(0x8428341ffffffffL, List.of(0x8428341ffffffffL)),
+              List.of(0x8428343ffffffffL, List.of(0x8428343ffffffffL))));
+    }
+  }
+}
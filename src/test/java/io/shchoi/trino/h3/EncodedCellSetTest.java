@@ -0,0 +1,96 @@
+package io.shchoi.trino.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class EncodedCellSetTest {
+  private static final long ORIGIN = 0x872830828ffffffL;
+
+  @Test
+  public void testRoundTrip() {
+    long[] cells = toArray(H3Plugin.H3.gridDisk(ORIGIN, 30));
+    Slice set = EncodedCellSet.fromCells(cells);
+    long[] compacted = CellCompactor.compactCells(cells);
+    assertArrayEquals(compacted, EncodedCellSet.toCells(set));
+    assertEquals(compacted.length, EncodedCellSet.size(set));
+    // Neighboring keys share most of their digits, so deltas take a few bytes each, not eight
+    assertTrue(set.length() < compacted.length * 5, "encoded " + set.length());
+
+    Slice spanning =
+        EncodedCellSet.fromCells(new long[] {0x8009fffffffffffL, ORIGIN, 0x8f754e64992d6d8L});
+    assertArrayEquals(
+        new long[] {0x8009fffffffffffL, ORIGIN, 0x8f754e64992d6d8L},
+        EncodedCellSet.toCells(spanning));
+    assertEquals(0, EncodedCellSet.toCells(EncodedCellSet.fromCells(new long[0])).length);
+  }
+
+  @Test
+  public void testContains() {
+    List<Long> disk = H3Plugin.H3.gridDisk(ORIGIN, 10);
+    Slice set = EncodedCellSet.fromCells(toArray(disk));
+    Set<Long> inside = new HashSet<>(disk);
+    for (long cell : H3Plugin.H3.gridDisk(ORIGIN, 12)) {
+      assertEquals(inside.contains(cell), EncodedCellSet.contains(set, cell));
+      // The same set read back from another buffer
+      Slice copy = set.copy();
+      assertEquals(inside.contains(cell), EncodedCellSet.contains(copy, cell));
+    }
+    for (long child : H3Plugin.H3.cellToChildren(ORIGIN, 10)) {
+      assertTrue(EncodedCellSet.contains(set, child));
+    }
+    // The disk covers the res 5 parent, which the set holds compacted, but not the res 4 one
+    assertTrue(EncodedCellSet.contains(set, H3Plugin.H3.cellToParent(ORIGIN, 5)));
+    assertFalse(EncodedCellSet.contains(set, H3Plugin.H3.cellToParent(ORIGIN, 4)));
+  }
+
+  @Test
+  public void testContainsLargeSetInPlace() {
+    long parent = H3Plugin.H3.cellToParent(ORIGIN, 3);
+    long[] children = PolygonCoverage.ChildCells.toArray(parent, 10, 823543);
+    // Every other child keeps the set from compacting
+    long[] cells = new long[children.length / 2];
+    for (int i = 0; i < cells.length; i++) {
+      cells[i] = children[i * 2];
+    }
+    Slice set = EncodedCellSet.fromCells(cells);
+    assertTrue(EncodedCellSet.size(set) > EncodedCellSet.MAX_CACHED_CELLS);
+    // Probes land at the start, middle and end of runs
+    for (int i = 0; i < cells.length; i += 997) {
+      assertTrue(EncodedCellSet.contains(set, cells[i]));
+      assertFalse(EncodedCellSet.contains(set, children[i * 2 + 1]));
+    }
+    assertTrue(EncodedCellSet.contains(set, cells[cells.length - 1]));
+    assertTrue(EncodedCellSet.contains(set, H3Plugin.H3.cellToCenterChild(cells[777], 12)));
+    assertFalse(EncodedCellSet.contains(set, 0x8009fffffffffffL));
+  }
+
+  @Test
+  public void testInvalid() {
+    Slice set = EncodedCellSet.fromCells(toArray(H3Plugin.H3.gridDisk(ORIGIN, 3)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> EncodedCellSet.decodeKeys(set.slice(0, set.length() - 1)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> EncodedCellSet.decodeKeys(Slices.utf8Slice("not a set")));
+    assertThrows(
+        IllegalArgumentException.class, () -> EncodedCellSet.fromCells(new long[] {ORIGIN, 0}));
+  }
+
+  private static long[] toArray(List<Long> cells) {
+    return cells.stream().mapToLong(Long::longValue).toArray();
+  }
+}
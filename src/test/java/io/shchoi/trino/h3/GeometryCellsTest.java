@@ -0,0 +1,122 @@
+package io.shchoi.trino.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.trino.spi.TrinoException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class GeometryCellsTest {
+  @Test
+  public void testPoints() throws ParseException {
+    long cell = H3Plugin.H3.latLngToCell(37.775, -122.419, 9);
+    assertArrayEquals(new long[] {cell}, cells("POINT (-122.419 37.775)", 9));
+    // Both points fall in the same cell
+    assertArrayEquals(
+        new long[] {cell}, cells("MULTIPOINT ((-122.419 37.775), (-122.41900001 37.775))", 9));
+    assertEquals(0, cells("POINT EMPTY", 9).length);
+  }
+
+  @Test
+  public void testPolygons() throws ParseException {
+    String polygon = "POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0))";
+    long[] expected = polyfill(polygon, 6);
+    assertArrayEquals(expected, sorted(cells(polygon, 6)));
+    // Overlapping parts give each cell once
+    assertArrayEquals(
+        expected,
+        sorted(cells("MULTIPOLYGON (((0 0, 0 2, 2 2, 2 0, 0 0)), ((0 0, 0 1, 1 1, 1 0, 0 0)))", 6)));
+  }
+
+  @Test
+  public void testLines() throws ParseException {
+    assertLineCovered("LINESTRING (-122.5 37.7, -122.3 37.9)", 9);
+    // Long enough to be split before tracing
+    assertLineCovered("LINESTRING (0 0, 10 10, 20 0)", 5);
+    // Through the pentagon of base cell 4
+    assertLineCovered("LINESTRING (5 60, 15 68)", 5);
+  }
+
+  @Test
+  public void testCollection() throws ParseException {
+    long[] cells =
+        cells(
+            "GEOMETRYCOLLECTION (POINT (10 10), LINESTRING (0 0, 1 1), POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0)))",
+            6);
+    Set<Long> distinct = new HashSet<>();
+    for (long cell : cells) {
+      assertTrue(distinct.add(cell));
+    }
+    // The point comes first, as its part does
+    assertEquals(H3Plugin.H3.latLngToCell(10, 10, 6), cells[0]);
+    for (long cell : polyfill("POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0))", 6)) {
+      assertTrue(distinct.contains(cell));
+    }
+  }
+
+  @Test
+  public void testUnionOverCap() {
+    // About 5.8 million cells in each part, under the cap alone but over it together
+    assertThrows(
+        TrinoException.class,
+        () ->
+            cells(
+                "MULTIPOLYGON (((0 0, 7 0, 7 7, 0 7, 0 0)), ((10 0, 17 0, 17 7, 10 7, 10 0)))", 9));
+  }
+
+  /** Points along the line fall in returned cells, and the cells are connected. */
+  private static void assertLineCovered(String wkt, int res) throws ParseException {
+    LineString line = (LineString) new WKTReader().read(wkt);
+    long[] cells = GeometryCells.lineToCells(line, res);
+    Set<Long> cellSet = new HashSet<>();
+    for (long cell : cells) {
+      cellSet.add(cell);
+    }
+    for (int i = 1; i < line.getNumPoints(); i++) {
+      Coordinate from = line.getCoordinateN(i - 1);
+      Coordinate to = line.getCoordinateN(i);
+      for (int step = 0; step <= 1000; step++) {
+        double t = step / 1000.0;
+        long cell =
+            H3Plugin.H3.latLngToCell(
+                from.y + (to.y - from.y) * t, from.x + (to.x - from.x) * t, res);
+        assertTrue(cellSet.contains(cell), wkt + " " + t);
+      }
+    }
+    for (long cell : cells) {
+      boolean connected = cells.length == 1;
+      for (long neighbor : H3Plugin.H3.gridDisk(cell, 1)) {
+        connected |= neighbor != cell && cellSet.contains(neighbor);
+      }
+      assertTrue(connected, wkt + " " + Long.toHexString(cell));
+    }
+  }
+
+  private static long[] cells(String wkt, int res) throws ParseException {
+    return GeometryCells.geometryToCells(new WKTReader().read(wkt), res);
+  }
+
+  private static long[] polyfill(String wkt, int res) throws ParseException {
+    long[] cells = NativeCells.polygonToCellsArray((Polygon) new WKTReader().read(wkt), res);
+    return Arrays.stream(cells).filter(cell -> cell != 0).sorted().toArray();
+  }
+
+  private static long[] sorted(long[] cells) {
+    long[] copy = cells.clone();
+    Arrays.sort(copy);
+    return copy;
+  }
+}
@@ -0,0 +1,139 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.geospatial.serde.JtsGeometrySerde.serialize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.uber.h3core.util.LatLng;
+import io.airlift.slice.Slice;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class GeometrySlicesTest {
+  private final GeometryFactory geometryFactory = new GeometryFactory();
+  private final WKTReader wktReader = new WKTReader(geometryFactory);
+
+  @Test
+  public void testReadsPoint() throws ParseException {
+    Slice point = serialize(wktReader.read("POINT (-122.41795063018799 37.775938728915946)"));
+    assertTrue(GeometrySlices.isPoint(point));
+    assertEquals(-122.41795063018799, GeometrySlices.pointX(point));
+    assertEquals(37.775938728915946, GeometrySlices.pointY(point));
+  }
+
+  @Test
+  public void testReadsEmptyPoint() throws ParseException {
+    Slice point = serialize(wktReader.read("POINT EMPTY"));
+    assertTrue(GeometrySlices.isPoint(point));
+    assertTrue(Double.isNaN(GeometrySlices.pointX(point)));
+    assertTrue(Double.isNaN(GeometrySlices.pointY(point)));
+  }
+
+  @Test
+  public void testRejectsOtherGeometries() throws ParseException {
+    assertFalse(GeometrySlices.isPoint(serialize(wktReader.read("MULTIPOINT ((0 0))"))));
+    assertFalse(GeometrySlices.isPoint(serialize(wktReader.read("LINESTRING (0 0, 1 1)"))));
+    assertFalse(
+        GeometrySlices.isPoint(serialize(wktReader.read("POLYGON ((0 0, 1 0, 1 1, 0 0))"))));
+    assertFalse(GeometrySlices.isPoint(serialize(wktReader.read("GEOMETRYCOLLECTION EMPTY"))));
+  }
+
+  @Test
+  public void testWritesPointLikeJts() {
+    LatLng latLng = new LatLng(37.775938728915946, -122.41795063018799);
+    assertEquals(
+        serialize(geometryFactory.createPoint(new Coordinate(latLng.lng, latLng.lat))),
+        GeometrySlices.point(latLng));
+  }
+
+  @Test
+  public void testWritesCellBoundariesLikeJts() {
+    Random random = new Random(20240918L);
+    for (int n = 0; n < 10_000; n++) {
+      double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      double lng = 360 * random.nextDouble() - 180;
+      long cell = H3Plugin.H3.latLngToCell(lat, lng, random.nextInt(16));
+
+      List<LatLng> ring = H3Plugin.H3.cellToBoundary(cell);
+      ring.add(ring.get(0));
+      assertEquals(
+          serialize(geometryFactory.createPolygon(toCoordinates(ring))),
+          GeometrySlices.polygon(ring));
+      // Both orientations canonicalize to the same serialized shell
+      List<LatLng> reversed = new ArrayList<>(ring).reversed();
+      assertEquals(
+          serialize(geometryFactory.createPolygon(toCoordinates(reversed))),
+          GeometrySlices.polygon(reversed));
+
+      for (long edge : H3Plugin.H3.originToDirectedEdges(cell)) {
+        List<LatLng> line = H3Plugin.H3.directedEdgeToBoundary(edge);
+        assertEquals(
+            serialize(geometryFactory.createLineString(toCoordinates(line))),
+            GeometrySlices.lineString(line));
+      }
+    }
+  }
+
+  @Test
+  public void testWritesMultiPolygonLikeJts() throws ParseException {
+    // The first polygon is listed with its rings the wrong way around, which is canonicalized
+    MultiPolygon multiPolygon =
+        (MultiPolygon)
+            wktReader.read(
+                "MULTIPOLYGON (((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 2 4, 4 4, 4 2, 2 2)),"
+                    + " ((20 20, 21 20, 21 21, 20 21, 20 20)))");
+    List<List<double[]>> polygons = new ArrayList<>();
+    for (int i = 0; i < multiPolygon.getNumGeometries(); i++) {
+      Polygon polygon = (Polygon) multiPolygon.getGeometryN(i);
+      List<double[]> rings = new ArrayList<>();
+      rings.add(pack(polygon.getExteriorRing().getCoordinates()));
+      for (int j = 0; j < polygon.getNumInteriorRing(); j++) {
+        rings.add(pack(polygon.getInteriorRingN(j).getCoordinates()));
+      }
+      polygons.add(rings);
+    }
+    assertEquals(serialize(multiPolygon), GeometrySlices.multiPolygon(polygons));
+
+    assertThrows(IllegalArgumentException.class, () -> GeometrySlices.multiPolygon(List.of()));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> GeometrySlices.multiPolygon(List.of(List.of(new double[] {0, 0, 1, 0, 1, 1, 0, 1}))));
+  }
+
+  @Test
+  public void testRejectsInvalidShapes() {
+    LatLng a = new LatLng(0, 0);
+    LatLng b = new LatLng(0, 1);
+    LatLng c = new LatLng(1, 1);
+    assertThrows(IllegalArgumentException.class, () -> GeometrySlices.lineString(List.of(a)));
+    assertThrows(IllegalArgumentException.class, () -> GeometrySlices.polygon(List.of(a, b, c)));
+    assertThrows(
+        IllegalArgumentException.class, () -> GeometrySlices.polygon(List.of(a, b, c, b)));
+  }
+
+  private static double[] pack(Coordinate[] coordinates) {
+    double[] packed = new double[coordinates.length * 2];
+    for (int i = 0; i < coordinates.length; i++) {
+      packed[i * 2] = coordinates[i].x;
+      packed[i * 2 + 1] = coordinates[i].y;
+    }
+    return packed;
+  }
+
+  private static Coordinate[] toCoordinates(List<LatLng> vertices) {
+    return vertices.stream().map(ll -> new Coordinate(ll.lng, ll.lat)).toArray(Coordinate[]::new);
+  }
+}
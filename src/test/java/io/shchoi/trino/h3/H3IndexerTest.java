@@ -0,0 +1,128 @@
+package io.shchoi.trino.h3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import com.uber.h3core.util.LatLng;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class H3IndexerTest {
+  @Test
+  public void testMatchesNativeOnRandomPoints() {
+    Random random = new Random(20240917L);
+    for (int n = 0; n < 200_000; n++) {
+      double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      double lng = 360 * random.nextDouble() - 180;
+      int res = random.nextInt(H3Indexer.MAX_RES + 1);
+      assertMatchesNative(lat, lng, res);
+    }
+  }
+
+  @Test
+  public void testMatchesNativeNearPentagonsAndFaceEdges() {
+    for (int res = 0; res <= H3Indexer.MAX_RES; res++) {
+      for (long pentagon : H3Plugin.H3.getPentagons(res)) {
+        for (LatLng vertex : H3Plugin.H3.cellToBoundary(pentagon)) {
+          for (int indexRes = 0; indexRes <= H3Indexer.MAX_RES; indexRes++) {
+            assertMatchesNativeOnEdge(vertex.lat, vertex.lng, indexRes);
+          }
+        }
+        LatLng center = H3Plugin.H3.cellToLatLng(pentagon);
+        for (int indexRes = 0; indexRes <= H3Indexer.MAX_RES; indexRes++) {
+          assertMatchesNative(center.lat, center.lng, indexRes);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMatchesNativeAtPolesAndAntimeridian() {
+    double[][] points = {
+      {90, 0},
+      {-90, 0},
+      {89.999999, 45},
+      {-89.999999, -135},
+      {0, 180},
+      {0, -180},
+      {45, 179.9999999},
+      {-45, -179.9999999},
+      {0, 0},
+      {10, 0},
+      {37.775938728915946, -122.41795063018799}
+    };
+    for (double[] point : points) {
+      for (int res = 0; res <= H3Indexer.MAX_RES; res++) {
+        assertMatchesNative(point[0], point[1], res);
+      }
+    }
+  }
+
+  @Test
+  public void testKnownIndexes() {
+    assertEquals(0x8075fffffffffffL, H3Indexer.latLngToCell(0, 0, 0));
+    assertEquals(
+        0x8928308280fffffL, H3Indexer.latLngToCell(37.775938728915946, -122.41795063018799, 9));
+    assertEquals(0x85283473fffffffL, H3Indexer.latLngToCell(37.345793375368, -121.976375972551, 5));
+  }
+
+  @Test
+  public void testInvalidInput() {
+    assertEquals(0, H3Indexer.latLngToCell(Double.NaN, 0, 5));
+    assertEquals(0, H3Indexer.latLngToCell(0, Double.POSITIVE_INFINITY, 5));
+    assertEquals(0, H3Indexer.latLngToCell(0, 0, -1));
+    assertEquals(0, H3Indexer.latLngToCell(0, 0, 16));
+  }
+
+  @Test
+  public void testDoesNotAllocate() {
+    com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().threadId();
+    long checksum = 0;
+    for (int n = 0; n < 100_000; n++) {
+      checksum += H3Indexer.latLngToCell(n % 180 - 90, n % 360 - 180, n % 16);
+    }
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+    for (int n = 0; n < 100_000; n++) {
+      checksum += H3Indexer.latLngToCell(n % 180 - 90.5, n % 360 - 180.5, n % 16);
+    }
+    long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+    assertTrue(checksum != 0);
+    // Leave headroom for incidental allocations by the JVM itself
+    assertTrue(allocated < 64 * 1024, "allocated " + allocated + " bytes");
+  }
+
+  private static void assertMatchesNative(double lat, double lng, int res) {
+    long expected = H3Plugin.H3.latLngToCell(lat, lng, res);
+    assertEquals(
+        expected,
+        H3Indexer.latLngToCell(lat, lng, res),
+        String.format("latLngToCell(%s, %s, %d)", lat, lng, res));
+  }
+
+  /**
+   * For a point on a cell vertex, which cell comes back depends on the last bit of the
+   * trigonometry, so also accept a cell the native library returns a hair away from the point.
+   */
+  private static void assertMatchesNativeOnEdge(double lat, double lng, int res) {
+    long actual = H3Indexer.latLngToCell(lat, lng, res);
+    if (actual == H3Plugin.H3.latLngToCell(lat, lng, res)) {
+      return;
+    }
+    for (int step = 0; step < 64; step++) {
+      double angle = step * Math.PI / 32;
+      if (actual
+          == H3Plugin.H3.latLngToCell(
+              lat + 1e-9 * Math.sin(angle), lng + 1e-9 * Math.cos(angle), res)) {
+        return;
+      }
+    }
+    fail(String.format("latLngToCell(%s, %s, %d) = %x", lat, lng, res, actual));
+  }
+}
@@ -15,14 +15,19 @@
  */
 package io.shchoi.trino.h3;
 
+import static io.trino.spi.type.BigintType.BIGINT;
 import static io.trino.testing.TestingSession.testSessionBuilder;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 
 import io.trino.Session;
 import io.trino.plugin.geospatial.GeoPlugin;
+import io.trino.spi.block.Block;
+import io.trino.spi.block.RunLengthEncodedBlock;
 import io.trino.testing.DistributedQueryRunner;
 import io.trino.testing.MaterializedResult;
 import io.trino.testing.MaterializedRow;
@@ -32,8 +37,11 @@ import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKTReader;
 
@@ -73,6 +81,32 @@ public class H3PluginTest {
     assertEquals(0, H3Plugin.longToInt(0L));
   }
 
+  @Test
+  public void testLongBlockToArray() {
+    long[] values = {0x85283473fffffffL, 0x85283477fffffffL, 0x8528347bfffffffL};
+    Block block = H3Plugin.longArrayToBlock(values);
+    assertArrayEquals(values, H3Plugin.longBlockToArray(block));
+    assertArrayEquals(
+        new long[] {0x85283477fffffffL, 0x8528347bfffffffL},
+        H3Plugin.longBlockToArray(block.getRegion(1, 2)));
+    assertArrayEquals(
+        new long[] {0x85283473fffffffL, 0x85283473fffffffL},
+        H3Plugin.longBlockToArray(RunLengthEncodedBlock.create(block.getRegion(0, 1), 2)));
+    assertArrayEquals(new long[0], H3Plugin.longBlockToArray(H3Plugin.longArrayToBlock(values, 0)));
+  }
+
+  @Test
+  public void testLongArrayToBlock() {
+    long[] values = {1, 2, 3};
+    Block block = H3Plugin.longArrayToBlock(values, 2);
+    assertEquals(2, block.getPositionCount());
+    assertEquals(1, BIGINT.getLong(block, 0));
+    assertEquals(2, BIGINT.getLong(block, 1));
+    assertEquals(List.of(1L, 2L, 3L), H3Plugin.longArrayAsList(values));
+    assertArrayEquals(
+        values, H3Plugin.longBlockToArray(H3Plugin.longListToBlock(List.of(1L, 2L, 3L))));
+  }
+
   public static <T> void assertQueryResults(
       QueryRunner queryRunner, String sql, List<List<T>> expected) {
     MaterializedResult results = queryRunner.execute(sql);
@@ -92,6 +126,61 @@ public class H3PluginTest {
     }
   }
 
+  /**
+   * Asserts that the query returns a single polygon or multipolygon as WKT with the same rings as
+   * expected, each running in the same direction, but starting at any of its vertexes. For outlines
+   * traced from cells, whose rings start wherever the tracing happened to.
+   */
+  public static void assertPolygonalResult(
+      QueryRunner queryRunner, String sql, Geometry expected) {
+    List<MaterializedRow> rows = queryRunner.execute(sql).getMaterializedRows();
+    assertEquals(1, rows.size(), String.format("%s: expected number of rows", sql));
+    Geometry actual;
+    try {
+      actual = new WKTReader().read((String) rows.get(0).getField(0));
+    } catch (ParseException e) {
+      throw new RuntimeException(e);
+    }
+    assertEquals(
+        expected.getNumGeometries(),
+        actual.getNumGeometries(),
+        String.format("%s: expected number of polygons (actual: %s)", sql, actual));
+    for (int i = 0; i < expected.getNumGeometries(); i++) {
+      Polygon expectedPolygon = (Polygon) expected.getGeometryN(i);
+      Polygon actualPolygon = (Polygon) actual.getGeometryN(i);
+      assertEquals(
+          expectedPolygon.getNumInteriorRing(),
+          actualPolygon.getNumInteriorRing(),
+          String.format("%s: polygon %d: expected number of holes (actual: %s)", sql, i, actual));
+      for (int j = 0; j <= expectedPolygon.getNumInteriorRing(); j++) {
+        assertSameRing(
+            ring(expectedPolygon, j).getCoordinates(),
+            ring(actualPolygon, j).getCoordinates(),
+            String.format("%s: polygon %d: ring %d (actual: %s)", sql, i, j, actual));
+      }
+    }
+  }
+
+  private static LinearRing ring(Polygon polygon, int index) {
+    return index == 0 ? polygon.getExteriorRing() : polygon.getInteriorRingN(index - 1);
+  }
+
+  /** Closed rings match if one is the other started at another vertex. */
+  private static void assertSameRing(Coordinate[] expected, Coordinate[] actual, String message) {
+    assertEquals(expected.length, actual.length, message);
+    int vertexes = expected.length - 1;
+    for (int start = 0; start < vertexes; start++) {
+      boolean matches = true;
+      for (int k = 0; k < vertexes && matches; k++) {
+        matches = expected[k].distance(actual[(start + k) % vertexes]) <= EPSILON;
+      }
+      if (matches) {
+        return;
+      }
+    }
+    fail(message);
+  }
+
   private static void compareFieldValues(Object expectedVal, Object actualVal, String message) {
     if (expectedVal instanceof Float && actualVal instanceof Float) {
       float expected = ((Float) expectedVal).floatValue();
@@ -153,6 +242,7 @@ public class H3PluginTest {
       try {
         queryRunner.installPlugin(new GeoPlugin());
         queryRunner.installPlugin(new H3Plugin());
+        queryRunner.createCatalog("h3", "h3");
         return queryRunner;
       } catch (Exception e) {
         queryRunner.close();
@@ -0,0 +1,144 @@
+package io.shchoi.trino.h3;
+
+import static io.airlift.slice.Slices.utf8Slice;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.uber.h3core.AreaUnit;
+import com.uber.h3core.LengthUnit;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class H3ValidationTest {
+  @Test
+  public void testIsValidCellMatchesNative() {
+    Random random = new Random(20240920L);
+    for (int n = 0; n < 100_000; n++) {
+      double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      double lng = 360 * random.nextDouble() - 180;
+      long cell = H3Plugin.H3.latLngToCell(lat, lng, random.nextInt(16));
+      assertMatchesNative(cell);
+      // Flip one bit anywhere in the index
+      assertMatchesNative(cell ^ (1L << random.nextInt(64)));
+      assertMatchesNative(random.nextLong());
+    }
+    for (int res = 0; res <= 15; res++) {
+      for (long pentagon : H3Plugin.H3.getPentagons(res)) {
+        assertMatchesNative(pentagon);
+        for (int r = 1; r <= res; r++) {
+          // Every digit value at every resolution, including the deleted K axes subsequence
+          for (long digit = 0; digit < 8; digit++) {
+            int shift = (15 - r) * 3;
+            assertMatchesNative((pentagon & ~(7L << shift)) | (digit << shift));
+          }
+        }
+      }
+    }
+    assertMatchesNative(0);
+    assertMatchesNative(-1);
+  }
+
+  @Test
+  public void testIsValidDirectedEdgeMatchesNative() {
+    Random random = new Random(20241017L);
+    for (int n = 0; n < 20_000; n++) {
+      long cell = randomCell(random);
+      for (long edge : H3Plugin.H3.originToDirectedEdges(cell)) {
+        assertEdgeMatchesNative(edge);
+        assertEdgeMatchesNative(edge ^ (1L << random.nextInt(64)));
+      }
+      assertEdgeMatchesNative(random.nextLong());
+    }
+    for (long pentagon : H3Plugin.H3.getPentagons(5)) {
+      // Every direction, including the K axes a pentagon has no neighbor along
+      for (long direction = 0; direction < 8; direction++) {
+        assertEdgeMatchesNative(pentagon & ~(0xFL << 59) | (2L << 59) | (direction << 56));
+      }
+    }
+  }
+
+  @Test
+  public void testIsValidVertexAcceptsNativeVertexes() {
+    Random random = new Random(20241018L);
+    for (int n = 0; n < 20_000; n++) {
+      for (long vertex : H3Plugin.H3.cellToVertexes(randomCell(random))) {
+        assertTrue(H3Validation.isValidVertex(vertex), Long.toHexString(vertex));
+        long flipped = vertex ^ (1L << random.nextInt(64));
+        if (H3Plugin.H3.isValidVertex(flipped)) {
+          assertTrue(H3Validation.isValidVertex(flipped), Long.toHexString(flipped));
+        }
+      }
+    }
+    for (long pentagon : H3Plugin.H3.getPentagons(5)) {
+      long vertex = H3Plugin.H3.cellToVertex(pentagon, 0);
+      // Pentagons have five vertexes
+      assertFalse(H3Validation.isValidVertex(vertex & ~(0x7L << 56) | (5L << 56)));
+    }
+    assertFalse(H3Validation.isValidVertex(0));
+    assertFalse(H3Validation.isValidVertex(-1));
+  }
+
+  @Test
+  public void testIsValidH3String() {
+    String[] valid = {"0", "85283473fffffff", "+85283473FFFFFFF", "ffffffffffffffff"};
+    for (String string : valid) {
+      assertTrue(H3Validation.isValidH3String(utf8Slice(string)), string);
+      assertEquals(Long.parseUnsignedLong(string, 16), H3Plugin.H3.stringToH3(string));
+    }
+    assertTrue(H3Validation.isValidH3String(utf8Slice("00000000085283473fffffff")));
+    String[] invalid = {"", "+", "-1", "0x85", "invalid_h3_string", "1ffffffffffffffff"};
+    for (String string : invalid) {
+      assertFalse(H3Validation.isValidH3String(utf8Slice(string)), string);
+    }
+  }
+
+  @Test
+  public void testArguments() {
+    assertTrue(H3Validation.isValidResolution(0));
+    assertTrue(H3Validation.isValidResolution(15));
+    assertFalse(H3Validation.isValidResolution(-1));
+    assertFalse(H3Validation.isValidResolution(16));
+
+    assertTrue(H3Validation.isValidLatLng(90, -180));
+    assertFalse(H3Validation.isValidLatLng(Double.NaN, 0));
+    assertFalse(H3Validation.isValidLatLng(0, Double.NEGATIVE_INFINITY));
+
+    assertTrue(H3Validation.isValidVertexNum(5));
+    assertFalse(H3Validation.isValidVertexNum(6));
+    assertFalse(H3Validation.isValidVertexNum(-1));
+  }
+
+  @Test
+  public void testUnits() {
+    for (AreaUnit unit : AreaUnit.values()) {
+      assertEquals(unit, H3Validation.areaUnit(utf8Slice(unit.name())));
+    }
+    for (LengthUnit unit : LengthUnit.values()) {
+      assertEquals(unit, H3Validation.lengthUnit(utf8Slice(unit.name())));
+    }
+    assertNull(H3Validation.areaUnit(utf8Slice("KM2")));
+    assertNull(H3Validation.lengthUnit(utf8Slice("invalid")));
+  }
+
+  private static long randomCell(Random random) {
+    double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+    double lng = 360 * random.nextDouble() - 180;
+    return H3Plugin.H3.latLngToCell(lat, lng, random.nextInt(16));
+  }
+
+  private static void assertEdgeMatchesNative(long h) {
+    assertEquals(
+        H3Plugin.H3.isValidDirectedEdge(h),
+        H3Validation.isValidDirectedEdge(h),
+        Long.toHexString(h));
+  }
+
+  private static void assertMatchesNative(long h) {
+    assertEquals(H3Plugin.H3.isValidCell(h), H3Validation.isValidCell(h), Long.toHexString(h));
+  }
+}
@@ -18,6 +18,8 @@ package io.shchoi.trino.h3;
 import static io.shchoi.trino.h3.H3PluginTest.assertQueryResults;
 import static io.shchoi.trino.h3.H3PluginTest.createQueryRunner;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import io.trino.testing.QueryRunner;
 import java.util.Collections;
@@ -77,6 +79,20 @@ public class HierarchyFunctionsTest {
                       0x86283472fffffffL,
                       0x862834737ffffffL))));
 
+      // Large sets of children are written in chunks
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(h3_cell_to_children(from_base('8001fffffffffff', 16), 6))",
+          List.of(List.of(117649L)));
+      // Over the output cap the query fails rather than returning null
+      RuntimeException exception =
+          assertThrows(
+              RuntimeException.class,
+              () ->
+                  queryRunner.execute(
+                      "SELECT h3_cell_to_children(from_base('8001fffffffffff', 16), 15)"));
+      assertTrue(exception.getMessage().contains(H3Plugin.MAX_OUTPUT_CELLS_PROPERTY));
+
       assertQueryResults(
           queryRunner,
           "SELECT h3_cell_to_children(0, 4) hex",
@@ -286,6 +302,19 @@ public class HierarchyFunctionsTest {
       assertQueryResults(
           queryRunner,
           "SELECT h3_compact_cells(repeat(from_base('85283473fffffff', 16), 100)) hex",
+          List.of(List.of(List.of(0x85283473fffffffL))));
+      // Mixed resolutions and cells already covered by another one
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_compact_cells(h3_cell_to_children(from_base('85283473fffffff', 16), 7) || h3_cell_to_children(from_base('85283473fffffff', 16), 6) || ARRAY [from_base('8009fffffffffff', 16)]) hex",
+          List.of(List.of(List.of(0x8009fffffffffffL, 0x85283473fffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(h3_compact_cells(h3_uncompact_cells(h3_cell_to_children(from_base('8009fffffffffff', 16), 2), 7))) hex",
+          List.of(List.of(1L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_compact_cells(ARRAY [from_base('85283473fffffff', 16), 0]) hex",
           List.of(Collections.singletonList(null)));
       assertQueryResults(
           queryRunner, "SELECT h3_compact_cells(ARRAY []) hex", List.of(List.of(List.of())));
@@ -422,6 +451,63 @@ public class HierarchyFunctionsTest {
           queryRunner,
           "SELECT h3_uncompact_cells(ARRAY [from_base('85283473fffffff', 16)], 16) hex",
           List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells(ARRAY [from_base('872834775ffffff', 16)], 5) hex",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(h3_uncompact_cells(ARRAY [from_base('8009fffffffffff', 16), from_base('85283473fffffff', 16)], 7)) hex",
+          List.of(List.of(1 + 5 * (7L * 7 * 7 * 7 * 7 * 7 * 7 - 1) / 6 + 7L * 7)));
+    }
+  }
+
+  @Test
+  public void testCellSetOperations() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      // A compacted parent against some of its children at a finer resolution
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_union(ARRAY [from_base('85283473fffffff', 16)], ARRAY [from_base('872834700ffffff', 16), from_base('8009fffffffffff', 16)]) hex",
+          List.of(List.of(List.of(0x8009fffffffffffL, 0x85283473fffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_intersect(ARRAY [from_base('85283473fffffff', 16)], ARRAY [from_base('872834700ffffff', 16), from_base('8009fffffffffff', 16)]) hex",
+          List.of(List.of(List.of(0x872834700ffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_except(ARRAY [from_base('85283473fffffff', 16)], ARRAY [from_base('872834700ffffff', 16)]) hex",
+          List.of(
+              List.of(
+                  List.of(
+                      0x872834701ffffffL,
+                      0x872834702ffffffL,
+                      0x872834703ffffffL,
+                      0x872834704ffffffL,
+                      0x872834705ffffffL,
+                      0x872834706ffffffL,
+                      0x86283470fffffffL,
+                      0x862834717ffffffL,
+                      0x86283471fffffffL,
+                      0x862834727ffffffL,
+                      0x86283472fffffffL,
+                      0x862834737ffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_except(h3_cell_to_children(from_base('85283473fffffff', 16), 7), ARRAY [from_base('85283473fffffff', 16)]) hex",
+          List.of(List.of(List.of())));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_contains(ARRAY [from_base('85283473fffffff', 16)], h3_cell_to_children(from_base('85283473fffffff', 16), 9)), h3_cells_contains(h3_cell_to_children(from_base('85283473fffffff', 16), 7), ARRAY [from_base('85283473fffffff', 16)]), h3_cells_contains(ARRAY [from_base('872834700ffffff', 16)], ARRAY [from_base('85283473fffffff', 16)])",
+          List.of(List.of(true, true, false)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_intersect(ARRAY [from_base('85283473fffffff', 16)], ARRAY [0]) hex",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_union(ARRAY [], ARRAY []) hex",
+          List.of(List.of(List.of())));
     }
   }
 }
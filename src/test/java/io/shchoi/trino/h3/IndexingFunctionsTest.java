@@ -5,6 +5,7 @@ import static io.shchoi.trino.h3.H3PluginTest.createQueryRunner;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 import io.trino.testing.QueryRunner;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.junit.jupiter.api.Test;
@@ -36,6 +37,14 @@ public class IndexingFunctionsTest {
           queryRunner,
           "SELECT h3_latlng_to_cell(ST_GeometryFromText('LINESTRING (0 0, 10 0, 0 10)'), 0) hex",
           List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cell(ST_GeometryFromText('MULTIPOINT ((0 10))'), 0) hex",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cell(ST_GeometryFromText('POINT EMPTY'), 0) hex",
+          List.of(Collections.singletonList(null)));
       assertQueryResults(
           queryRunner,
           "SELECT h3_latlng_to_cell(null, 0, 4) hex",
@@ -55,6 +64,48 @@ public class IndexingFunctionsTest {
     }
   }
 
+  @Test
+  public void testLatLngsToCells() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlngs_to_cells(CAST(ARRAY[0, 0, 10, nan(), 0, 0] AS ARRAY(DOUBLE)), CAST(ARRAY[0, 0, 0, 0, 0, 0] AS ARRAY(DOUBLE)), 0) hex",
+          List.of(
+              List.of(
+                  Arrays.asList(
+                      0x8075fffffffffffL,
+                      0x8075fffffffffffL,
+                      0x8059fffffffffffL,
+                      null,
+                      0x8075fffffffffffL,
+                      0x8075fffffffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlngs_to_cells(CAST(ARRAY[0, 0, 10, nan(), null, 0, 0] AS ARRAY(DOUBLE)), CAST(ARRAY[0, 0, 0, 0, 0, 0, 0] AS ARRAY(DOUBLE)), 0, true) hex",
+          List.of(
+              List.of(
+                  Arrays.asList(
+                      0x8075fffffffffffL, 0x8059fffffffffffL, null, 0x8075fffffffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlngs_to_cells(CAST(ARRAY[] AS ARRAY(DOUBLE)), CAST(ARRAY[] AS ARRAY(DOUBLE)), 0) hex",
+          List.of(List.of(List.of())));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlngs_to_cells(CAST(ARRAY[0, 0] AS ARRAY(DOUBLE)), CAST(ARRAY[0] AS ARRAY(DOUBLE)), 0) hex",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlngs_to_cells(CAST(ARRAY[0] AS ARRAY(DOUBLE)), CAST(ARRAY[0] AS ARRAY(DOUBLE)), 16) hex",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlngs_to_cells(null, CAST(ARRAY[0] AS ARRAY(DOUBLE)), 0) hex",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
   @Test
   public void testCellToLatLng() throws ParseException {
     try (QueryRunner queryRunner = createQueryRunner()) {
@@ -73,6 +124,25 @@ public class IndexingFunctionsTest {
     }
   }
 
+  @Test
+  public void testCellToLatLngRow() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT r.lat, r.lng FROM (SELECT h3_cell_to_latlng_row(from_base('8075fffffffffff', 16)) AS r)",
+          List.of(List.of(2.300882111626747, -5.245390296777327)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_latlng_row(null)",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_latlng_row(-1)",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
   @Test
   public void testCellToBoundary() throws ParseException {
     try (QueryRunner queryRunner = createQueryRunner()) {
@@ -0,0 +1,44 @@
+package io.shchoi.trino.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class LongHashSetTest {
+  @Test
+  public void testAddKeepsFirstOrder() {
+    LongHashSet set = new LongHashSet(1);
+    Set<Long> expected = new LinkedHashSet<>();
+    Random random = new Random(1);
+    for (int i = 0; i < 100_000; i++) {
+      // Values close together, like the cells of a region, with many repeats
+      long value = 0x85283473fffffffL + random.nextInt(20_000);
+      assertEquals(expected.add(value), set.add(value));
+    }
+    assertEquals(expected.size(), set.size());
+    assertArrayEquals(
+        expected.stream().mapToLong(Long::longValue).toArray(),
+        Arrays.copyOf(set.values(), set.size()));
+    for (long value : expected) {
+      assertTrue(set.contains(value));
+    }
+    assertFalse(set.contains(0x85283473fffffffL - 1));
+  }
+
+  @Test
+  public void testAddAllSkipsZero() {
+    LongHashSet set = new LongHashSet(4);
+    set.addAll(new long[] {3, 0, 1, 3, 0, 2});
+    assertArrayEquals(new long[] {3, 1, 2}, Arrays.copyOf(set.values(), set.size()));
+  }
+}
@@ -0,0 +1,61 @@
+package io.shchoi.trino.h3;
+
+import static io.shchoi.trino.h3.H3PluginTest.assertPolygonalResult;
+import static io.shchoi.trino.h3.H3PluginTest.assertQueryResults;
+import static io.shchoi.trino.h3.H3PluginTest.createQueryRunner;
+
+import io.trino.testing.QueryRunner;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class MultiPolygonAggregationTest {
+  @Test
+  public void testMultiPolygonAgg() throws ParseException {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT ST_Area(ST_SymDifference(h3_cells_to_multi_polygon_agg(cell), h3_cells_to_multi_polygon(array_agg(cell)))) < 1e-12 FROM UNNEST(h3_grid_disk(from_base('872830828ffffff', 16), 20)) t(cell)",
+          List.of(List.of(true)));
+      // Repeated cells count once
+      assertQueryResults(
+          queryRunner,
+          "SELECT ST_Area(ST_SymDifference(h3_cells_to_multi_polygon_agg(cell), h3_cells_to_multi_polygon(h3_grid_disk(from_base('872830828ffffff', 16), 3)))) < 1e-12 FROM UNNEST(h3_grid_disk(from_base('872830828ffffff', 16), 3) || h3_grid_disk(from_base('872830828ffffff', 16), 1)) t(cell)",
+          List.of(List.of(true)));
+      // The hole left by the missing center
+      assertQueryResults(
+          queryRunner,
+          "SELECT ST_NumInteriorRing(ST_GeometryN(h3_cells_to_multi_polygon_agg(cell), 1)) FROM UNNEST(array_except(h3_grid_disk(from_base('872830828ffffff', 16), 2), ARRAY [from_base('872830828ffffff', 16)])) t(cell)",
+          List.of(List.of(1L)));
+      assertPolygonalResult(
+          queryRunner,
+          "SELECT ST_AsText(h3_cells_to_multi_polygon_agg(cell)) FROM UNNEST(ARRAY [from_base('85283473fffffff', 16), null]) t(cell)",
+          new WKTReader()
+              .read(
+                  "MULTIPOLYGON (((-121.92354999630156 37.42834118609436, -122.03773496427027 37.42012867767779, -122.090428929044 37.33755608435299, -122.02910130918998 37.26319797461824, -121.91508032705622 37.2713558667319, -121.86222328902491 37.353926450852256, -121.92354999630156 37.42834118609436)))"));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_to_multi_polygon_agg(cell) FROM UNNEST(ARRAY [from_base('85283473fffffff', 16), 0]) t(cell)",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_to_multi_polygon_agg(cell) FROM UNNEST(CAST(ARRAY [] AS ARRAY(BIGINT))) t(cell)",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testGrouped() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT parent, ST_Area(ST_SymDifference(h3_cells_to_multi_polygon_agg(cell), h3_cells_to_multi_polygon(array_agg(cell)))) < 1e-12 FROM (SELECT h3_cell_to_parent(cell, 4) parent, cell FROM UNNEST(h3_cell_to_children(from_base('832834fffffffff', 16), 6)) t(cell)) GROUP BY parent ORDER BY parent LIMIT 2",
+          List.of(List.of(0x8428341ffffffffL, true), List.of(0x8428343ffffffffL, true)));
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.spi.type.BigintType.BIGINT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.uber.h3core.util.LatLng;
+import io.trino.spi.block.Block;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class NativeCellsTest {
+  @Test
+  public void testMatchesH3Core() {
+    Random random = new Random(20241003L);
+    for (int n = 0; n < 200; n++) {
+      double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      double lng = 360 * random.nextDouble() - 180;
+      int res = random.nextInt(10);
+      long cell = H3Plugin.H3.latLngToCell(lat, lng, res);
+      int k = random.nextInt(4);
+
+      assertEquals(H3Plugin.H3.gridDisk(cell, k), toList(NativeCells.gridDisk(cell, k)));
+      assertEquals(
+          H3Plugin.H3.cellToChildren(cell, res + 2),
+          toList(NativeCells.cellToChildren(cell, res + 2)));
+      if (res < 5) {
+        // Coarse disks may reach a pentagon, where the unsafe variants throw
+        continue;
+      }
+      List<Long> expected =
+          H3Plugin.H3.gridDiskUnsafe(cell, k).stream().flatMap(List::stream).toList();
+      assertEquals(expected, toList(NativeCells.gridDiskUnsafe(cell, k)));
+      assertEquals(
+          H3Plugin.H3.gridRingUnsafe(cell, k), toList(NativeCells.gridRingUnsafe(cell, k)));
+    }
+  }
+
+  @Test
+  public void testPentagon() {
+    long pentagon = 0x8009fffffffffffL;
+    assertEquals(H3Plugin.H3.gridDisk(pentagon, 2), toList(NativeCells.gridDisk(pentagon, 2)));
+    assertEquals(
+        H3Plugin.H3.cellToChildren(pentagon, 2), toList(NativeCells.cellToChildren(pentagon, 2)));
+    assertThrows(RuntimeException.class, () -> NativeCells.gridDiskUnsafe(pentagon, 1));
+  }
+
+  @Test
+  public void testPolygonToCellsMatchesH3Core() {
+    GeometryFactory factory = new GeometryFactory();
+    LinearRing shell =
+        factory.createLinearRing(
+            new Coordinate[] {
+              new Coordinate(-122.5, 37.7),
+              new Coordinate(-122.3, 37.7),
+              new Coordinate(-122.3, 37.9),
+              new Coordinate(-122.5, 37.9),
+              new Coordinate(-122.5, 37.7)
+            });
+    LinearRing hole =
+        factory.createLinearRing(
+            new Coordinate[] {
+              new Coordinate(-122.45, 37.75),
+              new Coordinate(-122.35, 37.75),
+              new Coordinate(-122.35, 37.85),
+              new Coordinate(-122.45, 37.75)
+            });
+    // A second hole with more vertices, so each hole's share of the packed array matters
+    LinearRing secondHole =
+        factory.createLinearRing(
+            new Coordinate[] {
+              new Coordinate(-122.34, 37.72),
+              new Coordinate(-122.31, 37.72),
+              new Coordinate(-122.31, 37.78),
+              new Coordinate(-122.32, 37.8),
+              new Coordinate(-122.34, 37.78),
+              new Coordinate(-122.34, 37.72)
+            });
+    Polygon polygon = factory.createPolygon(shell, new LinearRing[] {hole});
+
+    List<Long> expected =
+        H3Plugin.H3.polygonToCells(toLatLngs(shell), List.of(toLatLngs(hole)), 8);
+    assertEquals(expected, toList(NativeCells.polygonToCells(polygon, 8)));
+
+    Polygon twoHoles = factory.createPolygon(shell, new LinearRing[] {hole, secondHole});
+    List<Long> expectedTwoHoles =
+        H3Plugin.H3.polygonToCells(
+            toLatLngs(shell), List.of(toLatLngs(hole), toLatLngs(secondHole)), 9);
+    assertEquals(expectedTwoHoles, toList(NativeCells.polygonToCells(twoHoles, 9)));
+    assertTrue(
+        expectedTwoHoles.size()
+            < H3Plugin.H3.polygonToCells(toLatLngs(shell), List.of(), 9).size() * 0.9);
+  }
+
+  private static List<LatLng> toLatLngs(LinearRing ring) {
+    List<LatLng> latLngs = new ArrayList<>();
+    for (Coordinate coordinate : ring.getCoordinates()) {
+      latLngs.add(new LatLng(coordinate.y, coordinate.x));
+    }
+    return latLngs;
+  }
+
+  private static List<Long> toList(Block block) {
+    List<Long> list = new ArrayList<>();
+    for (int i = 0; i < block.getPositionCount(); i++) {
+      list.add(BIGINT.getLong(block, i));
+    }
+    return list;
+  }
+}
@@ -0,0 +1,53 @@
+package io.shchoi.trino.h3;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.trino.spi.TrinoException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class OutputLimitsTest {
+  @Test
+  public void testCheckCellCount() {
+    assertDoesNotThrow(() -> OutputLimits.checkCellCount(OutputLimits.MAX_CELLS, "test"));
+    TrinoException exception =
+        assertThrows(
+            TrinoException.class,
+            () -> OutputLimits.checkCellCount(OutputLimits.MAX_CELLS + 1, "test"));
+    assertTrue(exception.getMessage().contains(H3Plugin.MAX_OUTPUT_CELLS_PROPERTY));
+  }
+
+  @Test
+  public void testCheckInterrupted() {
+    assertDoesNotThrow(OutputLimits::checkInterrupted);
+    Thread.currentThread().interrupt();
+    try {
+      assertThrows(TrinoException.class, OutputLimits::checkInterrupted);
+      // The flag is left for the caller
+      assertTrue(Thread.currentThread().isInterrupted());
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  @Test
+  public void testEstimatePolygonCells() throws ParseException {
+    for (String wkt :
+        new String[] {
+          "POLYGON ((0 0, 1 0, 1 1, 0 1, 0 0))", "POLYGON ((10 60, 12 60, 12 61, 10 61, 10 60))"
+        }) {
+      Polygon polygon = (Polygon) new WKTReader().read(wkt);
+      long estimate = OutputLimits.estimatePolygonCells(polygon, 7);
+      long actual = NativeCells.polygonToCells(polygon, 7).getPositionCount();
+      // Cell areas vary by up to about a factor of two around the average
+      assertTrue(estimate > actual / 2 && estimate < actual * 2, wkt + " " + estimate);
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.spi.type.BigintType.BIGINT;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.trino.spi.TrinoException;
+import io.trino.spi.block.Block;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class ParallelPolyfillTest {
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+
+  @AfterAll
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void testMatchesSerial() throws ParseException {
+    assertMatchesSerial("POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))", 7);
+    assertMatchesSerial("POLYGON ((0 0, 4 0, 4 4, 0 4, 0 0), (1 1, 3 1, 3 3, 1 3, 1 1))", 8);
+    assertMatchesSerial("POLYGON ((-122.5 37.7, -122.3 37.7, -122.3 37.9, -122.5 37.9, -122.5 37.7))", 11);
+    assertMatchesSerial("POLYGON ((8 62, 13 62, 13 67, 8 67, 8 62))", 7);
+    assertMatchesSerial("POLYGON ((178 -1, 180 -1, 180 1, 178 1, 178 -1))", 8);
+  }
+
+  @Test
+  public void testSmallPolygonStaysSerial() throws ParseException {
+    Polygon polygon =
+        (Polygon) new WKTReader().read("POLYGON ((0 0, 0.01 0, 0.01 0.01, 0 0.01, 0 0))");
+    assertFalse(ParallelPolyfill.isWorthwhile(polygon, 9));
+  }
+
+  @Test
+  public void testOverCap() throws ParseException {
+    Polygon polygon = (Polygon) new WKTReader().read("POLYGON ((0 0, 30 0, 30 30, 0 30, 0 0))");
+    assertThrows(
+        TrinoException.class, () -> ParallelPolyfill.polygonToCells(polygon, 12, "test", pool));
+  }
+
+  private void assertMatchesSerial(String wkt, int res) throws ParseException {
+    Polygon polygon = (Polygon) new WKTReader().read(wkt);
+    Block block = NativeCells.polygonToCells(polygon, res);
+    long[] expected = new long[block.getPositionCount()];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = BIGINT.getLong(block, i);
+    }
+    Arrays.sort(expected);
+    assertArrayEquals(expected, ParallelPolyfill.polygonToCells(polygon, res, "test", pool), wkt);
+  }
+}
@@ -0,0 +1,51 @@
+package io.shchoi.trino.h3;
+
+import static io.shchoi.trino.h3.H3PluginTest.assertQueryResults;
+import static io.shchoi.trino.h3.H3PluginTest.createQueryRunner;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.trino.testing.QueryRunner;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class PolyfillTableFunctionTest {
+  @Test
+  public void testPolyfill() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT count(*) = cardinality(h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 4)) FROM TABLE(h3.system.polyfill(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 4))",
+          List.of(List.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(array_agg(cell)) = array_sort(h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((-122.5 37.7, -122.3 37.7, -122.3 37.9, -122.5 37.9, -122.5 37.7))'), 10)) FROM TABLE(h3.system.polyfill(ST_GeometryFromText('POLYGON ((-122.5 37.7, -122.3 37.7, -122.3 37.9, -122.5 37.9, -122.5 37.7))'), 10))",
+          List.of(List.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT count(*) = cardinality(h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((0 0, 1 0, 1 1, 0 1, 0 0))'), 7)) + cardinality(h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((2 2, 3 2, 3 3, 2 3, 2 2))'), 7)) FROM TABLE(h3.system.polyfill(geometry => ST_GeometryFromText('MULTIPOLYGON (((0 0, 1 0, 1 1, 0 1, 0 0)), ((2 2, 3 2, 3 3, 2 3, 2 2)))'), resolution => 7))",
+          List.of(List.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT count(*) FROM TABLE(h3.system.polyfill(CAST(null AS Geometry), 7))",
+          List.of(List.of(0L)));
+    }
+  }
+
+  @Test
+  public void testInvalidArguments() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertThrows(
+          RuntimeException.class,
+          () ->
+              queryRunner.execute(
+                  "SELECT * FROM TABLE(h3.system.polyfill(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 16))"));
+      assertThrows(
+          RuntimeException.class,
+          () ->
+              queryRunner.execute("SELECT * FROM TABLE(h3.system.polyfill(ST_Point(0, 0), 7))"));
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package io.shchoi.trino.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class PolygonCellsCacheTest {
+  @Test
+  public void testGetAndPut() {
+    PolygonCellsCache cache = new PolygonCellsCache(1 << 20);
+    Slice geometry = Slices.utf8Slice("polygon");
+    long[] cells = {0x85283473fffffffL, 0x85283477fffffffL};
+
+    assertNull(cache.get(geometry, 5));
+    cache.put(geometry, 5, cells);
+    assertSame(cells, cache.get(geometry, 5));
+    // Same bytes in another slice
+    assertArrayEquals(cells, cache.get(Slices.utf8Slice("polygon"), 5));
+    assertNull(cache.get(geometry, 6));
+    assertNull(cache.get(Slices.utf8Slice("other"), 5));
+
+    assertEquals(2, cache.getHitCount());
+    assertEquals(3, cache.getMissCount());
+    assertEquals(0.4, cache.getHitRate(), 1e-9);
+    assertEquals(1, cache.getEntryCount());
+    assertTrue(cache.getRetainedBytes() > 2 * Long.BYTES);
+
+    cache.clear();
+    assertNull(cache.get(geometry, 5));
+    assertEquals(0, cache.getEntryCount());
+    assertEquals(0, cache.getRetainedBytes());
+  }
+
+  @Test
+  public void testEvictsByRetainedBytes() {
+    long maxBytes = 1 << 20;
+    PolygonCellsCache cache = new PolygonCellsCache(maxBytes);
+    for (int i = 0; i < 1000; i++) {
+      cache.put(Slices.utf8Slice("polygon " + i), 9, new long[1000]);
+      assertTrue(cache.getRetainedBytes() <= maxBytes);
+    }
+    assertTrue(cache.getEvictionCount() > 0);
+    assertTrue(cache.getEntryCount() < 1000);
+    assertEquals(1000 - cache.getEntryCount(), cache.getEvictionCount());
+    // The most recent entry is kept
+    assertEquals(1000, cache.get(Slices.utf8Slice("polygon 999"), 9).length);
+
+    // Entries larger than a segment's share of the budget are not cached
+    cache.put(Slices.utf8Slice("huge"), 9, new long[(int) (maxBytes / Long.BYTES)]);
+    assertNull(cache.get(Slices.utf8Slice("huge"), 9));
+  }
+
+  @Test
+  public void testInvalidSize() {
+    assertThrows(IllegalArgumentException.class, () -> new PolygonCellsCache(0));
+  }
+}
@@ -0,0 +1,319 @@
+package io.shchoi.trino.h3;
+
+import static io.trino.spi.type.BigintType.BIGINT;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.uber.h3core.PolygonToCellsFlags;
+import com.uber.h3core.util.LatLng;
+import io.trino.spi.TrinoException;
+import io.trino.spi.block.Block;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class PolygonCoverageTest {
+  @Test
+  public void testMatchesPolygonToCells() throws ParseException {
+    assertMatchesPolygonToCells("POLYGON ((-122.5 37.7, -122.3 37.7, -122.3 37.9, -122.5 37.9, -122.5 37.7))", 9);
+    assertMatchesPolygonToCells("POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0), (0.5 0.5, 0.5 1.5, 1.5 1.5, 1.5 0.5, 0.5 0.5))", 7);
+    assertMatchesPolygonToCells("POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))", 6);
+    // Thin sliver whose coarse cells mostly have their centers outside it
+    assertMatchesPolygonToCells("POLYGON ((0 0, 8 0.01, 8 0.02, 0 0.01, 0 0))", 9);
+    // Around the pentagon of base cell 4
+    assertMatchesPolygonToCells("POLYGON ((8 62, 13 62, 13 67, 8 67, 8 62))", 6);
+    // Against the antimeridian and around the north pole
+    assertMatchesPolygonToCells("POLYGON ((178 -1, 180 -1, 180 1, 178 1, 178 -1))", 6);
+    assertMatchesPolygonToCells("POLYGON ((-20 84, 20 84, 20 89.9, -20 89.9, -20 84))", 5);
+    // Polyfilled whole
+    assertMatchesPolygonToCells("POLYGON ((0 0, 30 0, 30 30, 0 30, 0 0))", 2);
+  }
+
+  @Test
+  public void testMultiPolygon() throws ParseException {
+    Geometry geometry =
+        new WKTReader()
+            .read(
+                "MULTIPOLYGON (((0 0, 1 0, 1 1, 0 1, 0 0)), ((2 2, 3 2, 3 3, 2 3, 2 2)))");
+    long[] expected =
+        concat(
+            polygonToCells((Polygon) geometry.getGeometryN(0), 7),
+            polygonToCells((Polygon) geometry.getGeometryN(1), 7));
+    Arrays.sort(expected);
+    assertArrayEquals(expected, coverage(geometry, 7, 1000));
+  }
+
+  @Test
+  public void testEmptyAndInvalid() throws ParseException {
+    assertEquals(0, coverage(new WKTReader().read("POLYGON EMPTY"), 9, 100).length);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PolygonCoverage.create(new WKTReader().read("POINT (0 0)"), 9));
+  }
+
+  @Test
+  public void testCompactCells() throws ParseException {
+    assertMatchesCompactCells("POLYGON ((-122.5 37.7, -122.3 37.7, -122.3 37.9, -122.5 37.9, -122.5 37.7))", 9);
+    assertMatchesCompactCells("POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0), (0.5 0.5, 0.5 1.5, 1.5 1.5, 1.5 0.5, 0.5 0.5))", 7);
+    assertMatchesCompactCells("POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))", 6);
+    assertMatchesCompactCells("POLYGON ((8 62, 13 62, 13 67, 8 67, 8 62))", 6);
+    assertMatchesCompactCells("POLYGON ((0 0, 30 0, 30 30, 0 30, 0 0))", 2);
+    assertEquals(0, PolygonCoverage.compactCells(new WKTReader().read("POLYGON EMPTY"), 9).length);
+  }
+
+  @Test
+  public void testClassifiedCells() throws ParseException {
+    assertClassifiedCells("POLYGON ((-122.5 37.7, -122.3 37.7, -122.3 37.9, -122.5 37.9, -122.5 37.7))", 9);
+    assertClassifiedCells("POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0), (0.5 0.5, 0.5 1.5, 1.5 1.5, 1.5 0.5, 0.5 0.5))", 7);
+    assertClassifiedCells("POLYGON ((8 62, 13 62, 13 67, 8 67, 8 62))", 6);
+    assertClassifiedCells("POLYGON ((0 0, 30 0, 30 30, 0 30, 0 0))", 2);
+    assertClassifiedCells("MULTIPOLYGON (((0 0, 1 0, 1 1, 0 1, 0 0)), ((1 0, 2 0, 2 1, 1 1, 1 0)))", 6);
+  }
+
+  @Test
+  public void testPartitionCells() throws ParseException {
+    assertPartitionCells("POLYGON ((-122.5 37.7, -122.3 37.7, -122.3 37.9, -122.5 37.9, -122.5 37.7))", 4);
+    assertPartitionCells("POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0), (0.5 0.5, 0.5 1.5, 1.5 1.5, 1.5 0.5, 0.5 0.5))", 5);
+    assertPartitionCells("POLYGON ((0 0, 30 0, 30 30, 0 30, 0 0))", 3);
+    assertPartitionCells("POLYGON ((8 62, 13 62, 13 67, 8 67, 8 62))", 4);
+    assertPartitionCells("POLYGON ((178 -1, 180 -1, 180 1, 178 1, 178 -1))", 4);
+    assertPartitionCells("LINESTRING (0 0, 3 3)", 4);
+
+    long[] cells =
+        PolygonCoverage.partitionCells(new WKTReader().read("POINT (10 20)"), 4, "test");
+    assertTrue(Arrays.binarySearch(cells, H3Plugin.H3.latLngToCell(20, 10, 4)) >= 0);
+    assertTrue(cells.length <= 7);
+    assertEquals(
+        0, PolygonCoverage.partitionCells(new WKTReader().read("POLYGON EMPTY"), 4, "test").length);
+  }
+
+  @Test
+  public void testOverCapBeforeExpanding() throws ParseException {
+    // Billions of cells at resolution 12, refused on the first interior tile
+    Geometry polygon = new WKTReader().read("POLYGON ((0 0, 30 0, 30 30, 0 30, 0 0))");
+    assertThrows(TrinoException.class, () -> PolygonCoverage.classifiedCells(polygon, 12, "test"));
+    assertThrows(TrinoException.class, () -> PolygonCoverage.partitionCells(polygon, 12, "test"));
+  }
+
+  @Test
+  public void testChildCells() {
+    for (long parent : new long[] {0x8009fffffffffffL, 0x85283473fffffffL, 0x820807fffffffffL}) {
+      for (int delta = 0; delta <= 4; delta++) {
+        int childRes = H3Validation.getResolution(parent) + delta;
+        long[] expected =
+            H3Plugin.H3.cellToChildren(parent, childRes).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        PolygonCoverage.ChildCells children = new PolygonCoverage.ChildCells(parent, childRes);
+        long[] actual = new long[expected.length + 1];
+        assertEquals(expected.length, children.fill(actual, 0));
+        assertTrue(children.isDone());
+        assertArrayEquals(expected, Arrays.copyOf(actual, expected.length));
+      }
+    }
+  }
+
+  @Test
+  public void testChildCellsToArray() {
+    long parent = 0x8001fffffffffffL;
+    long[] expected =
+        H3Plugin.H3.cellToChildren(parent, 6).stream().mapToLong(Long::longValue).toArray();
+    assertArrayEquals(expected, PolygonCoverage.ChildCells.toArray(parent, 6, expected.length));
+  }
+
+  @Test
+  public void testInterrupted() throws ParseException {
+    Geometry polygon = new WKTReader().read("POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))");
+    Thread.currentThread().interrupt();
+    try {
+      assertThrows(
+          TrinoException.class, () -> PolygonCoverage.toSortedArray(polygon, 6, "test"));
+      assertThrows(
+          TrinoException.class,
+          () -> PolygonCoverage.ChildCells.toArray(0x8001fffffffffffL, 6, 117649));
+      assertTrue(Thread.currentThread().isInterrupted());
+    } finally {
+      Thread.interrupted();
+    }
+    assertArrayEquals(
+        sorted(polygonToCells((Polygon) polygon, 6)),
+        PolygonCoverage.toSortedArray(polygon, 6, "test"));
+  }
+
+  private static void assertMatchesPolygonToCells(String wkt, int res) throws ParseException {
+    Polygon polygon = (Polygon) new WKTReader().read(wkt);
+    long[] expected = polygonToCells(polygon, res);
+    Arrays.sort(expected);
+    // An odd buffer size exercises cells split across calls
+    assertArrayEquals(expected, coverage(polygon, res, 777), wkt);
+  }
+
+  private static void assertMatchesCompactCells(String wkt, int res) throws ParseException {
+    Polygon polygon = (Polygon) new WKTReader().read(wkt);
+    long[] expected =
+        H3Plugin.H3.compactCells(H3Plugin.longArrayAsList(polygonToCells(polygon, res))).stream()
+            .mapToLong(Long::longValue)
+            .sorted()
+            .toArray();
+    long[] actual = PolygonCoverage.compactCells(polygon, res);
+    Arrays.sort(actual);
+    assertArrayEquals(expected, actual);
+  }
+
+  private static void assertClassifiedCells(String wkt, int res) throws ParseException {
+    Geometry geometry = new WKTReader().read(wkt);
+    long[] expected = new long[0];
+    for (int i = 0; i < geometry.getNumGeometries(); i++) {
+      expected = concat(expected, overlappingCells((Polygon) geometry.getGeometryN(i), res));
+    }
+    expected = Arrays.stream(expected).sorted().distinct().toArray();
+
+    PolygonCoverage.ClassifiedCells classified =
+        PolygonCoverage.classifiedCells(geometry, res, "test");
+    long[] actual = Arrays.copyOf(classified.cells(), classified.size());
+    Arrays.sort(actual);
+    assertArrayEquals(expected, actual, wkt);
+
+    int interiorCount = 0;
+    for (int i = 0; i < classified.size(); i++) {
+      if (classified.interior()[i] == 1) {
+        interiorCount++;
+        Geometry cell = cellPolygon(classified.cells()[i]);
+        assertTrue(geometry.contains(cell), Long.toHexString(classified.cells()[i]));
+      }
+    }
+    assertTrue(interiorCount > 0, wkt);
+  }
+
+  /**
+   * Every cell holding a point of the geometry must be returned, and nothing beyond the cells
+   * overlapping it and their neighbors.
+   */
+  private static void assertPartitionCells(String wkt, int res) throws ParseException {
+    Geometry geometry = new WKTReader().read(wkt);
+    long[] cells = PolygonCoverage.partitionCells(geometry, res, "test");
+    long[] sorted = cells.clone();
+    Arrays.sort(sorted);
+    assertArrayEquals(sorted, cells, wkt);
+
+    Envelope envelope = geometry.getEnvelopeInternal();
+    Random random = new Random(res);
+    GeometryFactory factory = new GeometryFactory();
+    int tested = 0;
+    while (tested < 2000) {
+      Coordinate point;
+      if (geometry instanceof LineString line) {
+        Coordinate start = line.getCoordinateN(0);
+        Coordinate end = line.getCoordinateN(1);
+        double t = random.nextDouble();
+        point = new Coordinate(start.x + (end.x - start.x) * t, start.y + (end.y - start.y) * t);
+      } else {
+        point =
+            new Coordinate(
+                envelope.getMinX() + random.nextDouble() * envelope.getWidth(),
+                envelope.getMinY() + random.nextDouble() * envelope.getHeight());
+        if (!geometry.contains(factory.createPoint(point))) {
+          continue;
+        }
+      }
+      long cell = H3Plugin.H3.latLngToCell(point.y, point.x, res);
+      assertTrue(Arrays.binarySearch(cells, cell) >= 0, wkt + " " + point);
+      tested++;
+    }
+
+    if (geometry instanceof Polygon polygon) {
+      Set<Long> near = new HashSet<>();
+      for (long cell : overlappingCells(polygon, res)) {
+        near.addAll(H3Plugin.H3.gridDisk(cell, 1));
+      }
+      for (long cell : cells) {
+        assertTrue(near.contains(cell), wkt + " " + Long.toHexString(cell));
+      }
+    }
+  }
+
+  private static Polygon cellPolygon(long cell) {
+    List<LatLng> boundary = H3Plugin.H3.cellToBoundary(cell);
+    Coordinate[] coordinates = new Coordinate[boundary.size() + 1];
+    for (int i = 0; i < boundary.size(); i++) {
+      coordinates[i] = new Coordinate(boundary.get(i).lng, boundary.get(i).lat);
+    }
+    coordinates[boundary.size()] = coordinates[0];
+    return new GeometryFactory().createPolygon(coordinates);
+  }
+
+  private static long[] coverage(Geometry geometry, int res, int bufferSize) {
+    PolygonCoverage coverage = PolygonCoverage.create(geometry, res);
+    long[] buffer = new long[bufferSize];
+    long[] cells = new long[0];
+    int count;
+    while ((count = coverage.next(buffer)) > 0) {
+      cells = concat(cells, Arrays.copyOf(buffer, count));
+    }
+    Arrays.sort(cells);
+    return cells;
+  }
+
+  private static long[] polygonToCells(Polygon polygon, int res) {
+    Block block = NativeCells.polygonToCells(polygon, res);
+    long[] cells = new long[block.getPositionCount()];
+    for (int i = 0; i < cells.length; i++) {
+      cells[i] = BIGINT.getLong(block, i);
+    }
+    return cells;
+  }
+
+  /** Cells overlapping the polygon, from H3Core as an oracle independent of {@link NativeCells}. */
+  private static long[] overlappingCells(Polygon polygon, int res) {
+    List<List<LatLng>> holes = new ArrayList<>();
+    for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+      holes.add(toLatLngs(polygon.getInteriorRingN(i)));
+    }
+    return H3Plugin.H3
+        .polygonToCellsExperimental(
+            toLatLngs(polygon.getExteriorRing()),
+            holes,
+            res,
+            PolygonToCellsFlags.containment_overlapping)
+        .stream()
+        .mapToLong(Long::longValue)
+        .toArray();
+  }
+
+  private static List<LatLng> toLatLngs(LineString ring) {
+    List<LatLng> latLngs = new ArrayList<>();
+    for (Coordinate coordinate : ring.getCoordinates()) {
+      latLngs.add(new LatLng(coordinate.y, coordinate.x));
+    }
+    return latLngs;
+  }
+
+  private static long[] sorted(long[] cells) {
+    long[] copy = cells.clone();
+    Arrays.sort(copy);
+    return copy;
+  }
+
+  private static long[] concat(long[] first, long[] second) {
+    long[] result = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, result, first.length, second.length);
+    return result;
+  }
+}
@@ -0,0 +1,133 @@
+package io.shchoi.trino.h3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.uber.h3core.util.LatLng;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.trino.spi.TrinoException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class RegionDatasetTest {
+  private static final String[] REGIONS = {
+    "a\tPOLYGON ((0 0, 2 0, 2 2, 0 2, 0 0))",
+    "b\tPOLYGON ((2 0, 4 0, 4 2, 2 2, 2 0))",
+    "c\tPOLYGON ((0 2, 4 2, 4 3, 0 3, 0 2), (1 2.2, 3 2.2, 3 2.8, 1 2.8, 1 2.2))",
+    "d\tMULTIPOLYGON (((5 0, 6 0, 6 1, 5 1, 5 0)), ((5 2, 6 2, 5.5 3, 5 2)))",
+  };
+
+  @Test
+  public void testMatchesExactLookup() throws ParseException {
+    List<Slice> ids = new ArrayList<>();
+    List<Geometry> geometries = new ArrayList<>();
+    WKTReader reader = new WKTReader();
+    for (String region : REGIONS) {
+      String[] parts = region.split("\t");
+      ids.add(Slices.utf8Slice(parts[0]));
+      geometries.add(reader.read(parts[1]));
+    }
+    RegionDataset dataset = RegionDataset.create(6, ids, geometries);
+    assertEquals(4, dataset.getRegionCount());
+    assertTrue(dataset.getInteriorCellCount() > 0);
+    assertTrue(dataset.getBoundaryCellCount() > 0);
+
+    Polygon area = (Polygon) reader.read("POLYGON ((-0.5 -0.5, 6.5 -0.5, 6.5 3.5, -0.5 3.5, -0.5 -0.5))");
+    GeometryFactory factory = new GeometryFactory();
+    for (int res : new int[] {4, 5, 6, 8}) {
+      for (long cell : NativeCells.polygonToCellsArray(area, res)) {
+        if (cell == 0) {
+          continue;
+        }
+        LatLng center = H3Plugin.H3.cellToLatLng(cell);
+        Geometry point = factory.createPoint(new Coordinate(center.lng, center.lat));
+        Slice expected = null;
+        for (int i = 0; i < geometries.size(); i++) {
+          if (geometries.get(i).covers(point)) {
+            expected = ids.get(i);
+            break;
+          }
+        }
+        Slice actual = dataset.lookup(cell);
+        if (expected == null) {
+          assertNull(actual, Long.toHexString(cell));
+        } else {
+          // Points on a shared edge belong to either region
+          assertNotNull(actual, Long.toHexString(cell));
+          int region = ids.indexOf(actual);
+          assertTrue(geometries.get(region).covers(point), Long.toHexString(cell));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidResolution() {
+    assertThrows(
+        IllegalArgumentException.class, () -> RegionDataset.create(2, List.of(), List.of()));
+    assertThrows(
+        IllegalArgumentException.class, () -> RegionDataset.create(16, List.of(), List.of()));
+  }
+
+  @Test
+  public void testLoad(@TempDir Path directory) throws IOException {
+    Files.write(
+        directory.resolve("regions" + RegionDatasets.FILE_SUFFIX),
+        List.of("# id and WKT", "", REGIONS[0], REGIONS[1]));
+    Files.write(directory.resolve("broken" + RegionDatasets.FILE_SUFFIX), List.of("no tab"));
+
+    RegionDatasets datasets = new RegionDatasets(directory, 6);
+    datasets.prepare().join();
+    RegionDataset dataset = datasets.get("regions");
+    assertNotNull(dataset);
+    assertSame(dataset, datasets.get("regions"));
+    assertEquals(2, dataset.getRegionCount());
+    assertEquals(Slices.utf8Slice("a"), dataset.lookup(H3Plugin.H3.latLngToCell(1, 1, 8)));
+    assertEquals(Slices.utf8Slice("b"), dataset.lookup(H3Plugin.H3.latLngToCell(1, 3, 8)));
+    assertNull(dataset.lookup(H3Plugin.H3.latLngToCell(10, 10, 8)));
+
+    TrinoException failure = assertThrows(TrinoException.class, () -> datasets.get("broken"));
+    assertTrue(failure.getMessage().contains("broken" + RegionDatasets.FILE_SUFFIX + ":1:"));
+    // Failures are not remembered as a missing dataset
+    assertThrows(TrinoException.class, () -> datasets.get("broken"));
+    assertNull(datasets.get("missing"));
+    assertNull(datasets.get("../regions"));
+    assertNull(new RegionDatasets(null, 6).get("regions"));
+  }
+
+  @Test
+  public void testFailsWhileLoading(@TempDir Path directory) throws IOException {
+    Files.write(directory.resolve("regions" + RegionDatasets.FILE_SUFFIX), List.of(REGIONS));
+
+    // The first lookup starts loading but does not wait for it
+    RegionDatasets datasets = new RegionDatasets(directory, 6);
+    try {
+      assertNotNull(datasets.get("regions"));
+    } catch (TrinoException e) {
+      assertTrue(e.getMessage().contains("still loading"), e.getMessage());
+    }
+    datasets.prepare().join();
+    assertEquals(REGIONS.length, datasets.get("regions").getRegionCount());
+    assertTrue(
+        new RegionDatasets(directory.resolve("missing"), 6).prepare().isCompletedExceptionally());
+  }
+}
@@ -15,6 +15,7 @@
  */
 package io.shchoi.trino.h3;
 
+import static io.shchoi.trino.h3.H3PluginTest.assertPolygonalResult;
 import static io.shchoi.trino.h3.H3PluginTest.assertQueryResults;
 import static io.shchoi.trino.h3.H3PluginTest.createQueryRunner;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -46,10 +47,10 @@ public class RegionFunctionsTest {
           List.of(
               List.of(
                   List.of(
-                      0x84754ebffffffffL,
-                      0x84754e3ffffffffL,
                       0x84754c5ffffffffL,
-                      0x84754c7ffffffffL))));
+                      0x84754c7ffffffffL,
+                      0x84754e3ffffffffL,
+                      0x84754ebffffffffL))));
       // Test polygon with hole - outer ring with inner hole
       // Polygon: large square with smaller square hole in center
       // At resolution 4, the hole should exclude some cells from the result
@@ -89,6 +90,140 @@ public class RegionFunctionsTest {
     }
   }
 
+  @Test
+  public void testPolygonToCellsCompact() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(h3_polygon_to_cells_compact(ST_GeometryFromText('POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0))'), 8)) = array_sort(h3_compact_cells(h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0))'), 8)))",
+          List.of(List.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(h3_polygon_to_cells_compact(ST_GeometryFromText('POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0))'), 8)) < cardinality(h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0))'), 8))",
+          List.of(List.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(h3_polygon_to_cells_compact(ST_GeometryFromText('MULTIPOLYGON (((0 0, 1 0, 1 1, 0 1, 0 0)), ((2 2, 3 2, 3 3, 2 3, 2 2)))'), 6)) > 0",
+          List.of(List.of(true)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells_compact(ST_GeometryFromText('POINT (40 4)'), 4)",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells_compact(null, 4)",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells_compact(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 16)",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testPolygonToCellsClassified() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(h3_polygon_to_cells_classified(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 4)) > cardinality(h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 4))",
+          List.of(List.of(true)));
+      // Overlapping cells include the center-contained ones
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(array_except(h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0))'), 6), transform(h3_polygon_to_cells_classified(ST_GeometryFromText('POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0))'), 6), c -> c.cell)))",
+          List.of(List.of(0L)));
+      // Interior cells contain only points inside the polygon
+      assertQueryResults(
+          queryRunner,
+          "SELECT bool_and(ST_Contains(ST_GeometryFromText('POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0))'), h3_cell_to_boundary(cell))), count(*) > 0 FROM UNNEST(h3_polygon_to_cells_classified(ST_GeometryFromText('POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0))'), 6)) t(cell, interior) WHERE interior",
+          List.of(List.of(true, true)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells_classified(ST_GeometryFromText('POINT (40 4)'), 4)",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells_classified(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 16)",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testPolygonToPartitionCells() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      // Every cell a point of the polygon can fall in is a partition cell
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(array_except(transform(h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0))'), 8), c -> h3_cell_to_parent(c, 4)), h3_polygon_to_partition_cells(ST_GeometryFromText('POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0))'), 4)))",
+          List.of(List.of(0L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT contains(h3_polygon_to_partition_cells(ST_Point(10, 20), 4), h3_latlng_to_cell(20, 10, 4))",
+          List.of(List.of(true)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_partition_cells(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 16)",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_partition_cells(null, 4)",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testGeometryToCells() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_geometry_to_cells(ST_Point(-122.419, 37.775), 9) = ARRAY[h3_latlng_to_cell(37.775, -122.419, 9)]",
+          List.of(List.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(h3_geometry_to_cells(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 4)) = array_sort(h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 4))",
+          List.of(List.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(h3_geometry_to_cells(ST_GeometryFromText('MULTIPOLYGON (((0 0, 1 1, 1 0, 0 0)), ((0 0, 1 1, 1 0, 0 0)))'), 4))",
+          List.of(List.of(4L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(h3_geometry_to_cells(ST_GeometryFromText('LINESTRING (-122.5 37.7, -122.3 37.9)'), 9)) > 1",
+          List.of(List.of(true)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_geometry_to_cells(null, 4)",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_geometry_to_cells(ST_Point(0, 0), 16)",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testLookup() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      // No datasets are configured for tests, see RegionDatasetTest
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_lookup('regions', from_base('85283473fffffff', 16))",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_lookup('regions', 0)",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_lookup(null, from_base('85283473fffffff', 16))",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
   @Test
   public void testCellsToMultiPolygon() throws ParseException {
     try (QueryRunner queryRunner = createQueryRunner()) {
@@ -98,10 +233,10 @@ public class RegionFunctionsTest {
       Geometry expectedMultiPolygon =
           wktReader.read(
               "MULTIPOLYGON (((-121.92354999630156 37.42834118609436, -122.03773496427027 37.42012867767779, -122.090428929044 37.33755608435299, -122.02910130918998 37.26319797461824, -121.91508032705622 37.2713558667319, -121.86222328902491 37.353926450852256, -121.92354999630156 37.42834118609436)))");
-      assertQueryResults(
+      assertPolygonalResult(
           queryRunner,
           "SELECT ST_AsText(h3_cells_to_multi_polygon(ARRAY [from_base('85283473fffffff', 16)])) multipolygon",
-          List.of(List.of(expectedMultiPolygon)));
+          expectedMultiPolygon);
       assertQueryResults(
           queryRunner,
           "SELECT h3_cells_to_multi_polygon(null) multipolygon",
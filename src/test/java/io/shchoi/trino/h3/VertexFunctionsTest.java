@@ -107,15 +107,7 @@ public class VertexFunctionsTest {
       assertQueryResults(
           queryRunner,
           "SELECT h3_cell_to_vertexes(0) hex",
-          List.of(
-              List.of(
-                  List.of(
-                      0x2000000000000000L,
-                      0x2100000000000000L,
-                      0x2200000000000000L,
-                      0x2300000000000000L,
-                      0x2400000000000000L,
-                      0x2500000000000000L))));
+          List.of(Collections.singletonList(null)));
       assertQueryResults(
           queryRunner,
           "SELECT h3_cell_to_vertexes(null) hex",
@@ -134,11 +126,11 @@ public class VertexFunctionsTest {
           "SELECT ST_AsText(h3_vertex_to_latlng(from_base('255283463fffffff', 16)))",
           List.of(List.of(expectedPoint)));
 
-      Geometry expectedPoint2 = wktReader.read("POINT (31.831280499087402 68.92995788193981)");
+      // Not a vertex index, so rejected before reaching H3
       assertQueryResults(
           queryRunner,
           "SELECT ST_AsText(h3_vertex_to_latlng(0))",
-          List.of(List.of(expectedPoint2)));
+          List.of(Collections.singletonList(null)));
       assertQueryResults(
           queryRunner,
           "SELECT ST_AsText(h3_vertex_to_latlng(-1))",
@@ -150,6 +142,25 @@ public class VertexFunctionsTest {
     }
   }
 
+  @Test
+  public void testVertexToLatLngRow() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT r.lat, r.lng FROM (SELECT h3_vertex_to_latlng_row(from_base('255283463fffffff', 16)) AS r)",
+          List.of(List.of(37.42012867767779, -122.03773496427027)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_vertex_to_latlng_row(-1)",
+          List.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_vertex_to_latlng_row(null)",
+          List.of(Collections.singletonList(null)));
+    }
+  }
+
   @Test
   public void testIsValidVertex() {
     try (QueryRunner queryRunner = createQueryRunner()) {